@@ -0,0 +1,184 @@
+package com.shinestar;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * 麦克风采集参数：采样率、声道数、采样格式和音频源。
+ * 很多设备的原生采样率是44.1/48kHz，按原生格式采集可以避开系统的重采样和预处理，
+ * 识别器需要的16kHz单声道PCM16由PcmResampler在采集线程上转换。不可变，修改后在下一次会话生效。
+ */
+public final class AudioCaptureConfig {
+    private static final String TAG = "AudioCaptureConfig";
+
+    private static final int MIN_SAMPLE_RATE = 8000;
+    private static final int MAX_SAMPLE_RATE = 48000;
+    private static final int FALLBACK_NATIVE_RATE = 48000;
+
+    // 与原来固定的16kHz单声道PCM16、MIC音源一致
+    public static final AudioCaptureConfig DEFAULT = new AudioCaptureConfig(
+        16000, 1, PcmResampler.Encoding.PCM_16BIT, MediaRecorder.AudioSource.MIC, "mic");
+
+    private final int sampleRate;
+    private final int channels;
+    private final PcmResampler.Encoding encoding;
+    private final int audioSource;
+    private final String audioSourceName;
+    private final int bufferSize;
+
+    private AudioCaptureConfig(int sampleRate, int channels, PcmResampler.Encoding encoding,
+                               int audioSource, String audioSourceName) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.encoding = encoding;
+        this.audioSource = audioSource;
+        this.audioSourceName = audioSourceName;
+        this.bufferSize = AudioRecord.getMinBufferSize(sampleRate, getChannelMask(), getAudioFormat());
+    }
+
+    /**
+     * 未指定的字段沿用base；sampleRate为0表示设备原生采样率。参数无效时抛出IllegalArgumentException
+     */
+    public static AudioCaptureConfig fromOptions(ReadableMap options, AudioCaptureConfig base, Context context) {
+        int sampleRate = base.sampleRate;
+        if (options.hasKey("sampleRate")) {
+            sampleRate = options.getInt("sampleRate");
+            if (sampleRate == 0) {
+                sampleRate = getNativeSampleRate(context);
+            } else if (sampleRate < MIN_SAMPLE_RATE || sampleRate > MAX_SAMPLE_RATE) {
+                throw new IllegalArgumentException("不支持的采样率: " + sampleRate);
+            }
+        }
+
+        int channels = base.channels;
+        if (options.hasKey("channels")) {
+            channels = options.getInt("channels");
+            if (channels != 1 && channels != 2) {
+                throw new IllegalArgumentException("不支持的声道数: " + channels);
+            }
+        }
+
+        PcmResampler.Encoding encoding = base.encoding;
+        if (options.hasKey("encoding")) {
+            String value = options.getString("encoding");
+            if ("pcm16".equals(value)) {
+                encoding = PcmResampler.Encoding.PCM_16BIT;
+            } else if ("float".equals(value)) {
+                encoding = PcmResampler.Encoding.PCM_FLOAT;
+            } else {
+                throw new IllegalArgumentException("不支持的采样格式: " + value);
+            }
+        }
+
+        int audioSource = base.audioSource;
+        String audioSourceName = base.audioSourceName;
+        if (options.hasKey("audioSource")) {
+            audioSourceName = options.getString("audioSource");
+            if ("mic".equals(audioSourceName)) {
+                audioSource = MediaRecorder.AudioSource.MIC;
+            } else if ("voiceRecognition".equals(audioSourceName)) {
+                audioSource = MediaRecorder.AudioSource.VOICE_RECOGNITION;
+            } else if ("voiceCommunication".equals(audioSourceName)) {
+                audioSource = MediaRecorder.AudioSource.VOICE_COMMUNICATION;
+            } else if ("unprocessed".equals(audioSourceName)) {
+                if (isUnprocessedSupported(context)) {
+                    audioSource = MediaRecorder.AudioSource.UNPROCESSED;
+                } else {
+                    // 不支持时UNPROCESSED会静默返回经过处理的音频，显式退回VOICE_RECOGNITION
+                    Log.w(TAG, "UNPROCESSED audio source is not supported, using VOICE_RECOGNITION");
+                    audioSource = MediaRecorder.AudioSource.VOICE_RECOGNITION;
+                    audioSourceName = "voiceRecognition";
+                }
+            } else {
+                throw new IllegalArgumentException("不支持的音频源: " + audioSourceName);
+            }
+        }
+
+        AudioCaptureConfig config = new AudioCaptureConfig(sampleRate, channels, encoding, audioSource, audioSourceName);
+        if (config.bufferSize <= 0) {
+            throw new IllegalArgumentException("设备不支持该采集参数: " + config.describe());
+        }
+        return config;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public PcmResampler.Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * AudioRecord的缓冲区大小，也是每次读取的字节数
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public AudioRecord createAudioRecord() {
+        return new AudioRecord(audioSource, sampleRate, getChannelMask(), getAudioFormat(), bufferSize);
+    }
+
+    public PcmResampler createResampler(int outputRate) {
+        return new PcmResampler(sampleRate, channels, encoding, outputRate);
+    }
+
+    public WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+        map.putInt("sampleRate", sampleRate);
+        map.putInt("channels", channels);
+        map.putString("encoding", encoding == PcmResampler.Encoding.PCM_FLOAT ? "float" : "pcm16");
+        map.putString("audioSource", audioSourceName);
+        map.putInt("bufferSize", bufferSize);
+        return map;
+    }
+
+    private String describe() {
+        return sampleRate + "Hz/" + channels + "ch/" + encoding + "/" + audioSourceName;
+    }
+
+    private int getChannelMask() {
+        return channels == 2 ? AudioFormat.CHANNEL_IN_STEREO : AudioFormat.CHANNEL_IN_MONO;
+    }
+
+    private int getAudioFormat() {
+        return encoding == PcmResampler.Encoding.PCM_FLOAT ? AudioFormat.ENCODING_PCM_FLOAT : AudioFormat.ENCODING_PCM_16BIT;
+    }
+
+    /**
+     * 系统没有公开输入的原生采样率，输入与输出通常相同，用输出采样率代替
+     */
+    private static int getNativeSampleRate(Context context) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        String value = audioManager != null ? audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE) : null;
+        try {
+            int rate = value != null ? Integer.parseInt(value) : FALLBACK_NATIVE_RATE;
+            return Math.max(MIN_SAMPLE_RATE, Math.min(MAX_SAMPLE_RATE, rate));
+        } catch (NumberFormatException e) {
+            return FALLBACK_NATIVE_RATE;
+        }
+    }
+
+    private static boolean isUnprocessedSupported(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return false;
+        }
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        return audioManager != null
+            && "true".equals(audioManager.getProperty(AudioManager.PROPERTY_SUPPORT_AUDIO_SOURCE_UNPROCESSED));
+    }
+}
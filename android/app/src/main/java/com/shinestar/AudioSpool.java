@@ -0,0 +1,419 @@
+package com.shinestar;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * 离线音频暂存区：网络不可用或上传失败的音频片段按顺序追加到磁盘上的分段文件，
+ * 网络恢复后由后台线程按写入顺序取出重新上传。
+ *
+ * 每个分段文件只追加不修改，单条记录格式为
+ * [magic][createdAt][encoding长度][language长度][payload长度][crc32][encoding][language][payload]。
+ * manifest文件记录下一条待上传记录的位置，通过临时文件+rename原子更新。
+ * 打开时会截掉最后一个分段中因崩溃而写了一半的记录，并按总大小上限和过期时间清理旧分段。
+ */
+public class AudioSpool {
+    private static final String TAG = "AudioSpool";
+    private static final int RECORD_MAGIC = 0x53504F4C; // "SPOL"
+    private static final int HEADER_BYTES = 4 + 8 + 1 + 1 + 4 + 4;
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    private static final long SEGMENT_MAX_BYTES = 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String MANIFEST_NAME = "spool.manifest";
+    private static final String MANIFEST_TEMP_NAME = "spool.manifest.tmp";
+
+    public static class Entry {
+        public final long createdAtMs;
+        public final String encoding;
+        public final String language;
+        public final byte[] audio;
+        final long segment;
+        final long nextOffset;
+
+        Entry(long createdAtMs, String encoding, String language, byte[] audio, long segment, long nextOffset) {
+            this.createdAtMs = createdAtMs;
+            this.encoding = encoding;
+            this.language = language;
+            this.audio = audio;
+            this.segment = segment;
+            this.nextOffset = nextOffset;
+        }
+    }
+
+    private final File directory;
+    private final long maxBytes;
+    private final long ttlMs;
+
+    // 按序号升序排列的分段
+    private final List<Long> segments = new ArrayList<>();
+    private long readSegment;
+    private long readOffset;
+    private FileChannel writer;
+    private long writerSegment = -1;
+    private long totalBytes;
+    private long evictions;
+    private boolean opened;
+
+    public AudioSpool(File directory, long maxBytes, long ttlMs) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlMs;
+    }
+
+    public synchronized void open() throws IOException {
+        if (opened) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spool directory " + directory);
+        }
+
+        segments.clear();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        Log.w(TAG, "Ignoring unexpected spool file " + name);
+                    }
+                }
+            }
+        }
+        Collections.sort(segments);
+
+        readManifest();
+        while (!segments.isEmpty() && segments.get(0) < readSegment) {
+            deleteSegment(segments.get(0));
+        }
+        if (segments.isEmpty() || segments.get(0) > readSegment) {
+            readSegment = segments.isEmpty() ? 0 : segments.get(0);
+            readOffset = 0;
+        }
+        if (!segments.isEmpty()) {
+            recoverTail(segments.get(segments.size() - 1));
+        }
+
+        totalBytes = 0;
+        for (long segment : segments) {
+            totalBytes += segmentFile(segment).length();
+        }
+        opened = true;
+        evictExpiredSegments();
+        enforceSizeLimit();
+    }
+
+    public synchronized void append(String encoding, String language, byte[] audio, int length) throws IOException {
+        ensureOpen();
+        if (writer == null || writer.size() >= SEGMENT_MAX_BYTES) {
+            rollSegment();
+        }
+
+        byte[] encodingBytes = encoding.getBytes(StandardCharsets.US_ASCII);
+        byte[] languageBytes = language.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(encodingBytes);
+        crc.update(languageBytes);
+        crc.update(audio, 0, length);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(RECORD_MAGIC);
+        header.putLong(System.currentTimeMillis());
+        header.put((byte) encodingBytes.length);
+        header.put((byte) languageBytes.length);
+        header.putInt(length);
+        header.putInt((int) crc.getValue());
+        header.flip();
+
+        ByteBuffer[] record = {
+            header,
+            ByteBuffer.wrap(encodingBytes),
+            ByteBuffer.wrap(languageBytes),
+            ByteBuffer.wrap(audio, 0, length)
+        };
+        long recordBytes = HEADER_BYTES + encodingBytes.length + languageBytes.length + length;
+        writer.position(writer.size());
+        while (record[3].hasRemaining()) {
+            writer.write(record);
+        }
+        writer.force(false);
+        totalBytes += recordBytes;
+
+        enforceSizeLimit();
+    }
+
+    /**
+     * 返回下一条未过期的记录，不移动读取位置；没有待上传记录时返回null
+     */
+    public synchronized Entry peek() throws IOException {
+        ensureOpen();
+        long expiredBefore = System.currentTimeMillis() - ttlMs;
+
+        while (!segments.isEmpty()) {
+            File file = segmentFile(readSegment);
+            if (readOffset >= file.length()) {
+                if (readSegment == writerSegment || segments.size() == 1) {
+                    return null;
+                }
+                // 当前分段已读完，切换到下一个分段
+                deleteSegment(readSegment);
+                readSegment = segments.get(0);
+                readOffset = 0;
+                writeManifest();
+                continue;
+            }
+
+            Entry entry = readRecord(readSegment, readOffset);
+            if (entry == null) {
+                // 记录损坏，跳过该分段剩余部分
+                Log.w(TAG, "Corrupt spool record in segment " + readSegment + " at " + readOffset);
+                readOffset = file.length();
+                writeManifest();
+                continue;
+            }
+            if (entry.createdAtMs < expiredBefore) {
+                evictions++;
+                readOffset = entry.nextOffset;
+                writeManifest();
+                continue;
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * 记录已成功上传（或确认无需重传），读取位置移到其后
+     */
+    public synchronized void commit(Entry entry) throws IOException {
+        if (entry.segment != readSegment || entry.nextOffset <= readOffset) {
+            return;
+        }
+        readOffset = entry.nextOffset;
+
+        if (readSegment == writerSegment && writer != null && readOffset >= writer.size()) {
+            // 全部上传完毕，清空暂存区
+            writer.close();
+            writer = null;
+            writerSegment = -1;
+            deleteSegment(readSegment);
+            readSegment++;
+            readOffset = 0;
+        }
+        writeManifest();
+    }
+
+    public synchronized boolean isEmpty() {
+        if (segments.isEmpty()) {
+            return true;
+        }
+        return segments.size() == 1 && readOffset >= segmentFile(readSegment).length();
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing spool segment", e);
+            }
+            writer = null;
+            writerSegment = -1;
+        }
+        opened = false;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!opened) {
+            open();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+        long next = segments.isEmpty() ? readSegment : segments.get(segments.size() - 1) + 1;
+        if (segments.isEmpty()) {
+            readSegment = next;
+            readOffset = 0;
+            writeManifest();
+        }
+        writer = new RandomAccessFile(segmentFile(next), "rw").getChannel();
+        writerSegment = next;
+        if (!segments.contains(next)) {
+            segments.add(next);
+        }
+    }
+
+    private Entry readRecord(long segment, long offset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "r")) {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (!readFully(channel, header, offset)) {
+                return null;
+            }
+            header.flip();
+            if (header.getInt() != RECORD_MAGIC) {
+                return null;
+            }
+            long createdAt = header.getLong();
+            int encodingLength = header.get() & 0xff;
+            int languageLength = header.get() & 0xff;
+            int payloadLength = header.getInt();
+            int expectedCrc = header.getInt();
+            if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_BYTES) {
+                return null;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(encodingLength + languageLength + payloadLength);
+            if (!readFully(channel, body, offset + HEADER_BYTES)) {
+                return null;
+            }
+            byte[] bytes = body.array();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if ((int) crc.getValue() != expectedCrc) {
+                return null;
+            }
+
+            String encoding = new String(bytes, 0, encodingLength, StandardCharsets.US_ASCII);
+            String language = new String(bytes, encodingLength, languageLength, StandardCharsets.US_ASCII);
+            byte[] audio = new byte[payloadLength];
+            System.arraycopy(bytes, encodingLength + languageLength, audio, 0, payloadLength);
+            return new Entry(createdAt, encoding, language, audio, segment, offset + HEADER_BYTES + bytes.length);
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + target.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 截掉最后一个分段末尾不完整或损坏的记录
+     */
+    private void recoverTail(long segment) throws IOException {
+        File file = segmentFile(segment);
+        long offset = segment == readSegment ? readOffset : 0;
+        long length = file.length();
+        while (offset < length) {
+            Entry entry = readRecord(segment, offset);
+            if (entry == null) {
+                break;
+            }
+            offset = entry.nextOffset;
+        }
+        if (offset < length) {
+            Log.w(TAG, "Truncating spool segment " + segment + " from " + length + " to " + offset);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.getChannel().truncate(offset);
+            }
+        }
+    }
+
+    private void evictExpiredSegments() throws IOException {
+        long expiredBefore = System.currentTimeMillis() - ttlMs;
+        // 分段的修改时间即其中最新记录的写入时间
+        while (!segments.isEmpty() && segments.get(0) != writerSegment
+            && segmentFile(segments.get(0)).lastModified() < expiredBefore) {
+            evictOldestSegment();
+        }
+    }
+
+    private void enforceSizeLimit() throws IOException {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            evictOldestSegment();
+        }
+    }
+
+    private void evictOldestSegment() throws IOException {
+        long oldest = segments.get(0);
+        Log.w(TAG, "Evicting spool segment " + oldest);
+        evictions++;
+        deleteSegment(oldest);
+        if (readSegment == oldest) {
+            readSegment = segments.isEmpty() ? oldest + 1 : segments.get(0);
+            readOffset = 0;
+            writeManifest();
+        }
+    }
+
+    private void deleteSegment(long segment) {
+        File file = segmentFile(segment);
+        totalBytes -= file.length();
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Unable to delete spool segment " + file);
+        }
+        segments.remove(Long.valueOf(segment));
+        if (totalBytes < 0) {
+            totalBytes = 0;
+        }
+    }
+
+    private void readManifest() {
+        File manifest = new File(directory, MANIFEST_NAME);
+        if (!manifest.exists()) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(manifest, "r")) {
+            long segment = file.readLong();
+            long offset = file.readLong();
+            long checksum = file.readLong();
+            if ((segment ^ offset ^ RECORD_MAGIC) == checksum) {
+                readSegment = segment;
+                readOffset = offset;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read spool manifest, replaying from the first segment", e);
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        File temp = new File(directory, MANIFEST_TEMP_NAME);
+        try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+            file.setLength(0);
+            file.writeLong(readSegment);
+            file.writeLong(readOffset);
+            file.writeLong(readSegment ^ readOffset ^ RECORD_MAGIC);
+            file.getFD().sync();
+        }
+        if (!temp.renameTo(new File(directory, MANIFEST_NAME))) {
+            throw new IOException("Unable to update spool manifest");
+        }
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, String.format(Locale.US, "%016d%s", segment, SEGMENT_SUFFIX));
+    }
+}
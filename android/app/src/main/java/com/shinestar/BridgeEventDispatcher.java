@@ -0,0 +1,222 @@
+package com.shinestar;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 识别模块的JS事件分发器，每个模块各持有一个。
+ * 各模块发出同名事件，合并、取代和频率设置都只作用于本模块自己的事件，不会跨模块丢弃或合并。
+ * 事件先进入待发送队列，每帧在主线程上统一发出一次，而不是每个事件单独post一条消息；
+ * 音量、中间结果等高频事件按最大频率合并，同名事件只保留最新一条；
+ * 最终结果到达时丢弃尚未发出的中间结果。
+ */
+public class BridgeEventDispatcher {
+    public interface Emitter {
+        void emit(String eventName, WritableMap params);
+    }
+
+    // 默认合并频率（次/秒）
+    private static final int DEFAULT_RMS_RATE = 15;
+    private static final int DEFAULT_PARTIAL_RATE = 10;
+
+    private final Emitter emitter;
+    private final Handler mainHandler;
+    private final Object lock = new Object();
+    // 合并事件名 -> 最小发送间隔
+    private final Map<String, Long> minIntervalNanos = new ConcurrentHashMap<>();
+    // 最终事件名 -> 被其取代的中间事件名
+    private final Map<String, String> supersedes = new ConcurrentHashMap<>();
+    // 以下仅在主线程访问
+    private final Map<String, Long> lastEmittedAt = new HashMap<>();
+    private ArrayList<PendingEvent> ready = new ArrayList<>();
+    // 由lock保护
+    private ArrayList<PendingEvent> pending = new ArrayList<>();
+    private boolean flushScheduled;
+
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong emittedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong staleDroppedCount = new AtomicLong();
+    private final AtomicLong frameCount = new AtomicLong();
+
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> flush(System.nanoTime());
+    private final Runnable postFrameCallback = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    /**
+     * 为一个模块创建分发器，使用默认的合并频率；模块随ReactApplicationContext重建，分发器也随之重建
+     */
+    public static BridgeEventDispatcher create(ReactApplicationContext reactContext) {
+        BridgeEventDispatcher dispatcher = new BridgeEventDispatcher(
+            (eventName, params) -> reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params),
+            new Handler(Looper.getMainLooper()));
+        dispatcher.setMaxRate("onRmsChanged", DEFAULT_RMS_RATE);
+        dispatcher.setMaxRate("onPartialResults", DEFAULT_PARTIAL_RATE);
+        dispatcher.setSupersedes("onResults", "onPartialResults");
+        return dispatcher;
+    }
+
+    public BridgeEventDispatcher(Emitter emitter, Handler mainHandler) {
+        this.emitter = emitter;
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * 设置事件的最大发送频率，maxPerSecond <= 0 表示不合并、逐条发送
+     */
+    public void setMaxRate(String eventName, int maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            minIntervalNanos.remove(eventName);
+        } else {
+            minIntervalNanos.put(eventName, TimeUnit.SECONDS.toNanos(1) / maxPerSecond);
+        }
+    }
+
+    public int getMaxRate(String eventName) {
+        Long interval = minIntervalNanos.get(eventName);
+        return interval == null ? 0 : (int) (TimeUnit.SECONDS.toNanos(1) / interval);
+    }
+
+    /**
+     * finalEvent发出时，队列中尚未发出的staleEvent不再发送
+     */
+    public void setSupersedes(String finalEvent, String staleEvent) {
+        supersedes.put(finalEvent, staleEvent);
+    }
+
+    /**
+     * 可在任意线程调用
+     */
+    public void dispatch(String eventName, WritableMap params) {
+        dispatchedCount.incrementAndGet();
+        boolean coalesced = minIntervalNanos.containsKey(eventName);
+        String stale = supersedes.get(eventName);
+        synchronized (lock) {
+            if (stale != null) {
+                for (int i = pending.size() - 1; i >= 0; i--) {
+                    if (pending.get(i).name.equals(stale)) {
+                        pending.remove(i);
+                        staleDroppedCount.incrementAndGet();
+                    }
+                }
+            }
+            if (coalesced && replacePending(eventName, params)) {
+                coalescedCount.incrementAndGet();
+            } else {
+                pending.add(new PendingEvent(eventName, params));
+            }
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * 发出当前可以发送的事件；受频率限制的合并事件留到后续帧。仅在主线程调用
+     */
+    void flush(long nowNanos) {
+        frameCount.incrementAndGet();
+        boolean more;
+        synchronized (lock) {
+            ArrayList<PendingEvent> kept = ready;
+            ready = pending;
+            pending = kept;
+            // ready中暂不能发送的合并事件放回pending，保持原有顺序
+            int write = 0;
+            for (int i = 0; i < ready.size(); i++) {
+                PendingEvent event = ready.get(i);
+                Long interval = minIntervalNanos.get(event.name);
+                Long last = lastEmittedAt.get(event.name);
+                if (interval != null && last != null && nowNanos - last < interval) {
+                    pending.add(event);
+                } else {
+                    if (interval != null) {
+                        lastEmittedAt.put(event.name, nowNanos);
+                    }
+                    ready.set(write++, event);
+                }
+            }
+            for (int i = ready.size() - 1; i >= write; i--) {
+                ready.remove(i);
+            }
+            more = !pending.isEmpty();
+            flushScheduled = more;
+        }
+
+        for (int i = 0; i < ready.size(); i++) {
+            PendingEvent event = ready.get(i);
+            emitter.emit(event.name, event.params);
+            emittedCount.incrementAndGet();
+        }
+        ready.clear();
+
+        if (more) {
+            scheduleFlush();
+        }
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    public long getEmittedCount() {
+        return emittedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getStaleDroppedCount() {
+        return staleDroppedCount.get();
+    }
+
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    private boolean replacePending(String eventName, WritableMap params) {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            PendingEvent event = pending.get(i);
+            if (event.name.equals(eventName)) {
+                event.params = params;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleFlush() {
+        // Choreographer按线程区分，必须在主线程上注册帧回调
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            postFrameCallback.run();
+        } else {
+            mainHandler.post(postFrameCallback);
+        }
+    }
+
+    private static final class PendingEvent {
+        final String name;
+        WritableMap params;
+
+        PendingEvent(String name, WritableMap params) {
+            this.name = name;
+            this.params = params;
+        }
+    }
+}
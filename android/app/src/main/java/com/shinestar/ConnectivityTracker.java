@@ -0,0 +1,221 @@
+package com.shinestar;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 共享的网络状态：用registerDefaultNetworkCallback跟踪默认网络，缓存是否连接、是否计费、传输类型及带宽估计，
+ * 变化时推送给订阅者。查询只读缓存，不再每次通过binder调用getActiveNetworkInfo，会话中途的变化也能及时看到。
+ * Android 7.0以下没有默认网络回调，改为监听所有可上网的网络，每次回调时重新读取当前网络。
+ */
+public final class ConnectivityTracker {
+    private static final String TAG = "ConnectivityTracker";
+    // 带宽估计变化超过该比例才通知订阅者，蜂窝网络下的估计值变动很频繁
+    private static final double BANDWIDTH_CHANGE_RATIO = 0.2;
+
+    public static final class State {
+        public static final State DISCONNECTED = new State("none", false, false, false, "none", 0, 0);
+
+        // 当前网络的标识，同类型的网络之间切换（如换了一个Wi-Fi）也会变化
+        public final String networkId;
+        public final boolean connected;
+        // 系统已确认可以访问互联网（不在认证门户之后）
+        public final boolean validated;
+        public final boolean metered;
+        public final String transport;
+        // 系统给出的链路带宽估计，未知时为0
+        public final int downstreamKbps;
+        public final int upstreamKbps;
+
+        State(String networkId, boolean connected, boolean validated, boolean metered, String transport,
+              int downstreamKbps, int upstreamKbps) {
+            this.networkId = networkId;
+            this.connected = connected;
+            this.validated = validated;
+            this.metered = metered;
+            this.transport = transport;
+            this.downstreamKbps = downstreamKbps;
+            this.upstreamKbps = upstreamKbps;
+        }
+
+        static State from(Network network, NetworkCapabilities capabilities) {
+            if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+                return DISCONNECTED;
+            }
+            String transport;
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+                transport = "wifi";
+            } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+                transport = "cellular";
+            } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+                transport = "ethernet";
+            } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+                transport = "vpn";
+            } else {
+                transport = "other";
+            }
+            return new State(
+                String.valueOf(network.getNetworkHandle()),
+                true,
+                capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED),
+                !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED),
+                transport,
+                capabilities.getLinkDownstreamBandwidthKbps(),
+                capabilities.getLinkUpstreamBandwidthKbps());
+        }
+
+        /**
+         * 是否值得通知订阅者：换了网络，连接、计费、传输类型变化，或带宽估计变化明显
+         */
+        boolean differsSignificantly(State other) {
+            return !networkId.equals(other.networkId)
+                || connected != other.connected
+                || validated != other.validated
+                || metered != other.metered
+                || !transport.equals(other.transport)
+                || bandwidthChanged(downstreamKbps, other.downstreamKbps)
+                || bandwidthChanged(upstreamKbps, other.upstreamKbps);
+        }
+
+        private static boolean bandwidthChanged(int previous, int current) {
+            return Math.abs(current - previous) > BANDWIDTH_CHANGE_RATIO * Math.max(previous, 1);
+        }
+
+        public WritableMap toWritableMap() {
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("connected", connected);
+            map.putBoolean("validated", validated);
+            map.putBoolean("metered", metered);
+            map.putString("transport", transport);
+            map.putInt("downstreamKbps", downstreamKbps);
+            map.putInt("upstreamKbps", upstreamKbps);
+            return map;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * 在系统的网络回调线程上调用，不要在这里做耗时操作
+         */
+        void onConnectivityChanged(State state);
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile State state = State.DISCONNECTED;
+    // 最近一次通知订阅者的状态，带宽小幅波动时只更新state
+    private State notified = State.DISCONNECTED;
+
+    public ConnectivityTracker(Context context) {
+        this.connectivityManager = (ConnectivityManager) context.getApplicationContext()
+            .getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    /**
+     * 读取一次当前网络并注册回调，之后的查询都使用缓存
+     */
+    public void start() {
+        if (connectivityManager == null) {
+            return;
+        }
+        try {
+            refreshFromActiveNetwork();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                connectivityManager.registerDefaultNetworkCallback(new DefaultNetworkCallback());
+            } else {
+                NetworkRequest request = new NetworkRequest.Builder()
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+                connectivityManager.registerNetworkCallback(request, new LegacyNetworkCallback());
+            }
+        } catch (RuntimeException e) {
+            // 缺少ACCESS_NETWORK_STATE权限等情况下按已连接处理，由请求本身的失败反映网络问题
+            Log.e(TAG, "Unable to track connectivity", e);
+            update(new State("unknown", true, false, false, "unknown", 0, 0));
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isConnected() {
+        return state.connected;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void refreshFromActiveNetwork() {
+        Network network = connectivityManager.getActiveNetwork();
+        update(network != null ? State.from(network, connectivityManager.getNetworkCapabilities(network)) : State.DISCONNECTED);
+    }
+
+    private void update(State newState) {
+        state = newState;
+        synchronized (this) {
+            if (!newState.differsSignificantly(notified)) {
+                return;
+            }
+            notified = newState;
+        }
+        Log.d(TAG, "Connectivity changed: connected=" + newState.connected + " transport=" + newState.transport
+            + " metered=" + newState.metered + " down=" + newState.downstreamKbps + "kbps up=" + newState.upstreamKbps + "kbps");
+        for (Listener listener : listeners) {
+            listener.onConnectivityChanged(newState);
+        }
+    }
+
+    private final class DefaultNetworkCallback extends ConnectivityManager.NetworkCallback {
+        @Override
+        public void onAvailable(Network network) {
+            // 7.x上onAvailable之后不一定有onCapabilitiesChanged，这里先读取一次
+            update(State.from(network, connectivityManager.getNetworkCapabilities(network)));
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            update(State.from(network, capabilities));
+        }
+
+        @Override
+        public void onLost(Network network) {
+            update(State.DISCONNECTED);
+        }
+    }
+
+    /**
+     * 回调针对任意可上网的网络，不一定是默认网络，因此每次都重新读取当前网络
+     */
+    private final class LegacyNetworkCallback extends ConnectivityManager.NetworkCallback {
+        @Override
+        public void onAvailable(Network network) {
+            refreshFromActiveNetwork();
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            refreshFromActiveNetwork();
+        }
+
+        @Override
+        public void onLost(Network network) {
+            refreshFromActiveNetwork();
+        }
+    }
+}
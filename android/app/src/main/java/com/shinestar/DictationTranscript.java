@@ -0,0 +1,138 @@
+package com.shinestar;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 连续听写的拼接结果：按顺序保存每段最终结果及其相对听写开始的时间，
+ * 并统计两段之间重启识别器造成的空档（上一段结束到下一段可以收音之间的音频会丢失）。
+ * 只在主线程上使用。
+ */
+public class DictationTranscript {
+
+    private static final class Segment {
+        final String text;
+        final double confidence;
+        final long startMs;
+        final long endMs;
+
+        Segment(String text, double confidence, long startMs, long endMs) {
+            this.text = text;
+            this.confidence = confidence;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+    }
+
+    private final long startedAt;
+    private final long startedElapsed;
+    // 中日文不以空格分词，拼接时不加分隔符
+    private final String separator;
+    private final List<Segment> segments = new ArrayList<>();
+    private final StringBuilder text = new StringBuilder();
+
+    // 以下为相对听写开始的毫秒数，-1表示尚未发生
+    private long readyMs = -1;
+    private long speechStartMs = -1;
+    private long gapStartMs = -1;
+    private int restarts;
+    private long lostMs;
+    private long maxGapMs;
+
+    public DictationTranscript(String language) {
+        this.startedAt = System.currentTimeMillis();
+        this.startedElapsed = SystemClock.elapsedRealtime();
+        String lower = language == null ? "" : language.toLowerCase();
+        this.separator = lower.startsWith("zh") || lower.startsWith("ja") || lower.startsWith("th") ? "" : " ";
+    }
+
+    /**
+     * 上一段已结束、即将重启识别器
+     */
+    public void onRestarting() {
+        if (gapStartMs < 0) {
+            gapStartMs = now();
+        }
+    }
+
+    /**
+     * 识别器开始收音，返回与上一段之间的空档毫秒数，第一段返回-1
+     */
+    public long onReady() {
+        readyMs = now();
+        speechStartMs = -1;
+        if (gapStartMs < 0) {
+            return -1;
+        }
+        long gap = readyMs - gapStartMs;
+        gapStartMs = -1;
+        restarts++;
+        lostMs += gap;
+        maxGapMs = Math.max(maxGapMs, gap);
+        return gap;
+    }
+
+    public void onBeginningOfSpeech() {
+        speechStartMs = now();
+    }
+
+    /**
+     * 追加一段最终结果，返回用于onTranscript事件的参数
+     */
+    public WritableMap addSegment(String segmentText, double confidence) {
+        long endMs = now();
+        long startMs = speechStartMs >= 0 ? speechStartMs : Math.max(readyMs, 0);
+        Segment segment = new Segment(segmentText, confidence, startMs, endMs);
+        segments.add(segment);
+        if (text.length() > 0) {
+            text.append(separator);
+        }
+        text.append(segmentText);
+        speechStartMs = -1;
+
+        WritableMap params = Arguments.createMap();
+        params.putMap("segment", segmentToWritableMap(segment, segments.size() - 1));
+        params.putString("transcript", text.toString());
+        return params;
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    public WritableMap toWritableMap() {
+        WritableMap result = Arguments.createMap();
+        result.putString("transcript", text.toString());
+        result.putDouble("startedAt", startedAt);
+        result.putDouble("durationMs", now());
+        WritableArray segmentArray = Arguments.createArray();
+        for (int i = 0; i < segments.size(); i++) {
+            segmentArray.pushMap(segmentToWritableMap(segments.get(i), i));
+        }
+        result.putArray("segments", segmentArray);
+        result.putInt("restarts", restarts);
+        result.putDouble("lostMs", lostMs);
+        result.putDouble("maxGapMs", maxGapMs);
+        return result;
+    }
+
+    private long now() {
+        return SystemClock.elapsedRealtime() - startedElapsed;
+    }
+
+    private static WritableMap segmentToWritableMap(Segment segment, int index) {
+        WritableMap map = Arguments.createMap();
+        map.putInt("index", index);
+        map.putString("text", segment.text);
+        map.putDouble("confidence", segment.confidence);
+        map.putDouble("startMs", segment.startMs);
+        map.putDouble("endMs", segment.endMs);
+        return map;
+    }
+}
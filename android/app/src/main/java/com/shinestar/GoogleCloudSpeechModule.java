@@ -1,16 +1,13 @@
 package com.shinestar;
 
 import android.Manifest;
-import android.content.Context;
 import android.content.pm.PackageManager;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
-import android.media.MediaRecorder;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
@@ -21,23 +18,42 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.StreamingRecognitionResult;
+
+import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
-import okhttp3.MediaType;
+import io.grpc.ManagedChannel;
+import io.grpc.okhttp.OkHttpChannelBuilder;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
     private static final String TAG = "GoogleCloudSpeechModule";
@@ -45,6 +61,8 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
     
     // Google Cloud Speech-to-Text配置
     private static final String GOOGLE_CLOUD_SPEECH_API_URL = "https://speech.googleapis.com/v1/speech:recognize";
+    private static final String GOOGLE_CLOUD_SPEECH_HOST = "speech.googleapis.com";
+    private static final int GOOGLE_CLOUD_SPEECH_PORT = 443;
     private static final String API_KEY = "YOUR_GOOGLE_CLOUD_API_KEY"; // 需要替换为实际的API密钥
     
     // 音频录制配置
@@ -53,25 +71,295 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
     private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
     private static final int BUFFER_SIZE = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT);
     
+    // 分批上传配置：每个识别窗口的时长及同时进行中的请求数
+    private static final int DEFAULT_WINDOW_MS = 5000;
+    private static final int MIN_WINDOW_MS = 1000;
+    private static final int MAX_WINDOW_MS = 15000;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    private static final int MAX_IN_FLIGHT_LIMIT = 8;
+    
+    // 采集线程与处理线程之间的环形缓冲区：约10秒音频
+    private static final int RING_BUFFER_BYTES = SAMPLE_RATE * 2 * 10;
+    private static final long RING_READ_TIMEOUT_MS = 100;
+    
+    // 上传线程池配置：线程数即最大并发请求数，排队数量有上限
+    private static final int DEFAULT_UPLOAD_QUEUE_SIZE = 8;
+    private static final int MAX_UPLOAD_QUEUE_SIZE = 64;
+    private static final long UPLOAD_KEEP_ALIVE_SECONDS = 30;
+    private static final long SHUTDOWN_TIMEOUT_MS = 2000;
+    // 停止时等待采集线程关闭AudioRecord的上限，一次read最多阻塞一个缓冲区的时长
+    private static final long STOP_TIMEOUT_MS = 1000;
+    // 缓存的识别窗口数组个数，超出部分用完即交给GC
+    private static final int WINDOW_POOL_SIZE = 4;
+    // 采集帧池：帧数及池空时的等待时间
+    private static final int CAPTURE_FRAME_COUNT = 4;
+    private static final long FRAME_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    
+    // 离线暂存：总大小上限、保留时长及网络不可用时的重试间隔
+    private static final String SPOOL_DIRECTORY = "speech_spool";
+    private static final long SPOOL_MAX_BYTES = 50L * 1024 * 1024;
+    private static final long SPOOL_TTL_MS = TimeUnit.HOURS.toMillis(24);
+    private static final long SPOOL_RETRY_DELAY_MS = 30000;
+    
+    // 识别结果缓存：内存中的条数上限；磁盘层默认关闭
+    private static final String RESULT_CACHE_DIRECTORY = "recognition_cache";
+    private static final int DEFAULT_RESULT_CACHE_ENTRIES = 128;
+    private static final long DEFAULT_RESULT_CACHE_DISK_BYTES = 2L * 1024 * 1024;
+    
+    // 与离线引擎竞速：结果达到该置信度即可胜出
+    private static final double DEFAULT_RACE_CONFIDENCE = 0.6;
+    private static final String RACE_STATS_FILE = "provider_race_stats.json";
+    
+    // 识别请求的重试与熔断：最多尝试3次，退避0.5~8秒；连续失败5次后熔断30秒
+    private static final int HTTP_MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY_MS = 500;
+    private static final long RETRY_MAX_DELAY_MS = 8000;
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MS = 30000;
+    
+    private static final String METRICS_FILE = "speech_metrics_google_cloud.json";
+    
+    // batch：按窗口调用speech:recognize；streaming：StreamingRecognize双向流，实时返回中间结果
+    private enum RecognitionMode {
+        BATCH,
+        STREAMING
+    }
+    
+    private enum UploadRejectionPolicy {
+        DROP_OLDEST,
+        REJECT,
+        CALLER_RUNS
+    }
+    
+    /**
+     * 一次分批识别会话的状态，只在处理线程上访问
+     */
+    private static final class BatchSession {
+        final AudioChunkBatcher batcher;
+        final AudioEncoder encoder;
+        // 自适应上传为当前窗口选择的编码、采样率和时长，关闭时为null
+        AdaptiveUploadController.Decision decision;
+        final AudioEncoder[] profileEncoders = new AudioEncoder[AdaptiveUploadController.Profile.values().length];
+        PcmResampler downsampler;
+        ByteArrayPool downsamplePool;
+        ProviderRace race;
+        // race是故障转移时创建的，切回云端时结束
+        boolean raceForFailover;
+        // 会话已转移到离线引擎，新的段不再发给云端
+        boolean failedOver;
+        
+        BatchSession(AudioChunkBatcher batcher, AudioEncoder encoder, ProviderRace race) {
+            this.batcher = batcher;
+            this.encoder = encoder;
+            this.race = race;
+        }
+        
+        AudioEncoder encoderFor(AdaptiveUploadController.Profile profile) {
+            AudioEncoder profileEncoder = profileEncoders[profile.ordinal()];
+            if (profileEncoder == null) {
+                profileEncoder = "FLAC".equals(profile.encoding)
+                    ? new FlacEncoder(profile.sampleRate)
+                    : new LinearPcmEncoder();
+                profileEncoders[profile.ordinal()] = profileEncoder;
+            }
+            return profileEncoder;
+        }
+    }
+    
+    /**
+     * 自适应上传的一个窗口，请求完成后用于更新控制器的估计
+     */
+    private static final class AdaptiveUpload {
+        final AdaptiveUploadController.Profile profile;
+        final int audioMs;
+        final double encodeMs;
+        final HttpTimingListener.Timing timing = new HttpTimingListener.Timing();
+        
+        AdaptiveUpload(AdaptiveUploadController.Profile profile, int audioMs, double encodeMs) {
+            this.profile = profile;
+            this.audioMs = audioMs;
+            this.encodeMs = encodeMs;
+        }
+    }
+    
     private final ReactApplicationContext reactContext;
-    private final ExecutorService executorService;
+    // 采集线程（音频优先级）、处理线程、启停控制线程各自独立，上传使用有界线程池
+    private final ExecutorService captureExecutor;
+    private final ExecutorService processingExecutor;
+    private final ExecutorService controlExecutor;
+    // 竞速时运行离线识别器
+    private final ExecutorService raceExecutor;
+    private volatile ThreadPoolExecutor uploadExecutor;
+    private final ScheduledExecutorService spoolExecutor;
     private final Handler mainHandler;
+    private final BridgeEventDispatcher eventDispatcher;
     private final OkHttpClient httpClient;
+    private final ResilientHttpClient resilientClient;
     
+    // 只在采集线程上打开、读取和关闭
     private AudioRecord audioRecord;
-    private AtomicBoolean isListening;
-    private String currentLanguage;
+    // 创建audioRecord时使用的采集参数，只在采集线程上访问
+    private AudioCaptureConfig audioRecordConfig;
+    private volatile AudioCaptureConfig captureConfig;
+    // prepare之后停止识别时保留AudioRecord，下次开始直接复用
+    private volatile boolean prepared;
+    private final CaptureSession captureSession;
+    private volatile String currentLanguage;
     private String currentApiKey;
+    private volatile int windowMs;
+    private volatile int maxInFlight;
+    private volatile int uploadQueueSize;
+    private volatile UploadRejectionPolicy uploadRejectionPolicy;
+    private final AtomicLong rejectedUploads;
+    private volatile RecognitionMode recognitionMode;
+    private volatile String audioEncoding;
+    private ByteArrayPool windowPool;
+    // 采集参数改变帧大小时由采集线程替换
+    private volatile PcmFramePool captureFramePool;
+    private volatile StreamingRecognitionSession streamingSession;
+    private ManagedChannel streamingChannel;
+    private volatile boolean vadEnabled;
+    private volatile PcmRingBuffer.OverflowPolicy overflowPolicy;
+    private volatile PcmRingBuffer captureBuffer;
+    private final AudioSpool audioSpool;
+    private final RecognitionResultCache resultCache;
+    private final ModelAssetManager modelManager;
+    private final ProviderRaceStats raceStats;
+    private final ProviderRace.Listener raceListener;
+    // 竞速中各段进行中的云端识别，离线引擎胜出时据此取消请求及其后续重试
+    private final Map<ProviderRace.Segment, ResilientHttpClient.Cancellation> cloudCancellations;
+    private volatile boolean raceEnabled;
+    private volatile double raceConfidenceThreshold;
+    private final ProviderRouter router;
+    private final ProviderRouter.Provider routerProvider;
+    private volatile boolean failoverEnabled;
+    private final ConnectivityTracker connectivity;
+    private final ConnectivityTracker.Listener connectivityListener;
+    private final AdaptiveUploadController adaptiveUpload;
+    private volatile boolean adaptiveUploadEnabled;
+    private volatile boolean spoolEnabled;
+    private final AtomicBoolean spoolDrainScheduled;
+    private final SpeechMetrics metrics;
     
     public GoogleCloudSpeechModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
-        this.executorService = Executors.newCachedThreadPool();
+        this.captureExecutor = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("GCSpeech-capture", Process.THREAD_PRIORITY_URGENT_AUDIO));
+        this.processingExecutor = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("GCSpeech-process", Process.THREAD_PRIORITY_AUDIO));
+        this.controlExecutor = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("GCSpeech-control", Process.THREAD_PRIORITY_DEFAULT));
+        this.raceExecutor = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("GCSpeech-race", Process.THREAD_PRIORITY_AUDIO));
+        this.spoolExecutor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("GCSpeech-spool", Process.THREAD_PRIORITY_BACKGROUND));
         this.mainHandler = new Handler(Looper.getMainLooper());
-        this.httpClient = new OkHttpClient();
-        this.isListening = new AtomicBoolean(false);
+        this.eventDispatcher = BridgeEventDispatcher.create(reactContext);
+        this.httpClient = MainApplication.getSharedHttpClient();
+        this.resilientClient = new ResilientHttpClient(
+            httpClient,
+            new RetryPolicy(HTTP_MAX_ATTEMPTS, RETRY_BASE_DELAY_MS, RETRY_MAX_DELAY_MS),
+            CIRCUIT_FAILURE_THRESHOLD,
+            CIRCUIT_OPEN_MS,
+            new ResilientHttpClient.Listener() {
+                @Override
+                public void onRetry(String endpoint, int attempt, long delayMs, String reason) {
+                    Log.w(TAG, "Retrying " + endpoint + " in " + delayMs + "ms: " + reason);
+                    WritableMap params = Arguments.createMap();
+                    params.putString("endpoint", endpoint);
+                    params.putInt("attempt", attempt);
+                    params.putDouble("delayMs", delayMs);
+                    params.putString("reason", reason);
+                    sendEvent("onRetry", params);
+                }
+                
+                @Override
+                public void onCircuitStateChanged(String endpoint, CircuitBreaker.State state) {
+                    Log.w(TAG, "Circuit breaker for " + endpoint + " is now " + state);
+                    WritableMap params = Arguments.createMap();
+                    params.putString("endpoint", endpoint);
+                    params.putString("state", state.name());
+                    sendEvent("onCircuitStateChange", params);
+                }
+            });
+        this.captureSession = new CaptureSession(captureExecutor);
         this.currentLanguage = "en-US";
         this.currentApiKey = API_KEY;
+        this.windowMs = DEFAULT_WINDOW_MS;
+        this.maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        this.uploadQueueSize = DEFAULT_UPLOAD_QUEUE_SIZE;
+        this.uploadRejectionPolicy = UploadRejectionPolicy.DROP_OLDEST;
+        this.rejectedUploads = new AtomicLong();
+        this.captureConfig = AudioCaptureConfig.DEFAULT;
+        this.captureFramePool = new PcmFramePool(CAPTURE_FRAME_COUNT, BUFFER_SIZE);
+        this.uploadExecutor = createUploadExecutor(DEFAULT_MAX_IN_FLIGHT, DEFAULT_UPLOAD_QUEUE_SIZE);
+        this.recognitionMode = RecognitionMode.BATCH;
+        this.audioEncoding = "FLAC";
+        this.vadEnabled = true;
+        this.overflowPolicy = PcmRingBuffer.OverflowPolicy.DROP_OLDEST;
+        this.audioSpool = new AudioSpool(new File(reactContext.getFilesDir(), SPOOL_DIRECTORY), SPOOL_MAX_BYTES, SPOOL_TTL_MS);
+        this.resultCache = new RecognitionResultCache(
+            new File(reactContext.getCacheDir(), RESULT_CACHE_DIRECTORY),
+            DEFAULT_RESULT_CACHE_ENTRIES,
+            DEFAULT_RESULT_CACHE_DISK_BYTES);
+        this.modelManager = MainApplication.getModelAssetManager(reactContext);
+        this.raceStats = new ProviderRaceStats(new File(reactContext.getFilesDir(), RACE_STATS_FILE));
+        this.raceConfidenceThreshold = DEFAULT_RACE_CONFIDENCE;
+        this.cloudCancellations = new ConcurrentHashMap<>();
+        this.raceListener = new ProviderRace.Listener() {
+            @Override
+            public void onWinner(ProviderRace.Segment segment, ProviderRace.Provider provider,
+                                 List<RecognizeResponseParser.Alternative> alternatives) {
+                emitResults(alternatives, false, false, provider.getId());
+            }
+            
+            @Override
+            public void onCancelCloud(ProviderRace.Segment segment) {
+                cancelCloudRequest(segment);
+            }
+        };
+        this.router = MainApplication.getProviderRouter();
+        this.routerProvider = new ProviderRouter.Provider() {
+            @Override
+            public String getId() {
+                return ProviderRace.Provider.CLOUD.getId();
+            }
+            
+            @Override
+            public boolean isAvailable() {
+                // 网络状态由路由单独跟踪
+                return checkPermission() && !currentApiKey.equals("YOUR_GOOGLE_CLOUD_API_KEY");
+            }
+            
+            @Override
+            public boolean requiresNetwork() {
+                return true;
+            }
+        };
+        this.failoverEnabled = true;
+        this.adaptiveUpload = new AdaptiveUploadController(DEFAULT_WINDOW_MS);
+        this.adaptiveUploadEnabled = true;
+        this.connectivity = MainApplication.getConnectivityTracker(reactContext);
+        this.connectivityListener = state -> {
+            router.setNetworkAvailable(state.connected);
+            adaptiveUpload.onLinkChanged(state.networkId, state.upstreamKbps, state.metered);
+            if (state.connected) {
+                // 网络恢复后立即上传暂存的音频，不等下一次定时重试
+                drainSpoolNow();
+            }
+            sendEvent("onNetworkChange", state.toWritableMap());
+        };
+        ConnectivityTracker.State network = connectivity.getState();
+        router.setNetworkAvailable(network.connected);
+        adaptiveUpload.onLinkChanged(network.networkId, network.upstreamKbps, network.metered);
+        connectivity.addListener(connectivityListener);
+        this.spoolEnabled = true;
+        this.spoolDrainScheduled = new AtomicBoolean(false);
+        this.metrics = new SpeechMetrics("GCSpeech");
+        
+        // 恢复上次未上传完的暂存音频
+        scheduleSpoolDrain(0);
     }
     
     @Override
@@ -79,6 +367,50 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
         return "GoogleCloudSpeechModule";
     }
     
+    /**
+     * 由GoogleCloudSpeechPackage注册到共享的ProviderRouter
+     */
+    public ProviderRouter.Provider getRouterProvider() {
+        return routerProvider;
+    }
+    
+    @Override
+    public void onCatalystInstanceDestroy() {
+        super.onCatalystInstanceDestroy();
+        
+        // 先等待采集线程关闭AudioRecord，处理线程会上传剩余音频后退出
+        prepared = false;
+        router.unregister(routerProvider);
+        connectivity.removeListener(connectivityListener);
+        shutdownExecutor(controlExecutor);
+        try {
+            captureSession.stop(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Capture thread did not stop", e);
+        }
+        shutdownExecutor(captureExecutor);
+        if (audioRecord != null) {
+            // 采集线程已退出，释放预热保留的实例
+            audioRecord.release();
+            audioRecord = null;
+        }
+        shutdownExecutor(processingExecutor);
+        shutdownExecutor(raceExecutor);
+        uploadExecutor.shutdownNow();
+        spoolExecutor.shutdownNow();
+        audioSpool.close();
+        metrics.close();
+        synchronized (this) {
+            if (streamingChannel != null) {
+                streamingChannel.shutdownNow();
+                streamingChannel = null;
+            }
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+    
     @ReactMethod
     public void setApiKey(String apiKey, Promise promise) {
         try {
@@ -91,7 +423,7 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
     
     @ReactMethod
     public void startListening(String language, Promise promise) {
-        if (isListening.get()) {
+        if (captureSession.getState() != CaptureSession.State.IDLE) {
             promise.reject("ALREADY_LISTENING", "Google Cloud Speech recognition is already active");
             return;
         }
@@ -101,7 +433,9 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
             return;
         }
         
-        if (!checkNetworkConnection()) {
+        // 开启离线暂存时分段识别模式可以离线录音，网络恢复后再上传
+        boolean canRecordOffline = spoolEnabled && recognitionMode == RecognitionMode.BATCH;
+        if (!canRecordOffline && !checkNetworkConnection()) {
             promise.reject("NO_NETWORK", "网络连接不可用，Google Cloud Speech需要网络连接");
             return;
         }
@@ -111,34 +445,77 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
             return;
         }
         
-        this.currentLanguage = language;
+        // 状态机保证同一时刻只有一个会话，并发调用时只有一个能进入STARTING；
+        // 语言和会话指标在采集线程打开设备前设置，未抢到会话的调用不会改动正在进行的会话
+        MicrophoneCapture capture = new MicrophoneCapture(language, promise, System.nanoTime());
+        if (!captureSession.start(capture, capture)) {
+            promise.reject("ALREADY_LISTENING", "Google Cloud Speech recognition is already active");
+            return;
+        }
+        scheduleSpoolDrain(0);
+    }
+    
+    /**
+     * 预热：提前创建AudioRecord并建立到识别服务的连接，进入语音界面时调用；
+     * 之后开始识别只需启动录音，停止后AudioRecord保留到releasePrepared
+     */
+    @ReactMethod
+    public void prepare(Promise promise) {
+        if (!checkPermission()) {
+            promise.reject("PERMISSION_DENIED", "需要麦克风权限");
+            return;
+        }
         
-        executorService.execute(() -> {
+        prepared = true;
+        if (captureSession.getState() != CaptureSession.State.IDLE) {
+            // 正在识别，AudioRecord已经打开，停止后会保留
+            promise.resolve(true);
+            controlExecutor.execute(this::warmUpConnection);
+            return;
+        }
+        captureExecutor.execute(() -> {
             try {
-                startAudioRecording();
-                mainHandler.post(() -> {
-                    sendEvent("onStart", null);
-                    promise.resolve("Started Google Cloud Speech recognition");
-                });
+                ensureAudioRecord();
+                mainHandler.post(() -> promise.resolve(true));
             } catch (Exception e) {
-                Log.e(TAG, "Error starting Google Cloud Speech recognition", e);
-                mainHandler.post(() -> {
-                    promise.reject("START_ERROR", e.getMessage());
-                });
+                Log.e(TAG, "Error preparing audio recording", e);
+                mainHandler.post(() -> promise.reject("PREPARE_ERROR", e.getMessage()));
+            }
+        });
+        // 连接预热不影响结果，失败时开始识别会照常建立连接
+        controlExecutor.execute(this::warmUpConnection);
+    }
+    
+    /**
+     * 离开语音界面时调用，释放prepare保留的AudioRecord
+     */
+    @ReactMethod
+    public void releasePrepared(Promise promise) {
+        prepared = false;
+        // 识别中调用时排在会话之后执行，会话关闭时已经按未预热处理
+        captureExecutor.execute(() -> {
+            if (audioRecord != null) {
+                audioRecord.release();
+                audioRecord = null;
             }
         });
+        promise.resolve(true);
     }
     
     @ReactMethod
     public void stopListening(Promise promise) {
-        if (!isListening.get()) {
+        if (captureSession.getState() == CaptureSession.State.IDLE) {
             promise.reject("NOT_LISTENING", "Google Cloud Speech recognition is not active");
             return;
         }
         
-        executorService.execute(() -> {
+        controlExecutor.execute(() -> {
             try {
-                stopAudioRecording();
+                // 返回时采集线程已退出并关闭了AudioRecord
+                if (!captureSession.stop(STOP_TIMEOUT_MS)) {
+                    mainHandler.post(() -> promise.reject("NOT_LISTENING", "Google Cloud Speech recognition is not active"));
+                    return;
+                }
                 mainHandler.post(() -> {
                     sendEvent("onStop", null);
                     promise.resolve("Stopped Google Cloud Speech recognition");
@@ -162,6 +539,307 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
         }
     }
     
+    @ReactMethod
+    public void configureBatching(ReadableMap options, Promise promise) {
+        try {
+            if (options.hasKey("windowMs")) {
+                int value = options.getInt("windowMs");
+                windowMs = Math.max(MIN_WINDOW_MS, Math.min(MAX_WINDOW_MS, value));
+                adaptiveUpload.setMaxWindowMs(windowMs);
+                // 调用方指定了窗口时长，按指定值分批，不再自适应；需要时可再开启，届时windowMs为上限
+                adaptiveUploadEnabled = false;
+            }
+            if (options.hasKey("maxInFlight")) {
+                int value = options.getInt("maxInFlight");
+                maxInFlight = Math.max(1, Math.min(MAX_IN_FLIGHT_LIMIT, value));
+                resizeUploadExecutor(maxInFlight);
+            }
+            if (options.hasKey("uploadQueueSize")) {
+                int value = options.getInt("uploadQueueSize");
+                int size = Math.max(1, Math.min(MAX_UPLOAD_QUEUE_SIZE, value));
+                if (size != uploadQueueSize) {
+                    uploadQueueSize = size;
+                    // 队列容量不可修改，替换线程池；旧线程池中已排队的请求继续执行完
+                    ThreadPoolExecutor previous = uploadExecutor;
+                    uploadExecutor = createUploadExecutor(maxInFlight, size);
+                    previous.shutdown();
+                }
+            }
+            if (options.hasKey("rejectionPolicy")) {
+                String policy = options.getString("rejectionPolicy");
+                if ("dropOldest".equals(policy)) {
+                    uploadRejectionPolicy = UploadRejectionPolicy.DROP_OLDEST;
+                } else if ("reject".equals(policy)) {
+                    uploadRejectionPolicy = UploadRejectionPolicy.REJECT;
+                } else if ("callerRuns".equals(policy)) {
+                    uploadRejectionPolicy = UploadRejectionPolicy.CALLER_RUNS;
+                } else {
+                    promise.reject("INVALID_POLICY", "不支持的拒绝策略: " + policy);
+                    return;
+                }
+            }
+            
+            WritableMap result = Arguments.createMap();
+            result.putInt("windowMs", windowMs);
+            result.putInt("maxInFlight", maxInFlight);
+            result.putInt("uploadQueueSize", uploadQueueSize);
+            result.putString("rejectionPolicy", uploadRejectionPolicy.name());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("CONFIG_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 设置麦克风采集参数，下一次开始识别时生效；采集到的音频统一转换为16kHz单声道后识别
+     */
+    @ReactMethod
+    public void configureCapture(ReadableMap options, Promise promise) {
+        try {
+            AudioCaptureConfig config = AudioCaptureConfig.fromOptions(options, captureConfig, reactContext);
+            captureConfig = config;
+            promise.resolve(config.toWritableMap());
+        } catch (IllegalArgumentException e) {
+            promise.reject("INVALID_CAPTURE_CONFIG", e.getMessage());
+        } catch (Exception e) {
+            promise.reject("CONFIG_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void setRecognitionMode(String mode, Promise promise) {
+        if ("batch".equals(mode)) {
+            recognitionMode = RecognitionMode.BATCH;
+        } else if ("streaming".equals(mode)) {
+            recognitionMode = RecognitionMode.STREAMING;
+        } else {
+            promise.reject("INVALID_MODE", "不支持的识别模式: " + mode);
+            return;
+        }
+        promise.resolve(true);
+    }
+    
+    @ReactMethod
+    public void setAudioEncoding(String encoding, Promise promise) {
+        if (!"LINEAR16".equals(encoding) && !"FLAC".equals(encoding)) {
+            promise.reject("INVALID_ENCODING", "不支持的音频编码: " + encoding);
+            return;
+        }
+        this.audioEncoding = encoding;
+        // 调用方指定了编码，按指定值上传，不再自适应
+        adaptiveUploadEnabled = false;
+        promise.resolve(true);
+    }
+    
+    @ReactMethod
+    public void setSpoolEnabled(boolean enabled, Promise promise) {
+        try {
+            this.spoolEnabled = enabled;
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("SPOOL_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 配置识别结果缓存，关闭缓存或磁盘层时清空对应内容
+     */
+    @ReactMethod
+    public void configureResultCache(ReadableMap options, Promise promise) {
+        try {
+            boolean enabled = options.hasKey("enabled") ? options.getBoolean("enabled") : resultCache.isEnabled();
+            int maxEntries = options.hasKey("maxEntries") ? options.getInt("maxEntries") : resultCache.getMaxEntries();
+            boolean diskEnabled = options.hasKey("diskEnabled") ? options.getBoolean("diskEnabled") : resultCache.isDiskEnabled();
+            long maxDiskBytes = options.hasKey("maxDiskBytes") ? (long) options.getDouble("maxDiskBytes") : resultCache.getMaxDiskBytes();
+            resultCache.configure(enabled, maxEntries, diskEnabled, maxDiskBytes);
+            
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("enabled", resultCache.isEnabled());
+            result.putInt("maxEntries", resultCache.getMaxEntries());
+            result.putBoolean("diskEnabled", resultCache.isDiskEnabled());
+            result.putDouble("maxDiskBytes", resultCache.getMaxDiskBytes());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("CONFIG_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void clearResultCache(Promise promise) {
+        try {
+            resultCache.clear();
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("CACHE_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 竞速模式：分批识别时同一份音频同时交给云端和离线引擎，每段先得出可信结果的一方胜出。
+     * 需要离线引擎和当前语言的模型，下一次开始识别时生效
+     */
+    @ReactMethod
+    public void configureRace(ReadableMap options, Promise promise) {
+        try {
+            if (options.hasKey("enabled")) {
+                raceEnabled = options.getBoolean("enabled");
+            }
+            if (options.hasKey("confidenceThreshold")) {
+                raceConfidenceThreshold = Math.max(0, Math.min(1, options.getDouble("confidenceThreshold")));
+            }
+            
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("enabled", raceEnabled);
+            result.putDouble("confidenceThreshold", raceConfidenceThreshold);
+            result.putBoolean("offlineAvailable", isRaceAvailable(currentLanguage));
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("CONFIG_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 本机累计的竞速记录及据此得出的首选引擎（样本不足时为null）
+     */
+    @ReactMethod
+    public void getRaceStats(Promise promise) {
+        try {
+            promise.resolve(raceStats.toWritableMap());
+        } catch (Exception e) {
+            promise.reject("RACE_STATS_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void resetRaceStats(Promise promise) {
+        try {
+            raceStats.reset();
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("RACE_STATS_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 自动故障转移：分批识别时云端不健康（错误率高、连续失败或断网），在下一个段边界把会话转移到离线引擎，
+     * 恢复后再切回云端。默认开启
+     */
+    @ReactMethod
+    public void configureFailover(ReadableMap options, Promise promise) {
+        try {
+            if (options.hasKey("enabled")) {
+                failoverEnabled = options.getBoolean("enabled");
+            }
+            
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("enabled", failoverEnabled);
+            result.putBoolean("offlineAvailable", isRaceAvailable(currentLanguage));
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("CONFIG_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 分批识别时按实测的上传吞吐和往返耗时逐个窗口选择编码（LINEAR16/FLAC）、采样率（16k/8k）和窗口时长，
+     * 使端到端延迟的p95不超过targetP95Ms；windowMs为窗口时长上限。关闭后使用固定的audioEncoding和windowMs。
+     * 默认开启；调用setAudioEncoding或通过configureBatching设置windowMs后自动关闭，之后可在这里重新开启
+     */
+    @ReactMethod
+    public void configureAdaptiveUpload(ReadableMap options, Promise promise) {
+        try {
+            if (options.hasKey("enabled")) {
+                adaptiveUploadEnabled = options.getBoolean("enabled");
+            }
+            if (options.hasKey("targetP95Ms")) {
+                int value = options.getInt("targetP95Ms");
+                if (value <= 0) {
+                    promise.reject("INVALID_TARGET", "目标延迟必须大于0: " + value);
+                    return;
+                }
+                adaptiveUpload.setTargetP95Ms(value);
+            }
+            promise.resolve(getAdaptiveUploadInfo());
+        } catch (Exception e) {
+            promise.reject("CONFIG_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 共享路由中各提供商的健康状况，以及新会话应使用的提供商
+     */
+    @ReactMethod
+    public void getProviderHealth(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            WritableArray providers = Arguments.createArray();
+            for (ProviderRouter.Health health : router.getHealthSnapshot()) {
+                WritableMap provider = Arguments.createMap();
+                provider.putString("id", health.id);
+                provider.putInt("priority", health.priority);
+                provider.putBoolean("available", health.available);
+                provider.putBoolean("healthy", health.healthy);
+                provider.putDouble("score", health.score);
+                provider.putInt("samples", health.samples);
+                provider.putDouble("errorRate", health.errorRate);
+                provider.putDouble("p50Ms", health.p50Ms);
+                provider.putDouble("p90Ms", health.p90Ms);
+                provider.putInt("consecutiveFailures", health.consecutiveFailures);
+                providers.pushMap(provider);
+            }
+            result.putArray("providers", providers);
+            result.putBoolean("networkAvailable", router.isNetworkAvailable());
+            result.putString("preferredProvider", router.select());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("PROVIDER_HEALTH_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void setVadEnabled(boolean enabled, Promise promise) {
+        try {
+            this.vadEnabled = enabled;
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("VAD_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void setOverflowPolicy(String policy, Promise promise) {
+        switch (policy) {
+            case "dropOldest":
+                overflowPolicy = PcmRingBuffer.OverflowPolicy.DROP_OLDEST;
+                break;
+            case "block":
+                overflowPolicy = PcmRingBuffer.OverflowPolicy.BLOCK;
+                break;
+            case "spill":
+                overflowPolicy = PcmRingBuffer.OverflowPolicy.SPILL_TO_DISK;
+                break;
+            default:
+                promise.reject("INVALID_POLICY", "不支持的溢出策略: " + policy);
+                return;
+        }
+        promise.resolve(true);
+    }
+    
+    @ReactMethod
+    public void configureEventRates(ReadableMap rates, Promise promise) {
+        try {
+            // { 事件名: 每秒最多发送次数 }，0表示不合并
+            ReadableMapKeySetIterator iterator = rates.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String eventName = iterator.nextKey();
+                eventDispatcher.setMaxRate(eventName, rates.getInt(eventName));
+            }
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("EVENT_RATE_ERROR", e.getMessage());
+        }
+    }
+    
     @ReactMethod
     public void isAvailable(Promise promise) {
         try {
@@ -200,6 +878,58 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
             result.putString("apiUrl", GOOGLE_CLOUD_SPEECH_API_URL);
             result.putString("currentLanguage", currentLanguage);
             result.putString("sampleRate", String.valueOf(SAMPLE_RATE));
+            result.putBoolean("prepared", prepared);
+            result.putMap("captureConfig", captureConfig.toWritableMap());
+            result.putInt("windowMs", windowMs);
+            result.putInt("maxInFlight", maxInFlight);
+            result.putBoolean("vadEnabled", vadEnabled);
+            result.putString("recognitionMode", recognitionMode.name());
+            result.putString("audioEncoding", audioEncoding);
+            result.putBoolean("raceEnabled", raceEnabled);
+            result.putBoolean("failoverEnabled", failoverEnabled);
+            result.putMap("adaptiveUpload", getAdaptiveUploadInfo());
+            result.putMap("network", connectivity.getState().toWritableMap());
+            result.putBoolean("spoolEnabled", spoolEnabled);
+            result.putDouble("spoolBytes", audioSpool.getSizeBytes());
+            result.putInt("spoolSegments", audioSpool.getSegmentCount());
+            result.putDouble("spoolEvictions", audioSpool.getEvictions());
+            result.putDouble("resultCacheHitRatio", resultCache.getHitRatio());
+            result.putDouble("resultCacheMemoryHits", resultCache.getMemoryHits());
+            result.putDouble("resultCacheDiskHits", resultCache.getDiskHits());
+            result.putDouble("resultCacheMisses", resultCache.getMisses());
+            result.putInt("resultCacheEntries", resultCache.getEntryCount());
+            result.putDouble("resultCacheDiskBytes", resultCache.getDiskBytes());
+            StreamingRecognitionSession session = streamingSession;
+            if (session != null) {
+                result.putInt("streamRestarts", session.getRestartCount());
+            }
+            ThreadPoolExecutor uploads = uploadExecutor;
+            result.putInt("uploadQueueDepth", uploads.getQueue().size());
+            result.putInt("uploadQueueSize", uploadQueueSize);
+            result.putInt("uploadActiveThreads", uploads.getActiveCount());
+            result.putInt("uploadPoolSize", uploads.getPoolSize());
+            result.putString("rejectionPolicy", uploadRejectionPolicy.name());
+            result.putDouble("rejectedUploads", rejectedUploads.get());
+            result.putString("overflowPolicy", overflowPolicy.name());
+            PcmRingBuffer ring = captureBuffer;
+            if (ring != null) {
+                result.putDouble("captureOverruns", ring.getOverruns());
+                result.putDouble("captureDroppedBytes", ring.getDroppedBytes());
+                result.putDouble("captureSpilledBytes", ring.getSpilledBytes());
+                result.putDouble("captureBufferedBytes", ring.getBufferedBytes());
+            }
+            result.putInt("captureFramesAvailable", captureFramePool.getAvailable());
+            result.putDouble("captureFramePoolExhausted", captureFramePool.getExhaustedCount());
+            result.putDouble("eventsDispatched", eventDispatcher.getDispatchedCount());
+            result.putDouble("eventsEmitted", eventDispatcher.getEmittedCount());
+            result.putDouble("eventsCoalesced", eventDispatcher.getCoalescedCount());
+            result.putDouble("stalePartialsDropped", eventDispatcher.getStaleDroppedCount());
+            result.putDouble("httpRetries", resilientClient.getRetryCount());
+            WritableMap breakers = Arguments.createMap();
+            for (CircuitBreaker breaker : resilientClient.getBreakers().values()) {
+                breakers.putString(breaker.getName(), breaker.getState().name());
+            }
+            result.putMap("circuitBreakers", breakers);
             result.putString("deviceInfo", getDeviceInfo());
             promise.resolve(result);
         } catch (Exception e) {
@@ -207,148 +937,1009 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
         }
     }
     
-    private void startAudioRecording() throws Exception {
-        if (audioRecord != null) {
-            audioRecord.release();
+    /**
+     * 当前网络状态（缓存值）：是否连接、是否计费、传输类型及带宽估计，变化时另有onNetworkChange事件
+     */
+    @ReactMethod
+    public void getNetworkState(Promise promise) {
+        try {
+            promise.resolve(connectivity.getState().toWritableMap());
+        } catch (Exception e) {
+            promise.reject("NETWORK_STATE_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void getNetworkStats(Promise promise) {
+        try {
+            HttpLatencyStats stats = MainApplication.getHttpLatencyStats();
+            WritableMap result = Arguments.createMap();
+            for (HttpLatencyStats.Phase phase : HttpLatencyStats.Phase.values()) {
+                HttpLatencyStats.LatencyStat stat = stats.get(phase);
+                WritableMap phaseMap = Arguments.createMap();
+                phaseMap.putDouble("count", stat.getCount());
+                phaseMap.putDouble("avgMs", stat.getAverageMs());
+                phaseMap.putDouble("minMs", stat.getMinMs());
+                phaseMap.putDouble("maxMs", stat.getMaxMs());
+                phaseMap.putDouble("lastMs", stat.getLastMs());
+                result.putMap(phase.name().toLowerCase(Locale.US), phaseMap);
+            }
+            result.putDouble("connectionsCreated", stats.getConnectionsCreated());
+            result.putDouble("connectionsReused", stats.getConnectionsReused());
+            result.putDouble("failedCalls", stats.getFailedCalls());
+            result.putInt("idleConnections", httpClient.connectionPool().idleConnectionCount());
+            result.putInt("totalConnections", httpClient.connectionPool().connectionCount());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("NETWORK_STATS_ERROR", e.getMessage());
         }
+    }
+    
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        try {
+            WritableMap result = metrics.toWritableMap();
+            // 当前会话的溢出次数在会话结束时才累加，这里先算上
+            PcmRingBuffer ring = captureBuffer;
+            long liveOverruns = ring != null && captureSession.isRunning() ? ring.getOverruns() : 0;
+            result.putDouble("captureOverruns", metrics.getCaptureOverruns() + liveOverruns);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void setMetricsDumpInterval(int intervalMs, Promise promise) {
+        try {
+            File file = new File(reactContext.getFilesDir(), METRICS_FILE);
+            metrics.setFileDump(file, intervalMs);
+            promise.resolve(intervalMs > 0 ? file.getAbsolutePath() : null);
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", e.getMessage());
+        }
+    }
+    
+    /**
+     * 一次识别会话的采集：在采集线程上打开、读取并关闭AudioRecord，启动结果回传给JS
+     */
+    private final class MicrophoneCapture implements CaptureSession.Capture, CaptureSession.Listener {
+        private final String language;
+        private final Promise promise;
+        private final long startRequested;
+        private boolean warm;
         
-        audioRecord = new AudioRecord(
-            MediaRecorder.AudioSource.MIC,
-            SAMPLE_RATE,
-            CHANNEL_CONFIG,
-            AUDIO_FORMAT,
-            BUFFER_SIZE
-        );
+        MicrophoneCapture(String language, Promise promise, long startRequested) {
+            this.language = language;
+            this.promise = promise;
+            this.startRequested = startRequested;
+        }
         
-        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
-            throw new Exception("无法初始化音频录制");
+        @Override
+        public void open() throws Exception {
+            // 已抢到会话，先于录音和处理线程设置，之后的音频都按本次会话处理
+            currentLanguage = language;
+            metrics.onSessionStart();
+            warm = audioRecord != null;
+            startAudioRecording();
+        }
+        
+        @Override
+        public void run(CaptureSession session) {
+            processAudioStream(session);
+        }
+        
+        @Override
+        public void close() {
+            stopAudioRecording();
+        }
+        
+        @Override
+        public void onStarted() {
+            metrics.onStartLatency(elapsedMs(startRequested), warm);
+            mainHandler.post(() -> {
+                sendEvent("onStart", null);
+                promise.resolve("Started Google Cloud Speech recognition");
+            });
         }
         
-        isListening.set(true);
+        @Override
+        public void onStartFailed(Exception error) {
+            Log.e(TAG, "Error starting Google Cloud Speech recognition", error);
+            mainHandler.post(() -> {
+                promise.reject("START_ERROR", error.getMessage());
+            });
+        }
+        
+        @Override
+        public void onStopped() {
+        }
+    }
+    
+    private void startAudioRecording() throws Exception {
+        ensureAudioRecord();
         audioRecord.startRecording();
+        // 麦克风被其他应用占用时startRecording不会抛异常，只是不进入录音状态
+        if (audioRecord.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
+            audioRecord.release();
+            audioRecord = null;
+            throw new Exception("麦克风被占用，无法开始录音");
+        }
+    }
+    
+    private void ensureAudioRecord() throws Exception {
+        AudioRecord record = audioRecord;
+        AudioCaptureConfig config = captureConfig;
+        if (record != null && record.getState() == AudioRecord.STATE_INITIALIZED && config == audioRecordConfig) {
+            return;
+        }
+        if (record != null) {
+            // 预热后修改了采集参数，按新参数重新创建
+            record.release();
+        }
         
-        // 开始音频流处理
-        processAudioStream();
+        record = config.createAudioRecord();
+        
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            audioRecord = null;
+            throw new Exception("无法初始化音频录制");
+        }
+        audioRecord = record;
+        audioRecordConfig = config;
+        if (captureFramePool.getFrameBytes() != config.getBufferSize()) {
+            captureFramePool = new PcmFramePool(CAPTURE_FRAME_COUNT, config.getBufferSize());
+        }
     }
     
     private void stopAudioRecording() {
-        isListening.set(false);
+        AudioRecord record = audioRecord;
+        if (record != null) {
+            record.stop();
+            // 预热状态下保留实例，停止后可以再次startRecording
+            if (!prepared) {
+                audioRecord = null;
+                record.release();
+            }
+        }
+    }
+    
+    private void warmUpConnection() {
+        if (!checkNetworkConnection()) {
+            return;
+        }
+        if (recognitionMode == RecognitionMode.STREAMING) {
+            // 让gRPC通道开始建立连接，不等待结果
+            getStreamingChannel().getState(true);
+            return;
+        }
+        // 只为完成TLS握手并把连接放入共享连接池，不经过重试和熔断，响应内容无关紧要
+        Request request = new Request.Builder()
+            .url("https://" + GOOGLE_CLOUD_SPEECH_HOST + "/")
+            .head()
+            .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            Log.d(TAG, "Connection warmed up: HTTP " + response.code());
+        } catch (IOException e) {
+            Log.w(TAG, "Connection warm-up failed", e);
+        }
+    }
+    
+    private void processAudioStream(CaptureSession session) {
+        File spillFile = new File(reactContext.getCacheDir(), "speech_spill_" + System.currentTimeMillis() + ".pcm");
+        PcmRingBuffer ring = new PcmRingBuffer(RING_BUFFER_BYTES, overflowPolicy, spillFile);
+        captureBuffer = ring;
         
-        if (audioRecord != null) {
-            audioRecord.stop();
-            audioRecord.release();
-            audioRecord = null;
+        // 采集线程只负责读取麦克风并写入环形缓冲区，后续处理在独立线程中进行
+        processingExecutor.execute(() -> processCapturedAudio(ring));
+        
+        // AudioRecord直接写入池中的direct buffer，稳定运行时每帧不产生新对象
+        AudioRecord record = audioRecord;
+        PcmFramePool framePool = captureFramePool;
+        // 非16kHz单声道PCM16时在采集线程上转换，转换结果写入预先分配的缓冲区
+        PcmResampler resampler = audioRecordConfig.createResampler(SAMPLE_RATE);
+        ByteBuffer converted = resampler.isPassthrough()
+            ? null
+            : ByteBuffer.allocateDirect(resampler.maxOutputBytes(framePool.getFrameBytes()));
+        while (session.isRunning()) {
+            PcmFrame frame = framePool.acquire();
+            if (frame == null) {
+                // 所有帧都被异步使用方占用，稍后再读，数据暂留在AudioRecord内部缓冲区
+                LockSupport.parkNanos(FRAME_WAIT_NANOS);
+                continue;
+            }
+            try {
+                ByteBuffer data = frame.buffer();
+                int bytesRead = record.read(data, data.capacity());
+                if (bytesRead > 0) {
+                    metrics.onAudio();
+                    data.limit(bytesRead);
+                    if (converted == null) {
+                        ring.write(data);
+                    } else {
+                        converted.clear();
+                        resampler.process(data, converted);
+                        converted.flip();
+                        ring.write(converted);
+                    }
+                }
+            } finally {
+                frame.release();
+            }
         }
+        
+        ring.close();
     }
     
-    private void processAudioStream() {
+    private void processCapturedAudio(PcmRingBuffer ring) {
+        if (recognitionMode == RecognitionMode.STREAMING) {
+            streamCapturedAudio(ring);
+            return;
+        }
+        
         byte[] buffer = new byte[BUFFER_SIZE];
+        BatchSession batch = new BatchSession(
+            new AudioChunkBatcher(SAMPLE_RATE, getWindowPool(windowMs)), createEncoder(), createRace(currentLanguage));
+        startWindow(batch);
+        VoiceActivityDetector vad = null;
+        if (vadEnabled) {
+            // 只有语音段（含前置缓冲）进入分批上传，静音不再上传
+            vad = new VoiceActivityDetector(SAMPLE_RATE, new VoiceActivityDetector.Listener() {
+                @Override
+                public void onSpeechStart() {
+                    sendEvent("onSpeechStart", null);
+                }
+                
+                @Override
+                public void onSpeechAudio(byte[] data, int offset, int count) {
+                    appendToBatch(batch, data, offset, count);
+                }
+                
+                @Override
+                public void onSpeechEnd() {
+                    sendEvent("onSpeechEnd", null);
+                    flushBatch(batch);
+                }
+            });
+        }
         
-        while (isListening.get() && audioRecord != null) {
-            int bytesRead = audioRecord.read(buffer, 0, buffer.length);
-            
+        int bytesRead;
+        while ((bytesRead = ring.read(buffer, 0, buffer.length, RING_READ_TIMEOUT_MS)) >= 0) {
             if (bytesRead > 0) {
-                // 发送音频数据到Google Cloud Speech API
-                sendAudioToGoogleCloud(buffer, bytesRead);
+                if (vad != null) {
+                    vad.process(buffer, 0, bytesRead);
+                } else {
+                    appendToBatch(batch, buffer, 0, bytesRead);
+                }
             }
         }
+        
+        if (vad != null) {
+            vad.finish();
+        }
+        // 停止时上传剩余的音频
+        flushBatch(batch);
+        if (batch.race != null) {
+            batch.race.finish();
+        }
+        metrics.addCaptureOverruns(ring.getOverruns());
+        ring.release();
     }
     
-    private void sendAudioToGoogleCloud(byte[] audioData, int bytesRead) {
+    private void streamCapturedAudio(PcmRingBuffer ring) {
+        // 流式模式下持续推送全部音频，由服务端负责断句
+        StreamingRecognitionSession session = new StreamingRecognitionSession(
+            getStreamingChannel(),
+            currentApiKey,
+            currentLanguage,
+            SAMPLE_RATE,
+            StreamingRecognitionSession.DEFAULT_STREAM_LIMIT_MS,
+            new StreamingRecognitionSession.Listener() {
+                @Override
+                public void onResult(StreamingRecognitionResult result) {
+                    emitStreamingResult(result);
+                }
+                
+                @Override
+                public void onStreamRestarted(int restartCount) {
+                    Log.d(TAG, "Streaming recognition restarted: " + restartCount);
+                }
+                
+                @Override
+                public void onError(Throwable error) {
+                    Log.e(TAG, "Streaming recognition failed", error);
+                    sendError("STREAMING_ERROR", "流式识别失败: " + error.getMessage());
+                }
+            });
+        streamingSession = session;
+        
+        byte[] buffer = new byte[BUFFER_SIZE];
         try {
-            // 将音频数据编码为base64
-            String base64Audio = android.util.Base64.encodeToString(audioData, 0, bytesRead, android.util.Base64.NO_WRAP);
-            
-            // 构建请求JSON
-            JSONObject requestJson = new JSONObject();
-            JSONObject config = new JSONObject();
-            config.put("encoding", "LINEAR16");
-            config.put("sampleRateHertz", SAMPLE_RATE);
-            config.put("languageCode", currentLanguage);
-            config.put("enableAutomaticPunctuation", true);
-            config.put("enableWordTimeOffsets", true);
-            config.put("enableWordConfidence", true);
-            
-            JSONObject audio = new JSONObject();
-            audio.put("content", base64Audio);
-            
-            requestJson.put("config", config);
-            requestJson.put("audio", audio);
+            session.start();
+            int bytesRead;
+            while ((bytesRead = ring.read(buffer, 0, buffer.length, RING_READ_TIMEOUT_MS)) >= 0) {
+                session.sendAudio(buffer, 0, bytesRead);
+            }
+            session.finish();
+        } catch (Exception e) {
+            Log.e(TAG, "Error streaming audio to Google Cloud", e);
+            session.cancel();
+            sendError("STREAMING_ERROR", "流式识别失败: " + e.getMessage());
+        } finally {
+            metrics.addCaptureOverruns(ring.getOverruns());
+            ring.release();
+        }
+    }
+    
+    private void emitStreamingResult(StreamingRecognitionResult result) {
+        WritableMap params = Arguments.createMap();
+        WritableArray resultsArray = Arguments.createArray();
+        
+        for (SpeechRecognitionAlternative alternative : result.getAlternativesList()) {
+            WritableMap resultMap = Arguments.createMap();
+            resultMap.putString("text", alternative.getTranscript());
+            resultMap.putDouble("confidence", alternative.getConfidence());
+            resultMap.putDouble("stability", result.getStability());
+            resultsArray.pushMap(resultMap);
+        }
+        
+        params.putArray("results", resultsArray);
+        params.putBoolean("isFinal", result.getIsFinal());
+        if (result.getIsFinal()) {
+            metrics.onFinalResult();
+        } else {
+            metrics.onPartialResult();
+        }
+        sendEvent(result.getIsFinal() ? "onResults" : "onPartialResults", params);
+    }
+    
+    private synchronized ManagedChannel getStreamingChannel() {
+        if (streamingChannel == null) {
+            streamingChannel = OkHttpChannelBuilder
+                .forAddress(GOOGLE_CLOUD_SPEECH_HOST, GOOGLE_CLOUD_SPEECH_PORT)
+                .useTransportSecurity()
+                .build();
+        }
+        return streamingChannel;
+    }
+    
+    private void appendToBatch(BatchSession batch, byte[] data, int offset, int count) {
+        int end = offset + count;
+        while (offset < end) {
+            int appended = batch.batcher.append(data, offset, end - offset);
+            if (batch.race != null) {
+                // 离线引擎收到的音频与上传的批次逐字节一致
+                batch.race.feed(data, offset, appended);
+            }
+            offset += appended;
+            // 窗口写满或一句话结束时整体上传
+            if (batch.batcher.isFull() || batch.batcher.isUtteranceEnded()) {
+                flushBatch(batch);
+            }
+        }
+    }
+    
+    /**
+     * 自适应上传的配置、当前决策和估计
+     */
+    private WritableMap getAdaptiveUploadInfo() {
+        WritableMap info = Arguments.createMap();
+        info.putBoolean("enabled", adaptiveUploadEnabled);
+        AdaptiveUploadController.Estimates estimates = adaptiveUpload.getEstimates();
+        info.putInt("targetP95Ms", estimates.targetP95Ms);
+        info.putInt("samples", estimates.samples);
+        info.putDouble("throughputKbps", estimates.throughputKbps);
+        info.putDouble("fixedMs", estimates.fixedMs);
+        info.putDouble("marginMs", estimates.marginMs);
+        info.putDouble("observedP95Ms", estimates.observedP95Ms);
+        AdaptiveUploadController.Decision decision = adaptiveUpload.getCurrentDecision();
+        if (decision != null) {
+            info.putString("encoding", decision.profile.encoding);
+            info.putInt("sampleRate", decision.profile.sampleRate);
+            info.putInt("windowMs", decision.windowMs);
+            info.putDouble("predictedMs", decision.predictedMs);
+            info.putBoolean("feasible", decision.feasible);
+        }
+        return info;
+    }
+    
+    private AudioEncoder createEncoder() {
+        // 按调用方设置的编码上传；计费网络上改用FLAC由自适应上传决定，调用方指定编码后不再覆盖
+        if ("FLAC".equals(audioEncoding)) {
+            return new FlacEncoder(SAMPLE_RATE);
+        }
+        return new LinearPcmEncoder();
+    }
+    
+    private synchronized ByteArrayPool getWindowPool(int windowMs) {
+        int windowBytes = windowMs * (SAMPLE_RATE * 2 / 1000);
+        if (windowPool == null || windowPool.getArraySize() != windowBytes) {
+            windowPool = new ByteArrayPool(windowBytes, WINDOW_POOL_SIZE);
+        }
+        return windowPool;
+    }
+    
+    private void flushBatch(BatchSession batch) {
+        if (batch.batcher.isEmpty()) {
+            return;
+        }
+        AudioChunk pcm = batch.batcher.drain();
+        AdaptiveUploadController.Decision decision = batch.decision;
+        startWindow(batch);
+        if (failoverEnabled) {
+            routeSession(batch, pcm);
+        }
+        ProviderRace race = batch.race;
+        ProviderRace.Segment segment = race != null ? race.endSegment() : null;
+        if (batch.failedOver) {
+            // 这一段只由离线引擎识别
+            pcm.release();
+            race.skipCloud(segment);
+            return;
+        }
+        // 压缩后发送音频数据到Google Cloud Speech API
+        if (decision == null) {
+            sendAudioToGoogleCloud(batch.encoder.encode(pcm), batch.encoder.getEncoding(), SAMPLE_RATE, race, segment, null);
+            return;
+        }
+        AdaptiveUploadController.Profile profile = decision.profile;
+        int audioMs = pcm.getLength() / (SAMPLE_RATE * 2 / 1000);
+        long encodeStart = System.nanoTime();
+        AudioChunk encoded = batch.encoderFor(profile).encode(
+            profile.sampleRate == SAMPLE_RATE ? pcm : downsample(batch, pcm, profile.sampleRate));
+        AdaptiveUpload upload = new AdaptiveUpload(profile, audioMs, (System.nanoTime() - encodeStart) / 1e6);
+        sendAudioToGoogleCloud(encoded, profile.encoding, profile.sampleRate, race, segment, upload);
+    }
+    
+    /**
+     * 开始下一个窗口前按自适应上传的决策限制窗口时长；关闭时恢复为windowMs
+     */
+    private void startWindow(BatchSession batch) {
+        if (!adaptiveUploadEnabled) {
+            batch.decision = null;
+            batch.batcher.setMaxDurationMs(windowMs);
+            return;
+        }
+        batch.decision = adaptiveUpload.decide();
+        batch.batcher.setMaxDurationMs(batch.decision.windowMs);
+    }
+    
+    /**
+     * 降采样后再编码，减小慢速网络上的请求体；每个窗口单独识别，不保留窗口之间的滤波器历史
+     */
+    private AudioChunk downsample(BatchSession batch, AudioChunk pcm, int sampleRate) {
+        if (batch.downsampler == null || batch.downsampler.getOutputRate() != sampleRate) {
+            batch.downsampler = new PcmResampler(SAMPLE_RATE, 1, PcmResampler.Encoding.PCM_16BIT, sampleRate);
+        }
+        int capacity = batch.downsampler.maxOutputBytes(pcm.getData().length);
+        if (batch.downsamplePool == null || batch.downsamplePool.getArraySize() != capacity) {
+            batch.downsamplePool = new ByteArrayPool(capacity, WINDOW_POOL_SIZE);
+        }
+        byte[] output = batch.downsamplePool.acquire();
+        batch.downsampler.reset();
+        int length = batch.downsampler.process(
+            ByteBuffer.wrap(pcm.getData(), 0, pcm.getLength()).order(ByteOrder.LITTLE_ENDIAN), ByteBuffer.wrap(output));
+        pcm.release();
+        return new AudioChunk(output, length, batch.downsamplePool);
+    }
+    
+    /**
+     * 在段边界按路由的建议切换本次会话使用的引擎。转移到离线引擎时，刚取出的批次还没有送入离线引擎，在这里补上；
+     * 之前已经发出的请求失败时照常暂存或交给竞速，音频不会丢失
+     */
+    private void routeSession(BatchSession batch, AudioChunk pcm) {
+        String cloud = ProviderRace.Provider.CLOUD.getId();
+        String offline = ProviderRace.Provider.OFFLINE.getId();
+        String target = router.recommend(batch.failedOver ? offline : cloud);
+        if (!batch.failedOver && offline.equals(target)) {
+            if (batch.race == null) {
+                if (!isRaceAvailable(currentLanguage)) {
+                    return;
+                }
+                batch.race = startRace(currentLanguage);
+                batch.race.feed(pcm.getData(), 0, pcm.getLength());
+                batch.raceForFailover = true;
+            }
+            batch.failedOver = true;
+            Log.w(TAG, "Cloud recognition unhealthy, moving session to offline engine");
+            emitProviderSwitch(cloud, offline);
+        } else if (batch.failedOver && cloud.equals(target)) {
+            batch.failedOver = false;
+            if (batch.raceForFailover) {
+                // 这一批已送入离线引擎但还没有分段，结束时被丢弃，改由云端识别
+                batch.race.finish();
+                batch.race = null;
+                batch.raceForFailover = false;
+            }
+            Log.i(TAG, "Cloud recognition recovered, moving session back");
+            emitProviderSwitch(offline, cloud);
+        }
+    }
+    
+    private void emitProviderSwitch(String from, String to) {
+        WritableMap params = Arguments.createMap();
+        params.putString("from", from);
+        params.putString("to", to);
+        params.putBoolean("networkAvailable", router.isNetworkAvailable());
+        sendEvent("onProviderSwitch", params);
+    }
+    
+    private boolean isRaceAvailable(String language) {
+        return OfflineRecognizer.isLibraryAvailable() && modelManager.isAvailable(language);
+    }
+    
+    /**
+     * 竞速模式下创建本次会话的竞速，离线引擎或模型不可用时返回null，只使用云端
+     */
+    private ProviderRace createRace(String language) {
+        if (!raceEnabled) {
+            return null;
+        }
+        if (!isRaceAvailable(language)) {
+            Log.w(TAG, "Offline engine or model for " + language + " unavailable, not racing");
+            return null;
+        }
+        return startRace(language);
+    }
+    
+    private ProviderRace startRace(String language) {
+        File spillFile = new File(reactContext.getCacheDir(), "race_spill_" + System.currentTimeMillis() + ".pcm");
+        ProviderRace race = new ProviderRace(
+            () -> createRaceRecognizer(language), raceConfidenceThreshold, raceStats, router, spillFile, raceListener);
+        race.start(raceExecutor);
+        return race;
+    }
+    
+    /**
+     * 在竞速线程上加载模型并创建离线识别器
+     */
+    private ProviderRace.SegmentRecognizer createRaceRecognizer(String language) throws IOException {
+        ModelAssetManager.LoadedModel model = modelManager.acquire(modelManager.resolve(language));
+        try {
+            return OfflineRecognizer.create(model, SAMPLE_RATE).asSegmentRecognizer();
+        } catch (IOException | RuntimeException e) {
+            model.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * 离线引擎已胜出，取消该段进行中的识别请求；正在退避等待的也不再重试
+     */
+    private void cancelCloudRequest(ProviderRace.Segment segment) {
+        ResilientHttpClient.Cancellation cancellation = cloudCancellations.get(segment);
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+    }
+    
+    /**
+     * race和segment在竞速时非null：结果交给竞速决出胜负，失败时由离线引擎负责这一段，不暂存也不报错。
+     * adaptive在自适应上传时非null，请求成功后用实测的耗时更新控制器
+     */
+    private void sendAudioToGoogleCloud(AudioChunk audio, String encoding, int sampleRate, ProviderRace race,
+                                        ProviderRace.Segment segment, AdaptiveUpload adaptive) {
+        String language = currentLanguage;
+        
+        // 与之前识别过的片段字节完全相同时直接使用缓存的结果，离线时同样有效
+        String cacheKey = resultCache.keyFor(audio.getData(), audio.getLength(), encoding, language, sampleRate);
+        List<RecognizeResponseParser.Alternative> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            audio.release();
+            if (race != null) {
+                race.submitCloud(segment, cached);
+            } else {
+                emitResults(cached, false, true, null);
+            }
+            return;
+        }
+        
+        // 竞速时离线引擎负责这一段；否则直接写入暂存区，等网络恢复后按顺序上传
+        boolean online = checkNetworkConnection();
+        if (race != null && !online) {
+            audio.release();
+            race.submitCloud(segment, null);
+            return;
+        }
+        if (spoolEnabled && !online) {
+            spoolAudio(audio, encoding, language);
+            audio.release();
+            return;
+        }
+        
+        // 先登记再检查是否已决出，避免在两者之间胜出时漏掉取消
+        ResilientHttpClient.Cancellation cancellation = null;
+        if (race != null) {
+            cancellation = new ResilientHttpClient.Cancellation();
+            cloudCancellations.put(segment, cancellation);
+        }
+        try {
+            Request request = buildRecognizeRequest(audio.getData(), audio.getLength(), encoding, sampleRate, language,
+                cancellation, adaptive != null ? adaptive.timing : null);
             
-            // 发送HTTP请求
-            String url = GOOGLE_CLOUD_SPEECH_API_URL + "?key=" + currentApiKey;
-            RequestBody body = RequestBody.create(
-                MediaType.parse("application/json"),
-                requestJson.toString()
-            );
+            // 线程数即同时进行中的识别请求数
+            uploadExecutor.execute(new UploadTask(audio, encoding, language, race, segment, request, cacheKey, adaptive));
             
-            Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .build();
+        } catch (Exception e) {
+            audio.release();
+            if (race != null) {
+                cloudCancellations.remove(segment);
+            }
+            Log.e(TAG, "Error preparing Google Cloud request", e);
+            if (race != null) {
+                race.submitCloud(segment, null);
+            } else {
+                sendError("REQUEST_ERROR", "请求准备失败: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void onUploadFailed(AudioChunk audio, String encoding, String language, ProviderRace race,
+                                ProviderRace.Segment segment, boolean spool, String error, String message) {
+        if (race != null) {
+            race.submitCloud(segment, null);
+            return;
+        }
+        if (spool) {
+            spoolAudio(audio, encoding, language);
+        }
+        sendError(error, message);
+    }
+    
+    private Request buildRecognizeRequest(byte[] audio, int length, String encoding, int sampleRate, String language,
+                                          ResilientHttpClient.Cancellation cancellation,
+                                          HttpTimingListener.Timing timing) {
+        // 构建请求JSON，音频内容由请求体直接写入
+        String config = RecognizeRequestBody.buildConfigJson(encoding, sampleRate, language);
+        String url = GOOGLE_CLOUD_SPEECH_API_URL + "?key=" + currentApiKey;
+        RequestBody body = new RecognizeRequestBody(config, audio, length);
+        
+        return new Request.Builder()
+            .url(url)
+            .post(body)
+            .tag(ResilientHttpClient.Cancellation.class, cancellation)
+            .tag(HttpTimingListener.Timing.class, timing)
+            .build();
+    }
+    
+    private void spoolAudio(AudioChunk audio, String encoding, String language) {
+        if (!spoolEnabled) {
+            return;
+        }
+        try {
+            audioSpool.append(encoding, language, audio.getData(), audio.getLength());
+            scheduleSpoolDrain(SPOOL_RETRY_DELAY_MS);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing audio to spool", e);
+            sendError("SPOOL_ERROR", "离线暂存失败: " + e.getMessage());
+        }
+    }
+    
+    private void scheduleSpoolDrain(long delayMs) {
+        if (!spoolDrainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            spoolExecutor.schedule(() -> {
+                spoolDrainScheduled.set(false);
+                drainSpool();
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            spoolDrainScheduled.set(false);
+        }
+    }
+    
+    private void drainSpoolNow() {
+        if (audioSpool.isEmpty()) {
+            return;
+        }
+        try {
+            // 与定时的上传在同一线程上依次执行，已排定的那次到时会发现暂存区为空
+            spoolExecutor.execute(this::drainSpool);
+        } catch (RejectedExecutionException e) {
+            // 模块已销毁
+        }
+    }
+    
+    /**
+     * 在暂存线程上按写入顺序逐条上传，遇到网络问题时停止并稍后重试
+     */
+    private void drainSpool() {
+        try {
+            if (audioSpool.isEmpty()) {
+                return;
+            }
+            if (!checkNetworkConnection() || currentApiKey.equals("YOUR_GOOGLE_CLOUD_API_KEY")) {
+                scheduleSpoolDrain(SPOOL_RETRY_DELAY_MS);
+                return;
+            }
             
-            executorService.execute(() -> {
-                try {
-                    Response response = httpClient.newCall(request).execute();
+            AudioSpool.Entry entry;
+            while ((entry = audioSpool.peek()) != null) {
+                // 自适应上传可能以8kHz编码，FLAC的采样率从数据本身读出
+                int sampleRate = "FLAC".equals(entry.encoding)
+                    ? FlacEncoder.readSampleRate(entry.audio, entry.audio.length)
+                    : SAMPLE_RATE;
+                if (sampleRate <= 0) {
+                    sampleRate = SAMPLE_RATE;
+                }
+                String cacheKey = resultCache.keyFor(entry.audio, entry.audio.length, entry.encoding, entry.language, sampleRate);
+                List<RecognizeResponseParser.Alternative> cached = resultCache.get(cacheKey);
+                if (cached != null) {
+                    emitResults(cached, true, true, null);
+                    audioSpool.commit(entry);
+                    continue;
+                }
+                Request request = buildRecognizeRequest(entry.audio, entry.audio.length, entry.encoding, sampleRate,
+                    entry.language, null, null);
+                long requestStart = System.nanoTime();
+                try (Response response = resilientClient.execute(request, true)) {
+                    metrics.onRequestCompleted(elapsedMs(requestStart), request.body().contentLength());
+                    // 会话转移到离线引擎期间，暂存区的上传结果让路由判断云端是否已经恢复
                     if (response.isSuccessful()) {
-                        String responseBody = response.body().string();
-                        processGoogleCloudResponse(responseBody);
+                        router.recordSuccess(routerProvider.getId(), elapsedMs(requestStart));
+                        processGoogleCloudResponse(response.body().charStream(), true, cacheKey, null, null);
+                    } else if (RetryPolicy.isRetryableStatus(response.code())) {
+                        router.recordFailure(routerProvider.getId());
+                        scheduleSpoolDrain(SPOOL_RETRY_DELAY_MS);
+                        return;
                     } else {
-                        Log.e(TAG, "Google Cloud API error: " + response.code() + " " + response.message());
-                        sendEvent("onError", createErrorMap("API_ERROR", "Google Cloud API请求失败: " + response.code()));
+                        // 请求本身有误，重传也不会成功，丢弃该片段
+                        Log.e(TAG, "Dropping spooled audio after API error: " + response.code());
+                        sendError("API_ERROR", "Google Cloud API请求失败: " + response.code());
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error sending audio to Google Cloud", e);
-                    sendEvent("onError", createErrorMap("NETWORK_ERROR", "网络请求失败: " + e.getMessage()));
                 }
-            });
-            
+                audioSpool.commit(entry);
+            }
+        } catch (ResilientHttpClient.CircuitOpenException e) {
+            scheduleSpoolDrain(Math.max(SPOOL_RETRY_DELAY_MS, e.getRetryAfterMs()));
+        } catch (IOException e) {
+            Log.w(TAG, "Spool drain interrupted, retrying later", e);
+            router.recordFailure(routerProvider.getId());
+            scheduleSpoolDrain(SPOOL_RETRY_DELAY_MS);
         } catch (Exception e) {
-            Log.e(TAG, "Error preparing Google Cloud request", e);
-            sendEvent("onError", createErrorMap("REQUEST_ERROR", "请求准备失败: " + e.getMessage()));
+            Log.e(TAG, "Error draining spool", e);
         }
     }
     
-    private void processGoogleCloudResponse(String responseBody) {
+    private void processGoogleCloudResponse(Reader responseReader, boolean fromSpool, String cacheKey,
+                                            ProviderRace race, ProviderRace.Segment segment) {
         try {
-            JSONObject response = new JSONObject(responseBody);
+            List<RecognizeResponseParser.Alternative> alternatives = RecognizeResponseParser.parse(responseReader);
             
-            if (response.has("results")) {
-                JSONArray results = response.getJSONArray("results");
-                
-                WritableMap params = Arguments.createMap();
-                WritableArray resultsArray = Arguments.createArray();
-                
-                for (int i = 0; i < results.length(); i++) {
-                    JSONObject result = results.getJSONObject(i);
-                    JSONArray alternatives = result.getJSONArray("alternatives");
-                    
-                    for (int j = 0; j < alternatives.length(); j++) {
-                        JSONObject alternative = alternatives.getJSONObject(j);
-                        
-                        WritableMap resultMap = Arguments.createMap();
-                        resultMap.putString("text", alternative.getString("transcript"));
-                        
-                        if (alternative.has("confidence")) {
-                            resultMap.putDouble("confidence", alternative.getDouble("confidence"));
-                        } else {
-                            resultMap.putDouble("confidence", 0.0);
-                        }
-                        
-                        resultsArray.pushMap(resultMap);
-                    }
-                }
-                
-                params.putArray("results", resultsArray);
-                sendEvent("onResults", params);
+            if (alternatives != null) {
+                resultCache.put(cacheKey, alternatives);
+            }
+            if (race != null) {
+                // 没有results字段表示没有识别出内容
+                race.submitCloud(segment, alternatives != null
+                    ? alternatives
+                    : Collections.<RecognizeResponseParser.Alternative>emptyList());
+            } else if (alternatives != null) {
+                emitResults(alternatives, fromSpool, false, null);
             }
             
-        } catch (JSONException e) {
+        } catch (IOException | IllegalStateException e) {
             Log.e(TAG, "Error parsing Google Cloud response", e);
-            sendEvent("onError", createErrorMap("PARSE_ERROR", "响应解析失败: " + e.getMessage()));
+            if (race != null) {
+                race.submitCloud(segment, null);
+            } else {
+                sendError("PARSE_ERROR", "响应解析失败: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * provider为竞速的胜出方，非竞速时为null
+     */
+    private void emitResults(List<RecognizeResponseParser.Alternative> alternatives, boolean fromSpool, boolean fromCache,
+                             String provider) {
+        WritableMap params = Arguments.createMap();
+        WritableArray resultsArray = Arguments.createArray();
+        
+        for (RecognizeResponseParser.Alternative alternative : alternatives) {
+            WritableMap resultMap = Arguments.createMap();
+            resultMap.putString("text", alternative.transcript);
+            resultMap.putDouble("confidence", alternative.confidence);
+            resultsArray.pushMap(resultMap);
+        }
+        
+        params.putArray("results", resultsArray);
+        params.putBoolean("fromSpool", fromSpool);
+        params.putBoolean("fromCache", fromCache);
+        if (provider != null) {
+            params.putString("provider", provider);
+        }
+        if (!fromSpool) {
+            // 暂存的音频属于之前的会话，不计入本次会话的首个结果耗时
+            metrics.onFinalResult();
+        }
+        sendEvent("onResults", params);
+    }
+    
+    private ThreadPoolExecutor createUploadExecutor(int threads, int queueSize) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            UPLOAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            new NamedThreadFactory("GCSpeech-upload", Process.THREAD_PRIORITY_BACKGROUND),
+            new UploadRejectionHandler()
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private void resizeUploadExecutor(int threads) {
+        ThreadPoolExecutor executor = uploadExecutor;
+        // 核心线程数不能大于最大线程数，按方向调整修改顺序
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+    
+    private void shutdownExecutor(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
     }
     
+    /**
+     * 排队中的识别请求。被拒绝策略丢弃时调用fail()，与请求失败走同一条路径：
+     * 竞速时交给离线引擎，否则按需暂存并上报错误，最后归还音频窗口
+     */
+    private final class UploadTask implements Runnable {
+        private final AudioChunk audio;
+        private final String encoding;
+        private final String language;
+        private final ProviderRace race;
+        private final ProviderRace.Segment segment;
+        private final Request request;
+        private final String cacheKey;
+        private final AdaptiveUpload adaptive;
+        
+        UploadTask(AudioChunk audio, String encoding, String language, ProviderRace race,
+                   ProviderRace.Segment segment, Request request, String cacheKey, AdaptiveUpload adaptive) {
+            this.audio = audio;
+            this.encoding = encoding;
+            this.language = language;
+            this.race = race;
+            this.segment = segment;
+            this.request = request;
+            this.cacheKey = cacheKey;
+            this.adaptive = adaptive;
+        }
+        
+        @Override
+        public void run() {
+            if (race != null && race.isDecided(segment)) {
+                // 排队期间离线引擎已经胜出
+                audio.release();
+                cloudCancellations.remove(segment);
+                return;
+            }
+            // recognize没有副作用，可以安全重试
+            long requestStart = System.nanoTime();
+            try (Response response = resilientClient.execute(request, true)) {
+                metrics.onRequestCompleted(elapsedMs(requestStart), request.body().contentLength());
+                if (response.isSuccessful()) {
+                    long totalMs = elapsedMs(requestStart);
+                    router.recordSuccess(routerProvider.getId(), totalMs);
+                    if (adaptive != null) {
+                        // 排队时间不计入：缩短窗口并不能减少排队
+                        adaptiveUpload.onRequestCompleted(adaptive.profile, adaptive.audioMs,
+                            request.body().contentLength(), adaptive.encodeMs, adaptive.timing.uploadMs, totalMs);
+                    }
+                    processGoogleCloudResponse(response.body().charStream(), false, cacheKey, race, segment);
+                } else {
+                    Log.e(TAG, "Google Cloud API error: " + response.code() + " " + response.message());
+                    router.recordFailure(routerProvider.getId());
+                    onUploadFailed(audio, encoding, language, race, segment, RetryPolicy.isRetryableStatus(response.code()),
+                        "API_ERROR", "Google Cloud API请求失败: " + response.code());
+                }
+            } catch (ResilientHttpClient.CircuitOpenException e) {
+                // 熔断期间不发请求，音频先暂存
+                Log.w(TAG, e.getMessage());
+                router.recordFailure(routerProvider.getId());
+                onUploadFailed(audio, encoding, language, race, segment, true,
+                    "CIRCUIT_OPEN", "服务暂时不可用，音频已暂存");
+            } catch (IOException e) {
+                if (race != null && race.isDecided(segment)) {
+                    // 离线引擎胜出后被取消
+                    return;
+                }
+                Log.e(TAG, "Error sending audio to Google Cloud", e);
+                router.recordFailure(routerProvider.getId());
+                onUploadFailed(audio, encoding, language, race, segment, true,
+                    "NETWORK_ERROR", "网络请求失败: " + e.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Error sending audio to Google Cloud", e);
+                router.recordFailure(routerProvider.getId());
+                onUploadFailed(audio, encoding, language, race, segment, false,
+                    "NETWORK_ERROR", "网络请求失败: " + e.getMessage());
+            } finally {
+                // 请求体已写完，窗口数组可以复用
+                audio.release();
+                if (race != null) {
+                    cloudCancellations.remove(segment);
+                }
+            }
+        }
+        
+        void fail(boolean spool, String error, String message) {
+            try {
+                if (race == null && error == null) {
+                    return;
+                }
+                onUploadFailed(audio, encoding, language, race, segment, spool, error, message);
+            } finally {
+                audio.release();
+                if (race != null) {
+                    cloudCancellations.remove(segment);
+                }
+            }
+        }
+    }
+    
+    private final class UploadRejectionHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                // 线程池已被替换或模块已销毁，不再上报错误
+                failUpload(task, false, null, null);
+                return;
+            }
+            rejectedUploads.incrementAndGet();
+            switch (uploadRejectionPolicy) {
+                case CALLER_RUNS:
+                    task.run();
+                    break;
+                case DROP_OLDEST:
+                    // 丢弃最早排队的音频片段，为新的片段腾出位置；被丢弃的片段按上传失败处理
+                    Runnable oldest = executor.getQueue().poll();
+                    if (oldest != null) {
+                        Log.w(TAG, "Upload queue full, dropping oldest audio segment");
+                        failUpload(oldest, true, "UPLOAD_DROPPED", "上传队列已满，最早排队的音频片段未上传");
+                    }
+                    executor.execute(task);
+                    break;
+                case REJECT:
+                default:
+                    Log.w(TAG, "Upload queue full, dropping audio segment");
+                    failUpload(task, true, "UPLOAD_REJECTED", "上传队列已满，音频片段未上传");
+                    break;
+            }
+        }
+        
+        private void failUpload(Runnable task, boolean spool, String error, String message) {
+            if (task instanceof UploadTask) {
+                ((UploadTask) task).fail(spool, error, message);
+            } else if (error != null) {
+                sendError(error, message);
+            }
+        }
+    }
+    
+    private void sendError(String error, String message) {
+        metrics.onError(error, message);
+        sendEvent("onError", createErrorMap(error, message));
+    }
+    
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    
     private WritableMap createErrorMap(String error, String message) {
         WritableMap errorMap = Arguments.createMap();
         errorMap.putString("error", error);
@@ -374,17 +1965,11 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
         }
     }
     
+    /**
+     * 读取共享的网络状态缓存，不发起binder调用
+     */
     private boolean checkNetworkConnection() {
-        try {
-            ConnectivityManager connectivityManager = (ConnectivityManager) reactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
-            if (connectivityManager != null) {
-                NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-                return activeNetworkInfo != null && activeNetworkInfo.isConnected();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking network connection", e);
-        }
-        return false;
+        return connectivity.isConnected();
     }
     
     private String getDeviceInfo() {
@@ -400,10 +1985,7 @@ public class GoogleCloudSpeechModule extends ReactContextBaseJavaModule {
     }
     
     private void sendEvent(String eventName, WritableMap params) {
-        mainHandler.post(() -> {
-            reactContext
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit(eventName, params);
-        });
+        // 由本模块的分发器按帧合并发送
+        eventDispatcher.dispatch(eventName, params);
     }
 } 
\ No newline at end of file
@@ -10,6 +10,9 @@ import java.util.Collections;
 import java.util.List;
 
 public class GoogleCloudSpeechPackage implements ReactPackage {
+    // 云端识别优先，不健康时会话转移到离线引擎
+    private static final int ROUTER_PRIORITY = 0;
+
     @Override
     public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
         return Collections.emptyList();
@@ -18,7 +21,9 @@ public class GoogleCloudSpeechPackage implements ReactPackage {
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
-        modules.add(new GoogleCloudSpeechModule(reactContext));
+        GoogleCloudSpeechModule module = new GoogleCloudSpeechModule(reactContext);
+        MainApplication.getProviderRouter().register(module.getRouterProvider(), ROUTER_PRIORITY);
+        modules.add(module);
         return modules;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.shinestar;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 共享OkHttpClient的分阶段耗时统计，由HttpTimingListener写入。
+ * 各计数器均为原子变量，多个请求线程可同时记录。
+ */
+public class HttpLatencyStats {
+    public enum Phase {
+        DNS,
+        CONNECT,
+        TLS,
+        UPLOAD,
+        TTFB,
+        TOTAL
+    }
+
+    public static final class LatencyStat {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMs = new AtomicLong();
+        private final AtomicLong minMs = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong maxMs = new AtomicLong();
+        private volatile long lastMs;
+
+        void record(long ms) {
+            count.incrementAndGet();
+            totalMs.addAndGet(ms);
+            lastMs = ms;
+            long current;
+            while (ms < (current = minMs.get()) && !minMs.compareAndSet(current, ms)) {
+                // 竞争失败后重读
+            }
+            while (ms > (current = maxMs.get()) && !maxMs.compareAndSet(current, ms)) {
+                // 竞争失败后重读
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getAverageMs() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) totalMs.get() / n;
+        }
+
+        public long getMinMs() {
+            long min = minMs.get();
+            return min == Long.MAX_VALUE ? 0 : min;
+        }
+
+        public long getMaxMs() {
+            return maxMs.get();
+        }
+
+        public long getLastMs() {
+            return lastMs;
+        }
+    }
+
+    private final Map<Phase, LatencyStat> stats = new EnumMap<>(Phase.class);
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+
+    public HttpLatencyStats() {
+        // 构造后只读，EnumMap本身无需同步
+        for (Phase phase : Phase.values()) {
+            stats.put(phase, new LatencyStat());
+        }
+    }
+
+    public void record(Phase phase, long ms) {
+        stats.get(phase).record(ms);
+    }
+
+    public LatencyStat get(Phase phase) {
+        return stats.get(phase);
+    }
+
+    void onConnectionAcquired(boolean reused) {
+        if (reused) {
+            connectionsReused.incrementAndGet();
+        } else {
+            connectionsCreated.incrementAndGet();
+        }
+    }
+
+    void onCallFailed() {
+        failedCalls.incrementAndGet();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    public long getConnectionsReused() {
+        return connectionsReused.get();
+    }
+
+    public long getFailedCalls() {
+        return failedCalls.get();
+    }
+}
@@ -0,0 +1,152 @@
+package com.shinestar;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * 记录单个请求各阶段耗时的EventListener：DNS、建连、TLS握手、请求体上传、
+ * 首字节时间（请求发送完到响应头开始）以及整个请求的总耗时。
+ * 每个Call创建一个实例，回调在该Call所在线程上顺序发生。
+ * 请求带有Timing类型的tag时，同时把本次请求的上传耗时和首字节时间写入其中，供调用方按请求使用。
+ */
+public class HttpTimingListener extends EventListener {
+    /**
+     * 单个请求的耗时，重试时为最后一次尝试的值；未经历对应阶段时为-1
+     */
+    public static final class Timing {
+        public volatile long uploadMs = -1;
+        public volatile long ttfbMs = -1;
+    }
+
+    public static final class Factory implements EventListener.Factory {
+        private final HttpLatencyStats stats;
+
+        public Factory(HttpLatencyStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public EventListener create(Call call) {
+            return new HttpTimingListener(stats);
+        }
+    }
+
+    private final HttpLatencyStats stats;
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestStart;
+    private long requestEnd;
+    private boolean connected;
+
+    HttpTimingListener(HttpLatencyStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        stats.record(HttpLatencyStats.Phase.DNS, elapsedMs(dnsStart));
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+        connected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        stats.record(HttpLatencyStats.Phase.TLS, elapsedMs(secureConnectStart));
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        stats.record(HttpLatencyStats.Phase.CONNECT, elapsedMs(connectStart));
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                              Protocol protocol, IOException ioe) {
+        stats.record(HttpLatencyStats.Phase.CONNECT, elapsedMs(connectStart));
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        // 本次请求没有经历建连即为复用连接池中的连接
+        stats.onConnectionAcquired(!connected);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEnd = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEnd = System.nanoTime();
+        long uploadMs = elapsedMs(requestStart);
+        stats.record(HttpLatencyStats.Phase.UPLOAD, uploadMs);
+        Timing timing = call.request().tag(Timing.class);
+        if (timing != null) {
+            timing.uploadMs = uploadMs;
+        }
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        if (requestEnd != 0) {
+            long ttfbMs = elapsedMs(requestEnd);
+            stats.record(HttpLatencyStats.Phase.TTFB, ttfbMs);
+            Timing timing = call.request().tag(Timing.class);
+            if (timing != null) {
+                timing.ttfbMs = ttfbMs;
+            }
+        }
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        stats.record(HttpLatencyStats.Phase.TOTAL, elapsedMs(callStart));
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        stats.onCallFailed();
+        stats.record(HttpLatencyStats.Phase.TOTAL, elapsedMs(callStart));
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
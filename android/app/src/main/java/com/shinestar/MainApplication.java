@@ -1,6 +1,7 @@
 package com.shinestar;
 
 import android.app.Application;
+import android.content.Context;
 import com.facebook.react.PackageList;
 import com.facebook.react.ReactApplication;
 import com.facebook.react.ReactNativeHost;
@@ -8,10 +9,31 @@ import com.facebook.react.ReactPackage;
 import com.facebook.react.defaults.DefaultNewArchitectureEntryPoint;
 import com.facebook.react.defaults.DefaultReactNativeHost;
 import com.facebook.soloader.SoLoader;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 
 public class MainApplication extends Application implements ReactApplication {
 
+  // 原生模块共用的HTTP客户端配置：空闲连接数与保活时长、各阶段超时
+  private static final int HTTP_MAX_IDLE_CONNECTIONS = 5;
+  private static final long HTTP_KEEP_ALIVE_MINUTES = 5;
+  private static final long HTTP_CONNECT_TIMEOUT_SECONDS = 10;
+  // 上传最长15秒窗口的音频，服务端识别也需要时间
+  private static final long HTTP_WRITE_TIMEOUT_SECONDS = 30;
+  private static final long HTTP_READ_TIMEOUT_SECONDS = 30;
+  private static final long HTTP_CALL_TIMEOUT_SECONDS = 60;
+  private static final long HTTP_PING_INTERVAL_SECONDS = 30;
+
+  private static final HttpLatencyStats httpLatencyStats = new HttpLatencyStats();
+  private static volatile OkHttpClient sharedHttpClient;
+  private static volatile ModelAssetManager modelAssetManager;
+  private static final ProviderRouter providerRouter = new ProviderRouter();
+  private static volatile ConnectivityTracker connectivityTracker;
+
   private final ReactNativeHost mReactNativeHost =
       new DefaultReactNativeHost(this) {
         @Override
@@ -27,6 +49,7 @@ public class MainApplication extends Application implements ReactApplication {
           // packages.add(new MyReactNativePackage());
           packages.add(new VoiceToTextPackage());
           packages.add(new GoogleCloudSpeechPackage());
+          packages.add(new OfflineSpeechPackage());
           return packages;
         }
 
@@ -46,6 +69,84 @@ public class MainApplication extends Application implements ReactApplication {
         }
       };
 
+  /**
+   * 全部原生模块共享的OkHttpClient，共用连接池和调度线程
+   */
+  public static OkHttpClient getSharedHttpClient() {
+    OkHttpClient client = sharedHttpClient;
+    if (client == null) {
+      synchronized (MainApplication.class) {
+        client = sharedHttpClient;
+        if (client == null) {
+          client = createHttpClient();
+          sharedHttpClient = client;
+        }
+      }
+    }
+    return client;
+  }
+
+  public static HttpLatencyStats getHttpLatencyStats() {
+    return httpLatencyStats;
+  }
+
+  /**
+   * 离线模型的存储与加载，只创建管理器，模型在首次使用时才复制和加载
+   */
+  public static ModelAssetManager getModelAssetManager(Context context) {
+    ModelAssetManager manager = modelAssetManager;
+    if (manager == null) {
+      synchronized (MainApplication.class) {
+        manager = modelAssetManager;
+        if (manager == null) {
+          manager = new ModelAssetManager(context);
+          modelAssetManager = manager;
+        }
+      }
+    }
+    return manager;
+  }
+
+  /**
+   * 共享的网络状态，首次使用时注册网络回调，之后在进程内一直跟踪
+   */
+  public static ConnectivityTracker getConnectivityTracker(Context context) {
+    ConnectivityTracker tracker = connectivityTracker;
+    if (tracker == null) {
+      synchronized (MainApplication.class) {
+        tracker = connectivityTracker;
+        if (tracker == null) {
+          tracker = new ConnectivityTracker(context);
+          tracker.start();
+          connectivityTracker = tracker;
+        }
+      }
+    }
+    return tracker;
+  }
+
+  /**
+   * 识别提供商的健康评分，各识别模块的包在创建模块时注册
+   */
+  public static ProviderRouter getProviderRouter() {
+    return providerRouter;
+  }
+
+  private static OkHttpClient createHttpClient() {
+    // 未手动设置Accept-Encoding时OkHttp会请求gzip压缩的响应并透明解压
+    return new OkHttpClient.Builder()
+        .connectionPool(new ConnectionPool(HTTP_MAX_IDLE_CONNECTIONS, HTTP_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+        .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+        .connectTimeout(HTTP_CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .writeTimeout(HTTP_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .readTimeout(HTTP_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .callTimeout(HTTP_CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        // HTTP/2连接保活，及时发现已失效的连接
+        .pingInterval(HTTP_PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+        .eventListenerFactory(new HttpTimingListener.Factory(httpLatencyStats))
+        .build();
+  }
+
   @Override
   public ReactNativeHost getReactNativeHost() {
     return mReactNativeHost;
@@ -55,6 +156,8 @@ public class MainApplication extends Application implements ReactApplication {
   public void onCreate() {
     super.onCreate();
     SoLoader.init(this, /* native exopackage */ false);
+    // 内存紧张时关闭空闲的模型
+    registerComponentCallbacks(getModelAssetManager(this));
     if (BuildConfig.IS_NEW_ARCHITECTURE_ENABLED) {
       // If you opted-in for the New Architecture, we load the native entry point for this app.
       DefaultNewArchitectureEntryPoint.load();
@@ -0,0 +1,387 @@
+package com.shinestar;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.vosk.Model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 本地识别模型（Vosk模型目录）的存储与加载。
+ * 随APK打包的模型（assets/offline_asr/models.json中登记，模型文件由vosk-model-*依赖放在assets下）
+ * 首次使用时复制到filesDir/offline_asr，目录名带版本号；模型目录中的uuid文件最后写入，
+ * 之后启动只比对已复制目录与assets中的uuid。
+ * 加载后的模型在多个识别器间共享，按引用计数管理；onTrimMemory时关闭没有使用者的模型，
+ * 并通知使用方释放空闲的识别器。所有方法都可能读写磁盘，不要在主线程调用。
+ */
+public class ModelAssetManager implements ComponentCallbacks2 {
+    private static final String TAG = "ModelAssetManager";
+    public static final String MODEL_DIRECTORY = "offline_asr";
+    private static final String MANIFEST_ASSET = MODEL_DIRECTORY + "/models.json";
+    // Vosk模型目录中标识模型版本的文件
+    private static final String UUID_FILE = "uuid";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 收到内存压力通知时由使用方释放空闲的识别器，使对应模型可以关闭
+     */
+    public interface TrimListener {
+        void onTrimModels(int level);
+    }
+
+    /**
+     * 共享的已加载模型，用完调用release
+     */
+    public final class LoadedModel {
+        private final File directory;
+        private final Model model;
+        private final long size;
+        private int refCount;
+
+        private LoadedModel(File directory, Model model, long size) {
+            this.directory = directory;
+            this.model = model;
+            this.size = size;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        public Model model() {
+            return model;
+        }
+
+        /**
+         * 模型目录在磁盘上的大小，加载后占用的native内存与之相近
+         */
+        public long size() {
+            return size;
+        }
+
+        public void release() {
+            ModelAssetManager.this.release(this);
+        }
+    }
+
+    private static final class BundledModel {
+        final String asset;
+        final int version;
+
+        BundledModel(String asset, int version) {
+            this.asset = asset;
+            this.version = version;
+        }
+    }
+
+    private final Context context;
+    private final File modelDirectory;
+    private final List<TrimListener> trimListeners = new CopyOnWriteArrayList<>();
+    // 复制和加载都可能持续数秒，单独加锁，不阻塞查询
+    private final Object extractLock = new Object();
+    private final Object loadLock = new Object();
+    // 以下由this保护
+    private Map<String, BundledModel> manifest;
+    private final Map<File, LoadedModel> loaded = new HashMap<>();
+    private boolean trimPending;
+
+    public ModelAssetManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.modelDirectory = new File(this.context.getFilesDir(), MODEL_DIRECTORY);
+    }
+
+    public void addTrimListener(TrimListener listener) {
+        trimListeners.add(listener);
+    }
+
+    public void removeTrimListener(TrimListener listener) {
+        trimListeners.remove(listener);
+    }
+
+    /**
+     * 模型已打包或已在默认路径下（如另行下载），不会触发复制
+     */
+    public boolean isAvailable(String name) {
+        return loadManifest().containsKey(name) || isModelDirectory(getSideloadedDirectory(name));
+    }
+
+    /**
+     * 返回可以加载的模型目录；打包的模型需要时先复制，未打包时使用默认路径下的目录
+     */
+    public File resolve(String name) throws IOException {
+        BundledModel bundled = loadManifest().get(name);
+        if (bundled == null) {
+            File sideloaded = getSideloadedDirectory(name);
+            if (!isModelDirectory(sideloaded)) {
+                throw new FileNotFoundException("未找到离线模型: " + name);
+            }
+            return sideloaded;
+        }
+
+        File target = new File(modelDirectory, name + "-v" + bundled.version);
+        synchronized (extractLock) {
+            if (!isExtracted(target, bundled)) {
+                extract(bundled, target);
+                deleteOtherVersions(name, target);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 加载模型目录；同一目录已加载时增加引用计数，直接返回同一个模型
+     */
+    public LoadedModel acquire(File directory) throws IOException {
+        synchronized (loadLock) {
+            synchronized (this) {
+                LoadedModel model = loaded.get(directory);
+                if (model != null) {
+                    model.refCount++;
+                    return model;
+                }
+            }
+            if (!OfflineRecognizer.isLibraryAvailable()) {
+                throw new IOException("离线识别库不可用");
+            }
+            long start = System.currentTimeMillis();
+            // 模型读入native内存，耗时与模型大小有关
+            LoadedModel model = new LoadedModel(directory, new Model(directory.getPath()), sizeOf(directory));
+            Log.d(TAG, "Loaded model " + directory + " (" + model.size() + " bytes) in "
+                + (System.currentTimeMillis() - start) + "ms");
+            synchronized (this) {
+                loaded.put(directory, model);
+                model.refCount++;
+            }
+            return model;
+        }
+    }
+
+    public synchronized int getLoadedCount() {
+        return loaded.size();
+    }
+
+    public synchronized long getLoadedBytes() {
+        long total = 0;
+        for (LoadedModel model : loaded.values()) {
+            total += model.size();
+        }
+        return total;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level < TRIM_MEMORY_RUNNING_LOW) {
+            return;
+        }
+        for (TrimListener listener : trimListeners) {
+            listener.onTrimModels(level);
+        }
+        synchronized (this) {
+            // 没有使用者的模型立即关闭，仍在使用的在最后一次release时关闭
+            Iterator<LoadedModel> iterator = loaded.values().iterator();
+            while (iterator.hasNext()) {
+                LoadedModel model = iterator.next();
+                if (model.refCount == 0) {
+                    iterator.remove();
+                    model.model.close();
+                }
+            }
+            trimPending = !loaded.isEmpty();
+        }
+        Log.d(TAG, "Trimmed loaded models at level " + level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private synchronized void release(LoadedModel model) {
+        if (model.refCount <= 0) {
+            return;
+        }
+        model.refCount--;
+        if (model.refCount == 0 && trimPending) {
+            loaded.remove(model.directory);
+            model.model.close();
+            trimPending = !loaded.isEmpty();
+        }
+    }
+
+    private synchronized boolean isLoaded(File directory) {
+        return loaded.containsKey(directory);
+    }
+
+    private File getSideloadedDirectory(String name) {
+        return new File(modelDirectory, name);
+    }
+
+    /**
+     * Vosk模型目录至少包含声学模型和配置
+     */
+    static boolean isModelDirectory(File directory) {
+        return new File(directory, "am").isDirectory() && new File(directory, "conf").isDirectory();
+    }
+
+    private synchronized Map<String, BundledModel> loadManifest() {
+        if (manifest != null) {
+            return manifest;
+        }
+        manifest = new HashMap<>();
+        try (InputStream input = context.getAssets().open(MANIFEST_ASSET)) {
+            JSONObject models = new JSONObject(readFully(input)).getJSONObject("models");
+            Iterator<String> names = models.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                JSONObject entry = models.getJSONObject(name);
+                manifest.put(name, new BundledModel(entry.getString("asset"), entry.getInt("version")));
+            }
+        } catch (FileNotFoundException e) {
+            // 没有打包任何模型
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error reading model manifest", e);
+        }
+        return manifest;
+    }
+
+    private boolean isExtracted(File target, BundledModel bundled) {
+        File uuid = new File(target, UUID_FILE);
+        if (!uuid.isFile()) {
+            return false;
+        }
+        try (InputStream copied = new FileInputStream(uuid);
+             InputStream asset = context.getAssets().open(bundled.asset + "/" + UUID_FILE)) {
+            return readFully(asset).trim().equals(readFully(copied).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void extract(BundledModel bundled, File target) throws IOException {
+        if (!modelDirectory.isDirectory() && !modelDirectory.mkdirs()) {
+            throw new IOException("无法创建模型目录: " + modelDirectory);
+        }
+        File temp = new File(target.getPath() + ".tmp");
+        deleteRecursively(temp);
+        deleteRecursively(target);
+        long start = System.currentTimeMillis();
+
+        AssetManager assets = context.getAssets();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        // uuid最后写入，复制中断时目录不会被当作完整的模型
+        copyAssetDirectory(assets, bundled.asset, temp, true, buffer);
+        copyAsset(assets, bundled.asset + "/" + UUID_FILE, new File(temp, UUID_FILE), buffer);
+        if (!isModelDirectory(temp)) {
+            deleteRecursively(temp);
+            throw new IOException("离线模型不完整: " + bundled.asset);
+        }
+        if (!temp.renameTo(target)) {
+            deleteRecursively(temp);
+            throw new IOException("无法写入离线模型: " + target);
+        }
+        Log.d(TAG, "Extracted " + bundled.asset + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * 递归复制assets中的目录；root为true时跳过顶层的uuid，由调用方最后写入
+     */
+    private static void copyAssetDirectory(AssetManager assets, String path, File target, boolean root,
+                                           byte[] buffer) throws IOException {
+        String[] children = assets.list(path);
+        if (children == null || children.length == 0) {
+            throw new FileNotFoundException("未找到离线模型: " + path);
+        }
+        if (!target.isDirectory() && !target.mkdirs()) {
+            throw new IOException("无法创建模型目录: " + target);
+        }
+        for (String child : children) {
+            String childPath = path + "/" + child;
+            File childTarget = new File(target, child);
+            String[] grandChildren = assets.list(childPath);
+            if (grandChildren != null && grandChildren.length > 0) {
+                copyAssetDirectory(assets, childPath, childTarget, false, buffer);
+            } else if (!root || !UUID_FILE.equals(child)) {
+                copyAsset(assets, childPath, childTarget, buffer);
+            }
+        }
+    }
+
+    private static void copyAsset(AssetManager assets, String path, File target, byte[] buffer) throws IOException {
+        try (InputStream input = assets.open(path);
+             FileOutputStream output = new FileOutputStream(target)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            output.getFD().sync();
+        }
+    }
+
+    private void deleteOtherVersions(String name, File current) {
+        File[] files = modelDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        String prefix = name + "-v";
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && !file.equals(current) && !isLoaded(file)
+                && !deleteRecursively(file)) {
+                Log.w(TAG, "Unable to delete old model " + file);
+            }
+        }
+    }
+
+    private static boolean deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        return !file.exists() || file.delete();
+    }
+
+    private static long sizeOf(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.length();
+        }
+        long total = 0;
+        for (File child : children) {
+            total += sizeOf(child);
+        }
+        return total;
+    }
+
+    private static String readFully(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,30 @@
+package com.shinestar;
+
+import android.os.Process;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为线程池创建带名称和Android线程优先级的线程，便于在systrace/ANR日志中定位
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final int threadPriority;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    public NamedThreadFactory(String namePrefix, int threadPriority) {
+        this.namePrefix = namePrefix;
+        this.threadPriority = threadPriority;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(threadPriority);
+            runnable.run();
+        }, namePrefix + "-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,166 @@
+package com.shinestar;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.vosk.LibVosk;
+import org.vosk.LogLevel;
+import org.vosk.Recognizer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 本地识别引擎（Vosk，vosk-android依赖中的libvosk.so经JNA调用）的封装。
+ * 模型由ModelAssetManager加载，多个识别器共享同一个已加载的模型。
+ * 结果格式：中间结果 {"partial": "..."}，最终结果 {"text": "...", "result": [{"word", "conf", "start", "end"}]}。
+ * 同一实例只能在一个线程上使用。
+ */
+public class OfflineRecognizer {
+    private static final String TAG = "OfflineRecognizer";
+
+    private static Boolean libraryLoaded;
+
+    // 识别器释放后才能归还模型
+    private ModelAssetManager.LoadedModel model;
+    private Recognizer recognizer;
+
+    /**
+     * 加载native库，失败时（如设备ABI没有对应的so）返回false
+     */
+    public static synchronized boolean isLibraryAvailable() {
+        if (libraryLoaded == null) {
+            try {
+                // 第一次调用LibVosk时注册native库，同时降低引擎的日志级别
+                LibVosk.setLogLevel(LogLevel.WARNINGS);
+                libraryLoaded = true;
+            } catch (LinkageError e) {
+                Log.w(TAG, "Offline recognition library not available", e);
+                libraryLoaded = false;
+            }
+        }
+        return libraryLoaded;
+    }
+
+    /**
+     * 在已加载的模型上创建识别器，成功后由识别器持有model，release时一并归还；
+     * 不要在主线程调用
+     */
+    public static OfflineRecognizer create(ModelAssetManager.LoadedModel model, int sampleRate) throws IOException {
+        if (!isLibraryAvailable()) {
+            throw new IOException("离线识别库不可用");
+        }
+        Recognizer recognizer = new Recognizer(model.model(), sampleRate);
+        // 最终结果带每个词的置信度，用于计算句子置信度
+        recognizer.setWords(true);
+        return new OfflineRecognizer(model, recognizer);
+    }
+
+    private OfflineRecognizer(ModelAssetManager.LoadedModel model, Recognizer recognizer) {
+        this.model = model;
+        this.recognizer = recognizer;
+    }
+
+    public File getModelDirectory() {
+        return model.getDirectory();
+    }
+
+    /**
+     * 送入PCM16单声道数据，检测到一句话结束时返回true，此时应调用getResult
+     */
+    public boolean acceptWaveform(byte[] pcm, int length) {
+        return checkRecognizer().acceptWaveForm(pcm, length);
+    }
+
+    public String getPartialResult() {
+        return checkRecognizer().getPartialResult();
+    }
+
+    public String getResult() {
+        return checkRecognizer().getResult();
+    }
+
+    /**
+     * 输入结束时取出剩余音频的识别结果
+     */
+    public String getFinalResult() {
+        return checkRecognizer().getFinalResult();
+    }
+
+    /**
+     * 清空解码状态，开始新的会话
+     */
+    public void reset() {
+        checkRecognizer().reset();
+    }
+
+    public void release() {
+        if (recognizer != null) {
+            recognizer.close();
+            recognizer = null;
+            model.release();
+        }
+    }
+
+    /**
+     * 供ProviderRace使用的适配，结果解析为Alternative；release时一并释放本识别器
+     */
+    public ProviderRace.SegmentRecognizer asSegmentRecognizer() {
+        return new ProviderRace.SegmentRecognizer() {
+            @Override
+            public boolean acceptWaveform(byte[] pcm, int length) {
+                return OfflineRecognizer.this.acceptWaveform(pcm, length);
+            }
+
+            @Override
+            public RecognizeResponseParser.Alternative getResult() throws JSONException {
+                return parseResult(OfflineRecognizer.this.getResult());
+            }
+
+            @Override
+            public RecognizeResponseParser.Alternative getFinalResult() throws JSONException {
+                return parseResult(OfflineRecognizer.this.getFinalResult());
+            }
+
+            @Override
+            public void reset() {
+                OfflineRecognizer.this.reset();
+            }
+
+            @Override
+            public void release() {
+                OfflineRecognizer.this.release();
+            }
+        };
+    }
+
+    /**
+     * 解析getResult/getFinalResult返回的最终结果，句子置信度取各词置信度的平均值；没有识别出文字时返回null
+     */
+    public static RecognizeResponseParser.Alternative parseResult(String json) throws JSONException {
+        JSONObject result = new JSONObject(json);
+        String text = result.optString("text", "");
+        if (text.isEmpty()) {
+            return null;
+        }
+        double confidence = 0.0;
+        JSONArray words = result.optJSONArray("result");
+        if (words != null && words.length() > 0) {
+            double total = 0;
+            for (int i = 0; i < words.length(); i++) {
+                total += words.getJSONObject(i).optDouble("conf", 0.0);
+            }
+            confidence = total / words.length();
+        }
+        return new RecognizeResponseParser.Alternative(text, confidence);
+    }
+
+    private Recognizer checkRecognizer() {
+        if (recognizer == null) {
+            throw new IllegalStateException("Offline recognizer already released");
+        }
+        return recognizer;
+    }
+}
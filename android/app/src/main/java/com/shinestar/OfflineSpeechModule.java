@@ -0,0 +1,686 @@
+package com.shinestar;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 离线语音识别：在与GoogleCloudSpeechModule相同的16kHz采集路径上运行本地识别引擎，
+ * 不依赖网络和Google Play Services，发出与另外两个模块相同的事件。
+ * 模型（Vosk模型目录）由ModelAssetManager复制和加载，在首次选择离线识别（loadModel）或第一次开始识别时加载并保留，
+ * 切换语言或模型时才重新加载；内存紧张时释放空闲的识别器。
+ */
+public class OfflineSpeechModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "OfflineSpeechModule";
+    private static final int PERMISSION_REQUEST_CODE = 789;
+
+    // 音频参数
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
+    private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
+    private static final int BUFFER_SIZE = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT);
+
+    // 采集与识别之间的环形缓冲区，识别暂时跟不上时最多缓存10秒音频
+    private static final int RING_BUFFER_BYTES = SAMPLE_RATE * 2 * 10;
+    private static final long RING_READ_TIMEOUT_MS = 100;
+    private static final int CAPTURE_FRAME_COUNT = 4;
+    private static final long FRAME_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long SHUTDOWN_TIMEOUT_MS = 2000;
+
+    private static final String METRICS_FILE = "speech_metrics_offline.json";
+
+    private final ReactApplicationContext reactContext;
+    // 采集线程（音频优先级）、识别线程、启停控制线程
+    private final ExecutorService captureExecutor;
+    private final ExecutorService recognitionExecutor;
+    private final ExecutorService controlExecutor;
+    private final Handler mainHandler;
+    private final BridgeEventDispatcher eventDispatcher;
+    private final SpeechMetrics metrics;
+    // 采集参数改变帧大小时由采集线程替换
+    private volatile PcmFramePool captureFramePool;
+    private final ModelAssetManager modelManager;
+    private final ModelAssetManager.TrimListener trimListener;
+    private final ProviderRouter router;
+    private final ProviderRouter.Provider routerProvider;
+
+    private AudioRecord audioRecord;
+    // 创建audioRecord时使用的采集参数
+    private AudioCaptureConfig audioRecordConfig;
+    private volatile AudioCaptureConfig captureConfig;
+    private final AtomicBoolean isListening;
+    private volatile String currentLanguage;
+    private volatile String customModelPath;
+    private volatile PcmRingBuffer captureBuffer;
+    // 由this保护写入；识别线程之外只在加载和释放时使用
+    private volatile OfflineRecognizer recognizer;
+    // 正在使用识别器的会话数，由this保护，为0时才能因内存压力释放识别器
+    private int activeSessions;
+    private boolean releaseWhenIdle;
+    private volatile long modelLoadMs;
+
+    public OfflineSpeechModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.captureExecutor = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("OfflineSpeech-capture", Process.THREAD_PRIORITY_URGENT_AUDIO));
+        this.recognitionExecutor = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("OfflineSpeech-recognize", Process.THREAD_PRIORITY_AUDIO));
+        this.controlExecutor = Executors.newSingleThreadExecutor(
+            new NamedThreadFactory("OfflineSpeech-control", Process.THREAD_PRIORITY_DEFAULT));
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.eventDispatcher = BridgeEventDispatcher.create(reactContext);
+        this.metrics = new SpeechMetrics("OfflineSpeech");
+        this.captureConfig = AudioCaptureConfig.DEFAULT;
+        this.captureFramePool = new PcmFramePool(CAPTURE_FRAME_COUNT, BUFFER_SIZE);
+        this.isListening = new AtomicBoolean(false);
+        this.currentLanguage = "en-US";
+        this.modelManager = MainApplication.getModelAssetManager(reactContext);
+        this.trimListener = level -> releaseIdleRecognizer();
+        modelManager.addTrimListener(trimListener);
+        this.router = MainApplication.getProviderRouter();
+        this.routerProvider = new ProviderRouter.Provider() {
+            @Override
+            public String getId() {
+                return ProviderRace.Provider.OFFLINE.getId();
+            }
+
+            @Override
+            public boolean isAvailable() {
+                return OfflineRecognizer.isLibraryAvailable() && hasModel(currentLanguage);
+            }
+
+            @Override
+            public boolean requiresNetwork() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 由OfflineSpeechPackage注册到共享的ProviderRouter
+     */
+    public ProviderRouter.Provider getRouterProvider() {
+        return routerProvider;
+    }
+
+    @Override
+    public String getName() {
+        return "OfflineSpeechModule";
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        super.onCatalystInstanceDestroy();
+        modelManager.removeTrimListener(trimListener);
+        router.unregister(routerProvider);
+        isListening.set(false);
+        PcmRingBuffer ring = captureBuffer;
+        if (ring != null) {
+            ring.close();
+        }
+
+        // 采集线程退出后再释放AudioRecord，识别线程处理完剩余音频后释放模型
+        shutdownExecutor(controlExecutor);
+        shutdownExecutor(captureExecutor);
+        stopAudioRecording();
+        shutdownExecutor(recognitionExecutor);
+        synchronized (this) {
+            if (recognizer != null) {
+                recognizer.release();
+                recognizer = null;
+            }
+        }
+        metrics.close();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    @ReactMethod
+    public void startListening(String language, Promise promise) {
+        if (isListening.get()) {
+            promise.reject("ALREADY_LISTENING", "Offline speech recognition is already active");
+            return;
+        }
+
+        if (!checkPermission()) {
+            requestPermission(promise);
+            return;
+        }
+
+        if (!OfflineRecognizer.isLibraryAvailable()) {
+            promise.reject("NO_ENGINE", "离线识别引擎不可用");
+            return;
+        }
+
+        this.currentLanguage = language;
+        metrics.onSessionStart();
+
+        captureExecutor.execute(() -> {
+            OfflineRecognizer activeRecognizer;
+            try {
+                // 首次使用或切换模型时在采集线程上加载，不占用主线程
+                activeRecognizer = acquireRecognizer(language);
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading offline model", e);
+                router.recordFailure(routerProvider.getId());
+                sendError("MODEL_ERROR", e.getMessage());
+                mainHandler.post(() -> promise.reject("MODEL_ERROR", e.getMessage()));
+                return;
+            }
+            try {
+                startAudioRecording();
+            } catch (Exception e) {
+                Log.e(TAG, "Error starting offline speech recognition", e);
+                releaseSession();
+                mainHandler.post(() -> promise.reject("START_ERROR", e.getMessage()));
+                return;
+            }
+            mainHandler.post(() -> {
+                sendEvent("onStart", null);
+                sendEvent("onReadyForSpeech", null);
+                promise.resolve("Started offline speech recognition");
+            });
+            processAudioStream(activeRecognizer);
+        });
+    }
+
+    @ReactMethod
+    public void stopListening(Promise promise) {
+        if (!isListening.get()) {
+            promise.reject("NOT_LISTENING", "Offline speech recognition is not active");
+            return;
+        }
+
+        controlExecutor.execute(() -> {
+            try {
+                stopAudioRecording();
+                mainHandler.post(() -> {
+                    sendEvent("onStop", null);
+                    promise.resolve("Stopped offline speech recognition");
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Error stopping offline speech recognition", e);
+                mainHandler.post(() -> {
+                    promise.reject("STOP_ERROR", e.getMessage());
+                });
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setLanguage(String language, Promise promise) {
+        try {
+            this.currentLanguage = language;
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("LANGUAGE_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * 预先加载模型，在选择离线识别时调用，避免第一次开始识别时等待复制和加载
+     */
+    @ReactMethod
+    public void loadModel(String language, Promise promise) {
+        if (!OfflineRecognizer.isLibraryAvailable()) {
+            promise.reject("NO_ENGINE", "离线识别引擎不可用");
+            return;
+        }
+
+        controlExecutor.execute(() -> {
+            try {
+                obtainRecognizer(language);
+                mainHandler.post(() -> promise.resolve(modelLoadMs));
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading offline model", e);
+                mainHandler.post(() -> promise.reject("MODEL_ERROR", e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * 指定模型目录，传null恢复按语言查找默认路径
+     */
+    @ReactMethod
+    public void setModelPath(String path, Promise promise) {
+        try {
+            this.customModelPath = path;
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("MODEL_PATH_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void configureEventRates(ReadableMap rates, Promise promise) {
+        try {
+            ReadableMapKeySetIterator iterator = rates.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String eventName = iterator.nextKey();
+                eventDispatcher.setMaxRate(eventName, rates.getInt(eventName));
+            }
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("EVENT_RATE_ERROR", e.getMessage());
+        }
+    }
+
+    /**
+     * 设置麦克风采集参数，下一次开始识别时生效；识别器始终接收16kHz单声道PCM16
+     */
+    @ReactMethod
+    public void configureCapture(ReadableMap options, Promise promise) {
+        try {
+            AudioCaptureConfig config = AudioCaptureConfig.fromOptions(options, captureConfig, reactContext);
+            captureConfig = config;
+            promise.resolve(config.toWritableMap());
+        } catch (IllegalArgumentException e) {
+            promise.reject("INVALID_CAPTURE_CONFIG", e.getMessage());
+        } catch (Exception e) {
+            promise.reject("CONFIG_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void isAvailable(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+
+            boolean hasPermission = checkPermission();
+            boolean hasEngine = OfflineRecognizer.isLibraryAvailable();
+            boolean hasModel = hasModel(currentLanguage);
+
+            result.putBoolean("available", hasPermission && hasEngine && hasModel);
+            result.putBoolean("hasPermission", hasPermission);
+            result.putBoolean("hasEngine", hasEngine);
+            result.putBoolean("hasModel", hasModel);
+            result.putString("deviceInfo", getDeviceInfo());
+
+            if (!hasPermission) {
+                result.putString("reason", "缺少麦克风权限");
+            } else if (!hasEngine) {
+                result.putString("reason", "离线识别引擎不可用");
+            } else if (!hasModel) {
+                result.putString("reason", "未找到离线模型");
+            }
+
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("CHECK_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getServiceInfo(Promise promise) {
+        try {
+            WritableMap result = Arguments.createMap();
+            result.putBoolean("available", checkPermission() && OfflineRecognizer.isLibraryAvailable() && hasModel(currentLanguage));
+            result.putString("serviceName", "Offline Speech Recognition");
+            result.putString("currentLanguage", currentLanguage);
+            result.putString("sampleRate", String.valueOf(SAMPLE_RATE));
+            result.putMap("captureConfig", captureConfig.toWritableMap());
+            OfflineRecognizer loaded = recognizer;
+            result.putBoolean("modelLoaded", loaded != null);
+            if (loaded != null) {
+                result.putString("modelPath", loaded.getModelDirectory().getAbsolutePath());
+            }
+            result.putDouble("modelLoadMs", modelLoadMs);
+            result.putInt("loadedModels", modelManager.getLoadedCount());
+            result.putDouble("loadedModelBytes", modelManager.getLoadedBytes());
+            PcmRingBuffer ring = captureBuffer;
+            if (ring != null) {
+                result.putDouble("captureOverruns", ring.getOverruns());
+                result.putDouble("captureBufferedBytes", ring.getBufferedBytes());
+            }
+            result.putInt("captureFramesAvailable", captureFramePool.getAvailable());
+            result.putString("deviceInfo", getDeviceInfo());
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("SERVICE_INFO_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        try {
+            WritableMap result = metrics.toWritableMap();
+            PcmRingBuffer ring = captureBuffer;
+            long liveOverruns = ring != null && isListening.get() ? ring.getOverruns() : 0;
+            result.putDouble("captureOverruns", metrics.getCaptureOverruns() + liveOverruns);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void setMetricsDumpInterval(int intervalMs, Promise promise) {
+        try {
+            File file = new File(reactContext.getFilesDir(), METRICS_FILE);
+            metrics.setFileDump(file, intervalMs);
+            promise.resolve(intervalMs > 0 ? file.getAbsolutePath() : null);
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", e.getMessage());
+        }
+    }
+
+    private boolean hasModel(String language) {
+        String path = customModelPath;
+        return path != null ? ModelAssetManager.isModelDirectory(new File(path)) : modelManager.isAvailable(language);
+    }
+
+    private File resolveModelDirectory(String language) throws IOException {
+        String path = customModelPath;
+        if (path != null) {
+            File directory = new File(path);
+            if (!ModelAssetManager.isModelDirectory(directory)) {
+                throw new IOException("离线模型不存在: " + path);
+            }
+            return directory;
+        }
+        // 打包的模型首次使用时在这里复制
+        return modelManager.resolve(language);
+    }
+
+    private synchronized OfflineRecognizer obtainRecognizer(String language) throws IOException {
+        File modelDirectory = resolveModelDirectory(language);
+        if (recognizer != null && recognizer.getModelDirectory().equals(modelDirectory)) {
+            return recognizer;
+        }
+        releaseRecognizerLocked();
+        long start = SystemClock.elapsedRealtime();
+        ModelAssetManager.LoadedModel model = modelManager.acquire(modelDirectory);
+        try {
+            recognizer = OfflineRecognizer.create(model, SAMPLE_RATE);
+        } catch (IOException | RuntimeException e) {
+            model.release();
+            throw e;
+        }
+        modelLoadMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "Loaded offline model " + modelDirectory + " in " + modelLoadMs + "ms");
+        return recognizer;
+    }
+
+    /**
+     * 取得识别器并登记一个会话，会话结束时调用releaseSession
+     */
+    private synchronized OfflineRecognizer acquireRecognizer(String language) throws IOException {
+        OfflineRecognizer active = obtainRecognizer(language);
+        activeSessions++;
+        return active;
+    }
+
+    private synchronized void releaseSession() {
+        activeSessions--;
+        if (activeSessions == 0 && releaseWhenIdle) {
+            releaseWhenIdle = false;
+            releaseRecognizerLocked();
+        }
+    }
+
+    /**
+     * 内存紧张时释放识别器，让模型可以被关闭；会话进行中时等会话结束再释放
+     */
+    private synchronized void releaseIdleRecognizer() {
+        if (activeSessions > 0) {
+            releaseWhenIdle = true;
+        } else {
+            releaseRecognizerLocked();
+        }
+    }
+
+    private void releaseRecognizerLocked() {
+        OfflineRecognizer previous = recognizer;
+        recognizer = null;
+        if (previous == null) {
+            return;
+        }
+        if (recognitionExecutor.isShutdown()) {
+            // 模块销毁过程中，识别线程已不再接受任务
+            previous.release();
+        } else {
+            // 上一次会话可能仍在识别线程上处理剩余音频，排在其后释放
+            recognitionExecutor.execute(previous::release);
+        }
+    }
+
+    private void startAudioRecording() throws Exception {
+        if (audioRecord != null) {
+            audioRecord.release();
+        }
+
+        AudioCaptureConfig config = captureConfig;
+        audioRecord = config.createAudioRecord();
+        audioRecordConfig = config;
+
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            throw new Exception("无法初始化音频录制");
+        }
+        if (captureFramePool.getFrameBytes() != config.getBufferSize()) {
+            captureFramePool = new PcmFramePool(CAPTURE_FRAME_COUNT, config.getBufferSize());
+        }
+
+        isListening.set(true);
+        audioRecord.startRecording();
+    }
+
+    private void stopAudioRecording() {
+        isListening.set(false);
+
+        if (audioRecord != null) {
+            audioRecord.stop();
+            audioRecord.release();
+            audioRecord = null;
+        }
+    }
+
+    private void processAudioStream(OfflineRecognizer activeRecognizer) {
+        // 识别跟不上时丢弃最早的音频，保证采集线程不被阻塞
+        PcmRingBuffer ring = new PcmRingBuffer(RING_BUFFER_BYTES, PcmRingBuffer.OverflowPolicy.DROP_OLDEST, null);
+        captureBuffer = ring;
+        recognitionExecutor.execute(() -> recognizeCapturedAudio(ring, activeRecognizer));
+
+        PcmFramePool framePool = captureFramePool;
+        // 非16kHz单声道PCM16时在采集线程上转换，转换结果写入预先分配的缓冲区
+        PcmResampler resampler = audioRecordConfig.createResampler(SAMPLE_RATE);
+        ByteBuffer converted = resampler.isPassthrough()
+            ? null
+            : ByteBuffer.allocateDirect(resampler.maxOutputBytes(framePool.getFrameBytes()));
+        while (isListening.get() && audioRecord != null) {
+            PcmFrame frame = framePool.acquire();
+            if (frame == null) {
+                LockSupport.parkNanos(FRAME_WAIT_NANOS);
+                continue;
+            }
+            try {
+                ByteBuffer data = frame.buffer();
+                int bytesRead = audioRecord.read(data, data.capacity());
+                if (bytesRead > 0) {
+                    metrics.onAudio();
+                    data.limit(bytesRead);
+                    if (converted == null) {
+                        ring.write(data);
+                    } else {
+                        converted.clear();
+                        resampler.process(data, converted);
+                        converted.flip();
+                        ring.write(converted);
+                    }
+                }
+            } finally {
+                frame.release();
+            }
+        }
+
+        ring.close();
+    }
+
+    private void recognizeCapturedAudio(PcmRingBuffer ring, OfflineRecognizer activeRecognizer) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        String lastPartial = "";
+        try {
+            activeRecognizer.reset();
+            int bytesRead;
+            while ((bytesRead = ring.read(buffer, 0, buffer.length, RING_READ_TIMEOUT_MS)) >= 0) {
+                if (bytesRead == 0) {
+                    continue;
+                }
+                sendRms(buffer, bytesRead);
+                long decodeStart = System.nanoTime();
+                if (activeRecognizer.acceptWaveform(buffer, bytesRead)) {
+                    String result = activeRecognizer.getResult();
+                    // 句子结束时的解码耗时计入路由的耗时统计
+                    router.recordSuccess(routerProvider.getId(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - decodeStart));
+                    emitFinalResult(result);
+                    lastPartial = "";
+                } else {
+                    // 中间结果没有变化时不重复发送
+                    String partial = new JSONObject(activeRecognizer.getPartialResult()).optString("partial", "");
+                    if (!partial.isEmpty() && !partial.equals(lastPartial)) {
+                        lastPartial = partial;
+                        emitPartialResult(partial);
+                    }
+                }
+            }
+            emitFinalResult(activeRecognizer.getFinalResult());
+        } catch (JSONException | RuntimeException e) {
+            Log.e(TAG, "Error running offline recognition", e);
+            router.recordFailure(routerProvider.getId());
+            sendError("RECOGNITION_ERROR", "离线识别失败: " + e.getMessage());
+        } finally {
+            metrics.addCaptureOverruns(ring.getOverruns());
+            ring.release();
+            releaseSession();
+        }
+    }
+
+    private void emitPartialResult(String text) {
+        metrics.onPartialResult();
+        WritableMap params = Arguments.createMap();
+        WritableArray resultsArray = Arguments.createArray();
+        WritableMap result = Arguments.createMap();
+        result.putString("text", text);
+        result.putDouble("confidence", 0.0);
+        resultsArray.pushMap(result);
+        params.putArray("results", resultsArray);
+        params.putBoolean("isFinal", false);
+        sendEvent("onPartialResults", params);
+    }
+
+    private void emitFinalResult(String json) throws JSONException {
+        RecognizeResponseParser.Alternative result = OfflineRecognizer.parseResult(json);
+        if (result == null) {
+            return;
+        }
+
+        metrics.onFinalResult();
+        WritableMap params = Arguments.createMap();
+        WritableArray resultsArray = Arguments.createArray();
+        WritableMap resultMap = Arguments.createMap();
+        resultMap.putString("text", result.transcript);
+        resultMap.putDouble("confidence", result.confidence);
+        resultsArray.pushMap(resultMap);
+        params.putArray("results", resultsArray);
+        params.putBoolean("isFinal", true);
+        sendEvent("onResults", params);
+    }
+
+    private void sendRms(byte[] pcm, int length) {
+        long sumSquares = 0;
+        int samples = length / 2;
+        for (int i = 0; i < samples; i++) {
+            int sample = (short) ((pcm[i * 2] & 0xFF) | (pcm[i * 2 + 1] << 8));
+            sumSquares += (long) sample * sample;
+        }
+        double rms = samples == 0 ? 0 : Math.sqrt((double) sumSquares / samples);
+        // 相对满幅的分贝值（dBFS），静音约-90，满幅为0
+        double rmsdB = 20 * Math.log10(Math.max(rms, 1) / Short.MAX_VALUE);
+        WritableMap params = Arguments.createMap();
+        params.putDouble("rmsdB", rmsdB);
+        sendEvent("onRmsChanged", params);
+    }
+
+    private void shutdownExecutor(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendError(String error, String message) {
+        metrics.onError(error, message);
+        WritableMap errorMap = Arguments.createMap();
+        errorMap.putString("error", error);
+        errorMap.putString("message", message);
+        sendEvent("onError", errorMap);
+    }
+
+    private boolean checkPermission() {
+        return ContextCompat.checkSelfPermission(reactContext, Manifest.permission.RECORD_AUDIO)
+               == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private void requestPermission(Promise promise) {
+        if (getCurrentActivity() != null) {
+            ActivityCompat.requestPermissions(
+                getCurrentActivity(),
+                new String[]{Manifest.permission.RECORD_AUDIO},
+                PERMISSION_REQUEST_CODE
+            );
+            promise.reject("PERMISSION_DENIED", "需要麦克风权限");
+        } else {
+            promise.reject("NO_ACTIVITY", "无法请求权限");
+        }
+    }
+
+    private String getDeviceInfo() {
+        try {
+            return Build.MANUFACTURER + " " + Build.MODEL + " (Android " + Build.VERSION.RELEASE + ")";
+        } catch (Exception e) {
+            return "Unknown device";
+        }
+    }
+
+    private void sendEvent(String eventName, WritableMap params) {
+        // 由本模块的分发器按帧合并发送
+        eventDispatcher.dispatch(eventName, params);
+    }
+}
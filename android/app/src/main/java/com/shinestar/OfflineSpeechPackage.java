@@ -0,0 +1,29 @@
+package com.shinestar;
+
+import com.facebook.react.ReactPackage;
+import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.uimanager.ViewManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class OfflineSpeechPackage implements ReactPackage {
+    // 不需要网络，作为云端识别的后备
+    private static final int ROUTER_PRIORITY = 1;
+
+    @Override
+    public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
+        List<NativeModule> modules = new ArrayList<>();
+        OfflineSpeechModule module = new OfflineSpeechModule(reactContext);
+        MainApplication.getProviderRouter().register(module.getRouterProvider(), ROUTER_PRIORITY);
+        modules.add(module);
+        return modules;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,359 @@
+package com.shinestar;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 采集线程（单生产者）与处理线程（单消费者）之间的PCM环形缓冲区。
+ * 缓冲区预先分配，读写位置用原子变量维护，不加锁；
+ * 写满时按OverflowPolicy处理，并记录溢出次数。
+ */
+public class PcmRingBuffer {
+    private static final String TAG = "PcmRingBuffer";
+    // 写入磁盘的溢出数据上限，超过后丢弃新数据
+    private static final long MAX_SPILL_BYTES = 64L * 1024 * 1024;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // admit的返回值：写入环形缓冲区、写入磁盘或丢弃
+    private static final int TARGET_NONE = 0;
+    private static final int TARGET_RING = 1;
+    private static final int TARGET_SPILL = 2;
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        BLOCK,
+        SPILL_TO_DISK
+    }
+
+    private final byte[] buffer;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final File spillFile;
+
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong spillWritePosition = new AtomicLong();
+    private final AtomicLong spillReadPosition = new AtomicLong();
+
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    private volatile FileChannel spillChannel;
+    private volatile boolean closed;
+    private volatile Thread waitingConsumer;
+    // 仅生产者访问：溢出数据尚未读完前，新数据继续写入磁盘以保证顺序
+    private boolean spilling;
+
+    public PcmRingBuffer(int minCapacity, OverflowPolicy policy, File spillFile) {
+        int capacity = Integer.highestOneBit(Math.max(minCapacity, 2) - 1) << 1;
+        this.buffer = new byte[capacity];
+        this.mask = capacity - 1;
+        this.policy = policy;
+        this.spillFile = spillFile;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * 生产者写入数据，单次写入不能超过容量
+     */
+    public void write(byte[] data, int offset, int count) {
+        switch (admit(count)) {
+            case TARGET_RING:
+                long write = writePosition.get();
+                int index = (int) (write & mask);
+                int firstPart = Math.min(count, buffer.length - index);
+                System.arraycopy(data, offset, buffer, index, firstPart);
+                if (firstPart < count) {
+                    System.arraycopy(data, offset + firstPart, buffer, 0, count - firstPart);
+                }
+                commitWrite(write + count);
+                break;
+            case TARGET_SPILL:
+                writeSpill(ByteBuffer.wrap(data, offset, count));
+                signalConsumer();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 写入source中[position, limit)的数据并推进position，可直接传入PcmFrame的direct buffer
+     */
+    public void write(ByteBuffer source) {
+        int count = source.remaining();
+        switch (admit(count)) {
+            case TARGET_RING:
+                long write = writePosition.get();
+                int index = (int) (write & mask);
+                int firstPart = Math.min(count, buffer.length - index);
+                source.get(buffer, index, firstPart);
+                if (firstPart < count) {
+                    source.get(buffer, 0, count - firstPart);
+                }
+                commitWrite(write + count);
+                break;
+            case TARGET_SPILL:
+                writeSpill(source);
+                signalConsumer();
+                break;
+            default:
+                source.position(source.limit());
+                break;
+        }
+    }
+
+    /**
+     * 消费者读取数据，无数据时最多等待timeoutMs；
+     * 返回读取的字节数，缓冲区已关闭且数据读完时返回-1
+     */
+    public int read(byte[] dst, int offset, int length, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            int read = tryRead(dst, offset, length);
+            if (read > 0) {
+                return read;
+            }
+            if (closed && isDrained()) {
+                return -1;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return 0;
+            }
+
+            waitingConsumer = Thread.currentThread();
+            if (isDrained() && !closed) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * 生产者结束写入，消费者读完剩余数据后read返回-1
+     */
+    public void close() {
+        closed = true;
+        signalConsumer();
+    }
+
+    /**
+     * 消费者用完后释放磁盘溢出文件
+     */
+    public void release() {
+        FileChannel channel = spillChannel;
+        spillChannel = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing spill file", e);
+            }
+        }
+        if (spillFile != null && spillFile.exists() && !spillFile.delete()) {
+            Log.w(TAG, "Unable to delete spill file " + spillFile);
+        }
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    public long getBufferedBytes() {
+        return writePosition.get() - readPosition.get()
+            + spillWritePosition.get() - spillReadPosition.get();
+    }
+
+    /**
+     * 按溢出策略为一次写入腾出空间，返回数据应写入的位置
+     */
+    private int admit(int count) {
+        if (closed || count <= 0) {
+            return TARGET_NONE;
+        }
+        if (count > buffer.length) {
+            throw new IllegalArgumentException("Write larger than ring buffer capacity: " + count);
+        }
+
+        if (spilling) {
+            if (spillReadPosition.get() < spillWritePosition.get()) {
+                return TARGET_SPILL;
+            }
+            spilling = false;
+        }
+
+        long write = writePosition.get();
+        if (write + count - readPosition.get() > buffer.length) {
+            overruns.incrementAndGet();
+            switch (policy) {
+                case BLOCK:
+                    if (!awaitSpace(write, count)) {
+                        return TARGET_NONE;
+                    }
+                    break;
+                case SPILL_TO_DISK:
+                    if (openSpill()) {
+                        spilling = true;
+                        return TARGET_SPILL;
+                    }
+                    // 无法写磁盘时退化为丢弃最旧数据
+                    dropOldest(write, count);
+                    break;
+                case DROP_OLDEST:
+                default:
+                    dropOldest(write, count);
+                    break;
+            }
+        }
+        return TARGET_RING;
+    }
+
+    private void commitWrite(long position) {
+        writePosition.set(position);
+        signalConsumer();
+    }
+
+    private int tryRead(byte[] dst, int offset, int length) {
+        while (true) {
+            long read = readPosition.get();
+            long available = writePosition.get() - read;
+            if (available <= 0) {
+                return readSpill(dst, offset, length);
+            }
+
+            int count = (int) Math.min(length, available);
+            int index = (int) (read & mask);
+            int firstPart = Math.min(count, buffer.length - index);
+            System.arraycopy(buffer, index, dst, offset, firstPart);
+            if (firstPart < count) {
+                System.arraycopy(buffer, 0, dst, offset + firstPart, count - firstPart);
+            }
+            // 复制期间生产者可能丢弃了最旧数据，此时CAS失败，重新读取
+            if (readPosition.compareAndSet(read, read + count)) {
+                return count;
+            }
+        }
+    }
+
+    private boolean isDrained() {
+        return writePosition.get() == readPosition.get()
+            && spillReadPosition.get() >= spillWritePosition.get();
+    }
+
+    private void dropOldest(long write, int count) {
+        while (true) {
+            long read = readPosition.get();
+            long excess = write + count - read - buffer.length;
+            if (excess <= 0) {
+                return;
+            }
+            if (readPosition.compareAndSet(read, read + excess)) {
+                droppedBytes.addAndGet(excess);
+                return;
+            }
+        }
+    }
+
+    private boolean awaitSpace(long write, int count) {
+        while (write + count - readPosition.get() > buffer.length) {
+            if (closed) {
+                return false;
+            }
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private boolean openSpill() {
+        if (spillChannel != null) {
+            return true;
+        }
+        if (spillFile == null) {
+            return false;
+        }
+        try {
+            spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to open spill file", e);
+            return false;
+        }
+    }
+
+    private void writeSpill(ByteBuffer source) {
+        long position = spillWritePosition.get();
+        int count = source.remaining();
+        if (position + count > MAX_SPILL_BYTES) {
+            droppedBytes.addAndGet(count);
+            source.position(source.limit());
+            return;
+        }
+        try {
+            long target = position;
+            while (source.hasRemaining()) {
+                target += spillChannel.write(source, target);
+            }
+            spilledBytes.addAndGet(count);
+            spillWritePosition.set(position + count);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing spill file", e);
+            droppedBytes.addAndGet(count);
+        }
+    }
+
+    private int readSpill(byte[] dst, int offset, int length) {
+        FileChannel channel = spillChannel;
+        long read = spillReadPosition.get();
+        long available = spillWritePosition.get() - read;
+        if (channel == null || available <= 0) {
+            return 0;
+        }
+
+        int count = (int) Math.min(length, available);
+        try {
+            ByteBuffer target = ByteBuffer.wrap(dst, offset, count);
+            while (target.hasRemaining()) {
+                if (channel.read(target, read + target.position() - offset) < 0) {
+                    break;
+                }
+            }
+            int bytesRead = target.position() - offset;
+            spillReadPosition.set(read + bytesRead);
+            return bytesRead;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading spill file", e);
+            return 0;
+        }
+    }
+
+    private void signalConsumer() {
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.shinestar;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次识别会话中云端识别与离线引擎的竞速。
+ * 处理线程把送去分批上传的同一份PCM同时写入这里的环形缓冲区，每次上传（一个语句或一个窗口）对应一段；
+ * 竞速线程上的离线识别器按相同的段边界识别。每段先到达的可信结果（有文字且置信度不低于阈值）胜出并发出，
+ * 另一方随即取消：离线胜出时取消进行中的云端请求，云端胜出时离线识别器跳过该段剩余的音频。
+ * 两边都没有可信结果时，等两边都交出结果后取置信度较高的非空结果。
+ * 云端被路由判定为不健康时，会话转移到离线引擎：之后的段跳过云端（skipCloud），只由离线引擎识别，不计入竞速记录。
+ */
+public final class ProviderRace {
+    private static final String TAG = "ProviderRace";
+    private static final int RING_BUFFER_BYTES = 16000 * 2 * 10;
+    private static final int READ_BYTES = 3200;
+    private static final long RING_READ_TIMEOUT_MS = 100;
+
+    public enum Provider {
+        CLOUD("google"),
+        OFFLINE("offline");
+
+        private final String id;
+
+        Provider(String id) {
+            this.id = id;
+        }
+
+        /**
+         * 与JS中的提供商id一致
+         */
+        public String getId() {
+            return id;
+        }
+    }
+
+    /**
+     * 竞速线程上使用的离线识别器，由OfflineRecognizer适配
+     */
+    public interface SegmentRecognizer {
+        /**
+         * 送入PCM16单声道数据，检测到一句话结束时返回true，此时应调用getResult
+         */
+        boolean acceptWaveform(byte[] pcm, int length);
+
+        /**
+         * 一句话的结果，没有识别出文字时返回null
+         */
+        RecognizeResponseParser.Alternative getResult() throws Exception;
+
+        /**
+         * 取出剩余音频的结果，没有识别出文字时返回null
+         */
+        RecognizeResponseParser.Alternative getFinalResult() throws Exception;
+
+        void reset();
+
+        void release();
+    }
+
+    /**
+     * 在竞速线程上创建离线识别器，加载模型可能耗时数秒
+     */
+    public interface RecognizerFactory {
+        SegmentRecognizer create() throws Exception;
+    }
+
+    public interface Listener {
+        void onWinner(Segment segment, Provider provider, List<RecognizeResponseParser.Alternative> alternatives);
+
+        /**
+         * 离线先得出可信结果，应取消该段进行中的云端请求
+         */
+        void onCancelCloud(Segment segment);
+    }
+
+    /**
+     * 一次上传对应的一段音频，也用作云端请求的tag
+     */
+    public static final class Segment {
+        final long id;
+        final long endNanos;
+        // 该段最后一个字节之后在竞速音频流中的位置
+        final long endOffset;
+        // 以下由ProviderRace的锁保护
+        boolean decided;
+        List<RecognizeResponseParser.Alternative> cloud;
+        List<RecognizeResponseParser.Alternative> offline;
+        boolean cloudReported;
+        boolean offlineReported;
+        // 故障转移期间没有发给云端
+        boolean cloudSkipped;
+
+        Segment(long id, long endNanos, long endOffset) {
+            this.id = id;
+            this.endNanos = endNanos;
+            this.endOffset = endOffset;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+
+    private final RecognizerFactory recognizerFactory;
+    private final double confidenceThreshold;
+    private final ProviderRaceStats stats;
+    private final ProviderRouter router;
+    private final Listener listener;
+    private final PcmRingBuffer ring;
+    private final ConcurrentLinkedQueue<Segment> boundaries = new ConcurrentLinkedQueue<>();
+
+    // 只在处理线程上访问
+    private long fedBytes;
+    private long nextSegmentId;
+    // 离线识别器无法加载时只剩云端参赛，由this保护
+    private boolean offlineFailed;
+
+    public ProviderRace(RecognizerFactory recognizerFactory, double confidenceThreshold,
+                        ProviderRaceStats stats, ProviderRouter router, File spillFile, Listener listener) {
+        this.recognizerFactory = recognizerFactory;
+        this.confidenceThreshold = confidenceThreshold;
+        this.stats = stats;
+        this.router = router;
+        this.listener = listener;
+        // 离线识别暂时跟不上时溢出到磁盘，不能丢音频，否则段边界会错位
+        this.ring = new PcmRingBuffer(RING_BUFFER_BYTES, PcmRingBuffer.OverflowPolicy.SPILL_TO_DISK, spillFile);
+    }
+
+    /**
+     * 在竞速线程上加载离线识别器并开始识别
+     */
+    public void start(Executor executor) {
+        executor.execute(this::runOffline);
+    }
+
+    /**
+     * 处理线程：写入与送去分批上传完全相同的PCM
+     */
+    public void feed(byte[] data, int offset, int count) {
+        if (count > 0) {
+            ring.write(data, offset, count);
+            fedBytes += count;
+        }
+    }
+
+    /**
+     * 处理线程：当前批次即将上传，之前送入的音频构成新的一段
+     */
+    public Segment endSegment() {
+        Segment segment = new Segment(nextSegmentId++, System.nanoTime(), fedBytes);
+        boundaries.add(segment);
+        return segment;
+    }
+
+    /**
+     * 处理线程：不再有新的音频，离线识别完剩余的段后退出
+     */
+    public void finish() {
+        ring.close();
+    }
+
+    public synchronized boolean isDecided(Segment segment) {
+        return segment.decided;
+    }
+
+    /**
+     * 云端结果，alternatives为null表示请求失败
+     */
+    public void submitCloud(Segment segment, List<RecognizeResponseParser.Alternative> alternatives) {
+        submit(segment, Provider.CLOUD, alternatives);
+    }
+
+    /**
+     * 该段不发给云端，只等离线结果
+     */
+    public synchronized void skipCloud(Segment segment) {
+        segment.cloudSkipped = true;
+        submit(segment, Provider.CLOUD, null);
+    }
+
+    private synchronized void submit(Segment segment, Provider provider, List<RecognizeResponseParser.Alternative> alternatives) {
+        boolean failed = alternatives == null;
+        boolean confident = !failed && isConfident(alternatives);
+        boolean skipped = provider == Provider.CLOUD && segment.cloudSkipped;
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - segment.endNanos);
+        if (!skipped) {
+            stats.onResult(provider, failed, confident, latencyMs);
+        }
+        if (provider == Provider.OFFLINE) {
+            // 云端请求的结果由模块在HTTP层记录
+            if (failed) {
+                router.recordFailure(provider.getId());
+            } else {
+                router.recordSuccess(provider.getId(), latencyMs);
+            }
+        }
+        if (segment.decided) {
+            // 已经输掉这一段
+            return;
+        }
+        if (provider == Provider.CLOUD) {
+            segment.cloud = alternatives;
+            segment.cloudReported = true;
+        } else {
+            segment.offline = alternatives;
+            segment.offlineReported = true;
+        }
+
+        if (confident) {
+            decide(segment, provider, alternatives);
+            return;
+        }
+        boolean otherPending = provider == Provider.CLOUD
+            ? !segment.offlineReported && !offlineFailed
+            : !segment.cloudReported;
+        if (otherPending) {
+            return;
+        }
+        // 两边都没有可信结果，取置信度较高的非空结果
+        double cloudConfidence = topConfidence(segment.cloud);
+        double offlineConfidence = topConfidence(segment.offline);
+        if (cloudConfidence < 0 && offlineConfidence < 0) {
+            segment.decided = true;
+        } else if (cloudConfidence >= offlineConfidence) {
+            decide(segment, Provider.CLOUD, segment.cloud);
+        } else {
+            decide(segment, Provider.OFFLINE, segment.offline);
+        }
+    }
+
+    private void decide(Segment segment, Provider winner, List<RecognizeResponseParser.Alternative> alternatives) {
+        segment.decided = true;
+        segment.cloud = null;
+        segment.offline = null;
+        if (!segment.cloudSkipped) {
+            stats.onRace(winner);
+        }
+        listener.onWinner(segment, winner, alternatives);
+        if (winner == Provider.OFFLINE && !segment.cloudReported) {
+            listener.onCancelCloud(segment);
+        }
+    }
+
+    private boolean isConfident(List<RecognizeResponseParser.Alternative> alternatives) {
+        return !alternatives.isEmpty()
+            && !alternatives.get(0).transcript.isEmpty()
+            && alternatives.get(0).confidence >= confidenceThreshold;
+    }
+
+    /**
+     * 没有非空结果时返回-1
+     */
+    private static double topConfidence(List<RecognizeResponseParser.Alternative> alternatives) {
+        if (alternatives == null || alternatives.isEmpty() || alternatives.get(0).transcript.isEmpty()) {
+            return -1;
+        }
+        return alternatives.get(0).confidence;
+    }
+
+    private void runOffline() {
+        SegmentRecognizer recognizer = null;
+        try {
+            recognizer = recognizerFactory.create();
+        } catch (Exception e) {
+            Log.w(TAG, "Offline recognizer unavailable, racing cloud only", e);
+            router.recordFailure(Provider.OFFLINE.getId());
+            markOfflineFailed();
+        }
+
+        try {
+            recognizeSegments(recognizer);
+        } catch (Exception e) {
+            Log.e(TAG, "Error running offline recognition", e);
+            router.recordFailure(Provider.OFFLINE.getId());
+            markOfflineFailed();
+            drainRing();
+        } finally {
+            if (recognizer != null) {
+                recognizer.release();
+            }
+            ring.release();
+            stats.save();
+        }
+    }
+
+    /**
+     * 按段边界把音频送入识别器；recognizer为null时只消费音频
+     */
+    private void recognizeSegments(SegmentRecognizer recognizer) throws Exception {
+        byte[] buffer = new byte[READ_BYTES];
+        long consumed = 0;
+        StringBuilder text = new StringBuilder();
+        double confidenceSum = 0;
+        int parts = 0;
+        if (recognizer != null) {
+            recognizer.reset();
+        }
+
+        int bytesRead;
+        do {
+            bytesRead = ring.read(buffer, 0, buffer.length, RING_READ_TIMEOUT_MS);
+            int position = 0;
+            // 读到的数据可能跨越段边界，按边界拆开；读取超时或结束时也要处理恰好到达的边界
+            while (true) {
+                Segment segment = boundaries.peek();
+                int remaining = Math.max(bytesRead, 0) - position;
+                int take = segment != null ? (int) Math.min(remaining, segment.endOffset - consumed) : remaining;
+                if (take > 0) {
+                    if (recognizer != null && (segment == null || !isDecided(segment))) {
+                        if (position > 0) {
+                            System.arraycopy(buffer, position, buffer, 0, take);
+                        }
+                        if (recognizer.acceptWaveform(buffer, take)) {
+                            // 段内检测到句子结束，先累积，到段边界时一起提交
+                            RecognizeResponseParser.Alternative part = recognizer.getResult();
+                            if (part != null) {
+                                text.append(text.length() > 0 ? " " : "").append(part.transcript);
+                                confidenceSum += part.confidence;
+                                parts++;
+                            }
+                        }
+                    }
+                    position += take;
+                    consumed += take;
+                }
+                if (segment == null || consumed < segment.endOffset) {
+                    break;
+                }
+                boundaries.poll();
+                if (recognizer != null) {
+                    if (isDecided(segment)) {
+                        // 云端已经胜出，丢弃该段的解码状态
+                        recognizer.reset();
+                    } else {
+                        RecognizeResponseParser.Alternative last = recognizer.getFinalResult();
+                        recognizer.reset();
+                        if (last != null) {
+                            text.append(text.length() > 0 ? " " : "").append(last.transcript);
+                            confidenceSum += last.confidence;
+                            parts++;
+                        }
+                        List<RecognizeResponseParser.Alternative> result = parts == 0
+                            ? Collections.<RecognizeResponseParser.Alternative>emptyList()
+                            : Collections.singletonList(new RecognizeResponseParser.Alternative(text.toString(), confidenceSum / parts));
+                        submit(segment, Provider.OFFLINE, result);
+                    }
+                }
+                text.setLength(0);
+                confidenceSum = 0;
+                parts = 0;
+            }
+        } while (bytesRead >= 0);
+
+        if (!boundaries.isEmpty()) {
+            // 音频没有完整到达（不应发生），剩下的段不再等待离线结果
+            markOfflineFailed();
+            boundaries.clear();
+        }
+    }
+
+    private void markOfflineFailed() {
+        List<Segment> pending;
+        synchronized (this) {
+            offlineFailed = true;
+            pending = new ArrayList<>(boundaries);
+        }
+        // 已经只等离线结果的段按云端结果决出
+        for (Segment segment : pending) {
+            synchronized (this) {
+                if (!segment.decided && segment.cloudReported) {
+                    if (topConfidence(segment.cloud) >= 0) {
+                        decide(segment, Provider.CLOUD, segment.cloud);
+                    } else {
+                        segment.decided = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void drainRing() {
+        byte[] buffer = new byte[READ_BYTES];
+        while (ring.read(buffer, 0, buffer.length, RING_READ_TIMEOUT_MS) >= 0) {
+            // 丢弃
+        }
+        boundaries.clear();
+    }
+}
@@ -0,0 +1,204 @@
+package com.shinestar;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 本机上各识别引擎的竞速记录：参赛次数、获胜次数、给出结果/可信结果/失败的次数及结果耗时（指数滑动平均），
+ * 保存在filesDir下跨会话累积，用来判断这台设备上哪个引擎更快、更可靠。
+ */
+public class ProviderRaceStats {
+    private static final String TAG = "ProviderRaceStats";
+    // 至少比过这么多次才给出偏好
+    private static final int MIN_RACES_FOR_PREFERENCE = 10;
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private static final class Entry {
+        long races;
+        long wins;
+        long results;
+        long confident;
+        long failures;
+        // -1表示还没有结果
+        double latencyMs = -1;
+    }
+
+    private final File file;
+    private final Map<ProviderRace.Provider, Entry> entries = new EnumMap<>(ProviderRace.Provider.class);
+    private boolean loaded;
+    private boolean dirty;
+
+    public ProviderRaceStats(File file) {
+        this.file = file;
+        for (ProviderRace.Provider provider : ProviderRace.Provider.values()) {
+            entries.put(provider, new Entry());
+        }
+    }
+
+    /**
+     * 某个引擎交出了一段的结果（alternatives为null表示失败）
+     */
+    public synchronized void onResult(ProviderRace.Provider provider, boolean failed, boolean confident, long latencyMs) {
+        ensureLoaded();
+        Entry entry = entries.get(provider);
+        if (failed) {
+            entry.failures++;
+        } else {
+            entry.results++;
+            if (confident) {
+                entry.confident++;
+            }
+            entry.latencyMs = entry.latencyMs < 0
+                ? latencyMs
+                : entry.latencyMs + LATENCY_SMOOTHING * (latencyMs - entry.latencyMs);
+        }
+        dirty = true;
+    }
+
+    /**
+     * 一段分出了胜负，所有引擎都计一次参赛
+     */
+    public synchronized void onRace(ProviderRace.Provider winner) {
+        ensureLoaded();
+        for (Map.Entry<ProviderRace.Provider, Entry> entry : entries.entrySet()) {
+            entry.getValue().races++;
+            if (entry.getKey() == winner) {
+                entry.getValue().wins++;
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * 获胜次数最多的引擎，次数相同时取平均耗时更短的；样本不足时返回null
+     */
+    public synchronized ProviderRace.Provider getPreferred() {
+        ensureLoaded();
+        ProviderRace.Provider preferred = null;
+        Entry best = null;
+        for (Map.Entry<ProviderRace.Provider, Entry> entry : entries.entrySet()) {
+            Entry candidate = entry.getValue();
+            if (candidate.races < MIN_RACES_FOR_PREFERENCE) {
+                return null;
+            }
+            if (best == null
+                || candidate.wins > best.wins
+                || (candidate.wins == best.wins && candidate.latencyMs >= 0
+                    && (best.latencyMs < 0 || candidate.latencyMs < best.latencyMs))) {
+                preferred = entry.getKey();
+                best = candidate;
+            }
+        }
+        return preferred;
+    }
+
+    public synchronized void reset() {
+        for (ProviderRace.Provider provider : ProviderRace.Provider.values()) {
+            entries.put(provider, new Entry());
+        }
+        loaded = true;
+        dirty = true;
+        save();
+    }
+
+    /**
+     * 有变化时写入文件，在会话结束时调用
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        // 先写临时文件再改名，崩溃时不会留下写了一半的内容
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<ProviderRace.Provider, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                JSONObject provider = new JSONObject();
+                provider.put("races", value.races);
+                provider.put("wins", value.wins);
+                provider.put("results", value.results);
+                provider.put("confident", value.confident);
+                provider.put("failures", value.failures);
+                provider.put("latencyMs", value.latencyMs);
+                json.put(entry.getKey().getId(), provider);
+            }
+            writer.write(json.toString());
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Error writing race stats to " + temp, e);
+            return;
+        }
+        if (temp.renameTo(file)) {
+            dirty = false;
+        } else {
+            Log.w(TAG, "Error renaming race stats file to " + file);
+        }
+    }
+
+    public synchronized WritableMap toWritableMap() {
+        ensureLoaded();
+        WritableMap result = Arguments.createMap();
+        for (Map.Entry<ProviderRace.Provider, Entry> entry : entries.entrySet()) {
+            Entry value = entry.getValue();
+            WritableMap provider = Arguments.createMap();
+            provider.putDouble("races", value.races);
+            provider.putDouble("wins", value.wins);
+            provider.putDouble("winRate", value.races == 0 ? 0 : (double) value.wins / value.races);
+            provider.putDouble("results", value.results);
+            provider.putDouble("confident", value.confident);
+            provider.putDouble("failures", value.failures);
+            provider.putDouble("latencyMs", value.latencyMs);
+            result.putMap(entry.getKey().getId(), provider);
+        }
+        ProviderRace.Provider preferred = getPreferred();
+        result.putString("preferredProvider", preferred != null ? preferred.getId() : null);
+        return result;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            byte[] bytes = new byte[(int) file.length()];
+            input.readFully(bytes);
+            JSONObject json = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+            for (ProviderRace.Provider provider : ProviderRace.Provider.values()) {
+                JSONObject saved = json.optJSONObject(provider.getId());
+                if (saved == null) {
+                    continue;
+                }
+                Entry entry = entries.get(provider);
+                entry.races = saved.optLong("races", 0);
+                entry.wins = saved.optLong("wins", 0);
+                entry.results = saved.optLong("results", 0);
+                entry.confident = saved.optLong("confident", 0);
+                entry.failures = saved.optLong("failures", 0);
+                entry.latencyMs = saved.optDouble("latencyMs", -1);
+            }
+        } catch (IOException | JSONException e) {
+            // 记录损坏时重新开始统计
+            Log.w(TAG, "Ignoring unreadable race stats " + file, e);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.shinestar;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * speech:recognize结果缓存：以编码后音频的64位哈希、长度以及编码、语言、采样率为键，
+ * 字节完全相同的片段（重复上传、重试和暂存区重传）直接返回上次的识别结果，不再请求网络。
+ * 内存中按LRU保留最多maxEntries条；可选的磁盘层每条一个文件，总大小超过上限时删除最久未使用的文件。
+ * 磁盘文件中保存完整的键，哈希碰撞时按未命中处理。
+ */
+public class RecognitionResultCache {
+    private static final String TAG = "RecognitionResultCache";
+    private static final int FILE_MAGIC = 0x52434143; // "RCAC"
+    private static final String FILE_SUFFIX = ".res";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // xxHash64的常量
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private final File directory;
+    private final LinkedHashMap<String, List<RecognizeResponseParser.Alternative>> memory =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private boolean enabled = true;
+    private int maxEntries;
+    private boolean diskEnabled;
+    private long maxDiskBytes;
+    // -1表示尚未扫描磁盘目录
+    private long diskBytes = -1;
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+
+    public RecognitionResultCache(File directory, int maxEntries, long maxDiskBytes) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * 返回缓存键；缓存关闭时返回null，不计算哈希
+     */
+    public synchronized String keyFor(byte[] audio, int length, String encoding, String language, int sampleRate) {
+        if (!enabled) {
+            return null;
+        }
+        return String.format(Locale.US, "%016x-%x-%s-%s-%d", hash64(audio, length), length, encoding, language, sampleRate);
+    }
+
+    /**
+     * 未命中返回null；磁盘命中时放回内存层
+     */
+    public synchronized List<RecognizeResponseParser.Alternative> get(String key) {
+        if (key == null || !enabled) {
+            return null;
+        }
+        List<RecognizeResponseParser.Alternative> alternatives = memory.get(key);
+        if (alternatives != null) {
+            memoryHits++;
+            return alternatives;
+        }
+        if (diskEnabled) {
+            alternatives = readFile(key);
+            if (alternatives != null) {
+                diskHits++;
+                putMemory(key, alternatives);
+                return alternatives;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(String key, List<RecognizeResponseParser.Alternative> alternatives) {
+        if (key == null || !enabled) {
+            return;
+        }
+        List<RecognizeResponseParser.Alternative> copy = Collections.unmodifiableList(new ArrayList<>(alternatives));
+        putMemory(key, copy);
+        if (diskEnabled) {
+            writeFile(key, copy);
+        }
+    }
+
+    /**
+     * 修改上限后立即按新上限淘汰；关闭缓存或磁盘层时清空对应内容
+     */
+    public synchronized void configure(boolean enabled, int maxEntries, boolean diskEnabled, long maxDiskBytes) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.diskEnabled = enabled && diskEnabled;
+        this.maxDiskBytes = Math.max(0, maxDiskBytes);
+        if (!enabled) {
+            memory.clear();
+        }
+        trimMemory();
+        if (this.diskEnabled) {
+            trimDisk();
+        } else {
+            clearDisk();
+        }
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        clearDisk();
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized boolean isDiskEnabled() {
+        return diskEnabled;
+    }
+
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized long getMaxDiskBytes() {
+        return maxDiskBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return memory.size();
+    }
+
+    public synchronized long getDiskBytes() {
+        return Math.max(0, diskBytes);
+    }
+
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRatio() {
+        long lookups = memoryHits + diskHits + misses;
+        return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+    }
+
+    private void putMemory(String key, List<RecognizeResponseParser.Alternative> alternatives) {
+        memory.put(key, alternatives);
+        trimMemory();
+    }
+
+    private void trimMemory() {
+        Iterator<String> eldest = memory.keySet().iterator();
+        while (memory.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private File fileFor(String key) {
+        // 文件名只用键中的哈希和长度，语言等字段可能含有不能用于文件名的字符
+        int second = key.indexOf('-', key.indexOf('-') + 1);
+        return new File(directory, key.substring(0, second) + FILE_SUFFIX);
+    }
+
+    private List<RecognizeResponseParser.Alternative> readFile(String key) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || !key.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<RecognizeResponseParser.Alternative> alternatives = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String transcript = in.readUTF();
+                alternatives.add(new RecognizeResponseParser.Alternative(transcript, in.readDouble()));
+            }
+            // 用修改时间记录最近使用时间，淘汰时先删除最旧的
+            file.setLastModified(System.currentTimeMillis());
+            return Collections.unmodifiableList(alternatives);
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable cache file " + file.getName(), e);
+            deleteFile(file);
+            return null;
+        }
+    }
+
+    private void writeFile(String key, List<RecognizeResponseParser.Alternative> alternatives) {
+        if (!ensureDirectory()) {
+            return;
+        }
+        File file = fileFor(key);
+        File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeUTF(key);
+            out.writeInt(alternatives.size());
+            for (RecognizeResponseParser.Alternative alternative : alternatives) {
+                out.writeUTF(alternative.transcript);
+                out.writeDouble(alternative.confidence);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error writing cache file", e);
+            temp.delete();
+            return;
+        }
+        long previous = file.length();
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        diskBytes += file.length() - previous;
+        trimDisk();
+    }
+
+    private boolean ensureDirectory() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Unable to create cache directory " + directory);
+            return false;
+        }
+        if (diskBytes < 0) {
+            diskBytes = 0;
+            for (File file : listFiles()) {
+                diskBytes += file.length();
+            }
+        }
+        return true;
+    }
+
+    private void trimDisk() {
+        if (!ensureDirectory() || diskBytes <= maxDiskBytes) {
+            return;
+        }
+        File[] files = listFiles();
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (diskBytes <= maxDiskBytes) {
+                break;
+            }
+            deleteFile(file);
+        }
+    }
+
+    private void clearDisk() {
+        if (!directory.isDirectory()) {
+            return;
+        }
+        for (File file : listFiles()) {
+            deleteFile(file);
+        }
+        diskBytes = 0;
+    }
+
+    private void deleteFile(File file) {
+        long length = file.length();
+        if (file.delete() && diskBytes > 0) {
+            diskBytes = Math.max(0, diskBytes - length);
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX) || name.endsWith(TEMP_SUFFIX));
+        return files != null ? files : new File[0];
+    }
+
+    /**
+     * xxHash64（种子为0），每次处理8字节，比逐字节的哈希快得多
+     */
+    static long hash64(byte[] data, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        long hash;
+        if (length >= 32) {
+            long v1 = PRIME1 + PRIME2;
+            long v2 = PRIME2;
+            long v3 = 0;
+            long v4 = -PRIME1;
+            while (buffer.remaining() >= 32) {
+                v1 = round(v1, buffer.getLong());
+                v2 = round(v2, buffer.getLong());
+                v3 = round(v3, buffer.getLong());
+                v4 = round(v4, buffer.getLong());
+            }
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += length;
+
+        while (buffer.remaining() >= 8) {
+            hash ^= round(0, buffer.getLong());
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (buffer.remaining() >= 4) {
+            hash ^= (buffer.getInt() & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+        }
+        while (buffer.hasRemaining()) {
+            hash ^= (buffer.get() & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long mergeRound(long hash, long value) {
+        hash ^= round(0, value);
+        return hash * PRIME1 + PRIME4;
+    }
+}
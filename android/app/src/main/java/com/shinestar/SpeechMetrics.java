@@ -0,0 +1,309 @@
+package com.shinestar;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 识别模块的会话指标：首段音频、首个中间结果、首个最终结果相对会话开始的耗时，
+ * 启动耗时、采集溢出、上传字节数、请求耗时分布、连续听写重启空档以及按错误码统计的错误次数。
+ * 热路径上只有原子操作，不加锁；快照和JSON导出在调用线程上完成。
+ */
+public class SpeechMetrics {
+    private static final String TAG = "SpeechMetrics";
+    // 直方图上限，超出的值计入最后一个桶
+    private static final long MAX_TRACKABLE_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    public static final class ErrorCount {
+        private final AtomicLong count = new AtomicLong();
+        private volatile String message;
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final String name;
+    // 当前会话的开始时间及各里程碑，0表示尚未发生
+    private final AtomicLong sessionStartNanos = new AtomicLong();
+    private final AtomicLong firstAudioNanos = new AtomicLong();
+    private final AtomicLong firstPartialNanos = new AtomicLong();
+    private final AtomicLong firstFinalNanos = new AtomicLong();
+
+    private final LatencyHistogram timeToFirstAudio = new LatencyHistogram(MAX_TRACKABLE_MS);
+    private final LatencyHistogram timeToFirstPartial = new LatencyHistogram(MAX_TRACKABLE_MS);
+    private final LatencyHistogram timeToFinal = new LatencyHistogram(MAX_TRACKABLE_MS);
+    private final LatencyHistogram requestLatency = new LatencyHistogram(MAX_TRACKABLE_MS);
+    private final LatencyHistogram restartGap = new LatencyHistogram(MAX_TRACKABLE_MS);
+    private final LatencyHistogram startLatency = new LatencyHistogram(MAX_TRACKABLE_MS);
+
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong warmStarts = new AtomicLong();
+    private final AtomicLong captureOverruns = new AtomicLong();
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong partialResults = new AtomicLong();
+    private final AtomicLong finalResults = new AtomicLong();
+    private final Map<String, ErrorCount> errors = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService dumpExecutor;
+    private ScheduledFuture<?> dumpTask;
+    private File dumpFile;
+
+    public SpeechMetrics(String name) {
+        this.name = name;
+    }
+
+    public void onSessionStart() {
+        sessions.incrementAndGet();
+        firstAudioNanos.set(0);
+        firstPartialNanos.set(0);
+        firstFinalNanos.set(0);
+        sessionStartNanos.set(System.nanoTime());
+    }
+
+    /**
+     * 每帧都可调用，只有会话内第一次生效
+     */
+    public void onAudio() {
+        markFirst(firstAudioNanos, timeToFirstAudio);
+    }
+
+    public void onPartialResult() {
+        partialResults.incrementAndGet();
+        markFirst(firstPartialNanos, timeToFirstPartial);
+    }
+
+    public void onFinalResult() {
+        finalResults.incrementAndGet();
+        markFirst(firstFinalNanos, timeToFinal);
+    }
+
+    public void addCaptureOverruns(long count) {
+        if (count > 0) {
+            captureOverruns.addAndGet(count);
+        }
+    }
+
+    public void onRequestCompleted(long latencyMs, long uploadedBytes) {
+        requests.incrementAndGet();
+        requestLatency.record(latencyMs);
+        if (uploadedBytes > 0) {
+            bytesUploaded.addAndGet(uploadedBytes);
+        }
+    }
+
+    /**
+     * 从调用开始识别到真正开始收音的耗时；warm表示使用了prepare预热的资源
+     */
+    public void onStartLatency(long latencyMs, boolean warm) {
+        startLatency.record(latencyMs);
+        if (warm) {
+            warmStarts.incrementAndGet();
+        }
+    }
+
+    /**
+     * 连续听写中两段之间重启识别器的空档，期间的音频没有被识别
+     */
+    public void onRestartGap(long gapMs) {
+        restartGap.record(gapMs);
+    }
+
+    public void onError(String code, String message) {
+        ErrorCount error = errors.get(code);
+        if (error == null) {
+            ErrorCount created = new ErrorCount();
+            error = errors.putIfAbsent(code, created);
+            if (error == null) {
+                error = created;
+            }
+        }
+        error.count.incrementAndGet();
+        error.message = message;
+    }
+
+    public long getCaptureOverruns() {
+        return captureOverruns.get();
+    }
+
+    public WritableMap toWritableMap() {
+        WritableMap result = Arguments.createMap();
+        result.putString("module", name);
+        result.putDouble("sessions", sessions.get());
+        result.putDouble("warmStarts", warmStarts.get());
+        result.putMap("currentSession", sessionToWritableMap());
+        result.putMap("startLatency", histogramToWritableMap(startLatency));
+        result.putMap("timeToFirstAudio", histogramToWritableMap(timeToFirstAudio));
+        result.putMap("timeToFirstPartial", histogramToWritableMap(timeToFirstPartial));
+        result.putMap("timeToFinal", histogramToWritableMap(timeToFinal));
+        result.putMap("requestLatency", histogramToWritableMap(requestLatency));
+        result.putMap("restartGap", histogramToWritableMap(restartGap));
+        result.putDouble("captureOverruns", captureOverruns.get());
+        result.putDouble("bytesUploaded", bytesUploaded.get());
+        result.putDouble("requests", requests.get());
+        result.putDouble("partialResults", partialResults.get());
+        result.putDouble("finalResults", finalResults.get());
+        WritableMap errorMap = Arguments.createMap();
+        for (Map.Entry<String, ErrorCount> entry : errors.entrySet()) {
+            WritableMap error = Arguments.createMap();
+            error.putDouble("count", entry.getValue().getCount());
+            error.putString("message", entry.getValue().getMessage());
+            errorMap.putMap(entry.getKey(), error);
+        }
+        result.putMap("errors", errorMap);
+        return result;
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("module", name);
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("sessions", sessions.get());
+        result.put("warmStarts", warmStarts.get());
+        result.put("startLatency", histogramToJson(startLatency));
+        result.put("timeToFirstAudio", histogramToJson(timeToFirstAudio));
+        result.put("timeToFirstPartial", histogramToJson(timeToFirstPartial));
+        result.put("timeToFinal", histogramToJson(timeToFinal));
+        result.put("requestLatency", histogramToJson(requestLatency));
+        result.put("restartGap", histogramToJson(restartGap));
+        result.put("captureOverruns", captureOverruns.get());
+        result.put("bytesUploaded", bytesUploaded.get());
+        result.put("requests", requests.get());
+        result.put("partialResults", partialResults.get());
+        result.put("finalResults", finalResults.get());
+        JSONObject errorJson = new JSONObject();
+        for (Map.Entry<String, ErrorCount> entry : errors.entrySet()) {
+            JSONObject error = new JSONObject();
+            error.put("count", entry.getValue().getCount());
+            error.put("message", entry.getValue().getMessage());
+            errorJson.put(entry.getKey(), error);
+        }
+        result.put("errors", errorJson);
+        return result;
+    }
+
+    /**
+     * 每隔intervalMs把指标写入file，便于现场调试时导出；intervalMs <= 0 时停止
+     */
+    public synchronized void setFileDump(File file, long intervalMs) {
+        if (dumpTask != null) {
+            dumpTask.cancel(false);
+            dumpTask = null;
+        }
+        if (intervalMs <= 0) {
+            return;
+        }
+        if (dumpExecutor == null) {
+            dumpExecutor = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory(name + "-metrics", Process.THREAD_PRIORITY_BACKGROUND));
+        }
+        dumpFile = file;
+        dumpTask = dumpExecutor.scheduleWithFixedDelay(this::dumpToFile, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close() {
+        if (dumpExecutor != null) {
+            dumpExecutor.shutdownNow();
+            dumpExecutor = null;
+            dumpTask = null;
+        }
+    }
+
+    private void dumpToFile() {
+        File file;
+        synchronized (this) {
+            file = dumpFile;
+        }
+        // 先写临时文件再改名，读取方不会看到写了一半的内容
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            writer.write(toJson().toString());
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Error writing metrics to " + temp, e);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Error renaming metrics file to " + file);
+        }
+    }
+
+    private void markFirst(AtomicLong milestone, LatencyHistogram histogram) {
+        // 已记录过时只有一次volatile读
+        if (milestone.get() != 0) {
+            return;
+        }
+        long start = sessionStartNanos.get();
+        long now = System.nanoTime();
+        if (start != 0 && milestone.compareAndSet(0, now)) {
+            histogram.record(TimeUnit.NANOSECONDS.toMillis(now - start));
+        }
+    }
+
+    private WritableMap sessionToWritableMap() {
+        WritableMap session = Arguments.createMap();
+        long start = sessionStartNanos.get();
+        if (start == 0) {
+            return session;
+        }
+        putMilestone(session, "firstAudioMs", start, firstAudioNanos.get());
+        putMilestone(session, "firstPartialMs", start, firstPartialNanos.get());
+        putMilestone(session, "firstFinalMs", start, firstFinalNanos.get());
+        session.putDouble("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return session;
+    }
+
+    private static void putMilestone(WritableMap map, String key, long start, long at) {
+        if (at != 0) {
+            map.putDouble(key, TimeUnit.NANOSECONDS.toMillis(at - start));
+        }
+    }
+
+    private static WritableMap histogramToWritableMap(LatencyHistogram histogram) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", histogram.getCount());
+        map.putDouble("meanMs", histogram.getMean());
+        map.putDouble("minMs", histogram.getMin());
+        map.putDouble("maxMs", histogram.getMax());
+        for (double percentile : PERCENTILES) {
+            map.putDouble("p" + (int) percentile, histogram.getValueAtPercentile(percentile));
+        }
+        return map;
+    }
+
+    private static JSONObject histogramToJson(LatencyHistogram histogram) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", histogram.getCount());
+        json.put("meanMs", histogram.getMean());
+        json.put("minMs", histogram.getMin());
+        json.put("maxMs", histogram.getMax());
+        for (double percentile : PERCENTILES) {
+            json.put("p" + (int) percentile, histogram.getValueAtPercentile(percentile));
+        }
+        return json;
+    }
+}
@@ -0,0 +1,204 @@
+package com.shinestar;
+
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.cloud.speech.v1.SpeechGrpc;
+import com.google.cloud.speech.v1.StreamingRecognitionConfig;
+import com.google.cloud.speech.v1.StreamingRecognitionResult;
+import com.google.cloud.speech.v1.StreamingRecognizeRequest;
+import com.google.cloud.speech.v1.StreamingRecognizeResponse;
+import com.google.protobuf.ByteString;
+
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.Channel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * 一次识别会话对应的StreamingRecognize双向流。
+ * 音频持续推送，服务端返回中间结果和最终结果；
+ * 单个流接近服务端时长上限时自动重建，调用方无感知；
+ * 流因可重试的错误结束时，下一段音频到达时重建，连续失败过多或遇到不可重试的错误则停止并上报。
+ * Channel由外部传入，测试时可替换为进程内的假服务端；不依赖Android API，错误只通过Listener上报，由调用方记录日志。
+ */
+public class StreamingRecognitionSession {
+    // 服务端单个流最长约305秒，提前重建
+    public static final long DEFAULT_STREAM_LIMIT_MS = 290_000;
+    // 未收到任何响应时连续重建的次数上限
+    private static final int MAX_CONSECUTIVE_ERRORS = 3;
+
+    private static final Metadata.Key<String> API_KEY_HEADER =
+        Metadata.Key.of("x-goog-api-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    public interface Listener {
+        void onResult(StreamingRecognitionResult result);
+
+        void onStreamRestarted(int restartCount);
+
+        void onError(Throwable error);
+    }
+
+    private final SpeechGrpc.SpeechStub stub;
+    private final StreamingRecognizeRequest configRequest;
+    private final long streamLimitNanos;
+    private final Listener listener;
+
+    private StreamObserver<StreamingRecognizeRequest> requestStream;
+    private long streamStartedAt;
+    private int generation;
+    private int restartCount;
+    private int consecutiveErrors;
+    private boolean closed;
+    // 遇到不可重试的错误后不再发送音频
+    private boolean failed;
+
+    public StreamingRecognitionSession(Channel channel, String apiKey, String languageCode,
+                                       int sampleRate, long streamLimitMs, Listener listener) {
+        Metadata headers = new Metadata();
+        headers.put(API_KEY_HEADER, apiKey);
+        this.stub = SpeechGrpc.newStub(channel)
+            .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+
+        RecognitionConfig config = RecognitionConfig.newBuilder()
+            .setEncoding(RecognitionConfig.AudioEncoding.LINEAR16)
+            .setSampleRateHertz(sampleRate)
+            .setLanguageCode(languageCode)
+            .setEnableAutomaticPunctuation(true)
+            .build();
+        this.configRequest = StreamingRecognizeRequest.newBuilder()
+            .setStreamingConfig(StreamingRecognitionConfig.newBuilder()
+                .setConfig(config)
+                .setInterimResults(true)
+                .build())
+            .build();
+        this.streamLimitNanos = TimeUnit.MILLISECONDS.toNanos(streamLimitMs);
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        openStream();
+    }
+
+    public synchronized void sendAudio(byte[] data, int offset, int count) {
+        if (closed || failed || count <= 0) {
+            return;
+        }
+        if (requestStream == null) {
+            // 上一个流已被服务端结束（时长上限或可重试的错误）
+            restartStream();
+        } else if (System.nanoTime() - streamStartedAt >= streamLimitNanos) {
+            requestStream.onCompleted();
+            restartStream();
+        }
+        requestStream.onNext(StreamingRecognizeRequest.newBuilder()
+            .setAudioContent(ByteString.copyFrom(data, offset, count))
+            .build());
+    }
+
+    /**
+     * 结束推送音频；已发送音频的最终结果仍会回调
+     */
+    public synchronized void finish() {
+        closed = true;
+        if (requestStream != null) {
+            requestStream.onCompleted();
+            requestStream = null;
+        }
+    }
+
+    public synchronized void cancel() {
+        closed = true;
+        if (requestStream != null) {
+            requestStream.onError(Status.CANCELLED.withDescription("Session cancelled").asException());
+            requestStream = null;
+        }
+    }
+
+    public synchronized int getRestartCount() {
+        return restartCount;
+    }
+
+    private void restartStream() {
+        restartCount++;
+        openStream();
+        listener.onStreamRestarted(restartCount);
+    }
+
+    private void openStream() {
+        generation++;
+        requestStream = stub.streamingRecognize(new ResponseObserver(generation));
+        streamStartedAt = System.nanoTime();
+        requestStream.onNext(configRequest);
+    }
+
+    private synchronized boolean handleStreamError(int streamGeneration, Throwable error) {
+        if (streamGeneration != generation) {
+            // 已被替换的旧流，错误不影响当前会话
+            return true;
+        }
+        // 流已结束，不能再发送
+        requestStream = null;
+        Status.Code code = Status.fromThrowable(error).getCode();
+        if (closed) {
+            return code == Status.Code.CANCELLED;
+        }
+        if (code == Status.Code.OUT_OF_RANGE) {
+            // 服务端时长上限，下一段音频到达时重建
+            return true;
+        }
+        if (isRetryable(code) && ++consecutiveErrors <= MAX_CONSECUTIVE_ERRORS) {
+            return true;
+        }
+        failed = true;
+        return false;
+    }
+
+    private synchronized void handleStreamCompleted(int streamGeneration) {
+        if (streamGeneration == generation) {
+            requestStream = null;
+        }
+    }
+
+    private synchronized void handleResponse(int streamGeneration) {
+        if (streamGeneration == generation) {
+            consecutiveErrors = 0;
+        }
+    }
+
+    private static boolean isRetryable(Status.Code code) {
+        return code == Status.Code.UNAVAILABLE
+            || code == Status.Code.ABORTED
+            || code == Status.Code.DEADLINE_EXCEEDED;
+    }
+
+    private final class ResponseObserver implements StreamObserver<StreamingRecognizeResponse> {
+        private final int streamGeneration;
+
+        ResponseObserver(int streamGeneration) {
+            this.streamGeneration = streamGeneration;
+        }
+
+        @Override
+        public void onNext(StreamingRecognizeResponse response) {
+            handleResponse(streamGeneration);
+            for (StreamingRecognitionResult result : response.getResultsList()) {
+                listener.onResult(result);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (handleStreamError(streamGeneration, error)) {
+                return;
+            }
+            listener.onError(error);
+        }
+
+        @Override
+        public void onCompleted() {
+            handleStreamCompleted(streamGeneration);
+        }
+    }
+}
@@ -3,11 +3,11 @@ package com.shinestar;
 import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.content.Context;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
@@ -21,27 +21,50 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Locale;
 
 public class VoiceToTextModule extends ReactContextBaseJavaModule {
     private static final String TAG = "VoiceToTextModule";
     private static final int PERMISSION_REQUEST_CODE = 123;
+    private static final String METRICS_FILE = "speech_metrics_voice_to_text.json";
+    // 连续听写中可恢复错误的重启退避
+    private static final long RESTART_BACKOFF_MS = 200;
+    private static final long MAX_RESTART_BACKOFF_MS = 2000;
+    private static final int MAX_CONSECUTIVE_ERRORS = 5;
     
     private SpeechRecognizer speechRecognizer;
     private boolean isListening = false;
     private String currentLanguage = "en-US";
+    // 以下只在主线程上访问
+    private boolean continuous = false;
+    private int consecutiveErrors;
+    private DictationTranscript transcript;
+    private Intent recognizerIntent;
+    private String intentLanguage;
+    private boolean warmStart;
+    // 调用开始识别的时间，第一次onReadyForSpeech时计入启动耗时，0表示已记录
+    private volatile long startRequestedAt;
     
     private final ReactApplicationContext reactContext;
+    private final BridgeEventDispatcher eventDispatcher;
+    private final SpeechMetrics metrics;
+    private final Handler mainHandler;
+    private final Runnable restartRunnable = this::restartRecognizer;
     
     public VoiceToTextModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
+        this.eventDispatcher = BridgeEventDispatcher.create(reactContext);
+        this.metrics = new SpeechMetrics("VoiceToText");
+        this.mainHandler = new Handler(Looper.getMainLooper());
     }
     
     @Override
@@ -49,8 +72,48 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
         return "VoiceToTextModule";
     }
     
+    @Override
+    public void onCatalystInstanceDestroy() {
+        super.onCatalystInstanceDestroy();
+        mainHandler.removeCallbacksAndMessages(null);
+        metrics.close();
+    }
+    
     @ReactMethod
     public void startListening(Promise promise) {
+        startRecognition(false, promise);
+    }
+    
+    /**
+     * 连续听写：每段结束后在回调里立即重启同一个识别器，直到stopListening；
+     * 各段最终结果通过onTranscript事件拼接成带时间戳的完整文本
+     */
+    @ReactMethod
+    public void startContinuousListening(Promise promise) {
+        startRecognition(true, promise);
+    }
+    
+    /**
+     * 预热：提前创建识别器并构建Intent，进入语音界面时调用，之后开始识别不再有创建开销
+     */
+    @ReactMethod
+    public void prepare(Promise promise) {
+        reactContext.runOnUiQueueThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ensureRecognizer();
+                    createRecognizerIntent();
+                    promise.resolve(true);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error preparing speech recognizer", e);
+                    promise.reject("PREPARE_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+    
+    private void startRecognition(boolean continuousMode, Promise promise) {
         if (isListening) {
             promise.reject("ALREADY_LISTENING", "Speech recognition is already active");
             return;
@@ -61,118 +124,20 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
             return;
         }
         
+        startRequestedAt = SystemClock.elapsedRealtime();
         // 确保在主线程上运行
         reactContext.runOnUiQueueThread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    if (speechRecognizer == null) {
-                        speechRecognizer = SpeechRecognizer.createSpeechRecognizer(reactContext);
-                        speechRecognizer.setRecognitionListener(new RecognitionListener() {
-                            @Override
-                            public void onReadyForSpeech(Bundle bundle) {
-                                sendEvent("onReadyForSpeech", null);
-                            }
-                            
-                            @Override
-                            public void onBeginningOfSpeech() {
-                                sendEvent("onBeginningOfSpeech", null);
-                            }
-                            
-                            @Override
-                            public void onRmsChanged(float rmsdB) {
-                                WritableMap params = Arguments.createMap();
-                                params.putDouble("rmsdB", rmsdB);
-                                sendEvent("onRmsChanged", params);
-                            }
-                            
-                            @Override
-                            public void onBufferReceived(byte[] buffer) {
-                                // Not used in most cases
-                            }
-                            
-                            @Override
-                            public void onEndOfSpeech() {
-                                sendEvent("onEndOfSpeech", null);
-                            }
-                            
-                            @Override
-                            public void onError(int error) {
-                                isListening = false;
-                                WritableMap params = Arguments.createMap();
-                                params.putInt("error", error);
-                                String errorMessage = getErrorMessage(error);
-                                params.putString("message", errorMessage);
-                                sendEvent("onError", params);
-                                promise.reject("SPEECH_ERROR", errorMessage);
-                            }
-                            
-                            @Override
-                            public void onResults(Bundle results) {
-                                isListening = false;
-                                ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-                                float[] confidence = results.getFloatArray(SpeechRecognizer.CONFIDENCE_SCORES);
-                                
-                                WritableMap params = Arguments.createMap();
-                                WritableArray resultsArray = Arguments.createArray();
-                                
-                                if (matches != null) {
-                                    for (int i = 0; i < matches.size(); i++) {
-                                        WritableMap result = Arguments.createMap();
-                                        result.putString("text", matches.get(i));
-                                        if (confidence != null && i < confidence.length) {
-                                            result.putDouble("confidence", confidence[i]);
-                                        } else {
-                                            result.putDouble("confidence", 0.0);
-                                        }
-                                        resultsArray.pushMap(result);
-                                    }
-                                }
-                                
-                                params.putArray("results", resultsArray);
-                                sendEvent("onResults", params);
-                                promise.resolve(params);
-                            }
-                            
-                            @Override
-                            public void onPartialResults(Bundle partialResults) {
-                                ArrayList<String> matches = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-                                
-                                WritableMap params = Arguments.createMap();
-                                WritableArray resultsArray = Arguments.createArray();
-                                
-                                if (matches != null) {
-                                    for (String match : matches) {
-                                        WritableMap result = Arguments.createMap();
-                                        result.putString("text", match);
-                                        result.putDouble("confidence", 0.0);
-                                        resultsArray.pushMap(result);
-                                    }
-                                }
-                                
-                                params.putArray("results", resultsArray);
-                                sendEvent("onPartialResults", params);
-                            }
-                            
-                            @Override
-                            public void onEvent(int eventType, Bundle bundle) {
-                                // Not used in most cases
-                            }
-                        });
-                    }
+                    warmStart = speechRecognizer != null;
+                    ensureRecognizer();
                     
-                    Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
-                    intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
-                    intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, currentLanguage);
-                    intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
-                    intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 5);
-                    // 添加更多配置来改善识别
-                    intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_MINIMUM_LENGTH_MILLIS, 3000); // 最少3秒
-                    intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_COMPLETE_SILENCE_LENGTH_MILLIS, 1500); // 1.5秒静音后结束
-                    intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_POSSIBLY_COMPLETE_SILENCE_LENGTH_MILLIS, 1000); // 1秒可能完成
-                    intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_POSSIBLY_COMPLETE_SILENCE_LENGTH_MILLIS, 500); // 0.5秒可能完成
-                    
-                    speechRecognizer.startListening(intent);
+                    continuous = continuousMode;
+                    consecutiveErrors = 0;
+                    transcript = continuousMode ? new DictationTranscript(currentLanguage) : null;
+                    metrics.onSessionStart();
+                    speechRecognizer.startListening(createRecognizerIntent());
                     isListening = true;
                     
                     sendEvent("onStart", null);
@@ -180,12 +145,247 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
                     
                 } catch (Exception e) {
                     Log.e(TAG, "Error starting speech recognition", e);
+                    continuous = false;
+                    startRequestedAt = 0;
                     promise.reject("START_ERROR", e.getMessage());
                 }
             }
         });
     }
     
+    private void ensureRecognizer() {
+        if (speechRecognizer == null) {
+            speechRecognizer = SpeechRecognizer.createSpeechRecognizer(reactContext);
+            speechRecognizer.setRecognitionListener(createRecognitionListener());
+        }
+    }
+    
+    private RecognitionListener createRecognitionListener() {
+        return new RecognitionListener() {
+            @Override
+            public void onReadyForSpeech(Bundle bundle) {
+                long requestedAt = startRequestedAt;
+                if (requestedAt != 0) {
+                    startRequestedAt = 0;
+                    metrics.onStartLatency(SystemClock.elapsedRealtime() - requestedAt, warmStart);
+                }
+                if (transcript != null) {
+                    long gap = transcript.onReady();
+                    if (gap >= 0) {
+                        metrics.onRestartGap(gap);
+                    }
+                }
+                sendEvent("onReadyForSpeech", null);
+            }
+            
+            @Override
+            public void onBeginningOfSpeech() {
+                if (transcript != null) {
+                    transcript.onBeginningOfSpeech();
+                }
+                sendEvent("onBeginningOfSpeech", null);
+            }
+            
+            @Override
+            public void onRmsChanged(float rmsdB) {
+                // 系统识别器不提供原始音频，以第一次音量回调作为音频开始到达的时间
+                metrics.onAudio();
+                WritableMap params = Arguments.createMap();
+                params.putDouble("rmsdB", rmsdB);
+                sendEvent("onRmsChanged", params);
+            }
+            
+            @Override
+            public void onBufferReceived(byte[] buffer) {
+                // Not used in most cases
+            }
+            
+            @Override
+            public void onEndOfSpeech() {
+                sendEvent("onEndOfSpeech", null);
+            }
+            
+            @Override
+            public void onError(int error) {
+                if (continuous && restartAfterError(error)) {
+                    return;
+                }
+                isListening = false;
+                continuous = false;
+                WritableMap params = Arguments.createMap();
+                params.putInt("error", error);
+                String errorMessage = getErrorMessage(error);
+                metrics.onError(String.valueOf(error), errorMessage);
+                params.putString("message", errorMessage);
+                sendEvent("onError", params);
+            }
+            
+            @Override
+            public void onResults(Bundle results) {
+                metrics.onFinalResult();
+                ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+                float[] confidence = results.getFloatArray(SpeechRecognizer.CONFIDENCE_SCORES);
+                
+                WritableMap params = Arguments.createMap();
+                WritableArray resultsArray = Arguments.createArray();
+                
+                if (matches != null) {
+                    for (int i = 0; i < matches.size(); i++) {
+                        WritableMap result = Arguments.createMap();
+                        result.putString("text", matches.get(i));
+                        if (confidence != null && i < confidence.length) {
+                            result.putDouble("confidence", confidence[i]);
+                        } else {
+                            result.putDouble("confidence", 0.0);
+                        }
+                        resultsArray.pushMap(result);
+                    }
+                }
+                
+                params.putArray("results", resultsArray);
+                sendEvent("onResults", params);
+                
+                // 连续听写中取最佳结果拼接，停止后到达的最后一段也计入
+                if (transcript != null && matches != null && !matches.isEmpty() && !matches.get(0).isEmpty()) {
+                    double bestConfidence = confidence != null && confidence.length > 0 ? confidence[0] : 0.0;
+                    sendEvent("onTranscript", transcript.addSegment(matches.get(0), bestConfidence));
+                }
+                
+                if (continuous) {
+                    consecutiveErrors = 0;
+                    scheduleRestart(0);
+                } else {
+                    isListening = false;
+                }
+            }
+            
+            @Override
+            public void onPartialResults(Bundle partialResults) {
+                metrics.onPartialResult();
+                ArrayList<String> matches = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+                
+                WritableMap params = Arguments.createMap();
+                WritableArray resultsArray = Arguments.createArray();
+                
+                if (matches != null) {
+                    for (String match : matches) {
+                        WritableMap result = Arguments.createMap();
+                        result.putString("text", match);
+                        result.putDouble("confidence", 0.0);
+                        resultsArray.pushMap(result);
+                    }
+                }
+                
+                params.putArray("results", resultsArray);
+                sendEvent("onPartialResults", params);
+            }
+            
+            @Override
+            public void onEvent(int eventType, Bundle bundle) {
+                // Not used in most cases
+            }
+        };
+    }
+    
+    /**
+     * 同一语言复用已构建的Intent，连续听写每段重启时不再重复构建
+     */
+    private Intent createRecognizerIntent() {
+        if (recognizerIntent != null && currentLanguage.equals(intentLanguage)) {
+            return recognizerIntent;
+        }
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, currentLanguage);
+        intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+        intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 5);
+        // 添加更多配置来改善识别
+        intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_MINIMUM_LENGTH_MILLIS, 3000); // 最少3秒
+        intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_COMPLETE_SILENCE_LENGTH_MILLIS, 1500); // 1.5秒静音后结束
+        intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_POSSIBLY_COMPLETE_SILENCE_LENGTH_MILLIS, 1000); // 1秒可能完成
+        intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_POSSIBLY_COMPLETE_SILENCE_LENGTH_MILLIS, 500); // 0.5秒可能完成
+        recognizerIntent = intent;
+        intentLanguage = currentLanguage;
+        return intent;
+    }
+    
+    /**
+     * 连续听写中的错误：静音类立即重启，可恢复的错误退避后重启，返回false表示应结束听写
+     */
+    private boolean restartAfterError(int error) {
+        switch (error) {
+            case SpeechRecognizer.ERROR_NO_MATCH:
+            case SpeechRecognizer.ERROR_SPEECH_TIMEOUT:
+                // 这一段没有说话，不算失败
+                scheduleRestart(0);
+                return true;
+            case SpeechRecognizer.ERROR_RECOGNIZER_BUSY:
+            case SpeechRecognizer.ERROR_CLIENT:
+            case SpeechRecognizer.ERROR_NETWORK:
+            case SpeechRecognizer.ERROR_NETWORK_TIMEOUT:
+            case SpeechRecognizer.ERROR_SERVER:
+                consecutiveErrors++;
+                if (consecutiveErrors > MAX_CONSECUTIVE_ERRORS) {
+                    return false;
+                }
+                metrics.onError(String.valueOf(error), getErrorMessage(error));
+                // 识别器可能仍处于上一段的状态，先取消再重启
+                speechRecognizer.cancel();
+                long delay = Math.min(RESTART_BACKOFF_MS << (consecutiveErrors - 1), MAX_RESTART_BACKOFF_MS);
+                scheduleRestart(delay);
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    private void scheduleRestart(long delayMs) {
+        if (transcript != null) {
+            transcript.onRestarting();
+        }
+        if (delayMs <= 0) {
+            // 直接在回调里重启，不经过JS往返，尽量缩短两段之间的空档
+            restartRecognizer();
+        } else {
+            mainHandler.postDelayed(restartRunnable, delayMs);
+        }
+    }
+    
+    private void restartRecognizer() {
+        if (!continuous || speechRecognizer == null) {
+            return;
+        }
+        try {
+            speechRecognizer.startListening(createRecognizerIntent());
+        } catch (Exception e) {
+            Log.e(TAG, "Error restarting speech recognition", e);
+            isListening = false;
+            continuous = false;
+            metrics.onError("RESTART_ERROR", e.getMessage());
+            WritableMap params = Arguments.createMap();
+            params.putString("error", "RESTART_ERROR");
+            params.putString("message", e.getMessage());
+            sendEvent("onError", params);
+        }
+    }
+    
+    /**
+     * 返回当前（或最近一次）连续听写的拼接结果，没有进行过连续听写时返回null
+     */
+    @ReactMethod
+    public void getTranscript(Promise promise) {
+        reactContext.runOnUiQueueThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    promise.resolve(transcript != null ? transcript.toWritableMap() : null);
+                } catch (Exception e) {
+                    promise.reject("TRANSCRIPT_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+    
     @ReactMethod
     public void stopListening(Promise promise) {
         if (!isListening) {
@@ -198,6 +398,8 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
             @Override
             public void run() {
                 try {
+                    continuous = false;
+                    mainHandler.removeCallbacks(restartRunnable);
                     if (speechRecognizer != null) {
                         speechRecognizer.stopListening();
                         isListening = false;
@@ -221,6 +423,8 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
             @Override
             public void run() {
                 try {
+                    continuous = false;
+                    mainHandler.removeCallbacks(restartRunnable);
                     if (speechRecognizer != null) {
                         speechRecognizer.destroy();
                         speechRecognizer = null;
@@ -246,6 +450,41 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
         }
     }
     
+    @ReactMethod
+    public void configureEventRates(ReadableMap rates, Promise promise) {
+        try {
+            // { 事件名: 每秒最多发送次数 }，0表示不合并
+            ReadableMapKeySetIterator iterator = rates.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String eventName = iterator.nextKey();
+                eventDispatcher.setMaxRate(eventName, rates.getInt(eventName));
+            }
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("EVENT_RATE_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        try {
+            promise.resolve(metrics.toWritableMap());
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", e.getMessage());
+        }
+    }
+    
+    @ReactMethod
+    public void setMetricsDumpInterval(int intervalMs, Promise promise) {
+        try {
+            File file = new File(reactContext.getFilesDir(), METRICS_FILE);
+            metrics.setFileDump(file, intervalMs);
+            promise.resolve(intervalMs > 0 ? file.getAbsolutePath() : null);
+        } catch (Exception e) {
+            promise.reject("METRICS_ERROR", e.getMessage());
+        }
+    }
+    
     @ReactMethod
     public void isAvailable(Promise promise) {
         try {
@@ -285,16 +524,8 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
     }
     
     private boolean checkNetworkConnection() {
-        try {
-            ConnectivityManager connectivityManager = (ConnectivityManager) reactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
-            if (connectivityManager != null) {
-                NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-                return activeNetworkInfo != null && activeNetworkInfo.isConnected();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking network connection", e);
-        }
-        return false;
+        // 共享的网络状态缓存，不发起binder调用
+        return MainApplication.getConnectivityTracker(reactContext).isConnected();
     }
     
     private boolean checkGooglePlayServices() {
@@ -348,9 +579,8 @@ public class VoiceToTextModule extends ReactContextBaseJavaModule {
     }
     
     private void sendEvent(String eventName, WritableMap params) {
-        reactContext
-            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-            .emit(eventName, params);
+        // 音量和中间结果等高频事件由本模块的分发器合并，每帧最多一次桥接调用
+        eventDispatcher.dispatch(eventName, params);
     }
     
     private String getErrorMessage(int error) {
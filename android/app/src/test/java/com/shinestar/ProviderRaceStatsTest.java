@@ -0,0 +1,143 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * 检查ProviderRaceStats的计数、耗时平滑、偏好判定及文件读写
+ */
+public class ProviderRaceStatsTest {
+    private static final ProviderRace.Provider CLOUD = ProviderRace.Provider.CLOUD;
+    private static final ProviderRace.Provider OFFLINE = ProviderRace.Provider.OFFLINE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private ProviderRaceStats stats;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "race_stats.json");
+        stats = new ProviderRaceStats(file);
+    }
+
+    private JSONObject saved(ProviderRace.Provider provider) throws Exception {
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        return new JSONObject(json).getJSONObject(provider.getId());
+    }
+
+    private void race(ProviderRace.Provider winner, int times) {
+        for (int i = 0; i < times; i++) {
+            stats.onRace(winner);
+        }
+    }
+
+    @Test
+    public void countsResultsAndRaces() throws Exception {
+        stats.onResult(CLOUD, false, true, 200);
+        stats.onResult(OFFLINE, true, false, 0);
+        stats.onResult(OFFLINE, false, false, 400);
+        stats.onRace(CLOUD);
+        stats.save();
+
+        JSONObject cloud = saved(CLOUD);
+        assertEquals(1, cloud.getLong("races"));
+        assertEquals(1, cloud.getLong("wins"));
+        assertEquals(1, cloud.getLong("results"));
+        assertEquals(1, cloud.getLong("confident"));
+        assertEquals(0, cloud.getLong("failures"));
+        assertEquals(200.0, cloud.getDouble("latencyMs"), 1e-9);
+
+        JSONObject offline = saved(OFFLINE);
+        assertEquals(1, offline.getLong("races"));
+        assertEquals(0, offline.getLong("wins"));
+        assertEquals(1, offline.getLong("results"));
+        assertEquals(0, offline.getLong("confident"));
+        assertEquals(1, offline.getLong("failures"));
+        // 失败不计入耗时
+        assertEquals(400.0, offline.getDouble("latencyMs"), 1e-9);
+    }
+
+    @Test
+    public void smoothsLatency() throws Exception {
+        stats.onResult(CLOUD, false, true, 100);
+        stats.onResult(CLOUD, false, true, 200);
+        stats.save();
+
+        assertEquals(120.0, saved(CLOUD).getDouble("latencyMs"), 1e-9);
+        assertEquals(-1.0, saved(OFFLINE).getDouble("latencyMs"), 1e-9);
+    }
+
+    @Test
+    public void prefersMoreWinsOnlyAfterEnoughRaces() {
+        race(OFFLINE, 6);
+        race(CLOUD, 3);
+        assertNull(stats.getPreferred());
+
+        race(CLOUD, 1);
+        assertEquals(OFFLINE, stats.getPreferred());
+    }
+
+    @Test
+    public void equalWinsPreferLowerLatency() {
+        race(CLOUD, 5);
+        race(OFFLINE, 5);
+        stats.onResult(CLOUD, false, true, 300);
+        stats.onResult(OFFLINE, false, true, 100);
+
+        assertEquals(OFFLINE, stats.getPreferred());
+    }
+
+    @Test
+    public void persistsAcrossInstances() throws Exception {
+        race(CLOUD, 7);
+        race(OFFLINE, 3);
+        stats.onResult(CLOUD, false, true, 250);
+        stats.save();
+
+        ProviderRaceStats reloaded = new ProviderRaceStats(file);
+        assertEquals(CLOUD, reloaded.getPreferred());
+        reloaded.onRace(OFFLINE);
+        reloaded.save();
+        assertEquals(11, saved(CLOUD).getLong("races"));
+        assertEquals(4, saved(OFFLINE).getLong("wins"));
+        assertEquals(250.0, saved(CLOUD).getDouble("latencyMs"), 1e-9);
+    }
+
+    @Test
+    public void unreadableFileStartsOver() throws Exception {
+        Files.write(file.toPath(), "{not json".getBytes(StandardCharsets.UTF_8));
+
+        ProviderRaceStats corrupt = new ProviderRaceStats(file);
+        assertNull(corrupt.getPreferred());
+        corrupt.onRace(CLOUD);
+        corrupt.save();
+
+        assertEquals(1, saved(CLOUD).getLong("races"));
+        assertEquals(1, saved(CLOUD).getLong("wins"));
+    }
+
+    @Test
+    public void resetClearsSavedStats() throws Exception {
+        race(CLOUD, 10);
+        stats.save();
+        assertEquals(CLOUD, stats.getPreferred());
+
+        stats.reset();
+
+        assertNull(stats.getPreferred());
+        assertEquals(0, saved(CLOUD).getLong("races"));
+        assertNull(new ProviderRaceStats(file).getPreferred());
+    }
+}
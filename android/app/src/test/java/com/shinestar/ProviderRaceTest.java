@@ -0,0 +1,345 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 用假的离线识别器检查ProviderRace的分段识别、胜负判定和离线失败后的处理；
+ * 竞速线程在测试线程上同步运行，所以先送完音频并调用finish再start
+ */
+public class ProviderRaceTest {
+    private static final double THRESHOLD = 0.5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 按reset划分的每段音频原样记录下来，结果按脚本返回
+     */
+    private static class FakeRecognizer implements ProviderRace.SegmentRecognizer {
+        final List<byte[]> finalAudio = new ArrayList<>();
+        final Deque<RecognizeResponseParser.Alternative> finals = new ArrayDeque<>();
+        RecognizeResponseParser.Alternative sentence;
+        // 当前段收到这么多字节后报告一次句子结束
+        int sentenceAfterBytes = -1;
+        boolean released;
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+        private boolean sentenceReported;
+
+        @Override
+        public boolean acceptWaveform(byte[] pcm, int length) {
+            current.write(pcm, 0, length);
+            if (sentenceAfterBytes > 0 && !sentenceReported && current.size() >= sentenceAfterBytes) {
+                sentenceReported = true;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public RecognizeResponseParser.Alternative getResult() {
+            return sentence;
+        }
+
+        @Override
+        public RecognizeResponseParser.Alternative getFinalResult() {
+            finalAudio.add(current.toByteArray());
+            return finals.poll();
+        }
+
+        @Override
+        public void reset() {
+            current.reset();
+            sentenceReported = false;
+        }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+
+    private static final class Winner {
+        final long segment;
+        final ProviderRace.Provider provider;
+        final String transcript;
+        final double confidence;
+
+        Winner(long segment, ProviderRace.Provider provider, String transcript, double confidence) {
+            this.segment = segment;
+            this.provider = provider;
+            this.transcript = transcript;
+            this.confidence = confidence;
+        }
+    }
+
+    private final List<Winner> winners = new ArrayList<>();
+    private final List<Long> cancelledCloud = new ArrayList<>();
+    private final ProviderRace.Listener listener = new ProviderRace.Listener() {
+        @Override
+        public void onWinner(ProviderRace.Segment segment, ProviderRace.Provider provider,
+                             List<RecognizeResponseParser.Alternative> alternatives) {
+            RecognizeResponseParser.Alternative top = alternatives.get(0);
+            winners.add(new Winner(segment.getId(), provider, top.transcript, top.confidence));
+        }
+
+        @Override
+        public void onCancelCloud(ProviderRace.Segment segment) {
+            cancelledCloud.add(segment.getId());
+        }
+    };
+
+    private ProviderRouter router;
+    private File statsFile;
+    private ProviderRaceStats stats;
+    private FakeRecognizer recognizer;
+
+    @Before
+    public void setUp() throws IOException {
+        router = new ProviderRouter();
+        router.register(new ProviderRouter.Provider() {
+            @Override
+            public String getId() {
+                return ProviderRace.Provider.OFFLINE.getId();
+            }
+
+            @Override
+            public boolean isAvailable() {
+                return true;
+            }
+
+            @Override
+            public boolean requiresNetwork() {
+                return false;
+            }
+        }, 1);
+        statsFile = new File(folder.getRoot(), "race_stats.json");
+        stats = new ProviderRaceStats(statsFile);
+        recognizer = new FakeRecognizer();
+    }
+
+    private ProviderRace newRace(ProviderRace.RecognizerFactory factory) throws IOException {
+        return new ProviderRace(factory, THRESHOLD, stats, router, folder.newFile(), listener);
+    }
+
+    private ProviderRace newRace() throws IOException {
+        return newRace(() -> recognizer);
+    }
+
+    private static byte[] fill(int length, int value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    private static List<RecognizeResponseParser.Alternative> result(String transcript, double confidence) {
+        return Collections.singletonList(new RecognizeResponseParser.Alternative(transcript, confidence));
+    }
+
+    private JSONObject savedStats(ProviderRace.Provider provider) throws Exception {
+        String json = new String(Files.readAllBytes(statsFile.toPath()), StandardCharsets.UTF_8);
+        return new JSONObject(json).getJSONObject(provider.getId());
+    }
+
+    @Test
+    public void confidentOfflineResultWinsAndCancelsCloud() throws Exception {
+        recognizer.finals.add(new RecognizeResponseParser.Alternative("hello", 0.9));
+        ProviderRace race = newRace();
+        race.feed(fill(3200, 1), 0, 3200);
+        ProviderRace.Segment segment = race.endSegment();
+        race.finish();
+
+        race.start(Runnable::run);
+
+        assertEquals(1, winners.size());
+        assertEquals(ProviderRace.Provider.OFFLINE, winners.get(0).provider);
+        assertEquals("hello", winners.get(0).transcript);
+        assertEquals(Collections.singletonList(segment.getId()), cancelledCloud);
+        assertTrue(race.isDecided(segment));
+        assertTrue(recognizer.released);
+
+        // 云端结果晚到，只计入记录，不再发出
+        race.submitCloud(segment, result("hello there", 0.95));
+        assertEquals(1, winners.size());
+        stats.save();
+        assertEquals(1, savedStats(ProviderRace.Provider.OFFLINE).getLong("wins"));
+        assertEquals(1, savedStats(ProviderRace.Provider.CLOUD).getLong("races"));
+        assertEquals(0, savedStats(ProviderRace.Provider.CLOUD).getLong("wins"));
+        assertEquals(1, savedStats(ProviderRace.Provider.CLOUD).getLong("results"));
+    }
+
+    @Test
+    public void recognizeSegmentsSplitsAudioAtSegmentBoundaries() throws Exception {
+        ProviderRace race = newRace();
+        int[] sizes = {1000, 5000, 300};
+        for (int i = 0; i < sizes.length; i++) {
+            // 每次写入700字节，读取跨越段边界
+            byte[] data = fill(sizes[i], i + 1);
+            for (int offset = 0; offset < data.length; offset += 700) {
+                race.feed(data, offset, Math.min(700, data.length - offset));
+            }
+            race.endSegment();
+            recognizer.finals.add(new RecognizeResponseParser.Alternative("segment" + i, 0.9));
+        }
+        race.finish();
+
+        race.start(Runnable::run);
+
+        assertEquals(sizes.length, recognizer.finalAudio.size());
+        for (int i = 0; i < sizes.length; i++) {
+            assertArrayEquals(fill(sizes[i], i + 1), recognizer.finalAudio.get(i));
+            assertEquals(i, winners.get(i).segment);
+            assertEquals("segment" + i, winners.get(i).transcript);
+        }
+    }
+
+    @Test
+    public void recognizeSegmentsJoinsSentencesWithinSegment() throws Exception {
+        recognizer.sentenceAfterBytes = 1600;
+        recognizer.sentence = new RecognizeResponseParser.Alternative("hello", 0.8);
+        recognizer.finals.add(new RecognizeResponseParser.Alternative("world", 0.6));
+        ProviderRace race = newRace();
+        race.feed(fill(3200, 1), 0, 3200);
+        race.endSegment();
+        race.finish();
+
+        race.start(Runnable::run);
+
+        assertEquals(1, winners.size());
+        assertEquals("hello world", winners.get(0).transcript);
+        assertEquals(0.7, winners.get(0).confidence, 1e-9);
+    }
+
+    @Test
+    public void cloudWinSkipsOfflineDecodingOfSegment() throws Exception {
+        recognizer.finals.add(new RecognizeResponseParser.Alternative("second", 0.9));
+        ProviderRace race = newRace();
+        race.feed(fill(2000, 1), 0, 2000);
+        ProviderRace.Segment first = race.endSegment();
+        race.feed(fill(1000, 2), 0, 1000);
+        race.endSegment();
+        race.finish();
+        race.submitCloud(first, result("first", 0.9));
+
+        race.start(Runnable::run);
+
+        assertEquals(2, winners.size());
+        assertEquals(ProviderRace.Provider.CLOUD, winners.get(0).provider);
+        assertEquals("first", winners.get(0).transcript);
+        assertEquals(ProviderRace.Provider.OFFLINE, winners.get(1).provider);
+        // 第一段没有送入识别器，也没有取结果
+        assertEquals(1, recognizer.finalAudio.size());
+        assertArrayEquals(fill(1000, 2), recognizer.finalAudio.get(0));
+    }
+
+    @Test
+    public void withoutConfidentResultHigherConfidenceWins() throws Exception {
+        recognizer.finals.add(new RecognizeResponseParser.Alternative("offline", 0.4));
+        ProviderRace race = newRace();
+        race.feed(fill(1000, 1), 0, 1000);
+        ProviderRace.Segment segment = race.endSegment();
+        race.finish();
+        race.submitCloud(segment, result("cloud", 0.3));
+        assertFalse(race.isDecided(segment));
+
+        race.start(Runnable::run);
+
+        assertEquals(1, winners.size());
+        assertEquals(ProviderRace.Provider.OFFLINE, winners.get(0).provider);
+        assertEquals("offline", winners.get(0).transcript);
+        // 云端已经交出结果，不需要取消
+        assertTrue(cancelledCloud.isEmpty());
+    }
+
+    @Test
+    public void markOfflineFailedDecidesSegmentsWithCloud() throws Exception {
+        ProviderRace race = newRace(() -> {
+            throw new IOException("model missing");
+        });
+        race.feed(fill(1000, 1), 0, 1000);
+        ProviderRace.Segment waiting = race.endSegment();
+        race.feed(fill(1000, 2), 0, 1000);
+        ProviderRace.Segment later = race.endSegment();
+        race.feed(fill(1000, 3), 0, 1000);
+        ProviderRace.Segment empty = race.endSegment();
+        race.finish();
+        // 置信度不够，等离线结果
+        race.submitCloud(waiting, result("waiting", 0.2));
+        assertFalse(race.isDecided(waiting));
+
+        race.start(Runnable::run);
+
+        // 离线失败后，等待中的段由云端结果决出
+        assertEquals(1, winners.size());
+        assertEquals(waiting.getId(), winners.get(0).segment);
+        assertEquals(ProviderRace.Provider.CLOUD, winners.get(0).provider);
+        assertEquals(1, router.getHealth(ProviderRace.Provider.OFFLINE.getId()).consecutiveFailures);
+
+        // 之后到达的云端结果不再等离线
+        race.submitCloud(later, result("later", 0.2));
+        assertTrue(race.isDecided(later));
+        assertEquals(ProviderRace.Provider.CLOUD, winners.get(1).provider);
+        race.submitCloud(empty, Collections.<RecognizeResponseParser.Alternative>emptyList());
+        assertTrue(race.isDecided(empty));
+        assertEquals(2, winners.size());
+    }
+
+    @Test
+    public void recognitionErrorMarksOfflineFailed() throws Exception {
+        ProviderRace race = newRace(() -> new FakeRecognizer() {
+            @Override
+            public RecognizeResponseParser.Alternative getFinalResult() {
+                throw new IllegalStateException("decoder crashed");
+            }
+        });
+        race.feed(fill(1000, 1), 0, 1000);
+        ProviderRace.Segment segment = race.endSegment();
+        race.finish();
+
+        race.start(Runnable::run);
+
+        assertTrue(winners.isEmpty());
+        race.submitCloud(segment, result("cloud", 0.2));
+        assertEquals(1, winners.size());
+        assertEquals(ProviderRace.Provider.CLOUD, winners.get(0).provider);
+    }
+
+    @Test
+    public void skippedCloudSegmentsAreNotCountedAsRaces() throws Exception {
+        recognizer.finals.add(new RecognizeResponseParser.Alternative("offline", 0.2));
+        ProviderRace race = newRace();
+        race.feed(fill(1000, 1), 0, 1000);
+        ProviderRace.Segment segment = race.endSegment();
+        race.skipCloud(segment);
+        race.finish();
+
+        race.start(Runnable::run);
+
+        assertEquals(1, winners.size());
+        assertEquals(ProviderRace.Provider.OFFLINE, winners.get(0).provider);
+        assertTrue(cancelledCloud.isEmpty());
+        assertEquals(0, savedStats(ProviderRace.Provider.OFFLINE).getLong("races"));
+        assertEquals(0, savedStats(ProviderRace.Provider.CLOUD).getLong("failures"));
+        assertEquals(1, savedStats(ProviderRace.Provider.OFFLINE).getLong("results"));
+    }
+}
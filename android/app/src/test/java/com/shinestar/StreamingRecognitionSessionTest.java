@@ -0,0 +1,314 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.speech.v1.SpeechGrpc;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.StreamingRecognitionResult;
+import com.google.cloud.speech.v1.StreamingRecognizeRequest;
+import com.google.cloud.speech.v1.StreamingRecognizeResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * 用进程内的假Speech服务端检查流式会话：中间结果、时长上限前的重建、OUT_OF_RANGE及其他错误的处理
+ */
+public class StreamingRecognitionSessionTest {
+    private static final String API_KEY = "test-key";
+    private static final Metadata.Key<String> API_KEY_HEADER =
+        Metadata.Key.of("x-goog-api-key", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * 服务端收到一段音频后的行为
+     */
+    private interface Behavior {
+        void onAudio(FakeStream stream, int chunk);
+    }
+
+    private static final class FakeStream implements StreamObserver<StreamingRecognizeRequest> {
+        final List<StreamingRecognizeRequest> requests = Collections.synchronizedList(new ArrayList<>());
+        final StreamObserver<StreamingRecognizeResponse> responses;
+        final Behavior behavior;
+        final String apiKey;
+        volatile boolean halfClosed;
+        volatile boolean terminated;
+
+        FakeStream(StreamObserver<StreamingRecognizeResponse> responses, Behavior behavior, String apiKey) {
+            this.responses = responses;
+            this.behavior = behavior;
+            this.apiKey = apiKey;
+        }
+
+        @Override
+        public void onNext(StreamingRecognizeRequest request) {
+            requests.add(request);
+            if (request.hasStreamingConfig() || terminated) {
+                return;
+            }
+            behavior.onAudio(this, requests.size() - 1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            terminated = true;
+        }
+
+        @Override
+        public void onCompleted() {
+            halfClosed = true;
+            if (!terminated) {
+                // 客户端结束推送后返回最终结果
+                respond("final", true);
+                terminated = true;
+                responses.onCompleted();
+            }
+        }
+
+        void respond(String transcript, boolean isFinal) {
+            responses.onNext(StreamingRecognizeResponse.newBuilder()
+                .addResults(StreamingRecognitionResult.newBuilder()
+                    .addAlternatives(SpeechRecognitionAlternative.newBuilder().setTranscript(transcript))
+                    .setIsFinal(isFinal))
+                .build());
+        }
+
+        void fail(Status status) {
+            terminated = true;
+            responses.onError(status.asRuntimeException());
+        }
+
+        int audioChunks() {
+            synchronized (requests) {
+                int count = 0;
+                for (StreamingRecognizeRequest request : requests) {
+                    if (!request.getAudioContent().isEmpty()) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        }
+    }
+
+    private final class FakeSpeech extends SpeechGrpc.SpeechImplBase {
+        @Override
+        public StreamObserver<StreamingRecognizeRequest> streamingRecognize(
+            StreamObserver<StreamingRecognizeResponse> responses) {
+            FakeStream stream = new FakeStream(responses, behavior, lastApiKey);
+            streams.add(stream);
+            return stream;
+        }
+    }
+
+    private final class RecordingListener implements StreamingRecognitionSession.Listener {
+        final List<StreamingRecognitionResult> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> restarts = Collections.synchronizedList(new ArrayList<>());
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onResult(StreamingRecognitionResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onStreamRestarted(int restartCount) {
+            restarts.add(restartCount);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            errors.add(error);
+        }
+    }
+
+    private final List<FakeStream> streams = Collections.synchronizedList(new ArrayList<>());
+    private volatile Behavior behavior;
+    private volatile String lastApiKey;
+    private Server server;
+    private ManagedChannel channel;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        ServerInterceptor captureApiKey = new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                         Metadata headers,
+                                                                         ServerCallHandler<ReqT, RespT> next) {
+                lastApiKey = headers.get(API_KEY_HEADER);
+                return next.startCall(call, headers);
+            }
+        };
+        // 两端都用directExecutor，回调在调用线程上同步执行，测试不依赖时序
+        server = InProcessServerBuilder.forName(name)
+            .directExecutor()
+            .addService(ServerInterceptors.intercept(new FakeSpeech(), captureApiKey))
+            .build()
+            .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        listener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void deliversInterimAndFinalResults() {
+        behavior = (stream, chunk) -> stream.respond("interim " + chunk, false);
+        StreamingRecognitionSession session = newSession(StreamingRecognitionSession.DEFAULT_STREAM_LIMIT_MS);
+
+        session.start();
+        sendChunks(session, 3);
+        session.finish();
+
+        assertEquals(1, streams.size());
+        FakeStream stream = streams.get(0);
+        assertEquals(API_KEY, stream.apiKey);
+        StreamingRecognizeRequest config = stream.requests.get(0);
+        assertTrue(config.hasStreamingConfig());
+        assertTrue(config.getStreamingConfig().getInterimResults());
+        assertEquals("zh-CN", config.getStreamingConfig().getConfig().getLanguageCode());
+        assertEquals(16000, config.getStreamingConfig().getConfig().getSampleRateHertz());
+        assertEquals(3, stream.audioChunks());
+        assertTrue(stream.halfClosed);
+
+        assertEquals(4, listener.results.size());
+        for (int i = 0; i < 3; i++) {
+            assertFalse(listener.results.get(i).getIsFinal());
+            assertEquals("interim " + (i + 1), transcript(listener.results.get(i)));
+        }
+        assertTrue(listener.results.get(3).getIsFinal());
+        assertTrue(listener.errors.isEmpty());
+        assertEquals(0, session.getRestartCount());
+    }
+
+    @Test
+    public void restartsStreamBeforeDurationLimit() throws InterruptedException {
+        behavior = (stream, chunk) -> { };
+        StreamingRecognitionSession session = newSession(50);
+
+        session.start();
+        sendChunks(session, 2);
+        Thread.sleep(80);
+        sendChunks(session, 2);
+        session.finish();
+
+        assertEquals(2, streams.size());
+        // 旧流正常结束，新流先发送配置再继续推送音频
+        assertTrue(streams.get(0).halfClosed);
+        assertEquals(2, streams.get(0).audioChunks());
+        assertTrue(streams.get(1).requests.get(0).hasStreamingConfig());
+        assertEquals(2, streams.get(1).audioChunks());
+        assertEquals(Collections.singletonList(1), listener.restarts);
+        assertEquals(1, session.getRestartCount());
+        assertTrue(listener.errors.isEmpty());
+    }
+
+    @Test
+    public void outOfRangeReopensOnNextChunkWithoutError() {
+        behavior = (stream, chunk) -> {
+            if (streams.size() == 1 && chunk == 2) {
+                stream.fail(Status.OUT_OF_RANGE.withDescription("Exceeded maximum allowed stream duration"));
+            }
+        };
+        StreamingRecognitionSession session = newSession(StreamingRecognitionSession.DEFAULT_STREAM_LIMIT_MS);
+
+        session.start();
+        sendChunks(session, 4);
+        session.finish();
+
+        assertEquals(2, streams.size());
+        assertEquals(2, streams.get(0).audioChunks());
+        // 服务端关闭后的音频进入新流，不会写到已结束的流上
+        assertEquals(2, streams.get(1).audioChunks());
+        assertEquals(Collections.singletonList(1), listener.restarts);
+        assertTrue(listener.errors.isEmpty());
+    }
+
+    @Test
+    public void nonRetryableErrorStopsSessionAndReportsOnce() {
+        behavior = (stream, chunk) -> stream.fail(Status.INVALID_ARGUMENT.withDescription("bad config"));
+        StreamingRecognitionSession session = newSession(StreamingRecognitionSession.DEFAULT_STREAM_LIMIT_MS);
+
+        session.start();
+        sendChunks(session, 5);
+        session.finish();
+
+        assertEquals(1, streams.size());
+        assertEquals(1, streams.get(0).audioChunks());
+        assertEquals(1, listener.errors.size());
+        assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(listener.errors.get(0)).getCode());
+    }
+
+    @Test
+    public void unavailableIsRetriedThenReported() {
+        behavior = (stream, chunk) -> stream.fail(Status.UNAVAILABLE);
+        StreamingRecognitionSession session = newSession(StreamingRecognitionSession.DEFAULT_STREAM_LIMIT_MS);
+
+        session.start();
+        sendChunks(session, 10);
+        session.finish();
+
+        // 首个流加3次重建，之后不再发送
+        assertEquals(4, streams.size());
+        assertEquals(1, listener.errors.size());
+        assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(listener.errors.get(0)).getCode());
+    }
+
+    @Test
+    public void cancelDoesNotReportError() {
+        behavior = (stream, chunk) -> { };
+        StreamingRecognitionSession session = newSession(StreamingRecognitionSession.DEFAULT_STREAM_LIMIT_MS);
+
+        session.start();
+        sendChunks(session, 2);
+        session.cancel();
+        sendChunks(session, 2);
+
+        assertEquals(1, streams.size());
+        assertEquals(2, streams.get(0).audioChunks());
+        assertTrue(listener.errors.isEmpty());
+    }
+
+    private StreamingRecognitionSession newSession(long streamLimitMs) {
+        return new StreamingRecognitionSession(channel, API_KEY, "zh-CN", 16000, streamLimitMs, listener);
+    }
+
+    private static void sendChunks(StreamingRecognitionSession session, int count) {
+        byte[] chunk = new byte[3200];
+        for (int i = 0; i < count; i++) {
+            chunk[0] = (byte) i;
+            session.sendAudio(chunk, 0, chunk.length);
+        }
+    }
+
+    private static String transcript(StreamingRecognitionResult result) {
+        return result.getAlternatives(0).getTranscript();
+    }
+}
@@ -0,0 +1,97 @@
+package com.shinestar.benchmark;
+
+import com.shinestar.AudioChunk;
+import com.shinestar.AudioChunkBatcher;
+import com.shinestar.AudioEncoder;
+import com.shinestar.ByteArrayPool;
+import com.shinestar.FlacEncoder;
+import com.shinestar.RecognizeRequestBody;
+import com.shinestar.VoiceActivityDetector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * 与GoogleCloudSpeechModule分段识别模式相同的处理链：VAD → 分批 → FLAC编码 → 请求体写出。
+ * 请求体写入丢弃数据的sink，只测本地处理，不含网络。
+ */
+final class BatchPipeline {
+    private static final int WINDOW_POOL_SIZE = 4;
+
+    private final AudioChunkBatcher batcher;
+    private final AudioEncoder encoder;
+    private final VoiceActivityDetector vad;
+    private final BufferedSink sink = Okio.buffer(Okio.blackhole());
+    private long uploadedBytes;
+    private int windows;
+
+    BatchPipeline(int windowMs) {
+        int windowBytes = windowMs * (PcmFixtures.SAMPLE_RATE * 2 / 1000);
+        this.batcher = new AudioChunkBatcher(PcmFixtures.SAMPLE_RATE, new ByteArrayPool(windowBytes, WINDOW_POOL_SIZE));
+        this.encoder = new FlacEncoder(PcmFixtures.SAMPLE_RATE);
+        this.vad = new VoiceActivityDetector(PcmFixtures.SAMPLE_RATE, new VoiceActivityDetector.Listener() {
+            @Override
+            public void onSpeechStart() {
+            }
+
+            @Override
+            public void onSpeechAudio(byte[] data, int offset, int count) {
+                append(data, offset, count);
+            }
+
+            @Override
+            public void onSpeechEnd() {
+                flush();
+            }
+        });
+    }
+
+    void process(byte[] data, int offset, int count) {
+        vad.process(data, offset, count);
+    }
+
+    void finish() {
+        vad.finish();
+        flush();
+    }
+
+    long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    int getWindows() {
+        return windows;
+    }
+
+    private void append(byte[] data, int offset, int count) {
+        int end = offset + count;
+        while (offset < end) {
+            offset += batcher.append(data, offset, end - offset);
+            if (batcher.isFull() || batcher.isUtteranceEnded()) {
+                flush();
+            }
+        }
+    }
+
+    private void flush() {
+        if (batcher.isEmpty()) {
+            return;
+        }
+        AudioChunk chunk = encoder.encode(batcher.drain());
+        try {
+            String config = RecognizeRequestBody.buildConfigJson(encoder.getEncoding(), PcmFixtures.SAMPLE_RATE, "en-US");
+            RecognizeRequestBody body = new RecognizeRequestBody(config, chunk.getData(), chunk.getLength());
+            body.writeTo(sink);
+            sink.flush();
+            uploadedBytes += body.contentLength();
+            windows++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            chunk.release();
+        }
+    }
+}
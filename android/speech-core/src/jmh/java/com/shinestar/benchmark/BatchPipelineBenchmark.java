@@ -0,0 +1,44 @@
+package com.shinestar.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 采集线程每送入一帧后处理链的耗时分布。大多数帧只经过VAD和拷贝，
+ * 窗口写满或一句话结束的帧还要完成编码和请求体写出，因此用SampleTime观察长尾。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchPipelineBenchmark {
+    @Param({"1000", "5000"})
+    public int windowMs;
+
+    private byte[] pcm;
+    private int position;
+    private BatchPipeline pipeline;
+
+    @Setup
+    public void setup() {
+        pcm = PcmFixtures.speech(60000, 4);
+        pipeline = new BatchPipeline(windowMs);
+    }
+
+    @Benchmark
+    public long processFrame() {
+        if (position + PcmFixtures.FRAME_BYTES > pcm.length) {
+            position = 0;
+        }
+        pipeline.process(pcm, position, PcmFixtures.FRAME_BYTES);
+        position += PcmFixtures.FRAME_BYTES;
+        return pipeline.getUploadedBytes();
+    }
+}
@@ -0,0 +1,48 @@
+package com.shinestar.benchmark;
+
+import com.shinestar.AudioChunk;
+import com.shinestar.ByteArrayPool;
+import com.shinestar.FlacEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 一个识别窗口的FLAC编码耗时，窗口长度与configureBatching允许的范围一致
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlacEncoderBenchmark {
+    @Param({"1000", "5000", "15000"})
+    public int windowMs;
+
+    private byte[] pcm;
+    private ByteArrayPool windowPool;
+    private FlacEncoder encoder;
+
+    @Setup
+    public void setup() {
+        pcm = PcmFixtures.speech(windowMs, 1);
+        windowPool = new ByteArrayPool(pcm.length, 2);
+        encoder = new FlacEncoder(PcmFixtures.SAMPLE_RATE);
+    }
+
+    @Benchmark
+    public int encodeWindow() {
+        byte[] window = windowPool.acquire();
+        System.arraycopy(pcm, 0, window, 0, pcm.length);
+        AudioChunk encoded = encoder.encode(new AudioChunk(window, pcm.length, windowPool));
+        int length = encoded.getLength();
+        encoded.release();
+        return length;
+    }
+}
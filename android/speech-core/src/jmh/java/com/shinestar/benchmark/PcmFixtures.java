@@ -0,0 +1,121 @@
+package com.shinestar.benchmark;
+
+import java.util.Random;
+
+/**
+ * 基准测试用的16kHz PCM16单声道数据。
+ * 按固定种子合成类似语音的信号：音节由带基频滑动的谐波组成，谐波幅度按两个共振峰加权，
+ * 音节之间有短间隔，每隔若干音节插入一段停顿，全程叠加底噪。
+ * 结果可重复，不需要在仓库中保存录音文件。
+ */
+public final class PcmFixtures {
+    public static final int SAMPLE_RATE = 16000;
+    public static final int FRAME_MS = 20;
+    public static final int FRAME_BYTES = SAMPLE_RATE * 2 * FRAME_MS / 1000;
+
+    private static final int HARMONICS = 12;
+    private static final double NOISE_SIGMA = 40;
+
+    private PcmFixtures() {
+    }
+
+    public static byte[] speech(int durationMs, long seed) {
+        Random random = new Random(seed);
+        int totalSamples = SAMPLE_RATE * durationMs / 1000;
+        short[] samples = new short[totalSamples];
+
+        int position = 0;
+        int syllables = 0;
+        while (position < totalSamples) {
+            int syllableSamples = ms(150 + random.nextInt(150));
+            double f0Start = 100 + random.nextDouble() * 120;
+            double f0End = f0Start * (0.8 + random.nextDouble() * 0.4);
+            double f1 = 500 + random.nextDouble() * 300;
+            double f2 = 1200 + random.nextDouble() * 1000;
+            double amplitude = 6000 + random.nextDouble() * 6000;
+            double phase = 0;
+
+            for (int i = 0; i < syllableSamples && position < totalSamples; i++, position++) {
+                double progress = (double) i / syllableSamples;
+                double f0 = f0Start + (f0End - f0Start) * progress;
+                phase += 2 * Math.PI * f0 / SAMPLE_RATE;
+                double value = 0;
+                for (int k = 1; k <= HARMONICS; k++) {
+                    double frequency = k * f0;
+                    double weight = Math.exp(-square((frequency - f1) / 150))
+                        + 0.6 * Math.exp(-square((frequency - f2) / 250))
+                        + 0.05;
+                    value += weight / k * Math.sin(k * phase);
+                }
+                double envelope = Math.sin(Math.PI * progress);
+                samples[position] = clip(amplitude * envelope * value + random.nextGaussian() * NOISE_SIGMA);
+            }
+
+            syllables++;
+            // 音节间隔，每8个音节左右停顿一次
+            int gap = syllables % 8 == 0 ? ms(400 + random.nextInt(400)) : ms(50 + random.nextInt(100));
+            for (int i = 0; i < gap && position < totalSamples; i++, position++) {
+                samples[position] = clip(random.nextGaussian() * NOISE_SIGMA);
+            }
+        }
+        return toBytes(samples);
+    }
+
+    public static byte[] silence(int durationMs, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[SAMPLE_RATE * durationMs / 1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = clip(random.nextGaussian() * NOISE_SIGMA);
+        }
+        return toBytes(samples);
+    }
+
+    /**
+     * 与speech:recognize实际返回结构一致的响应，包含词级时间戳和置信度
+     */
+    public static String recognizeResponse(int results, int wordsPerResult) {
+        StringBuilder json = new StringBuilder("{\"results\":[");
+        for (int r = 0; r < results; r++) {
+            if (r > 0) {
+                json.append(',');
+            }
+            json.append("{\"alternatives\":[{\"transcript\":\"");
+            for (int w = 0; w < wordsPerResult; w++) {
+                json.append(w == 0 ? "" : " ").append("word").append(w);
+            }
+            json.append("\",\"confidence\":0.9").append(r % 10).append(",\"words\":[");
+            for (int w = 0; w < wordsPerResult; w++) {
+                if (w > 0) {
+                    json.append(',');
+                }
+                json.append("{\"startTime\":\"").append(w * 0.3).append("s\",\"endTime\":\"")
+                    .append(w * 0.3 + 0.25).append("s\",\"word\":\"word").append(w)
+                    .append("\",\"confidence\":0.8").append(w % 10).append('}');
+            }
+            json.append("]}],\"resultEndTime\":\"").append(r * 5).append(".120s\",\"languageCode\":\"en-us\"}");
+        }
+        json.append("],\"totalBilledTime\":\"").append(results * 5).append("s\",\"requestId\":\"1234567890\"}");
+        return json.toString();
+    }
+
+    private static int ms(int milliseconds) {
+        return SAMPLE_RATE * milliseconds / 1000;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    private static short clip(double value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+    }
+
+    private static byte[] toBytes(short[] samples) {
+        byte[] bytes = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            bytes[i * 2] = (byte) samples[i];
+            bytes[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,77 @@
+package com.shinestar.benchmark;
+
+import com.shinestar.PcmResampler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 采集格式转换为16kHz单声道PCM16的CPU开销。
+ * 每次操作按20ms一帧处理1秒音频，结果（ms/op）即每秒音频占用的CPU毫秒数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PcmResamplerBenchmark {
+    private static final int OUTPUT_RATE = 16000;
+
+    // 采样率/声道数/格式
+    @Param({"16000/1/PCM_16BIT", "44100/1/PCM_16BIT", "48000/1/PCM_16BIT", "48000/2/PCM_16BIT", "48000/2/PCM_FLOAT"})
+    public String format;
+
+    private PcmResampler resampler;
+    private ByteBuffer input;
+    private ByteBuffer output;
+    private int frameBytes;
+
+    @Setup
+    public void setup() {
+        String[] parts = format.split("/");
+        int rate = Integer.parseInt(parts[0]);
+        int channels = Integer.parseInt(parts[1]);
+        PcmResampler.Encoding encoding = PcmResampler.Encoding.valueOf(parts[2]);
+        resampler = new PcmResampler(rate, channels, encoding, OUTPUT_RATE);
+
+        int bytesPerFrame = channels * encoding.getBytesPerSample();
+        frameBytes = rate * PcmFixtures.FRAME_MS / 1000 * bytesPerFrame;
+        input = ByteBuffer.allocateDirect(rate * bytesPerFrame).order(ByteOrder.LITTLE_ENDIAN);
+        // 内容不影响耗时，用几个正弦加噪声即可
+        Random random = new Random(3);
+        for (int i = 0; i < rate; i++) {
+            double value = 0.3 * Math.sin(2 * Math.PI * 220 * i / rate)
+                + 0.2 * Math.sin(2 * Math.PI * 1800 * i / rate)
+                + 0.01 * random.nextGaussian();
+            for (int c = 0; c < channels; c++) {
+                if (encoding == PcmResampler.Encoding.PCM_FLOAT) {
+                    input.putFloat((float) value);
+                } else {
+                    input.putShort((short) (value * Short.MAX_VALUE));
+                }
+            }
+        }
+        output = ByteBuffer.allocateDirect(resampler.maxOutputBytes(frameBytes));
+    }
+
+    @Benchmark
+    public int resampleOneSecond() {
+        int written = 0;
+        for (int offset = 0; offset + frameBytes <= input.capacity(); offset += frameBytes) {
+            input.limit(offset + frameBytes).position(offset);
+            output.clear();
+            written += resampler.process(input, output);
+        }
+        input.clear();
+        return written;
+    }
+}
@@ -0,0 +1,58 @@
+package com.shinestar.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 检查分段识别处理链在稳定运行后每帧的堆分配量，超过阈值时以非零状态退出，可用于CI。
+ * 预热阶段让各对象池填满；之后每帧理应只有少量分配（请求体和Okio的内部段）。
+ * 运行：./gradlew :speech-core:checkAllocations
+ */
+public final class PipelineAllocationCheck {
+    private static final int WARMUP_SECONDS = 120;
+    private static final int MEASURE_SECONDS = 600;
+    // 每帧640字节PCM，按窗口摊销后的允许分配量
+    private static final long MAX_BYTES_PER_FRAME = 64;
+
+    private PipelineAllocationCheck() {
+    }
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        byte[] pcm = PcmFixtures.speech(60000, 5);
+        BatchPipeline pipeline = new BatchPipeline(5000);
+
+        run(pipeline, pcm, WARMUP_SECONDS);
+        int windowsBefore = pipeline.getWindows();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int frames = run(pipeline, pcm, MEASURE_SECONDS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        pipeline.finish();
+
+        long perFrame = allocated / frames;
+        System.out.println("frames=" + frames
+            + " windows=" + (pipeline.getWindows() - windowsBefore)
+            + " allocatedBytes=" + allocated
+            + " bytesPerFrame=" + perFrame
+            + " limit=" + MAX_BYTES_PER_FRAME);
+        if (perFrame > MAX_BYTES_PER_FRAME) {
+            System.err.println("处理链每帧分配超出上限");
+            System.exit(1);
+        }
+    }
+
+    private static int run(BatchPipeline pipeline, byte[] pcm, int seconds) {
+        int frames = seconds * 1000 / PcmFixtures.FRAME_MS;
+        int position = 0;
+        for (int i = 0; i < frames; i++) {
+            if (position + PcmFixtures.FRAME_BYTES > pcm.length) {
+                position = 0;
+            }
+            pipeline.process(pcm, position, PcmFixtures.FRAME_BYTES);
+            position += PcmFixtures.FRAME_BYTES;
+        }
+        return frames;
+    }
+}
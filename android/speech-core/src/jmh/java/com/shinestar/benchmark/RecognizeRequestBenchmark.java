@@ -0,0 +1,47 @@
+package com.shinestar.benchmark;
+
+import com.shinestar.RecognizeRequestBody;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * 构造识别请求：生成config JSON，并把Base64编码的音频流式写入请求体
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecognizeRequestBenchmark {
+    @Param({"1000", "5000", "15000"})
+    public int windowMs;
+
+    private byte[] audio;
+    private BufferedSink sink;
+
+    @Setup
+    public void setup() {
+        audio = PcmFixtures.speech(windowMs, 3);
+        sink = Okio.buffer(Okio.blackhole());
+    }
+
+    @Benchmark
+    public long writeBody() throws IOException {
+        String config = RecognizeRequestBody.buildConfigJson("LINEAR16", PcmFixtures.SAMPLE_RATE, "en-US");
+        RecognizeRequestBody body = new RecognizeRequestBody(config, audio, audio.length);
+        body.writeTo(sink);
+        sink.flush();
+        return body.contentLength();
+    }
+}
@@ -0,0 +1,40 @@
+package com.shinestar.benchmark;
+
+import com.shinestar.RecognizeResponseParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 解析speech:recognize响应，只取出transcript和confidence
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseParserBenchmark {
+    @Param({"1", "10"})
+    public int results;
+
+    private String response;
+
+    @Setup
+    public void setup() {
+        response = PcmFixtures.recognizeResponse(results, 20);
+    }
+
+    @Benchmark
+    public List<RecognizeResponseParser.Alternative> parse() throws IOException {
+        return RecognizeResponseParser.parse(new StringReader(response));
+    }
+}
@@ -0,0 +1,55 @@
+package com.shinestar.benchmark;
+
+import com.shinestar.VoiceActivityDetector;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 采集线程上每个20ms帧的VAD耗时
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VoiceActivityDetectorBenchmark {
+    private byte[] pcm;
+    private int position;
+    private int speechBytes;
+    private VoiceActivityDetector vad;
+
+    @Setup
+    public void setup() {
+        pcm = PcmFixtures.speech(30000, 2);
+        vad = new VoiceActivityDetector(PcmFixtures.SAMPLE_RATE, new VoiceActivityDetector.Listener() {
+            @Override
+            public void onSpeechStart() {
+            }
+
+            @Override
+            public void onSpeechAudio(byte[] data, int offset, int count) {
+                speechBytes += count;
+            }
+
+            @Override
+            public void onSpeechEnd() {
+            }
+        });
+    }
+
+    @Benchmark
+    public int processFrame() {
+        if (position + PcmFixtures.FRAME_BYTES > pcm.length) {
+            position = 0;
+        }
+        vad.process(pcm, position, PcmFixtures.FRAME_BYTES);
+        position += PcmFixtures.FRAME_BYTES;
+        return speechBytes;
+    }
+}
@@ -0,0 +1,340 @@
+package com.shinestar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按实测的上传吞吐和往返耗时为分批识别选择编码、采样率和窗口时长，使端到端延迟的p95不超过目标。
+ * 端到端延迟指一个窗口取出之后到识别结果返回的时间（编码加整个请求），窗口越长请求体越大、服务端处理越久。
+ * 请求耗时按 固定开销 + 请求体字节数/吞吐 + 服务端耗时×音频时长 建模：最近的请求大小不一时对字节数做线性回归，
+ * 否则用请求体上传阶段的耗时估计吞吐；实际比预测多出的耗时取p95作为余量加到预测上。
+ * 在满足目标的前提下优先保留16kHz和3秒以上的窗口，其次降到8kHz，最后才缩短到3秒以下；
+ * 没有任何组合满足时选预测延迟最低的。换到更长窗口或更高采样率时要求预测留有余量，避免来回切换。
+ * 不读时钟、没有随机数，同样的输入序列得到同样的决策，可以用假的网络模型在JVM上验证。线程安全。
+ */
+public final class AdaptiveUploadController {
+
+    public enum Profile {
+        LINEAR16_16K("LINEAR16", 16000, 32 * 4 / 3.0, 0),
+        FLAC_16K("FLAC", 16000, 19.2 * 4 / 3, 0.01),
+        FLAC_8K("FLAC", 8000, 9.6 * 4 / 3, 0.012);
+
+        public final String encoding;
+        public final int sampleRate;
+        // 每毫秒音频对应的请求体字节数（base64后）及编码耗时的初始估计
+        final double priorBytesPerMs;
+        final double priorEncodeMsPerMs;
+
+        Profile(String encoding, int sampleRate, double priorBytesPerMs, double priorEncodeMsPerMs) {
+            this.encoding = encoding;
+            this.sampleRate = sampleRate;
+            this.priorBytesPerMs = priorBytesPerMs;
+            this.priorEncodeMsPerMs = priorEncodeMsPerMs;
+        }
+    }
+
+    public static final class Decision {
+        public final Profile profile;
+        public final int windowMs;
+        // 已加上余量
+        public final double predictedMs;
+        // 预测能否满足目标，否则是预测延迟最低的组合
+        public final boolean feasible;
+
+        Decision(Profile profile, int windowMs, double predictedMs, boolean feasible) {
+            this.profile = profile;
+            this.windowMs = windowMs;
+            this.predictedMs = predictedMs;
+            this.feasible = feasible;
+        }
+    }
+
+    public static final class Estimates {
+        public final int samples;
+        public final double throughputKbps;
+        public final double fixedMs;
+        public final double marginMs;
+        // 最近请求的实测端到端延迟p95，没有样本时为-1
+        public final double observedP95Ms;
+        public final int targetP95Ms;
+
+        Estimates(int samples, double throughputKbps, double fixedMs, double marginMs, double observedP95Ms,
+                  int targetP95Ms) {
+            this.samples = samples;
+            this.throughputKbps = throughputKbps;
+            this.fixedMs = fixedMs;
+            this.marginMs = marginMs;
+            this.observedP95Ms = observedP95Ms;
+            this.targetP95Ms = targetP95Ms;
+        }
+    }
+
+    public static final int DEFAULT_TARGET_P95_MS = 800;
+    public static final int MIN_WINDOW_MS = 1000;
+    // 短于该时长的窗口识别准确率明显下降，先尝试降低采样率
+    public static final int PREFERRED_MIN_WINDOW_MS = 3000;
+    public static final int WINDOW_STEP_MS = 1000;
+    // 参与估计的最近请求数，样本少于MIN_SAMPLES时使用初始估计
+    public static final int HISTORY_SIZE = 30;
+    public static final int MIN_SAMPLES = 3;
+    // 请求体小于该值时上传阶段主要是写入套接字缓冲区，不能反映吞吐
+    public static final long MIN_THROUGHPUT_SAMPLE_BYTES = 16 * 1024;
+    // 换到更长窗口或更高采样率时预测延迟不能超过目标的这一比例
+    public static final double UPGRADE_HEADROOM = 0.8;
+
+    private static final double EWMA_ALPHA = 0.3;
+    private static final double SERVER_MS_PER_AUDIO_MS = 0.1;
+    private static final double DEFAULT_FIXED_MS = 300;
+    // 约400kbps
+    private static final double DEFAULT_BYTES_PER_MS = 50;
+    private static final double MIN_BYTES_PER_MS = 0.5;
+    private static final double MAX_BYTES_PER_MS = 10_000;
+    // 系统给出的链路带宽估计偏乐观，按一半使用
+    private static final double LINK_HINT_FACTOR = 0.5;
+    // 样本不足时预测之外的余量
+    private static final double DEFAULT_MARGIN_MS = 100;
+    // 回归要求字节数的变异系数至少达到该值
+    private static final double MIN_BYTES_VARIATION = 0.1;
+
+    private int targetP95Ms = DEFAULT_TARGET_P95_MS;
+    private int maxWindowMs;
+    private boolean metered;
+    private String networkId;
+    private double priorBytesPerMs = DEFAULT_BYTES_PER_MS;
+
+    private final double[] bytesPerMs = new double[Profile.values().length];
+    private final double[] encodeMsPerMs = new double[Profile.values().length];
+    private double uploadBytesPerMs = -1;
+
+    // 最近请求：请求体字节数、扣除服务端耗时后的请求耗时、端到端延迟、实际与预测之差
+    private final double[] historyBytes = new double[HISTORY_SIZE];
+    private final double[] historyNetworkMs = new double[HISTORY_SIZE];
+    private final double[] historyLatencyMs = new double[HISTORY_SIZE];
+    private final double[] historyResidual = new double[HISTORY_SIZE];
+    private int next;
+    private int count;
+
+    private double fixedMs = DEFAULT_FIXED_MS;
+    private double msPerByte = 1 / DEFAULT_BYTES_PER_MS;
+    private Decision current;
+
+    public AdaptiveUploadController(int maxWindowMs) {
+        this.maxWindowMs = Math.max(MIN_WINDOW_MS, maxWindowMs);
+        for (Profile profile : Profile.values()) {
+            bytesPerMs[profile.ordinal()] = profile.priorBytesPerMs;
+            encodeMsPerMs[profile.ordinal()] = profile.priorEncodeMsPerMs;
+        }
+    }
+
+    public synchronized void setTargetP95Ms(int targetP95Ms) {
+        this.targetP95Ms = Math.max(1, targetP95Ms);
+    }
+
+    public synchronized int getTargetP95Ms() {
+        return targetP95Ms;
+    }
+
+    /**
+     * 用户设置的窗口时长是上限，控制器只会选择更短的窗口
+     */
+    public synchronized void setMaxWindowMs(int maxWindowMs) {
+        this.maxWindowMs = Math.max(MIN_WINDOW_MS, maxWindowMs);
+    }
+
+    /**
+     * 网络状态变化时调用，networkId标识当前网络（同类型的网络之间切换也不同）。
+     * 换到另一个网络时之前的请求不再代表当前链路，清空历史并以upstreamKbps（未知时为0）作为初始估计；
+     * 同一网络上只是带宽估计或计费状态变化时保留历史。计费网络上不使用未压缩的LINEAR16
+     */
+    public synchronized void onLinkChanged(String networkId, int upstreamKbps, boolean metered) {
+        this.metered = metered;
+        if (networkId != null && !networkId.equals(this.networkId)) {
+            this.networkId = networkId;
+            priorBytesPerMs = upstreamKbps > 0 ? upstreamKbps / 8.0 * LINK_HINT_FACTOR : DEFAULT_BYTES_PER_MS;
+            next = 0;
+            count = 0;
+            uploadBytesPerMs = -1;
+            fixedMs = DEFAULT_FIXED_MS;
+            msPerByte = 1 / clamp(priorBytesPerMs, MIN_BYTES_PER_MS, MAX_BYTES_PER_MS);
+        }
+    }
+
+    /**
+     * 记录一次完成的识别请求。encodeMs包括重采样和压缩；uploadMs为请求体写出的耗时，未知时传-1
+     */
+    public synchronized void onRequestCompleted(Profile profile, int audioMs, long bodyBytes, double encodeMs,
+                                                long uploadMs, long totalMs) {
+        if (audioMs <= 0 || bodyBytes <= 0) {
+            return;
+        }
+        double latency = encodeMs + totalMs;
+        double predicted = predict(profile, audioMs);
+        int i = profile.ordinal();
+        bytesPerMs[i] = ewma(bytesPerMs[i], (double) bodyBytes / audioMs);
+        encodeMsPerMs[i] = ewma(encodeMsPerMs[i], encodeMs / audioMs);
+        if (bodyBytes >= MIN_THROUGHPUT_SAMPLE_BYTES && uploadMs > 0) {
+            double sample = (double) bodyBytes / uploadMs;
+            uploadBytesPerMs = uploadBytesPerMs < 0 ? sample : ewma(uploadBytesPerMs, sample);
+        }
+
+        historyBytes[next] = bodyBytes;
+        historyNetworkMs[next] = totalMs - SERVER_MS_PER_AUDIO_MS * audioMs;
+        historyLatencyMs[next] = latency;
+        historyResidual[next] = latency - predicted;
+        next = (next + 1) % HISTORY_SIZE;
+        count = Math.min(count + 1, HISTORY_SIZE);
+        refit();
+    }
+
+    /**
+     * 下一个窗口使用的编码、采样率和时长
+     */
+    public synchronized Decision decide() {
+        double margin = marginMs();
+        int currentRank = current != null ? rank(current.windowMs, current.profile) : -1;
+        Decision fastest = null;
+        for (int[] candidate : candidates()) {
+            int windowMs = candidate[0];
+            Decision best = null;
+            for (Profile profile : profilesForRate(candidate[1])) {
+                double predicted = predict(profile, windowMs) + margin;
+                if (best == null || predicted < best.predictedMs) {
+                    best = new Decision(profile, windowMs, predicted, false);
+                }
+                if (fastest == null || predicted < fastest.predictedMs) {
+                    fastest = new Decision(profile, windowMs, predicted, false);
+                }
+            }
+            if (best == null) {
+                continue;
+            }
+            double limit = currentRank >= 0 && rank(windowMs, best.profile) < currentRank
+                ? targetP95Ms * UPGRADE_HEADROOM
+                : targetP95Ms;
+            if (best.predictedMs <= limit) {
+                current = new Decision(best.profile, windowMs, best.predictedMs, true);
+                return current;
+            }
+        }
+        current = fastest;
+        return current;
+    }
+
+    public synchronized Decision getCurrentDecision() {
+        return current;
+    }
+
+    public synchronized Estimates getEstimates() {
+        double observedP95 = -1;
+        if (count > 0) {
+            observedP95 = percentile(Arrays.copyOf(historyLatencyMs, count), 95);
+        }
+        return new Estimates(count, 8.0 / msPerByte, fixedMs, marginMs(), observedP95, targetP95Ms);
+    }
+
+    /**
+     * 按当前估计预测一个窗口的端到端延迟，不含余量
+     */
+    public synchronized double predict(Profile profile, int windowMs) {
+        int i = profile.ordinal();
+        double bytes = bytesPerMs[i] * windowMs;
+        return fixedMs + bytes * msPerByte + SERVER_MS_PER_AUDIO_MS * windowMs + encodeMsPerMs[i] * windowMs;
+    }
+
+    private void refit() {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < count; i++) {
+            meanX += historyBytes[i];
+            meanY += historyNetworkMs[i];
+        }
+        meanX /= count;
+        meanY /= count;
+        double varX = 0;
+        double covXY = 0;
+        // 固定开销不为负，每个请求的耗时除以字节数都是每字节耗时的上界
+        double maxSlope = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            double dx = historyBytes[i] - meanX;
+            varX += dx * dx;
+            covXY += dx * (historyNetworkMs[i] - meanY);
+            maxSlope = Math.min(maxSlope, Math.max(0, historyNetworkMs[i]) / historyBytes[i]);
+        }
+
+        double slope;
+        if (count >= MIN_SAMPLES && Math.sqrt(varX / count) >= MIN_BYTES_VARIATION * meanX && covXY > 0) {
+            slope = covXY / varX;
+        } else if (uploadBytesPerMs > 0) {
+            slope = 1 / uploadBytesPerMs;
+        } else {
+            slope = 1 / priorBytesPerMs;
+        }
+        // 快速链路上耗时主要是抖动，回归得不出斜率，靠上界逐步放开更长的窗口
+        msPerByte = clamp(Math.min(slope, maxSlope), 1 / MAX_BYTES_PER_MS, 1 / MIN_BYTES_PER_MS);
+        fixedMs = Math.max(0, meanY - msPerByte * meanX);
+    }
+
+    private double marginMs() {
+        if (count < MIN_SAMPLES) {
+            return DEFAULT_MARGIN_MS;
+        }
+        // 抖动主要来自网络和服务端排队，与窗口长短关系不大，按加性余量处理
+        return Math.max(0, percentile(Arrays.copyOf(historyResidual, count), 95));
+    }
+
+    /**
+     * 按优先顺序列出{窗口时长, 采样率}：16kHz的长窗口、8kHz的长窗口、16kHz的短窗口、8kHz的短窗口，同一组内窗口从长到短
+     */
+    private List<int[]> candidates() {
+        int preferredMin = Math.min(PREFERRED_MIN_WINDOW_MS, maxWindowMs);
+        List<int[]> candidates = new ArrayList<>();
+        for (int pass = 0; pass < 4; pass++) {
+            int sampleRate = pass % 2 == 0 ? 16000 : 8000;
+            boolean longWindows = pass < 2;
+            for (int windowMs = maxWindowMs; windowMs >= MIN_WINDOW_MS; windowMs -= WINDOW_STEP_MS) {
+                if ((windowMs >= preferredMin) == longWindows) {
+                    candidates.add(new int[]{windowMs, sampleRate});
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private int rank(int windowMs, Profile profile) {
+        List<int[]> candidates = candidates();
+        for (int i = 0; i < candidates.size(); i++) {
+            int[] candidate = candidates.get(i);
+            if (candidate[0] == windowMs && candidate[1] == profile.sampleRate) {
+                return i;
+            }
+        }
+        // 上限改小后原来的窗口已不在候选中
+        return -1;
+    }
+
+    private List<Profile> profilesForRate(int sampleRate) {
+        List<Profile> profiles = new ArrayList<>(2);
+        for (Profile profile : Profile.values()) {
+            if (profile.sampleRate == sampleRate && !(metered && "LINEAR16".equals(profile.encoding))) {
+                profiles.add(profile);
+            }
+        }
+        return profiles;
+    }
+
+    private static double ewma(double previous, double sample) {
+        return previous + EWMA_ALPHA * (sample - previous);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double percentile(double[] values, int percentile) {
+        Arrays.sort(values);
+        // 最近秩法
+        int rank = (int) Math.ceil(percentile / 100.0 * values.length);
+        return values[Math.max(0, Math.min(values.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,30 @@
+package com.shinestar;
+
+/**
+ * 一段待上传的音频数据，data可能来自ByteArrayPool，用完后需调用release归还
+ */
+public class AudioChunk {
+    private final byte[] data;
+    private final int length;
+    private final ByteArrayPool pool;
+
+    public AudioChunk(byte[] data, int length, ByteArrayPool pool) {
+        this.data = data;
+        this.length = length;
+        this.pool = pool;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void release() {
+        if (pool != null) {
+            pool.release(data);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.shinestar;
+
+/**
+ * 将AudioRecord读到的PCM16片段累积成一个识别窗口，
+ * 窗口写满或检测到句尾静音时由调用方取出并整体上传。
+ * 窗口数组从ByteArrayPool获取，取出后交给调用方，上传完成后归还。
+ * 可以把窗口时长限制在数组容量以下，由调用方按网络状况逐个窗口调整。
+ * 仅由处理线程访问，不做同步。
+ */
+public class AudioChunkBatcher {
+    // 句尾判定：窗口至少达到该时长后，连续静音超过endSilenceMs即视为一句话结束
+    private static final int MIN_UTTERANCE_MS = 1000;
+    private static final int END_SILENCE_MS = 600;
+    // PCM16样本绝对值低于该阈值视为静音
+    private static final int SILENCE_AMPLITUDE = 500;
+
+    private final int bytesPerMs;
+    private final ByteArrayPool pool;
+    private byte[] window;
+    private int maxBytes = Integer.MAX_VALUE;
+    private int length;
+    private int trailingSilentBytes;
+    private boolean hasSpeech;
+
+    public AudioChunkBatcher(int sampleRate, ByteArrayPool pool) {
+        this.bytesPerMs = sampleRate * 2 / 1000;
+        this.pool = pool;
+    }
+
+    /**
+     * 追加数据，返回实际写入的字节数；窗口已满时剩余数据需在drain后再次追加
+     */
+    public int append(byte[] data, int offset, int count) {
+        if (window == null) {
+            window = pool.acquire();
+        }
+        int writable = Math.min(count, capacity() - length);
+        if (writable <= 0) {
+            return 0;
+        }
+        System.arraycopy(data, offset, window, length, writable);
+        length += writable;
+
+        if (peakAmplitude(data, offset, writable) < SILENCE_AMPLITUDE) {
+            trailingSilentBytes += writable;
+        } else {
+            trailingSilentBytes = 0;
+            hasSpeech = true;
+        }
+        return writable;
+    }
+
+    public boolean isFull() {
+        return window != null && length >= capacity();
+    }
+
+    /**
+     * 限制窗口时长，不超过池中数组的容量；对当前窗口立即生效，已写入的数据超出时下次追加前即为已满
+     */
+    public void setMaxDurationMs(int durationMs) {
+        maxBytes = Math.max(bytesPerMs, durationMs * bytesPerMs);
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * 窗口内已有语音，且末尾出现足够长的静音
+     */
+    public boolean isUtteranceEnded() {
+        return hasSpeech
+            && length >= MIN_UTTERANCE_MS * bytesPerMs
+            && trailingSilentBytes >= END_SILENCE_MS * bytesPerMs;
+    }
+
+    public boolean hasSpeech() {
+        return hasSpeech;
+    }
+
+    public int getDurationMs() {
+        return length / bytesPerMs;
+    }
+
+    /**
+     * 取出当前窗口（不复制）并清空，下次追加时再从池中获取新窗口
+     */
+    public AudioChunk drain() {
+        AudioChunk chunk = new AudioChunk(window, length, pool);
+        window = null;
+        reset();
+        return chunk;
+    }
+
+    public void reset() {
+        length = 0;
+        trailingSilentBytes = 0;
+        hasSpeech = false;
+    }
+
+    private int capacity() {
+        return Math.min(window.length, maxBytes);
+    }
+
+    private static int peakAmplitude(byte[] data, int offset, int count) {
+        int peak = 0;
+        int end = offset + count - 1;
+        for (int i = offset; i < end; i += 2) {
+            int sample = (short) ((data[i] & 0xff) | (data[i + 1] << 8));
+            int abs = sample < 0 ? -sample : sample;
+            if (abs > peak) {
+                peak = abs;
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,19 @@
+package com.shinestar;
+
+/**
+ * 上传前的音频编码阶段，输入为PCM16单声道数据
+ */
+public interface AudioEncoder {
+    /**
+     * 对应Google Cloud RecognitionConfig中的encoding字段
+     */
+    String getEncoding();
+
+    byte[] encode(byte[] pcm, int offset, int length);
+
+    /**
+     * 编码一个音频片段，返回的片段由调用方负责release；
+     * 如果返回的不是输入片段，输入片段已在内部归还
+     */
+    AudioChunk encode(AudioChunk pcm);
+}
@@ -0,0 +1,32 @@
+package com.shinestar;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 固定大小byte[]的简单对象池，避免每个识别窗口都重新分配几百KB的数组。
+ * 池空时直接新建，池满时归还的数组交给GC回收。
+ */
+public class ByteArrayPool {
+    private final int arraySize;
+    private final ArrayBlockingQueue<byte[]> freeArrays;
+
+    public ByteArrayPool(int arraySize, int maxPooled) {
+        this.arraySize = arraySize;
+        this.freeArrays = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    public int getArraySize() {
+        return arraySize;
+    }
+
+    public byte[] acquire() {
+        byte[] array = freeArrays.poll();
+        return array != null ? array : new byte[arraySize];
+    }
+
+    public void release(byte[] array) {
+        if (array != null && array.length == arraySize) {
+            freeArrays.offer(array);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.shinestar;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 采集会话的状态机：IDLE → STARTING → RUNNING → STOPPING → IDLE，启动失败时 STARTING → IDLE。
+ * 状态只通过CAS转换，同一时刻最多一个会话；录音设备的打开、读取和关闭都在采集线程上完成，
+ * stop请求停止后等待采集线程退出，返回时设备已经关闭。
+ */
+public final class CaptureSession {
+
+    public enum State {
+        IDLE,
+        STARTING,
+        RUNNING,
+        STOPPING
+    }
+
+    /**
+     * 采集逻辑，三个方法依次在采集线程上调用；open成功后无论如何都会调用close
+     */
+    public interface Capture {
+        void open() throws Exception;
+
+        /**
+         * 采集循环，isRunning()变为false后尽快返回
+         */
+        void run(CaptureSession session);
+
+        void close();
+    }
+
+    /**
+     * 在采集线程上回调；每次成功的start恰好对应一次onStarted或onStartFailed
+     */
+    public interface Listener {
+        void onStarted();
+
+        void onStartFailed(Exception error);
+
+        void onStopped();
+    }
+
+    // 状态与该会话的结束信号一起替换，stop等待的一定是自己要停止的那个会话
+    private static final class Snapshot {
+        final State state;
+        final CountDownLatch finished;
+
+        Snapshot(State state, CountDownLatch finished) {
+            this.state = state;
+            this.finished = finished;
+        }
+    }
+
+    private static final Snapshot IDLE = new Snapshot(State.IDLE, new CountDownLatch(0));
+
+    private final Executor executor;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(IDLE);
+
+    public CaptureSession(Executor executor) {
+        this.executor = executor;
+    }
+
+    public State getState() {
+        return current.get().state;
+    }
+
+    public boolean isRunning() {
+        return current.get().state == State.RUNNING;
+    }
+
+    /**
+     * 已有会话未结束时返回false；启动结果通过listener异步通知
+     */
+    public boolean start(Capture capture, Listener listener) {
+        Snapshot starting = new Snapshot(State.STARTING, new CountDownLatch(1));
+        if (!current.compareAndSet(IDLE, starting)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> runSession(capture, listener, starting.finished));
+        } catch (RejectedExecutionException e) {
+            finish(starting.finished);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 请求停止并等待采集线程关闭设备、完成回调，不能在采集线程上调用。
+     * 没有会话时返回false；等待超时抛出IllegalStateException
+     */
+    public boolean stop(long timeoutMs) throws InterruptedException {
+        Snapshot snapshot;
+        do {
+            snapshot = current.get();
+            if (snapshot.state == State.IDLE) {
+                return false;
+            }
+        } while (snapshot.state != State.STOPPING
+            && !current.compareAndSet(snapshot, new Snapshot(State.STOPPING, snapshot.finished)));
+
+        if (!snapshot.finished.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Capture thread did not stop within " + timeoutMs + "ms");
+        }
+        return true;
+    }
+
+    private void runSession(Capture capture, Listener listener, CountDownLatch finished) {
+        try {
+            capture.open();
+        } catch (Exception e) {
+            listener.onStartFailed(e);
+            finish(finished);
+            return;
+        }
+
+        try {
+            // 启动过程中已被要求停止时不进入采集循环
+            Snapshot starting = current.get();
+            if (starting.state == State.STARTING
+                && current.compareAndSet(starting, new Snapshot(State.RUNNING, finished))) {
+                listener.onStarted();
+                capture.run(this);
+            } else {
+                listener.onStartFailed(new CancellationException("Stopped while starting"));
+            }
+        } finally {
+            capture.close();
+            listener.onStopped();
+            finish(finished);
+        }
+    }
+
+    private void finish(CountDownLatch finished) {
+        // 回调完成后才回到IDLE，stop返回时这个会话已经彻底结束
+        current.set(IDLE);
+        finished.countDown();
+    }
+}
@@ -0,0 +1,130 @@
+package com.shinestar;
+
+/**
+ * 单个接口的熔断器。
+ * 连续失败达到阈值后进入OPEN，期间请求直接失败；
+ * 冷却时间过后进入HALF_OPEN，只放行一个探测请求，成功则恢复CLOSED，失败则重新OPEN。
+ * 时间由调用方传入，便于测试。
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public interface Listener {
+        /**
+         * 在持有锁时回调，实现中不要阻塞
+         */
+        void onStateChanged(String name, State state);
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final Listener listener;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean probeInFlight;
+    private long openCount;
+
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMs, Listener listener) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMs = openDurationMs;
+        this.listener = listener;
+    }
+
+    /**
+     * 请求前调用，返回false表示熔断中，应直接失败
+     */
+    public synchronized boolean tryAcquire(long nowMs) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowMs < openUntil) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure(long nowMs) {
+        probeInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            open(nowMs, openDurationMs);
+        }
+    }
+
+    /**
+     * 请求被调用方主动取消：释放探测名额，不计为成功或失败，下一个请求可以重新探测
+     */
+    public synchronized void onCanceled() {
+        probeInFlight = false;
+    }
+
+    /**
+     * 服务端要求等待的时间超过重试上限时，按服务端给出的时长直接熔断
+     */
+    public synchronized void tripFor(long nowMs, long durationMs) {
+        probeInFlight = false;
+        open(nowMs, Math.max(durationMs, openDurationMs));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getRemainingOpenMs(long nowMs) {
+        return state == State.OPEN ? Math.max(0, openUntil - nowMs) : 0;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void open(long nowMs, long durationMs) {
+        openUntil = Math.max(openUntil, nowMs + durationMs);
+        if (state != State.OPEN) {
+            openCount++;
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State next) {
+        state = next;
+        if (listener != null) {
+            listener.onStateChanged(name, next);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.shinestar;
+
+import java.util.Arrays;
+
+/**
+ * 纯Java实现的FLAC编码器，仅支持16位单声道。
+ * 每个块在CONSTANT、VERBATIM和0~4阶FIXED预测中选择最短的编码，残差使用Rice编码。
+ * 语音（尤其是静音段）通常可压缩到原始大小的一半以下。
+ * 编码器内部缓冲区可复用，输出数组来自池，不是线程安全的。
+ */
+public class FlacEncoder implements AudioEncoder {
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int MAX_FIXED_ORDER = 4;
+    // 4位Rice参数中15表示转义，这里不使用
+    private static final int MAX_RICE_PARAMETER = 14;
+
+    private static final int SUBFRAME_CONSTANT = 0;
+    private static final int SUBFRAME_VERBATIM = 1;
+    private static final int SUBFRAME_FIXED = 8;
+    // 输出大小上限：STREAMINFO头部，加上每帧的帧头、子帧头和CRC（VERBATIM时数据不超过原始PCM）
+    private static final int STREAM_HEADER_BYTES = 42;
+    private static final int MAX_FRAME_OVERHEAD_BYTES = 16;
+    private static final int OUTPUT_POOL_SIZE = 4;
+
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc8 = i;
+            int crc16 = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+            }
+            CRC8_TABLE[i] = crc8 & 0xff;
+            CRC16_TABLE[i] = crc16 & 0xffff;
+        }
+    }
+
+    private final int sampleRate;
+    private final int[] samples = new int[BLOCK_SIZE];
+    private final int[] residual = new int[BLOCK_SIZE];
+    private final BitWriter writer = new BitWriter(64);
+    private ByteArrayPool outputPool;
+
+    public FlacEncoder(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * length字节PCM编码后的最大字节数
+     */
+    static int maxEncodedSize(int length) {
+        int blocks = (length / 2 + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        return STREAM_HEADER_BYTES + length + blocks * MAX_FRAME_OVERHEAD_BYTES;
+    }
+
+    /**
+     * 从编码结果的STREAMINFO中读出采样率，不是FLAC数据时返回-1
+     */
+    public static int readSampleRate(byte[] flac, int length) {
+        if (length < STREAM_HEADER_BYTES || flac[0] != 'f' || flac[1] != 'L' || flac[2] != 'a' || flac[3] != 'C') {
+            return -1;
+        }
+        // 4字节标记、4字节块头、最小/最大块大小及帧长共10字节之后是20位采样率
+        return (flac[18] & 0xff) << 12 | (flac[19] & 0xff) << 4 | (flac[20] & 0xff) >>> 4;
+    }
+
+    @Override
+    public String getEncoding() {
+        return "FLAC";
+    }
+
+    @Override
+    public byte[] encode(byte[] pcm, int offset, int length) {
+        writer.reset(new byte[maxEncodedSize(length)]);
+        encodeTo(writer, pcm, offset, length);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public AudioChunk encode(AudioChunk pcm) {
+        // 输出写入池中的数组，上限足够容纳最坏情况，稳定运行后不再分配
+        int capacity = maxEncodedSize(pcm.getData().length);
+        if (outputPool == null || outputPool.getArraySize() != capacity) {
+            outputPool = new ByteArrayPool(capacity, OUTPUT_POOL_SIZE);
+        }
+        byte[] output = outputPool.acquire();
+        writer.reset(output);
+        encodeTo(writer, pcm.getData(), 0, pcm.getLength());
+        pcm.release();
+        if (writer.buffer() != output) {
+            // 超出估算上限时BitWriter已扩容，不能再放回池中
+            outputPool.release(output);
+            return new AudioChunk(writer.buffer(), writer.size(), null);
+        }
+        return new AudioChunk(output, writer.size(), outputPool);
+    }
+
+    private void encodeTo(BitWriter out, byte[] pcm, int offset, int length) {
+        int totalSamples = length / 2;
+        writeStreamHeader(out, totalSamples);
+
+        int frameNumber = 0;
+        for (int start = 0; start < totalSamples; start += BLOCK_SIZE) {
+            int blockSize = Math.min(BLOCK_SIZE, totalSamples - start);
+            int base = offset + start * 2;
+            for (int i = 0; i < blockSize; i++) {
+                samples[i] = (short) ((pcm[base + i * 2] & 0xff) | (pcm[base + i * 2 + 1] << 8));
+            }
+            writeFrame(out, frameNumber++, blockSize);
+        }
+    }
+
+    private void writeStreamHeader(BitWriter out, int totalSamples) {
+        out.writeBits(0x664C6143, 32); // "fLaC"
+
+        // 唯一的元数据块STREAMINFO
+        out.writeBits(1, 1);
+        out.writeBits(0, 7);
+        out.writeBits(34, 24);
+
+        out.writeBits(BLOCK_SIZE, 16);
+        out.writeBits(BLOCK_SIZE, 16);
+        out.writeBits(0, 24); // 最小帧长未知
+        out.writeBits(0, 24); // 最大帧长未知
+        out.writeBits(sampleRate, 20);
+        out.writeBits(0, 3); // 声道数-1
+        out.writeBits(BITS_PER_SAMPLE - 1, 5);
+        out.writeBits(0, 4); // 样本总数高4位
+        out.writeBits(totalSamples, 32);
+        for (int i = 0; i < 4; i++) {
+            out.writeBits(0, 32); // MD5未计算
+        }
+    }
+
+    private void writeFrame(BitWriter out, int frameNumber, int blockSize) {
+        int frameStart = out.size();
+
+        out.writeBits(0x3FFE, 14); // 同步码
+        out.writeBits(0, 1);
+        out.writeBits(0, 1); // 固定块大小
+        out.writeBits(0x7, 4); // 块大小在帧头末尾以16位给出
+        out.writeBits(0x0, 4); // 采样率取自STREAMINFO
+        out.writeBits(0x0, 4); // 单声道
+        out.writeBits(0x4, 3); // 16位
+        out.writeBits(0, 1);
+        writeUtf8Number(out, frameNumber);
+        out.writeBits(blockSize - 1, 16);
+        out.writeBits(crc8(out.buffer(), frameStart, out.size()), 8);
+
+        writeSubframe(out, blockSize);
+
+        out.alignToByte();
+        out.writeBits(crc16(out.buffer(), frameStart, out.size()), 16);
+    }
+
+    private void writeSubframe(BitWriter out, int blockSize) {
+        if (isConstant(blockSize)) {
+            writeSubframeHeader(out, SUBFRAME_CONSTANT);
+            out.writeBits(samples[0], BITS_PER_SAMPLE);
+            return;
+        }
+
+        int bestOrder = -1;
+        long bestBits = (long) blockSize * BITS_PER_SAMPLE;
+        int bestParameter = 0;
+        for (int order = 0; order <= MAX_FIXED_ORDER && order < blockSize; order++) {
+            long sum = computeResidual(order, blockSize);
+            int count = blockSize - order;
+            int parameter = riceParameter(sum, count);
+            long bits = (long) order * BITS_PER_SAMPLE + 10 + riceBits(sum, count, parameter);
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = order;
+                bestParameter = parameter;
+            }
+        }
+
+        if (bestOrder < 0) {
+            writeSubframeHeader(out, SUBFRAME_VERBATIM);
+            for (int i = 0; i < blockSize; i++) {
+                out.writeBits(samples[i], BITS_PER_SAMPLE);
+            }
+            return;
+        }
+
+        computeResidual(bestOrder, blockSize);
+        writeSubframeHeader(out, SUBFRAME_FIXED | bestOrder);
+        for (int i = 0; i < bestOrder; i++) {
+            out.writeBits(samples[i], BITS_PER_SAMPLE);
+        }
+        out.writeBits(0, 2); // 4位Rice参数
+        out.writeBits(0, 4); // 分区阶数0
+        out.writeBits(bestParameter, 4);
+        for (int i = bestOrder; i < blockSize; i++) {
+            int folded = (residual[i] << 1) ^ (residual[i] >> 31);
+            out.writeUnary(folded >>> bestParameter);
+            if (bestParameter > 0) {
+                out.writeBits(folded, bestParameter);
+            }
+        }
+    }
+
+    private static void writeSubframeHeader(BitWriter out, int type) {
+        out.writeBits(0, 1);
+        out.writeBits(type, 6);
+        out.writeBits(0, 1); // 无wasted bits
+    }
+
+    private boolean isConstant(int blockSize) {
+        int first = samples[0];
+        for (int i = 1; i < blockSize; i++) {
+            if (samples[i] != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算指定阶数的FIXED预测残差，返回残差折叠后的总和
+     */
+    private long computeResidual(int order, int blockSize) {
+        long sum = 0;
+        for (int i = order; i < blockSize; i++) {
+            int value;
+            switch (order) {
+                case 0:
+                    value = samples[i];
+                    break;
+                case 1:
+                    value = samples[i] - samples[i - 1];
+                    break;
+                case 2:
+                    value = samples[i] - 2 * samples[i - 1] + samples[i - 2];
+                    break;
+                case 3:
+                    value = samples[i] - 3 * samples[i - 1] + 3 * samples[i - 2] - samples[i - 3];
+                    break;
+                default:
+                    value = samples[i] - 4 * samples[i - 1] + 6 * samples[i - 2]
+                        - 4 * samples[i - 3] + samples[i - 4];
+                    break;
+            }
+            residual[i] = value;
+            sum += (value << 1) ^ (value >> 31);
+        }
+        return sum;
+    }
+
+    /**
+     * 估算Rice编码后的残差长度：每个值的终止位和低位，加上商部分的一元码
+     */
+    private static long riceBits(long foldedSum, int count, int parameter) {
+        return (long) count * (parameter + 1) + (foldedSum >>> parameter);
+    }
+
+    private static int riceParameter(long foldedSum, int count) {
+        if (count <= 0 || foldedSum < count) {
+            return 0;
+        }
+        long mean = foldedSum / count;
+        int parameter = 63 - Long.numberOfLeadingZeros(mean);
+        return Math.min(parameter, MAX_RICE_PARAMETER);
+    }
+
+    private static void writeUtf8Number(BitWriter out, int value) {
+        if (value < 0x80) {
+            out.writeBits(value, 8);
+        } else if (value < 0x800) {
+            out.writeBits(0xC0 | (value >> 6), 8);
+            out.writeBits(0x80 | (value & 0x3F), 8);
+        } else if (value < 0x10000) {
+            out.writeBits(0xE0 | (value >> 12), 8);
+            out.writeBits(0x80 | ((value >> 6) & 0x3F), 8);
+            out.writeBits(0x80 | (value & 0x3F), 8);
+        } else {
+            out.writeBits(0xF0 | (value >> 18), 8);
+            out.writeBits(0x80 | ((value >> 12) & 0x3F), 8);
+            out.writeBits(0x80 | ((value >> 6) & 0x3F), 8);
+            out.writeBits(0x80 | (value & 0x3F), 8);
+        }
+    }
+
+    private static int crc8(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = CRC8_TABLE[(crc ^ data[i]) & 0xff];
+        }
+        return crc;
+    }
+
+    private static int crc16(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >> 8) ^ data[i]) & 0xff]) & 0xffff;
+        }
+        return crc;
+    }
+
+    private static final class BitWriter {
+        private byte[] data;
+        private int size;
+        private long accumulator;
+        private int pendingBits;
+
+        BitWriter(int initialCapacity) {
+            this.data = new byte[Math.max(initialCapacity, 64)];
+        }
+
+        /**
+         * 改为写入target，从头开始
+         */
+        void reset(byte[] target) {
+            data = target;
+            size = 0;
+            accumulator = 0;
+            pendingBits = 0;
+        }
+
+        void writeBits(int value, int bits) {
+            accumulator = (accumulator << bits) | (value & ((1L << bits) - 1));
+            pendingBits += bits;
+            while (pendingBits >= 8) {
+                pendingBits -= 8;
+                put((byte) (accumulator >>> pendingBits));
+            }
+        }
+
+        void writeUnary(int zeros) {
+            while (zeros >= 32) {
+                writeBits(0, 32);
+                zeros -= 32;
+            }
+            writeBits(1, zeros + 1);
+        }
+
+        void alignToByte() {
+            if (pendingBits > 0) {
+                writeBits(0, 8 - pendingBits);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] buffer() {
+            return data;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+        private void put(byte value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.shinestar;
+
+import java.util.Arrays;
+
+/**
+ * 不做压缩，直接上传LINEAR16原始数据
+ */
+public class LinearPcmEncoder implements AudioEncoder {
+    @Override
+    public String getEncoding() {
+        return "LINEAR16";
+    }
+
+    @Override
+    public byte[] encode(byte[] pcm, int offset, int length) {
+        if (offset == 0 && length == pcm.length) {
+            return pcm;
+        }
+        return Arrays.copyOfRange(pcm, offset, offset + length);
+    }
+
+    @Override
+    public AudioChunk encode(AudioChunk pcm) {
+        // 原样上传，不复制
+        return pcm;
+    }
+}
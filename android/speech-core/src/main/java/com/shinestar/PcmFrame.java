@@ -0,0 +1,60 @@
+package com.shinestar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PcmFramePool中的一帧PCM16数据，底层为预先分配的direct ByteBuffer，
+ * AudioRecord可以直接写入，不经过Java数组中转。
+ * 采用引用计数：取出时计数为1，每个额外的异步使用方retain一次，用完release，
+ * 计数归零后回到池中。
+ */
+public class PcmFrame {
+    private final ByteBuffer buffer;
+    private final PcmFramePool pool;
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    PcmFrame(int capacity, PcmFramePool pool) {
+        this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        this.pool = pool;
+    }
+
+    /**
+     * 有效数据为[position, limit)；共享给其他线程前应由持有方设置好，使用方不要修改
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public PcmFrame retain() {
+        if (refCount.getAndIncrement() <= 0) {
+            refCount.decrementAndGet();
+            throw new IllegalStateException("Frame already released");
+        }
+        return this;
+    }
+
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            refCount.incrementAndGet();
+            throw new IllegalStateException("Frame released too many times");
+        }
+    }
+
+    public int refCount() {
+        return refCount.get();
+    }
+
+    void reset() {
+        buffer.clear();
+        refCount.set(1);
+    }
+}
@@ -0,0 +1,51 @@
+package com.shinestar;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 固定数量的PcmFrame池，全部帧在构造时分配，之后不再新建。
+ * 池空时acquire返回null，由调用方决定等待还是跳过，并记录次数。
+ */
+public class PcmFramePool {
+    private final int frameBytes;
+    private final ArrayBlockingQueue<PcmFrame> freeFrames;
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    public PcmFramePool(int frameCount, int frameBytes) {
+        this.frameBytes = frameBytes;
+        this.freeFrames = new ArrayBlockingQueue<>(frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            freeFrames.offer(new PcmFrame(frameBytes, this));
+        }
+    }
+
+    public int getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * 取出一帧，引用计数为1；池空时返回null
+     */
+    public PcmFrame acquire() {
+        PcmFrame frame = freeFrames.poll();
+        if (frame == null) {
+            exhaustedCount.incrementAndGet();
+            return null;
+        }
+        frame.reset();
+        return frame;
+    }
+
+    public int getAvailable() {
+        return freeFrames.size();
+    }
+
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    void recycle(PcmFrame frame) {
+        freeFrames.offer(frame);
+    }
+}
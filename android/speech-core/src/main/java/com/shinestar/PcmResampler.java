@@ -0,0 +1,264 @@
+package com.shinestar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 把任意采样率、声道数的PCM16或float PCM转换为单声道PCM16（识别器使用16kHz）。
+ * 先把各声道平均下混为单声道，再按有理数比例 L/M 做多相FIR重采样：
+ * 抗混叠滤波器为Kaiser窗sinc，每个输出样本只计算其中一个相位的taps次乘加，不做插零后的无用计算。
+ * 流式处理，帧与帧之间保留滤波器历史；稳定运行时不分配内存。不是线程安全的。
+ */
+public final class PcmResampler {
+
+    public enum Encoding {
+        PCM_16BIT(2),
+        PCM_FLOAT(4);
+
+        final int bytesPerSample;
+
+        Encoding(int bytesPerSample) {
+            this.bytesPerSample = bytesPerSample;
+        }
+
+        public int getBytesPerSample() {
+            return bytesPerSample;
+        }
+    }
+
+    // 滤波器在目标采样率下单侧覆盖的过零点数，越大过渡带越窄
+    private static final int ZERO_CROSSINGS = 16;
+    // 截止频率相对较低一侧奈奎斯特频率的比例，留出过渡带
+    private static final double ROLLOFF = 0.9;
+    // 约80dB阻带衰减
+    private static final double KAISER_BETA = 8.0;
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int channels;
+    private final Encoding encoding;
+    private final int up;
+    private final int down;
+    private final int taps;
+    // phases[p][j]按时间正序排列，与输入做点积即得相位p的输出
+    private final float[][] phases;
+    private final boolean passthrough;
+
+    // 前taps-1个样本为上一帧留下的历史
+    private float[] buffer;
+    private int filled;
+    // 下一个输出样本对应的最新输入样本在buffer中的位置
+    private int position;
+    private int phase;
+
+    public PcmResampler(int inputRate, int channels, Encoding encoding, int outputRate) {
+        if (inputRate <= 0 || outputRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("Invalid resampler format: " + inputRate + "Hz x" + channels + " -> " + outputRate + "Hz");
+        }
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        this.channels = channels;
+        this.encoding = encoding;
+        int divisor = gcd(inputRate, outputRate);
+        this.up = outputRate / divisor;
+        this.down = inputRate / divisor;
+        this.passthrough = up == 1 && down == 1 && channels == 1 && encoding == Encoding.PCM_16BIT;
+        this.taps = (2 * ZERO_CROSSINGS * Math.max(up, down) + up - 1) / up;
+        this.phases = up == 1 && down == 1 ? new float[][] {{1f}} : designFilter(up, down, taps);
+        int history = phases[0].length - 1;
+        this.buffer = new float[history + INITIAL_CAPACITY];
+        reset();
+    }
+
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * 已经是目标格式时process直接复制
+     */
+    public boolean isPassthrough() {
+        return passthrough;
+    }
+
+    public int getTapsPerPhase() {
+        return phases[0].length;
+    }
+
+    /**
+     * 处理inputBytes字节输入最多产生的输出字节数，用于预先分配输出缓冲区
+     */
+    public int maxOutputBytes(int inputBytes) {
+        long frames = inputBytes / (encoding.bytesPerSample * channels);
+        return (int) ((frames * up + down - 1) / down + 1) * 2;
+    }
+
+    /**
+     * 清空滤波器历史，开始新的一段音频
+     */
+    public void reset() {
+        int history = phases[0].length - 1;
+        for (int i = 0; i < history; i++) {
+            buffer[i] = 0f;
+        }
+        filled = history;
+        position = history;
+        phase = 0;
+    }
+
+    /**
+     * 消耗input中[position, limit)的全部完整帧，把单声道PCM16小端写入output，返回写入的字节数。
+     * output剩余空间至少为maxOutputBytes(input.remaining())
+     */
+    public int process(ByteBuffer input, ByteBuffer output) {
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        if (passthrough) {
+            int count = input.remaining() & ~1;
+            int limit = input.limit();
+            input.limit(input.position() + count);
+            output.put(input);
+            input.limit(limit);
+            return count;
+        }
+
+        int frameBytes = encoding.bytesPerSample * channels;
+        int frames = input.remaining() / frameBytes;
+        ensureCapacity(filled + frames);
+        downmix(input, frames);
+        input.position(input.position() + frames * frameBytes);
+
+        int history = phases[0].length - 1;
+        int start = output.position();
+        while (position < filled) {
+            float[] coefficients = phases[phase];
+            int base = position - history;
+            float sum = 0f;
+            for (int j = 0; j < coefficients.length; j++) {
+                sum += coefficients[j] * buffer[base + j];
+            }
+            output.putShort(toPcm16(sum));
+            phase += down;
+            position += phase / up;
+            phase %= up;
+        }
+
+        // 把下一个输出还需要的历史样本移到开头
+        int keepFrom = position - history;
+        int keep = filled - keepFrom;
+        System.arraycopy(buffer, keepFrom, buffer, 0, keep);
+        filled = keep;
+        position -= keepFrom;
+        return output.position() - start;
+    }
+
+    private void downmix(ByteBuffer input, int frames) {
+        ByteOrder order = input.order();
+        input.order(ByteOrder.LITTLE_ENDIAN);
+        int offset = input.position();
+        float scale = 1f / channels;
+        if (encoding == Encoding.PCM_16BIT) {
+            scale /= 32768f;
+            for (int i = 0; i < frames; i++) {
+                int sum = 0;
+                for (int c = 0; c < channels; c++) {
+                    sum += input.getShort(offset);
+                    offset += 2;
+                }
+                buffer[filled++] = sum * scale;
+            }
+        } else {
+            for (int i = 0; i < frames; i++) {
+                float sum = 0f;
+                for (int c = 0; c < channels; c++) {
+                    sum += input.getFloat(offset);
+                    offset += 4;
+                }
+                buffer[filled++] = sum * scale;
+            }
+        }
+        input.order(order);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > buffer.length) {
+            // 只在输入帧变大时发生，之后保持不变
+            float[] larger = new float[Math.max(required, buffer.length * 2)];
+            System.arraycopy(buffer, 0, larger, 0, filled);
+            buffer = larger;
+        }
+    }
+
+    private static short toPcm16(float sample) {
+        int value = Math.round(sample * 32768f);
+        if (value > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (value < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) value;
+    }
+
+    /**
+     * 在上采样后的采样率（输入 × up）下设计低通原型滤波器，再按相位拆成up组
+     */
+    private static float[][] designFilter(int up, int down, int taps) {
+        int length = taps * up;
+        double cutoff = ROLLOFF * 0.5 / Math.max(up, down);
+        double center = (length - 1) / 2.0;
+        double denominator = besselI0(KAISER_BETA);
+        double[] prototype = new double[length];
+        for (int n = 0; n < length; n++) {
+            double t = n - center;
+            double sinc = t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double ratio = 2.0 * n / (length - 1) - 1.0;
+            double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - ratio * ratio))) / denominator;
+            // 插零后每个相位只有1/up的能量，乘以up恢复增益
+            prototype[n] = sinc * window * up;
+        }
+
+        float[][] phases = new float[up][taps];
+        for (int p = 0; p < up; p++) {
+            for (int k = 0; k < taps; k++) {
+                phases[p][taps - 1 - k] = (float) prototype[p + k * up];
+            }
+        }
+        return phases;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,295 @@
+package com.shinestar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 识别提供商的健康评分与切换建议。每个提供商保留最近的请求结果（条数和时长都有上限），
+ * 据此计算错误率和耗时分位数，再结合是否可用、是否需要网络判断是否健康、给出评分。
+ * 会话中当前提供商不健康时建议切换到评分最高的健康提供商；当前提供商健康时只建议切回优先级更高的提供商，
+ * 不会因为更快而离开一个健康的提供商。
+ * 连续失败在一段时间后按可以重试处理，窗口内的旧结果过期，不健康的提供商因此能够恢复。
+ * 纯Java实现，时钟可注入，可以用假的提供商在JVM上验证。线程安全。
+ */
+public final class ProviderRouter {
+
+    public interface Provider {
+        String getId();
+
+        boolean isAvailable();
+
+        boolean requiresNetwork();
+    }
+
+    public interface Clock {
+        long nowMs();
+    }
+
+    public static final class Health {
+        public final String id;
+        public final int priority;
+        public final boolean available;
+        public final int samples;
+        public final double errorRate;
+        // 没有成功样本时为-1
+        public final long p50Ms;
+        public final long p90Ms;
+        public final int consecutiveFailures;
+        public final boolean healthy;
+        public final double score;
+
+        Health(String id, int priority, boolean available, int samples, double errorRate, long p50Ms, long p90Ms,
+               int consecutiveFailures, boolean healthy, double score) {
+            this.id = id;
+            this.priority = priority;
+            this.available = available;
+            this.samples = samples;
+            this.errorRate = errorRate;
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.consecutiveFailures = consecutiveFailures;
+            this.healthy = healthy;
+            this.score = score;
+        }
+    }
+
+    // 每个提供商保留的最近结果条数及有效时长
+    public static final int WINDOW_SIZE = 20;
+    public static final long WINDOW_MS = 120_000;
+    // 样本少于该数时不按错误率判断
+    public static final int MIN_SAMPLES = 3;
+    public static final double UNHEALTHY_ERROR_RATE = 0.5;
+    public static final int UNHEALTHY_CONSECUTIVE_FAILURES = 3;
+    // 最后一次失败之后经过这么久，连续失败不再计入，允许重新尝试
+    public static final long RECOVERY_MS = 30_000;
+    // p90耗时等于该值时评分减半
+    public static final long LATENCY_SCALE_MS = 2000;
+
+    private static final class Entry {
+        Provider provider;
+        int priority;
+        final long[] times = new long[WINDOW_SIZE];
+        final long[] latencies = new long[WINDOW_SIZE];
+        final boolean[] succeeded = new boolean[WINDOW_SIZE];
+        int next;
+        int count;
+        int consecutiveFailures;
+        long lastFailureMs;
+
+        void add(long now, boolean success, long latencyMs) {
+            times[next] = now;
+            succeeded[next] = success;
+            latencies[next] = latencyMs;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+        }
+
+        void dropFailures() {
+            int kept = 0;
+            long[] keptTimes = new long[WINDOW_SIZE];
+            long[] keptLatencies = new long[WINDOW_SIZE];
+            for (int i = 0; i < count; i++) {
+                int index = (next - count + i + WINDOW_SIZE) % WINDOW_SIZE;
+                if (succeeded[index]) {
+                    keptTimes[kept] = times[index];
+                    keptLatencies[kept] = latencies[index];
+                    kept++;
+                }
+            }
+            System.arraycopy(keptTimes, 0, times, 0, WINDOW_SIZE);
+            System.arraycopy(keptLatencies, 0, latencies, 0, WINDOW_SIZE);
+            Arrays.fill(succeeded, 0, kept, true);
+            count = kept;
+            next = kept % WINDOW_SIZE;
+            consecutiveFailures = 0;
+        }
+    }
+
+    private final Clock clock;
+    // 按注册顺序保存，评分相同时先注册的优先
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean networkAvailable = true;
+
+    public ProviderRouter() {
+        this(System::currentTimeMillis);
+    }
+
+    public ProviderRouter(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * priority越小越优先。同一id重复注册（如模块重建）时替换提供商，保留已有的统计
+     */
+    public synchronized void register(Provider provider, int priority) {
+        Entry entry = entries.get(provider.getId());
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(provider.getId(), entry);
+        }
+        entry.provider = provider;
+        entry.priority = priority;
+    }
+
+    public synchronized void unregister(Provider provider) {
+        Entry entry = entries.get(provider.getId());
+        if (entry != null && entry.provider == provider) {
+            entries.remove(provider.getId());
+        }
+    }
+
+    public synchronized void recordSuccess(String id, long latencyMs) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            entry.add(clock.nowMs(), true, latencyMs);
+            entry.consecutiveFailures = 0;
+        }
+    }
+
+    public synchronized void recordFailure(String id) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            long now = clock.nowMs();
+            entry.add(now, false, 0);
+            entry.consecutiveFailures++;
+            entry.lastFailureMs = now;
+        }
+    }
+
+    /**
+     * 网络恢复时清除需要网络的提供商在断网期间积累的失败，它们不代表服务本身的状况
+     */
+    public synchronized void setNetworkAvailable(boolean available) {
+        if (available && !networkAvailable) {
+            for (Entry entry : entries.values()) {
+                if (entry.provider.requiresNetwork()) {
+                    entry.dropFailures();
+                }
+            }
+        }
+        networkAvailable = available;
+    }
+
+    public synchronized boolean isNetworkAvailable() {
+        return networkAvailable;
+    }
+
+    /**
+     * 未注册时返回null
+     */
+    public synchronized Health getHealth(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? evaluate(id, entry, clock.nowMs()) : null;
+    }
+
+    /**
+     * 按注册顺序返回所有提供商的健康状况
+     */
+    public synchronized List<Health> getHealthSnapshot() {
+        long now = clock.nowMs();
+        List<Health> snapshot = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            snapshot.add(evaluate(entry.getKey(), entry.getValue(), now));
+        }
+        return snapshot;
+    }
+
+    /**
+     * 开始新会话时使用的提供商：健康的提供商中优先级最高的；都不健康时返回评分最高的，
+     * 全部不可用时返回null
+     */
+    public synchronized String select() {
+        long now = clock.nowMs();
+        Health best = null;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Health health = evaluate(entry.getKey(), entry.getValue(), now);
+            if (!health.available) {
+                continue;
+            }
+            if (best == null
+                || (health.healthy && !best.healthy)
+                || (health.healthy == best.healthy && health.healthy && health.priority < best.priority)
+                || (!health.healthy && !best.healthy && health.score > best.score)) {
+                best = health;
+            }
+        }
+        return best != null ? best.id : null;
+    }
+
+    /**
+     * 会话当前使用currentId时是否应该切换：返回要切换到的提供商，不需要或无处可切时返回null
+     */
+    public synchronized String recommend(String currentId) {
+        long now = clock.nowMs();
+        Entry currentEntry = entries.get(currentId);
+        Health current = currentEntry != null ? evaluate(currentId, currentEntry, now) : null;
+        Health best = null;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getKey().equals(currentId)) {
+                continue;
+            }
+            Health candidate = evaluate(entry.getKey(), entry.getValue(), now);
+            if (!candidate.healthy) {
+                continue;
+            }
+            if (current == null || !current.healthy) {
+                // 故障转移：去评分最高的健康提供商
+                if (best == null || candidate.score > best.score) {
+                    best = candidate;
+                }
+            } else if (candidate.priority < current.priority && (best == null || candidate.priority < best.priority)) {
+                // 当前健康时只切回优先级更高的提供商
+                best = candidate;
+            }
+        }
+        return best != null ? best.id : null;
+    }
+
+    private Health evaluate(String id, Entry entry, long now) {
+        boolean available = entry.provider.isAvailable()
+            && (!entry.provider.requiresNetwork() || networkAvailable);
+
+        int samples = 0;
+        int failures = 0;
+        int successes = 0;
+        long[] latencies = new long[entry.count];
+        for (int i = 0; i < entry.count; i++) {
+            int index = (entry.next - 1 - i + WINDOW_SIZE) % WINDOW_SIZE;
+            if (now - entry.times[index] > WINDOW_MS) {
+                // 从新到旧遍历，之后的都已过期
+                break;
+            }
+            samples++;
+            if (entry.succeeded[index]) {
+                latencies[successes++] = entry.latencies[index];
+            } else {
+                failures++;
+            }
+        }
+        double errorRate = samples == 0 ? 0 : (double) failures / samples;
+        long p50 = -1;
+        long p90 = -1;
+        if (successes > 0) {
+            Arrays.sort(latencies, 0, successes);
+            p50 = percentile(latencies, successes, 50);
+            p90 = percentile(latencies, successes, 90);
+        }
+        int consecutiveFailures = now - entry.lastFailureMs > RECOVERY_MS ? 0 : entry.consecutiveFailures;
+
+        boolean healthy = available
+            && consecutiveFailures < UNHEALTHY_CONSECUTIVE_FAILURES
+            && (samples < MIN_SAMPLES || errorRate < UNHEALTHY_ERROR_RATE);
+        double latencyFactor = p90 < 0 ? 1 : 1.0 / (1.0 + (double) p90 / LATENCY_SCALE_MS);
+        double score = available ? (1 - errorRate) * latencyFactor : 0;
+        return new Health(id, entry.priority, available, samples, errorRate, p50, p90, consecutiveFailures, healthy, score);
+    }
+
+    private static long percentile(long[] sorted, int count, int percentile) {
+        // 最近秩法
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+}
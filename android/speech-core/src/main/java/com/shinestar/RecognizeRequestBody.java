@@ -0,0 +1,117 @@
+package com.shinestar;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * speech:recognize的请求体：JSON外壳直接写入OkHttp的sink，
+ * 音频按块base64编码到每个线程复用的缓冲区后写入sink，
+ * 整个请求除JSON配置外不产生与音频大小相关的临时对象。
+ * 可重复写出，便于重试。
+ */
+public class RecognizeRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    // 3的倍数，保证分块编码结果可以直接拼接
+    private static final int BASE64_CHUNK_BYTES = 3 * 1024;
+
+    private static final String CONFIG_PREFIX = "{\"config\":";
+    private static final String AUDIO_PREFIX = ",\"audio\":{\"content\":\"";
+    private static final String SUFFIX = "\"}}";
+
+    private static final byte[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<byte[]> BASE64_SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BASE64_CHUNK_BYTES / 3 * 4];
+        }
+    };
+
+    private final byte[] configJson;
+    private final byte[] audio;
+    private final int audioLength;
+
+    public RecognizeRequestBody(String configJson, byte[] audio, int audioLength) {
+        this.configJson = configJson.getBytes(StandardCharsets.UTF_8);
+        this.audio = audio;
+        this.audioLength = audioLength;
+    }
+
+    /**
+     * 构建请求中的RecognitionConfig
+     */
+    public static String buildConfigJson(String encoding, int sampleRate, String languageCode) {
+        StringWriter out = new StringWriter(192);
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            json.name("encoding").value(encoding);
+            json.name("sampleRateHertz").value(sampleRate);
+            json.name("languageCode").value(languageCode);
+            json.name("enableAutomaticPunctuation").value(true);
+            json.name("enableWordTimeOffsets").value(true);
+            json.name("enableWordConfidence").value(true);
+            json.endObject();
+        } catch (IOException e) {
+            // StringWriter不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        long base64Length = (audioLength + 2L) / 3 * 4;
+        return CONFIG_PREFIX.length() + configJson.length + AUDIO_PREFIX.length()
+            + base64Length + SUFFIX.length();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.writeUtf8(CONFIG_PREFIX);
+        sink.write(configJson);
+        sink.writeUtf8(AUDIO_PREFIX);
+        byte[] scratch = BASE64_SCRATCH.get();
+        for (int offset = 0; offset < audioLength; offset += BASE64_CHUNK_BYTES) {
+            int count = Math.min(BASE64_CHUNK_BYTES, audioLength - offset);
+            sink.write(scratch, 0, encodeBase64(audio, offset, count, scratch));
+        }
+        sink.writeUtf8(SUFFIX);
+    }
+
+    static int encodeBase64(byte[] source, int offset, int count, byte[] target) {
+        int written = 0;
+        int end = offset + count - count % 3;
+        for (int i = offset; i < end; i += 3) {
+            int bits = (source[i] & 0xff) << 16 | (source[i + 1] & 0xff) << 8 | (source[i + 2] & 0xff);
+            target[written++] = BASE64_ALPHABET[(bits >>> 18) & 0x3f];
+            target[written++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            target[written++] = BASE64_ALPHABET[(bits >>> 6) & 0x3f];
+            target[written++] = BASE64_ALPHABET[bits & 0x3f];
+        }
+
+        int remainder = count % 3;
+        if (remainder > 0) {
+            int bits = (source[end] & 0xff) << 16;
+            if (remainder == 2) {
+                bits |= (source[end + 1] & 0xff) << 8;
+            }
+            target[written++] = BASE64_ALPHABET[(bits >>> 18) & 0x3f];
+            target[written++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            target[written++] = remainder == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3f] : (byte) '=';
+            target[written++] = '=';
+        }
+        return written;
+    }
+}
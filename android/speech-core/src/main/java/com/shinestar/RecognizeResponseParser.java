@@ -0,0 +1,85 @@
+package com.shinestar;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式解析speech:recognize的响应，直接从响应体的字符流读取，
+ * 不再把整个响应读成String再构建JSONObject树。
+ * 使用Gson的JsonReader（与android.util.JsonReader接口一致），可以在JVM上运行基准测试。
+ */
+public class RecognizeResponseParser {
+    public static class Alternative {
+        public final String transcript;
+        public final double confidence;
+
+        public Alternative(String transcript, double confidence) {
+            this.transcript = transcript;
+            this.confidence = confidence;
+        }
+    }
+
+    /**
+     * 返回所有结果的候选列表；响应中没有results字段时返回null
+     */
+    public static List<Alternative> parse(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        List<Alternative> alternatives = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            if ("results".equals(json.nextName())) {
+                alternatives = new ArrayList<>();
+                json.beginArray();
+                while (json.hasNext()) {
+                    readResult(json, alternatives);
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return alternatives;
+    }
+
+    private static void readResult(JsonReader json, List<Alternative> alternatives) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            if ("alternatives".equals(json.nextName())) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    alternatives.add(readAlternative(json));
+                }
+                json.endArray();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private static Alternative readAlternative(JsonReader json) throws IOException {
+        String transcript = "";
+        double confidence = 0.0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("transcript".equals(name) && json.peek() == JsonToken.STRING) {
+                transcript = json.nextString();
+            } else if ("confidence".equals(name) && json.peek() == JsonToken.NUMBER) {
+                confidence = json.nextDouble();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return new Alternative(transcript, confidence);
+    }
+}
@@ -0,0 +1,225 @@
+package com.shinestar;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 在OkHttpClient外加一层重试与熔断。
+ * 幂等请求遇到IOException或可重试状态码时按RetryPolicy退避重试，优先遵循Retry-After；
+ * 每个接口（host + path）一个熔断器，熔断期间直接抛出CircuitOpenException，不再发起请求。
+ * 请求带有Cancellation类型标签时，可以从其他线程取消整个重试过程。
+ * 不依赖Android API，可以直接对本地模拟服务器测试。
+ */
+public class ResilientHttpClient {
+    public interface Listener {
+        void onRetry(String endpoint, int attempt, long delayMs, String reason);
+
+        void onCircuitStateChanged(String endpoint, CircuitBreaker.State state);
+    }
+
+    /**
+     * 熔断中，请求未发出
+     */
+    public static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final String endpoint;
+        private final long retryAfterMs;
+
+        public CircuitOpenException(String endpoint, long retryAfterMs) {
+            super("Circuit open for " + endpoint + ", retry after " + retryAfterMs + "ms");
+            this.endpoint = endpoint;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+
+    /**
+     * 以类型标签附在Request上（Request.Builder.tag(Cancellation.class, ...)）。
+     * cancel()后取消进行中的请求，结束退避等待，不再重试；execute抛出IOException。
+     */
+    public static final class Cancellation {
+        private boolean canceled;
+        private Call call;
+
+        public synchronized void cancel() {
+            canceled = true;
+            if (call != null) {
+                call.cancel();
+            }
+            notifyAll();
+        }
+
+        public synchronized boolean isCanceled() {
+            return canceled;
+        }
+
+        /**
+         * 关联本次尝试的请求，已取消时直接取消该请求
+         */
+        synchronized void attach(Call next) {
+            call = next;
+            if (canceled) {
+                next.cancel();
+            }
+        }
+
+        /**
+         * 等待delayMs，期间被取消则提前返回false
+         */
+        synchronized boolean await(long delayMs) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            while (!canceled) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return true;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return false;
+        }
+    }
+
+    private final OkHttpClient client;
+    private final RetryPolicy retryPolicy;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final Listener listener;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final AtomicLong retryCount = new AtomicLong();
+
+    public ResilientHttpClient(OkHttpClient client, RetryPolicy retryPolicy,
+                               int failureThreshold, long openDurationMs, Listener listener) {
+        this.client = client;
+        this.retryPolicy = retryPolicy;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.listener = listener;
+    }
+
+    /**
+     * 执行请求。返回的Response可能是重试用尽后的失败响应，由调用方关闭。
+     * 非幂等请求只尝试一次，但仍计入熔断统计。
+     */
+    public Response execute(Request request, boolean idempotent) throws IOException {
+        String endpoint = request.url().host() + request.url().encodedPath();
+        CircuitBreaker breaker = getBreaker(endpoint);
+        int maxAttempts = idempotent ? retryPolicy.getMaxAttempts() : 1;
+        Cancellation cancellation = request.tag(Cancellation.class);
+
+        for (int attempt = 1; ; attempt++) {
+            long now = nowMs();
+            if (!breaker.tryAcquire(now)) {
+                throw new CircuitOpenException(endpoint, breaker.getRemainingOpenMs(now));
+            }
+
+            Response response;
+            Call call = client.newCall(request);
+            if (cancellation != null) {
+                cancellation.attach(call);
+            }
+            try {
+                response = call.execute();
+            } catch (IOException e) {
+                if (call.isCanceled()) {
+                    // 调用方主动取消，不是服务故障，不重试也不计入熔断；但要释放半开状态下的探测名额
+                    breaker.onCanceled();
+                    throw e;
+                }
+                breaker.onFailure(nowMs());
+                if (attempt >= maxAttempts || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                backoff(endpoint, attempt, retryPolicy.computeDelayMs(attempt), e.toString(), cancellation);
+                continue;
+            }
+
+            int code = response.code();
+            if (!RetryPolicy.isRetryableStatus(code)) {
+                // 其余4xx说明服务可达，不计为熔断失败
+                breaker.onSuccess();
+                return response;
+            }
+
+            breaker.onFailure(nowMs());
+            long retryAfterMs = RetryPolicy.parseRetryAfterMs(response.header("Retry-After"), System.currentTimeMillis());
+            if (retryAfterMs > retryPolicy.getMaxDelayMs()) {
+                // 服务端要求等待的时间过长，不在线程里空等，直接熔断相应时长
+                breaker.tripFor(nowMs(), retryAfterMs);
+                return response;
+            }
+            if (attempt >= maxAttempts) {
+                return response;
+            }
+            long delayMs = retryAfterMs >= 0 ? retryAfterMs : retryPolicy.computeDelayMs(attempt);
+            response.close();
+            backoff(endpoint, attempt, delayMs, "HTTP " + code, cancellation);
+        }
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * 各接口当前的熔断状态
+     */
+    public Map<String, CircuitBreaker> getBreakers() {
+        return breakers;
+    }
+
+    private CircuitBreaker getBreaker(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(endpoint, failureThreshold, openDurationMs,
+                (name, state) -> {
+                    if (listener != null) {
+                        listener.onCircuitStateChanged(name, state);
+                    }
+                });
+            breaker = breakers.putIfAbsent(endpoint, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    private void backoff(String endpoint, int attempt, long delayMs, String reason,
+                         Cancellation cancellation) throws IOException {
+        retryCount.incrementAndGet();
+        if (listener != null) {
+            listener.onRetry(endpoint, attempt, delayMs, reason);
+        }
+        try {
+            if (cancellation == null) {
+                Thread.sleep(delayMs);
+            } else if (!cancellation.await(delayMs)) {
+                throw new IOException("Canceled");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Retry interrupted");
+        }
+    }
+
+    private static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,88 @@
+package com.shinestar;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * 重试策略：带上限的指数退避加随机抖动（equal jitter），
+ * 即第n次重试等待 [cap/2, cap] 之间的随机时长，cap = min(maxDelay, baseDelay * 2^(n-1))，
+ * 避免大量客户端在同一时刻重试。
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this(maxAttempts, baseDelayMs, maxDelayMs, new Random());
+    }
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, Random random) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(1, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.random = random;
+    }
+
+    /**
+     * 包含首次请求在内的最大尝试次数
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    /**
+     * 第retry次重试（从1开始）前的等待时长
+     */
+    public long computeDelayMs(int retry) {
+        int shift = Math.min(Math.max(retry - 1, 0), 30);
+        long cap = Math.min(maxDelayMs, baseDelayMs << shift);
+        long half = cap / 2;
+        synchronized (random) {
+            return half + (long) (random.nextDouble() * (cap - half + 1));
+        }
+    }
+
+    /**
+     * 限流、服务端错误及请求超时可以重试，其余4xx说明请求本身有误
+     */
+    public static boolean isRetryableStatus(int code) {
+        return code == 408 || code == 429 || code >= 500;
+    }
+
+    /**
+     * 解析Retry-After，支持秒数和HTTP日期两种格式；无法解析时返回-1
+     */
+    public static long parseRetryAfterMs(String value, long nowMs) {
+        if (value == null) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? -1 : seconds * 1000;
+        } catch (NumberFormatException ignored) {
+            // 不是秒数，按HTTP日期解析
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(trimmed);
+            return Math.max(0, date.getTime() - nowMs);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
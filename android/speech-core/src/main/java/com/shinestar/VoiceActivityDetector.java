@@ -0,0 +1,179 @@
+package com.shinestar;
+
+/**
+ * 基于短时能量和过零率的语音活动检测（VAD），输入为PCM16单声道数据。
+ * 只把语音段（含少量前置缓冲）交给Listener，静音段直接丢弃。
+ * 所有缓冲区在构造时分配，处理过程中不再分配内存；在环形缓冲区之后的处理线程上运行，仅由该线程访问。
+ */
+public class VoiceActivityDetector {
+    public interface Listener {
+        void onSpeechStart();
+
+        void onSpeechAudio(byte[] data, int offset, int count);
+
+        void onSpeechEnd();
+    }
+
+    private static final int FRAME_MS = 20;
+    // 连续多少个语音帧才判定为开始说话，避免短促噪声误触发
+    private static final int ONSET_FRAMES = 3;
+    // 语音结束后的拖尾时长，避免词间停顿被切断
+    private static final int HANGOVER_MS = 400;
+    // 语音开始前保留的音频，避免丢失首字
+    private static final int PRE_ROLL_MS = 300;
+
+    // 能量阈值（dB，相对于自适应噪声基底）
+    private static final double VOICED_MARGIN_DB = 10.0;
+    private static final double UNVOICED_MARGIN_DB = 5.0;
+    private static final double INITIAL_NOISE_FLOOR_DB = 40.0;
+    private static final double MIN_NOISE_FLOOR_DB = 30.0;
+    private static final double NOISE_ADAPT_RATE = 0.05;
+    // 清辅音（如s、f）能量低但过零率高
+    private static final double UNVOICED_MIN_ZCR = 0.25;
+    private static final double UNVOICED_MAX_ZCR = 0.6;
+
+    private final Listener listener;
+    private final int frameBytes;
+    private final int hangoverFrames;
+    private final byte[] frame;
+    private int frameLength;
+
+    private final byte[] preRoll;
+    private int preRollStart;
+    private int preRollLength;
+
+    private boolean inSpeech;
+    private int onsetCount;
+    private int hangoverLeft;
+    private double noiseFloorDb;
+
+    public VoiceActivityDetector(int sampleRate, Listener listener) {
+        this.listener = listener;
+        this.frameBytes = sampleRate * 2 * FRAME_MS / 1000;
+        this.hangoverFrames = HANGOVER_MS / FRAME_MS;
+        this.frame = new byte[frameBytes];
+        this.preRoll = new byte[frameBytes * (PRE_ROLL_MS / FRAME_MS)];
+        reset();
+    }
+
+    public void process(byte[] data, int offset, int count) {
+        int end = offset + count;
+        while (offset < end) {
+            int copy = Math.min(end - offset, frameBytes - frameLength);
+            System.arraycopy(data, offset, frame, frameLength, copy);
+            frameLength += copy;
+            offset += copy;
+
+            if (frameLength == frameBytes) {
+                processFrame();
+                frameLength = 0;
+            }
+        }
+    }
+
+    /**
+     * 结束当前会话：如仍处于语音段，输出剩余数据并触发onSpeechEnd
+     */
+    public void finish() {
+        if (inSpeech) {
+            if (frameLength > 0) {
+                listener.onSpeechAudio(frame, 0, frameLength);
+            }
+            inSpeech = false;
+            listener.onSpeechEnd();
+        }
+        reset();
+    }
+
+    public void reset() {
+        frameLength = 0;
+        preRollStart = 0;
+        preRollLength = 0;
+        inSpeech = false;
+        onsetCount = 0;
+        hangoverLeft = 0;
+        noiseFloorDb = INITIAL_NOISE_FLOOR_DB;
+    }
+
+    public boolean isInSpeech() {
+        return inSpeech;
+    }
+
+    private void processFrame() {
+        boolean speech = isSpeechFrame();
+
+        if (inSpeech) {
+            listener.onSpeechAudio(frame, 0, frameBytes);
+            if (speech) {
+                hangoverLeft = hangoverFrames;
+            } else if (--hangoverLeft <= 0) {
+                inSpeech = false;
+                onsetCount = 0;
+                listener.onSpeechEnd();
+            }
+            return;
+        }
+
+        pushPreRoll();
+        onsetCount = speech ? onsetCount + 1 : 0;
+        if (onsetCount >= ONSET_FRAMES) {
+            inSpeech = true;
+            hangoverLeft = hangoverFrames;
+            listener.onSpeechStart();
+            flushPreRoll();
+        }
+    }
+
+    private boolean isSpeechFrame() {
+        int samples = frameBytes / 2;
+        double sumSquares = 0;
+        int crossings = 0;
+        int previous = 0;
+
+        for (int i = 0; i < frameBytes; i += 2) {
+            int sample = (short) ((frame[i] & 0xff) | (frame[i + 1] << 8));
+            sumSquares += (double) sample * sample;
+            if (i > 0 && (sample >= 0) != (previous >= 0)) {
+                crossings++;
+            }
+            previous = sample;
+        }
+
+        double energyDb = 10.0 * Math.log10(sumSquares / samples + 1.0);
+        double zcr = (double) crossings / samples;
+
+        boolean voiced = energyDb > noiseFloorDb + VOICED_MARGIN_DB;
+        boolean unvoiced = energyDb > noiseFloorDb + UNVOICED_MARGIN_DB
+            && zcr >= UNVOICED_MIN_ZCR && zcr <= UNVOICED_MAX_ZCR;
+        boolean speech = voiced || unvoiced;
+
+        // 只在非语音帧上更新噪声基底
+        if (!speech && !inSpeech) {
+            noiseFloorDb += (energyDb - noiseFloorDb) * NOISE_ADAPT_RATE;
+            if (noiseFloorDb < MIN_NOISE_FLOOR_DB) {
+                noiseFloorDb = MIN_NOISE_FLOOR_DB;
+            }
+        }
+        return speech;
+    }
+
+    private void pushPreRoll() {
+        int writePos = (preRollStart + preRollLength) % preRoll.length;
+        System.arraycopy(frame, 0, preRoll, writePos, frameBytes);
+        if (preRollLength < preRoll.length) {
+            preRollLength += frameBytes;
+        } else {
+            preRollStart = (preRollStart + frameBytes) % preRoll.length;
+        }
+    }
+
+    private void flushPreRoll() {
+        int firstPart = Math.min(preRollLength, preRoll.length - preRollStart);
+        listener.onSpeechAudio(preRoll, preRollStart, firstPart);
+        if (firstPart < preRollLength) {
+            listener.onSpeechAudio(preRoll, 0, preRollLength - firstPart);
+        }
+        preRollStart = 0;
+        preRollLength = 0;
+    }
+}
@@ -0,0 +1,210 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.shinestar.AdaptiveUploadController.Decision;
+import com.shinestar.AdaptiveUploadController.Profile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 用固定种子的假网络模型驱动AdaptiveUploadController：
+ * 快速链路上保持最长窗口；慢速链路上降到8kHz或缩短窗口，预热后实测p95不超过目标；
+ * 无法满足目标的链路上选延迟最低的组合；链路快慢切换后分别收敛；计费网络不使用LINEAR16；
+ * 同样的种子得到完全相同的决策序列。
+ */
+public class AdaptiveUploadControllerTest {
+    private static final int MAX_WINDOW_MS = 5000;
+    private static final int TARGET_MS = AdaptiveUploadController.DEFAULT_TARGET_P95_MS;
+    // 每个阶段开头不计入p95的请求数
+    private static final int WARMUP_REQUESTS = 15;
+    private static final int REQUESTS_PER_PHASE = 200;
+
+    /**
+     * 假的网络：请求体先写入套接字缓冲区，超出部分按带宽发送；服务端按音频时长处理；往返耗时带指数分布的抖动
+     */
+    private static final class FakeNetwork {
+        // 用作onLinkChanged的networkId
+        final String name;
+        final double bytesPerMs;
+        final double rttMs;
+        final double serverMsPerAudioMs;
+        final double jitterMeanMs;
+        final long socketBufferBytes;
+
+        FakeNetwork(String name, double kbps, double rttMs, double serverMsPerAudioMs, double jitterMeanMs,
+                    long socketBufferBytes) {
+            this.name = name;
+            this.bytesPerMs = kbps / 8;
+            this.rttMs = rttMs;
+            this.serverMsPerAudioMs = serverMsPerAudioMs;
+            this.jitterMeanMs = jitterMeanMs;
+            this.socketBufferBytes = socketBufferBytes;
+        }
+
+        /**
+         * 返回{上传阶段耗时, 总耗时}
+         */
+        long[] send(long bodyBytes, int audioMs, Random random) {
+            double transfer = bodyBytes / bytesPerMs;
+            double upload = Math.max(0, bodyBytes - socketBufferBytes) / bytesPerMs;
+            double jitter = -jitterMeanMs * Math.log(1 - random.nextDouble());
+            double total = rttMs + transfer + serverMsPerAudioMs * audioMs + jitter;
+            return new long[]{Math.round(upload), Math.round(total)};
+        }
+    }
+
+    private static final FakeNetwork WIFI = new FakeNetwork("wifi", 20_000, 40, 0.08, 30, 256 * 1024);
+    private static final FakeNetwork SLOW_3G = new FakeNetwork("3g", 384, 250, 0.08, 20, 64 * 1024);
+    private static final FakeNetwork EDGE = new FakeNetwork("edge", 80, 600, 0.08, 50, 32 * 1024);
+
+    private static final class Result {
+        final List<String> decisions = new ArrayList<>();
+        final List<Double> latencies = new ArrayList<>();
+        Decision last;
+
+        double p95() {
+            double[] values = new double[latencies.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = latencies.get(i);
+            }
+            Arrays.sort(values);
+            int rank = (int) Math.ceil(0.95 * values.length);
+            return values[Math.max(0, rank - 1)];
+        }
+    }
+
+    @Test
+    public void fastLinkKeepsLongestWindow() {
+        AdaptiveUploadController controller = newController(WIFI, false);
+        Result result = run(controller, WIFI, new Random(1), REQUESTS_PER_PHASE);
+        assertEquals(MAX_WINDOW_MS, result.last.windowMs);
+        assertEquals(16000, result.last.profile.sampleRate);
+        assertTrue("fast link p95 " + result.p95(), result.p95() <= TARGET_MS);
+    }
+
+    @Test
+    public void slowLinkDowngradesAndMeetsTarget() {
+        AdaptiveUploadController controller = newController(SLOW_3G, false);
+        Result result = run(controller, SLOW_3G, new Random(2), REQUESTS_PER_PHASE);
+        assertTrue("slow link should find a feasible setting", result.last.feasible);
+        assertTrue("slow link should downgrade, got " + describe(result.last),
+            result.last.profile == Profile.FLAC_8K || result.last.windowMs < MAX_WINDOW_MS);
+        assertTrue("slow link p95 " + result.p95(), result.p95() <= TARGET_MS);
+    }
+
+    @Test
+    public void infeasibleLinkPicksLowestLatency() {
+        AdaptiveUploadController controller = newController(EDGE, false);
+        Result result = run(controller, EDGE, new Random(3), REQUESTS_PER_PHASE);
+        assertFalse(result.last.feasible);
+        assertEquals(Profile.FLAC_8K, result.last.profile);
+        assertEquals(AdaptiveUploadController.MIN_WINDOW_MS, result.last.windowMs);
+    }
+
+    /**
+     * 快速→慢速→快速，网络变化时像模块一样通知控制器，每个阶段预热后都应满足目标，回到快速链路后恢复最长窗口
+     */
+    @Test
+    public void convergesAfterLinkChanges() {
+        Random random = new Random(4);
+        AdaptiveUploadController controller = newController(WIFI, false);
+        FakeNetwork[] phases = {WIFI, SLOW_3G, WIFI};
+        for (int i = 0; i < phases.length; i++) {
+            FakeNetwork network = phases[i];
+            controller.onLinkChanged(network.name, 0, false);
+            Result result = run(controller, network, random, REQUESTS_PER_PHASE);
+            assertTrue("phase " + i + " on " + network.name + " p95 " + result.p95(), result.p95() <= TARGET_MS);
+        }
+        Decision decision = controller.getCurrentDecision();
+        assertEquals(MAX_WINDOW_MS, decision.windowMs);
+        assertEquals(16000, decision.profile.sampleRate);
+    }
+
+    /**
+     * 同一网络上只是带宽估计变化时保留实测历史；换到另一个网络时（即使同为Wi-Fi）清空
+     */
+    @Test
+    public void resetsEstimatesOnlyWhenNetworkChanges() {
+        AdaptiveUploadController controller = newController(WIFI, false);
+        run(controller, WIFI, new Random(6), 50);
+        int samples = controller.getEstimates().samples;
+        assertTrue(samples > 0);
+
+        controller.onLinkChanged(WIFI.name, 10_000, false);
+        assertEquals(samples, controller.getEstimates().samples);
+
+        controller.onLinkChanged("wifi-2", 0, false);
+        assertEquals(0, controller.getEstimates().samples);
+    }
+
+    @Test
+    public void meteredLinkNeverUsesLinear16() {
+        AdaptiveUploadController controller = newController(WIFI, true);
+        Result result = run(controller, WIFI, new Random(5), REQUESTS_PER_PHASE);
+        for (String decision : result.decisions) {
+            assertFalse(decision, decision.startsWith(Profile.LINEAR16_16K.name()));
+        }
+    }
+
+    @Test
+    public void sameSeedGivesSameDecisions() {
+        Result a = run(newController(SLOW_3G, false), SLOW_3G, new Random(42), REQUESTS_PER_PHASE);
+        Result b = run(newController(SLOW_3G, false), SLOW_3G, new Random(42), REQUESTS_PER_PHASE);
+        assertEquals(a.decisions, b.decisions);
+        Result c = run(newController(SLOW_3G, false), SLOW_3G, new Random(43), REQUESTS_PER_PHASE);
+        assertNotEquals("different seeds should exercise different inputs", a.latencies, c.latencies);
+    }
+
+    private static AdaptiveUploadController newController(FakeNetwork network, boolean metered) {
+        AdaptiveUploadController controller = new AdaptiveUploadController(MAX_WINDOW_MS);
+        controller.onLinkChanged(network.name, 0, metered);
+        return controller;
+    }
+
+    /**
+     * 模拟连续说话：每句话1.5到9秒，按控制器选择的窗口切分，句末不足一个窗口的部分单独上传
+     */
+    private static Result run(AdaptiveUploadController controller, FakeNetwork network, Random random, int requests) {
+        Result result = new Result();
+        int remaining = 0;
+        for (int i = 0; i < requests; i++) {
+            if (remaining <= 0) {
+                remaining = 1500 + random.nextInt(7500);
+            }
+            Decision decision = controller.decide();
+            int audioMs = Math.min(remaining, decision.windowMs);
+            remaining -= audioMs;
+
+            // 压缩率随内容在±10%内波动
+            double compression = 0.9 + 0.2 * random.nextDouble();
+            double bytesPerMs = decision.profile == Profile.LINEAR16_16K
+                ? 32 * 4 / 3.0
+                : decision.profile.sampleRate / 1000 * 2 * 0.55 * compression * 4 / 3;
+            long bodyBytes = Math.round(bytesPerMs * audioMs) + 250;
+            double encodeMs = decision.profile == Profile.LINEAR16_16K ? 0
+                : audioMs * (decision.profile == Profile.FLAC_8K ? 0.012 : 0.008);
+            long[] timing = network.send(bodyBytes, audioMs, random);
+            controller.onRequestCompleted(decision.profile, audioMs, bodyBytes, encodeMs, timing[0], timing[1]);
+
+            result.decisions.add(decision.profile.name() + "/" + decision.windowMs);
+            result.last = decision;
+            if (i >= WARMUP_REQUESTS) {
+                result.latencies.add(encodeMs + timing[1]);
+            }
+        }
+        return result;
+    }
+
+    private static String describe(Decision decision) {
+        return decision.profile.name() + "/" + decision.windowMs + "ms";
+    }
+}
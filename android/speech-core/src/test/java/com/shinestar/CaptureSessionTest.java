@@ -0,0 +1,187 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 快速反复启停CaptureSession，检查状态机的不变量：
+ * 同一时刻最多打开一个设备；每次成功的start恰好回调一次onStarted或onStartFailed；
+ * 打开过的设备都被关闭；stop返回时上一个会话的设备已经关闭、状态回到IDLE。
+ */
+public class CaptureSessionTest {
+    private static final int SEQUENTIAL_CYCLES = 20000;
+    private static final int CONTENDED_THREADS = 4;
+    private static final int CONTENDED_CYCLES = 5000;
+    private static final long STOP_TIMEOUT_MS = 1000;
+    // 模拟AudioRecord.read阻塞一小段时间
+    private static final long READ_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // 约5%的启动在打开设备时失败
+    private static final int OPEN_FAILURE_PERCENT = 5;
+
+    private final AtomicInteger openDevices = new AtomicInteger();
+    private final AtomicInteger maxOpenDevices = new AtomicInteger();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong startFailed = new AtomicLong();
+    private final AtomicLong stopped = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+
+    private ExecutorService captureExecutor;
+    private CaptureSession session;
+
+    private final class FakeCapture implements CaptureSession.Capture, CaptureSession.Listener {
+        private final boolean failOpen;
+        private final AtomicInteger callbacks = new AtomicInteger();
+        private volatile boolean isOpen;
+        private volatile boolean wasOpened;
+
+        FakeCapture(boolean failOpen) {
+            this.failOpen = failOpen;
+        }
+
+        @Override
+        public void open() throws Exception {
+            if (failOpen) {
+                throw new Exception("simulated open failure");
+            }
+            int open = openDevices.incrementAndGet();
+            maxOpenDevices.accumulateAndGet(open, Math::max);
+            opened.incrementAndGet();
+            wasOpened = true;
+            isOpen = true;
+        }
+
+        @Override
+        public void run(CaptureSession session) {
+            while (session.isRunning()) {
+                LockSupport.parkNanos(READ_NANOS);
+            }
+        }
+
+        @Override
+        public void close() {
+            isOpen = false;
+            openDevices.decrementAndGet();
+            closed.incrementAndGet();
+        }
+
+        @Override
+        public void onStarted() {
+            started.incrementAndGet();
+            callbacks.incrementAndGet();
+        }
+
+        @Override
+        public void onStartFailed(Exception error) {
+            startFailed.incrementAndGet();
+            callbacks.incrementAndGet();
+        }
+
+        @Override
+        public void onStopped() {
+            stopped.incrementAndGet();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        captureExecutor = Executors.newSingleThreadExecutor();
+        session = new CaptureSession(captureExecutor);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        captureExecutor.shutdown();
+        captureExecutor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 单个控制线程：stop返回后，刚才的会话必须已关闭设备并回调完毕
+     */
+    @Test
+    public void sequentialStartStopClosesEachSession() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < SEQUENTIAL_CYCLES; i++) {
+            FakeCapture capture = new FakeCapture(random.nextInt(100) < OPEN_FAILURE_PERCENT);
+            assertTrue("sequential start rejected at cycle " + i, session.start(capture, capture));
+            accepted.incrementAndGet();
+            // 有时立即停止（覆盖STARTING阶段），有时等采集跑起来再停止
+            if (random.nextBoolean()) {
+                LockSupport.parkNanos(random.nextLong(READ_NANOS * 4));
+            }
+            session.stop(STOP_TIMEOUT_MS);
+            assertEquals(CaptureSession.State.IDLE, session.getState());
+            assertFalse("device still open after stop at cycle " + i, capture.isOpen);
+            assertEquals("start callbacks at cycle " + i, 1, capture.callbacks.get());
+            assertFalse("failed open reported as opened at cycle " + i, capture.failOpen && capture.wasOpened);
+        }
+        assertInvariants();
+    }
+
+    /**
+     * 多个线程同时随机启停，只检查互斥和计数
+     */
+    @Test
+    public void contendedStartStopKeepsOneDeviceOpen() throws InterruptedException {
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < CONTENDED_THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < CONTENDED_CYCLES; i++) {
+                        if (random.nextBoolean()) {
+                            FakeCapture capture = new FakeCapture(random.nextInt(100) < OPEN_FAILURE_PERCENT);
+                            if (session.start(capture, capture)) {
+                                accepted.incrementAndGet();
+                            }
+                        } else {
+                            session.stop(STOP_TIMEOUT_MS);
+                        }
+                        if (random.nextInt(4) == 0) {
+                            LockSupport.parkNanos(random.nextLong(READ_NANOS * 2));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IllegalStateException e) {
+                    errors.add(e.getMessage());
+                }
+            }, "capture-control-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertInvariants();
+    }
+
+    private void assertInvariants() throws InterruptedException {
+        // 收尾：确保没有遗留的会话
+        session.stop(STOP_TIMEOUT_MS);
+        assertEquals(CaptureSession.State.IDLE, session.getState());
+        assertEquals("max concurrently open devices", 1, maxOpenDevices.get());
+        assertEquals("opened vs closed", opened.get(), closed.get());
+        assertEquals("opened vs onStopped", opened.get(), stopped.get());
+        assertEquals("accepted vs start callbacks", accepted.get(), started.get() + startFailed.get());
+    }
+}
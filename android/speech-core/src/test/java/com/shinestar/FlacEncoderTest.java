@@ -0,0 +1,374 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 把合成的PCM编码后再用测试里的最小FLAC解码器还原，检查样本完全一致、帧头CRC8和帧CRC16正确，
+ * 覆盖CONSTANT/VERBATIM/FIXED子帧、非整块长度的末尾短块，以及池化输出数组的复用
+ */
+public class FlacEncoderTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BLOCK_SIZE = 4096;
+    private static final int SUBFRAME_CONSTANT = 0;
+    private static final int SUBFRAME_VERBATIM = 1;
+    private static final int SUBFRAME_FIXED = 8;
+
+    @Test
+    public void roundTripsSpeechLikeAudioWithShortFinalBlock() {
+        short[] samples = speechLike(BLOCK_SIZE * 2 + 1001, 1);
+
+        Decoded decoded = decode(new FlacEncoder(SAMPLE_RATE).encode(toPcm(samples), 0, samples.length * 2));
+
+        assertArrayEquals(samples, decoded.samples);
+        assertArrayEquals(new int[] {BLOCK_SIZE, BLOCK_SIZE, 1001}, decoded.blockSizes);
+    }
+
+    @Test
+    public void roundTripsOddLengths() {
+        // 小于预测阶数、刚好一块、多一个样本、少一个样本
+        int[] lengths = {1, 2, 3, 4, 5, 17, 4095, BLOCK_SIZE, BLOCK_SIZE + 1, BLOCK_SIZE * 3 - 1};
+        FlacEncoder encoder = new FlacEncoder(SAMPLE_RATE);
+        for (int length : lengths) {
+            short[] samples = speechLike(length, length);
+
+            Decoded decoded = decode(encoder.encode(toPcm(samples), 0, samples.length * 2));
+
+            assertArrayEquals("length " + length, samples, decoded.samples);
+            int lastBlock = length % BLOCK_SIZE == 0 ? BLOCK_SIZE : length % BLOCK_SIZE;
+            assertEquals("length " + length, lastBlock, decoded.blockSizes[decoded.blockSizes.length - 1]);
+        }
+    }
+
+    @Test
+    public void roundTripsEverySubframeType() {
+        FlacEncoder encoder = new FlacEncoder(SAMPLE_RATE);
+        Random random = new Random(7);
+        short[] silence = new short[3000];
+        short[] offset = new short[3000];
+        Arrays.fill(offset, (short) -1234);
+        short[] noise = new short[3000];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (short) random.nextInt();
+        }
+        short[] extremes = new short[3000];
+        for (int i = 0; i < extremes.length; i++) {
+            extremes[i] = i % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE;
+        }
+
+        Decoded decodedSilence = decode(encoder.encode(toPcm(silence), 0, silence.length * 2));
+        Decoded decodedOffset = decode(encoder.encode(toPcm(offset), 0, offset.length * 2));
+        Decoded decodedNoise = decode(encoder.encode(toPcm(noise), 0, noise.length * 2));
+        Decoded decodedExtremes = decode(encoder.encode(toPcm(extremes), 0, extremes.length * 2));
+        Decoded decodedSpeech = decode(encoder.encode(toPcm(speechLike(3000, 3)), 0, 6000));
+
+        assertArrayEquals(silence, decodedSilence.samples);
+        assertEquals(SUBFRAME_CONSTANT, decodedSilence.subframeTypes[0]);
+        assertArrayEquals(offset, decodedOffset.samples);
+        assertEquals(SUBFRAME_CONSTANT, decodedOffset.subframeTypes[0]);
+        // 满幅白噪声预测无收益，只能逐样本存储
+        assertArrayEquals(noise, decodedNoise.samples);
+        assertEquals(SUBFRAME_VERBATIM, decodedNoise.subframeTypes[0]);
+        assertArrayEquals(extremes, decodedExtremes.samples);
+        assertArrayEquals(speechLike(3000, 3), decodedSpeech.samples);
+        assertTrue(decodedSpeech.subframeTypes[0] >= SUBFRAME_FIXED);
+    }
+
+    @Test
+    public void encodesFromOffsetAndHeaderDescribesStream() {
+        short[] samples = speechLike(5000, 4);
+        byte[] pcm = toPcm(samples);
+        byte[] padded = new byte[pcm.length + 10];
+        System.arraycopy(pcm, 0, padded, 6, pcm.length);
+        Arrays.fill(padded, 0, 6, (byte) 0x55);
+
+        byte[] flac = new FlacEncoder(SAMPLE_RATE).encode(padded, 6, pcm.length);
+        Decoded decoded = decode(flac);
+
+        assertArrayEquals(samples, decoded.samples);
+        assertEquals(SAMPLE_RATE, decoded.sampleRate);
+        assertEquals(samples.length, decoded.totalSamples);
+        assertEquals(SAMPLE_RATE, FlacEncoder.readSampleRate(flac, flac.length));
+        assertTrue(flac.length <= FlacEncoder.maxEncodedSize(pcm.length));
+    }
+
+    @Test
+    public void frameNumbersUseMultiByteEncodingPastFrame127() {
+        short[] samples = speechLike(BLOCK_SIZE * 130 + 5, 5);
+
+        Decoded decoded = decode(new FlacEncoder(SAMPLE_RATE).encode(toPcm(samples), 0, samples.length * 2));
+
+        assertArrayEquals(samples, decoded.samples);
+        assertEquals(131, decoded.blockSizes.length);
+    }
+
+    @Test
+    public void pooledOutputIsReusedWithoutStaleData() {
+        FlacEncoder encoder = new FlacEncoder(SAMPLE_RATE);
+        int length = BLOCK_SIZE + 333;
+        ByteArrayPool inputPool = new ByteArrayPool(length * 2, 2);
+        short[] first = speechLike(length, 10);
+        // 第二段更容易压缩，编码结果更短，残留的旧数据不能混进来
+        short[] second = new short[length];
+
+        AudioChunk firstOut = encoder.encode(pooledChunk(inputPool, first));
+        byte[] firstArray = firstOut.getData();
+        assertArrayEquals(first, decode(copyOf(firstOut)).samples);
+        firstOut.release();
+
+        AudioChunk secondOut = encoder.encode(pooledChunk(inputPool, second));
+        // 输出数组来自池，上一次归还的数组被再次使用
+        assertSame(firstArray, secondOut.getData());
+        assertTrue(secondOut.getLength() < firstOut.getLength());
+        assertArrayEquals(second, decode(copyOf(secondOut)).samples);
+
+        // 未归还时下一次编码拿到新的数组，互不覆盖
+        AudioChunk thirdOut = encoder.encode(pooledChunk(inputPool, first));
+        assertNotSame(secondOut.getData(), thirdOut.getData());
+        assertArrayEquals(second, decode(copyOf(secondOut)).samples);
+        assertArrayEquals(first, decode(copyOf(thirdOut)).samples);
+        secondOut.release();
+        thirdOut.release();
+    }
+
+    private static AudioChunk pooledChunk(ByteArrayPool pool, short[] samples) {
+        byte[] data = pool.acquire();
+        byte[] pcm = toPcm(samples);
+        System.arraycopy(pcm, 0, data, 0, pcm.length);
+        return new AudioChunk(data, pcm.length, pool);
+    }
+
+    private static byte[] copyOf(AudioChunk chunk) {
+        return Arrays.copyOf(chunk.getData(), chunk.getLength());
+    }
+
+    /**
+     * 基频加两个谐波再叠加少量噪声，幅度随时间起伏
+     */
+    private static short[] speechLike(int length, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 3 * t);
+            double value = envelope * (6000 * Math.sin(2 * Math.PI * 180 * t)
+                + 2500 * Math.sin(2 * Math.PI * 360 * t)
+                + 1200 * Math.sin(2 * Math.PI * 540 * t))
+                + random.nextGaussian() * 150;
+            samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        }
+        return samples;
+    }
+
+    private static byte[] toPcm(short[] samples) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            pcm[i * 2] = (byte) samples[i];
+            pcm[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        return pcm;
+    }
+
+    private static final class Decoded {
+        int sampleRate;
+        long totalSamples;
+        short[] samples;
+        int[] blockSizes;
+        int[] subframeTypes;
+    }
+
+    /**
+     * 只支持编码器会产生的子集：16位单声道、固定块大小、CONSTANT/VERBATIM/FIXED子帧、分区阶数0的Rice残差
+     */
+    private static Decoded decode(byte[] flac) {
+        BitReader in = new BitReader(flac);
+        assertEquals(0x664C6143, in.read(32));
+
+        assertEquals("STREAMINFO is the last metadata block", 1, in.read(1));
+        assertEquals(0, in.read(7));
+        assertEquals(34, in.read(24));
+        int blockSize = in.read(16);
+        assertEquals(blockSize, in.read(16));
+        in.read(24);
+        in.read(24);
+        Decoded decoded = new Decoded();
+        decoded.sampleRate = in.read(20);
+        assertEquals("mono", 0, in.read(3));
+        assertEquals(15, in.read(5));
+        decoded.totalSamples = ((long) in.read(4) << 32) | (in.read(32) & 0xffffffffL);
+        for (int i = 0; i < 4; i++) {
+            in.read(32);
+        }
+
+        int total = (int) decoded.totalSamples;
+        int frames = (total + blockSize - 1) / blockSize;
+        decoded.samples = new short[total];
+        decoded.blockSizes = new int[frames];
+        decoded.subframeTypes = new int[frames];
+        int[] block = new int[blockSize];
+        int position = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            int frameStart = in.bytePosition();
+            assertEquals("sync code", 0x3FFE, in.read(14));
+            assertEquals(0, in.read(1));
+            assertEquals("fixed block size", 0, in.read(1));
+            assertEquals(0x7, in.read(4));
+            assertEquals(0x0, in.read(4));
+            assertEquals(0x0, in.read(4));
+            assertEquals(0x4, in.read(3));
+            assertEquals(0, in.read(1));
+            assertEquals("frame number", frame, readUtf8Number(in));
+            int size = in.read(16) + 1;
+            int expectedCrc8 = crc8(flac, frameStart, in.bytePosition());
+            assertEquals("CRC-8 of frame " + frame, expectedCrc8, in.read(8));
+
+            assertEquals(0, in.read(1));
+            int type = in.read(6);
+            assertEquals("wasted bits", 0, in.read(1));
+            decoded.subframeTypes[frame] = type;
+            if (type == SUBFRAME_CONSTANT) {
+                Arrays.fill(block, 0, size, in.readSigned(16));
+            } else if (type == SUBFRAME_VERBATIM) {
+                for (int i = 0; i < size; i++) {
+                    block[i] = in.readSigned(16);
+                }
+            } else {
+                assertTrue("FIXED subframe, type " + type, type >= SUBFRAME_FIXED && type <= SUBFRAME_FIXED + 4);
+                readFixed(in, block, size, type - SUBFRAME_FIXED);
+            }
+
+            in.alignToByte();
+            int expectedCrc16 = crc16(flac, frameStart, in.bytePosition());
+            assertEquals("CRC-16 of frame " + frame, expectedCrc16, in.read(16));
+
+            for (int i = 0; i < size; i++) {
+                decoded.samples[position + i] = (short) block[i];
+            }
+            position += size;
+            decoded.blockSizes[frame] = size;
+        }
+        assertEquals(total, position);
+        assertEquals("no trailing bytes", flac.length, in.bytePosition());
+        return decoded;
+    }
+
+    private static void readFixed(BitReader in, int[] block, int size, int order) {
+        for (int i = 0; i < order; i++) {
+            block[i] = in.readSigned(16);
+        }
+        assertEquals("4-bit Rice parameters", 0, in.read(2));
+        assertEquals("partition order", 0, in.read(4));
+        int parameter = in.read(4);
+        assertTrue("escape code is not used", parameter < 15);
+        for (int i = order; i < size; i++) {
+            int quotient = 0;
+            while (in.read(1) == 0) {
+                quotient++;
+            }
+            int folded = (quotient << parameter) | (parameter > 0 ? in.read(parameter) : 0);
+            int residual = (folded >>> 1) ^ -(folded & 1);
+            int prediction;
+            switch (order) {
+                case 0:
+                    prediction = 0;
+                    break;
+                case 1:
+                    prediction = block[i - 1];
+                    break;
+                case 2:
+                    prediction = 2 * block[i - 1] - block[i - 2];
+                    break;
+                case 3:
+                    prediction = 3 * block[i - 1] - 3 * block[i - 2] + block[i - 3];
+                    break;
+                default:
+                    prediction = 4 * block[i - 1] - 6 * block[i - 2] + 4 * block[i - 3] - block[i - 4];
+                    break;
+            }
+            block[i] = prediction + residual;
+        }
+    }
+
+    private static int readUtf8Number(BitReader in) {
+        int first = in.read(8);
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        int extra = first >= 0xF0 ? 3 : first >= 0xE0 ? 2 : 1;
+        int value = first & (0x3F >> extra);
+        for (int i = 0; i < extra; i++) {
+            int next = in.read(8);
+            assertEquals("UTF-8 continuation byte", 0x80, next & 0xC0);
+            value = (value << 6) | (next & 0x3F);
+        }
+        return value;
+    }
+
+    /**
+     * 按位计算的CRC，与编码器的查表实现相互独立
+     */
+    private static int crc8(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= data[i] & 0xff;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0x07) & 0xff : (crc << 1) & 0xff;
+            }
+        }
+        return crc;
+    }
+
+    private static int crc16(byte[] data, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= (data[i] & 0xff) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? ((crc << 1) ^ 0x8005) & 0xffff : (crc << 1) & 0xffff;
+            }
+        }
+        return crc;
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private long bitPosition;
+
+        BitReader(byte[] data) {
+            this.data = data;
+        }
+
+        int read(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                int index = (int) (bitPosition >>> 3);
+                assertTrue("read past end of stream", index < data.length);
+                int bit = (data[index] >>> (7 - (bitPosition & 7))) & 1;
+                value = (value << 1) | bit;
+                bitPosition++;
+            }
+            return (int) value;
+        }
+
+        int readSigned(int bits) {
+            int value = read(bits);
+            return (value << (32 - bits)) >> (32 - bits);
+        }
+
+        void alignToByte() {
+            bitPosition = (bitPosition + 7) & ~7L;
+        }
+
+        int bytePosition() {
+            assertEquals("byte aligned", 0, bitPosition & 7);
+            return (int) (bitPosition >>> 3);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 用合成的正弦音检查重采样：通带内的频率和幅度不变、阻带信号被抑制、输出长度符合maxOutputBytes、
+ * 分多次调用与一次处理结果一致，以及多声道平均下混
+ */
+public class PcmResamplerTest {
+    private static final int OUTPUT_RATE = 16000;
+    private static final double AMPLITUDE = 0.5;
+    // 跳过滤波器启动阶段的输出样本
+    private static final int SETTLE_SAMPLES = 256;
+
+    @Test
+    public void downsampling48kKeepsPassbandTone() {
+        PcmResampler resampler = new PcmResampler(48000, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+
+        short[] output = resample(resampler, pcm16(tone(48000, 1000, 48000), 1), 4800);
+
+        assertTone(output, 1000);
+    }
+
+    @Test
+    public void downsampling44100KeepsPassbandTone() {
+        PcmResampler resampler = new PcmResampler(44100, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+
+        short[] output = resample(resampler, pcm16(tone(44100, 3000, 44100), 1), 4410);
+
+        assertTone(output, 3000);
+    }
+
+    @Test
+    public void toneAboveOutputNyquistIsSuppressed() {
+        // 12kHz在16kHz下会混叠到4kHz，抗混叠滤波器应把它压到-60dB以下
+        PcmResampler resampler = new PcmResampler(48000, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+
+        short[] output = resample(resampler, pcm16(tone(48000, 12000, 48000), 1), 4800);
+
+        double rms = rms(output, SETTLE_SAMPLES, output.length) / 32768.0;
+        assertTrue("alias rms " + rms, rms < AMPLITUDE / Math.sqrt(2) * 1e-3);
+    }
+
+    @Test
+    public void outputLengthFitsMaxOutputBytes() {
+        int[][] formats = {{48000, 1}, {44100, 1}, {44100, 2}, {22050, 1}, {8000, 1}};
+        for (int[] format : formats) {
+            int inputRate = format[0];
+            int channels = format[1];
+            PcmResampler resampler = new PcmResampler(inputRate, channels, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+            byte[] input = pcm16(tone(inputRate, 440, inputRate * 2 + 17), channels);
+            int frameBytes = 2 * channels;
+            long totalOutput = 0;
+            // 每次送入的帧数各不相同，覆盖各种相位下的输出个数
+            int offset = 0;
+            for (int frames = 1; offset < input.length; frames = frames * 7 % 997 + 1) {
+                int count = Math.min(frames * frameBytes, input.length - offset);
+                ByteBuffer in = ByteBuffer.wrap(input, offset, count);
+                ByteBuffer out = ByteBuffer.allocate(resampler.maxOutputBytes(count));
+                int written = resampler.process(in, out);
+                assertFalse("input left over", in.hasRemaining());
+                assertEquals(out.position(), written);
+                assertTrue(written <= resampler.maxOutputBytes(count));
+                totalOutput += written / 2;
+                offset += count;
+            }
+            long inputFrames = input.length / frameBytes;
+            double expected = (double) inputFrames * OUTPUT_RATE / inputRate;
+            assertTrue(inputRate + "Hz x" + channels + ": " + totalOutput + " vs " + expected,
+                Math.abs(totalOutput - expected) <= 1);
+        }
+    }
+
+    @Test
+    public void stateCarriesAcrossCalls() {
+        byte[] input = pcm16(tone(44100, 1000, 44100), 1);
+        PcmResampler whole = new PcmResampler(44100, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+        PcmResampler chunked = new PcmResampler(44100, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+
+        short[] expected = resample(whole, input, input.length / 2);
+        short[] actual = resample(chunked, input, 441);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void resetStartsANewStream() {
+        byte[] first = pcm16(tone(48000, 2000, 9600), 1);
+        byte[] second = pcm16(tone(48000, 700, 9600), 1);
+        PcmResampler reused = new PcmResampler(48000, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+        PcmResampler fresh = new PcmResampler(48000, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+
+        resample(reused, first, 960);
+        reused.reset();
+
+        assertArrayEquals(resample(fresh, second, 960), resample(reused, second, 960));
+    }
+
+    @Test
+    public void stereoIsDownmixedByAveraging() {
+        double[] left = tone(48000, 1000, 48000);
+        double[] right = new double[left.length];
+        for (int i = 0; i < right.length; i++) {
+            right[i] = -left[i];
+        }
+        PcmResampler identical = new PcmResampler(48000, 2, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+        PcmResampler opposite = new PcmResampler(48000, 2, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+        PcmResampler mono = new PcmResampler(48000, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+
+        short[] sameOutput = resample(identical, interleave(left, left), 4800);
+        short[] cancelled = resample(opposite, interleave(left, right), 4800);
+        short[] monoOutput = resample(mono, pcm16(left, 1), 4800);
+
+        // 两声道相同时与单声道一致，反相时相互抵消
+        assertArrayEquals(monoOutput, sameOutput);
+        assertTone(sameOutput, 1000);
+        assertEquals(0.0, rms(cancelled, 0, cancelled.length), 1.0);
+    }
+
+    @Test
+    public void floatStereoIsDownmixedAndConverted() {
+        double[] tone = tone(48000, 1000, 48000);
+        ByteBuffer input = ByteBuffer.allocate(tone.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (double sample : tone) {
+            // 一个声道是音频，另一个静音，平均后幅度减半
+            input.putFloat((float) (sample * 2));
+            input.putFloat(0f);
+        }
+        PcmResampler resampler = new PcmResampler(48000, 2, PcmResampler.Encoding.PCM_FLOAT, OUTPUT_RATE);
+
+        short[] output = resample(resampler, input.array(), 4800);
+
+        assertTone(output, 1000);
+    }
+
+    @Test
+    public void sameFormatIsPassthrough() {
+        PcmResampler resampler = new PcmResampler(16000, 1, PcmResampler.Encoding.PCM_16BIT, OUTPUT_RATE);
+        byte[] input = pcm16(tone(16000, 1000, 1601), 1);
+
+        assertTrue(resampler.isPassthrough());
+        assertArrayEquals(toShorts(input), resample(resampler, input, 160));
+    }
+
+    /**
+     * 按每次frames个输入帧分块处理，返回全部输出样本
+     */
+    private static short[] resample(PcmResampler resampler, byte[] input, int frames) {
+        int frameBytes = resampler.getEncoding().getBytesPerSample() * resampler.getChannels();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int offset = 0; offset < input.length; offset += frames * frameBytes) {
+            int count = Math.min(frames * frameBytes, input.length - offset);
+            ByteBuffer in = ByteBuffer.wrap(input, offset, count);
+            ByteBuffer out = ByteBuffer.allocate(resampler.maxOutputBytes(count));
+            int written = resampler.process(in, out);
+            output.write(out.array(), 0, written);
+        }
+        return toShorts(output.toByteArray());
+    }
+
+    /**
+     * 在稳定段上对目标频率做最小二乘正弦拟合：幅度应不变，拟合残差应接近量化噪声，说明频率没有偏移
+     */
+    private static void assertTone(short[] output, int frequency) {
+        int end = output.length - SETTLE_SAMPLES;
+        int count = end - SETTLE_SAMPLES;
+        double omega = 2 * Math.PI * frequency / OUTPUT_RATE;
+        double sinSum = 0;
+        double cosSum = 0;
+        for (int n = SETTLE_SAMPLES; n < end; n++) {
+            sinSum += output[n] * Math.sin(omega * n);
+            cosSum += output[n] * Math.cos(omega * n);
+        }
+        double a = 2 * sinSum / count;
+        double b = 2 * cosSum / count;
+        double amplitude = Math.sqrt(a * a + b * b) / 32768.0;
+        assertEquals("amplitude at " + frequency + "Hz", AMPLITUDE, amplitude, AMPLITUDE * 0.01);
+
+        double residual = 0;
+        for (int n = SETTLE_SAMPLES; n < end; n++) {
+            double error = output[n] - (a * Math.sin(omega * n) + b * Math.cos(omega * n));
+            residual += error * error;
+        }
+        double residualRms = Math.sqrt(residual / count) / 32768.0;
+        assertTrue("residual " + residualRms + " at " + frequency + "Hz", residualRms < AMPLITUDE * 0.005);
+    }
+
+    private static double[] tone(int sampleRate, double frequency, int length) {
+        double[] samples = new double[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / sampleRate);
+        }
+        return samples;
+    }
+
+    /**
+     * 每个声道写入相同的样本
+     */
+    private static byte[] pcm16(double[] samples, int channels) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.length * 2 * channels).order(ByteOrder.LITTLE_ENDIAN);
+        for (double sample : samples) {
+            for (int c = 0; c < channels; c++) {
+                buffer.putShort((short) Math.round(sample * 32767));
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] interleave(double[] left, double[] right) {
+        ByteBuffer buffer = ByteBuffer.allocate(left.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < left.length; i++) {
+            buffer.putShort((short) Math.round(left[i] * 32767));
+            buffer.putShort((short) Math.round(right[i] * 32767));
+        }
+        return buffer.array();
+    }
+
+    private static short[] toShorts(byte[] pcm) {
+        return toShorts(ByteBuffer.wrap(pcm));
+    }
+
+    private static short[] toShorts(ByteBuffer pcm) {
+        pcm.order(ByteOrder.LITTLE_ENDIAN);
+        short[] samples = new short[pcm.remaining() / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = pcm.getShort();
+        }
+        return samples;
+    }
+
+    private static double rms(short[] samples, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += (double) samples[i] * samples[i];
+        }
+        return Math.sqrt(sum / (to - from));
+    }
+}
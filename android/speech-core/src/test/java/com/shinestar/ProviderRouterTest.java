@@ -0,0 +1,215 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 用假的提供商和可控时钟逐步检查ProviderRouter的评分与切换建议
+ */
+public class ProviderRouterTest {
+    private static final String CLOUD = "cloud";
+    private static final String OFFLINE = "offline";
+
+    private static final class FakeProvider implements ProviderRouter.Provider {
+        private final String id;
+        private final boolean network;
+        boolean available = true;
+
+        FakeProvider(String id, boolean network) {
+            this.id = id;
+            this.network = network;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return available;
+        }
+
+        @Override
+        public boolean requiresNetwork() {
+            return network;
+        }
+    }
+
+    private static final class FakeClock implements ProviderRouter.Clock {
+        long now = 1_000_000;
+
+        @Override
+        public long nowMs() {
+            return now;
+        }
+    }
+
+    private FakeClock clock;
+    private ProviderRouter router;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        router = new ProviderRouter(clock);
+    }
+
+    /**
+     * 连续失败达到阈值后转移；连续失败过了恢复时间但窗口内错误率仍高时不切回；窗口过期后切回
+     */
+    @Test
+    public void failsOverAndRecoversAfterWindowExpires() {
+        router.register(new FakeProvider(CLOUD, true), 0);
+        router.register(new FakeProvider(OFFLINE, false), 1);
+
+        assertEquals(CLOUD, router.select());
+        assertNull("fresh router should not move a cloud session", router.recommend(CLOUD));
+
+        for (int i = 1; i < ProviderRouter.UNHEALTHY_CONSECUTIVE_FAILURES; i++) {
+            router.recordFailure(CLOUD);
+        }
+        assertNull("should stay below the consecutive failure threshold", router.recommend(CLOUD));
+        router.recordFailure(CLOUD);
+        assertFalse(router.getHealth(CLOUD).healthy);
+        assertEquals(OFFLINE, router.recommend(CLOUD));
+        assertEquals("new sessions should start on offline", OFFLINE, router.select());
+        assertNull("should not move back while cloud is unhealthy", router.recommend(OFFLINE));
+
+        clock.now += ProviderRouter.RECOVERY_MS + 1;
+        ProviderRouter.Health cloud = router.getHealth(CLOUD);
+        assertEquals("consecutive failures should expire", 0, cloud.consecutiveFailures);
+        assertFalse("windowed error rate should still keep cloud unhealthy", cloud.healthy);
+
+        clock.now += ProviderRouter.WINDOW_MS;
+        cloud = router.getHealth(CLOUD);
+        assertEquals("old samples should expire", 0, cloud.samples);
+        assertTrue(cloud.healthy);
+        assertEquals("should fail back to cloud", CLOUD, router.recommend(OFFLINE));
+    }
+
+    /**
+     * 断网时需要网络的提供商不可用；恢复网络后断网期间的失败被清除
+     */
+    @Test
+    public void dropsOutageFailuresWhenNetworkReturns() {
+        router.register(new FakeProvider(CLOUD, true), 0);
+        router.register(new FakeProvider(OFFLINE, false), 1);
+        router.recordSuccess(CLOUD, 300);
+
+        router.setNetworkAvailable(false);
+        for (int i = 0; i < ProviderRouter.UNHEALTHY_CONSECUTIVE_FAILURES; i++) {
+            router.recordFailure(CLOUD);
+        }
+        assertFalse(router.getHealth(CLOUD).available);
+        assertTrue(router.getHealth(OFFLINE).available);
+        assertEquals(OFFLINE, router.recommend(CLOUD));
+
+        router.setNetworkAvailable(true);
+        ProviderRouter.Health cloud = router.getHealth(CLOUD);
+        assertTrue(cloud.healthy);
+        assertEquals(1, cloud.samples);
+        assertEquals(0, cloud.errorRate, 0);
+        assertEquals(CLOUD, router.recommend(OFFLINE));
+    }
+
+    /**
+     * 当前提供商不健康但别处也不健康或不可用时不切换
+     */
+    @Test
+    public void staysWithoutHealthyTarget() {
+        FakeProvider offline = new FakeProvider(OFFLINE, false);
+        router.register(new FakeProvider(CLOUD, true), 0);
+        router.register(offline, 1);
+        offline.available = false;
+        for (int i = 0; i < ProviderRouter.UNHEALTHY_CONSECUTIVE_FAILURES; i++) {
+            router.recordFailure(CLOUD);
+        }
+        assertNull("should not move to an unavailable provider", router.recommend(CLOUD));
+        assertEquals("select should fall back to the best available provider", CLOUD, router.select());
+
+        offline.available = true;
+        for (int i = 0; i < ProviderRouter.UNHEALTHY_CONSECUTIVE_FAILURES; i++) {
+            router.recordFailure(OFFLINE);
+        }
+        assertNull("should not move to an unhealthy provider", router.recommend(CLOUD));
+        assertNull(router.recommend("unknown"));
+    }
+
+    /**
+     * 当前提供商健康时，不会因为低优先级的提供商更快而切走；错误率达到阈值才算不健康
+     */
+    @Test
+    public void healthyProviderStaysDespiteSlowerLatency() {
+        router.register(new FakeProvider(CLOUD, true), 0);
+        router.register(new FakeProvider(OFFLINE, false), 1);
+        for (int i = 0; i < 10; i++) {
+            router.recordSuccess(CLOUD, 3000);
+            router.recordSuccess(OFFLINE, 100);
+            clock.now += 1000;
+        }
+        assertTrue(router.getHealth(OFFLINE).score > router.getHealth(CLOUD).score);
+        assertNull("healthy cloud session should not move for speed", router.recommend(CLOUD));
+
+        // 交替成功和失败：错误率接近一半，但不构成连续失败
+        for (int i = 0; i < ProviderRouter.WINDOW_SIZE; i++) {
+            if (i % 2 == 0) {
+                router.recordFailure(CLOUD);
+            } else {
+                router.recordSuccess(CLOUD, 3000);
+            }
+            clock.now += 1000;
+        }
+        assertTrue(router.getHealth(CLOUD).errorRate >= ProviderRouter.UNHEALTHY_ERROR_RATE);
+        assertEquals("high windowed error rate should trigger failover", OFFLINE, router.recommend(CLOUD));
+    }
+
+    /**
+     * 分位数按最近秩法，评分随p90耗时下降
+     */
+    @Test
+    public void computesLatencyPercentilesAndScore() {
+        router.register(new FakeProvider(CLOUD, true), 0);
+        assertEquals(-1, router.getHealth(CLOUD).p50Ms);
+        assertEquals(1, router.getHealth(CLOUD).score, 0);
+
+        for (int i = 10; i >= 1; i--) {
+            router.recordSuccess(CLOUD, i * 100);
+        }
+        ProviderRouter.Health cloud = router.getHealth(CLOUD);
+        assertEquals(500, cloud.p50Ms);
+        assertEquals(900, cloud.p90Ms);
+        assertEquals(1.0 / (1.0 + 900.0 / ProviderRouter.LATENCY_SCALE_MS), cloud.score, 1e-9);
+
+        // 窗口只保留最近的WINDOW_SIZE条
+        for (int i = 0; i < ProviderRouter.WINDOW_SIZE; i++) {
+            router.recordSuccess(CLOUD, 2000);
+        }
+        cloud = router.getHealth(CLOUD);
+        assertEquals(ProviderRouter.WINDOW_SIZE, cloud.samples);
+        assertEquals("old latencies should be evicted", 2000, cloud.p50Ms);
+    }
+
+    /**
+     * 同一id重新注册（模块重建）保留统计；注销旧实例不影响新实例
+     */
+    @Test
+    public void reRegistrationKeepsStats() {
+        FakeProvider first = new FakeProvider(CLOUD, true);
+        router.register(first, 0);
+        router.recordSuccess(CLOUD, 100);
+        FakeProvider second = new FakeProvider(CLOUD, true);
+        router.register(second, 0);
+        assertEquals(1, router.getHealth(CLOUD).samples);
+        router.unregister(first);
+        assertNotNull("unregistering a replaced provider should be ignored", router.getHealth(CLOUD));
+        router.unregister(second);
+        assertNull(router.getHealth(CLOUD));
+        assertNull(router.select());
+    }
+}
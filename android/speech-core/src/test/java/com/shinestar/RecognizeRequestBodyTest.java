@@ -0,0 +1,106 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import okio.Buffer;
+
+/**
+ * 检查分块base64写出的请求体与一次性编码整段音频的结果一致，覆盖块边界附近的长度，以及contentLength与实际写出的字节数
+ */
+public class RecognizeRequestBodyTest {
+    // 与RecognizeRequestBody中的分块大小一致
+    private static final int CHUNK_BYTES = 3 * 1024;
+    private static final String CONFIG = RecognizeRequestBody.buildConfigJson("FLAC", 16000, "zh-CN");
+
+    @Test
+    public void audioMatchesJdkBase64AtChunkBoundaries() throws IOException {
+        int[] lengths = {
+            0, 1, 2, 3, 4, 5,
+            CHUNK_BYTES - 2, CHUNK_BYTES - 1, CHUNK_BYTES, CHUNK_BYTES + 1, CHUNK_BYTES + 2,
+            CHUNK_BYTES * 2, CHUNK_BYTES * 5 + 1, CHUNK_BYTES * 5 + 2,
+        };
+        Random random = new Random(42);
+        for (int length : lengths) {
+            byte[] audio = new byte[length];
+            random.nextBytes(audio);
+
+            String body = write(new RecognizeRequestBody(CONFIG, audio, length));
+
+            String expected = "{\"config\":" + CONFIG
+                + ",\"audio\":{\"content\":\"" + Base64.getEncoder().encodeToString(audio) + "\"}}";
+            assertEquals("length " + length + " (n%3=" + length % 3 + ")", expected, body);
+        }
+    }
+
+    @Test
+    public void contentLengthEqualsBytesWritten() throws IOException {
+        Random random = new Random(7);
+        for (int length : new int[] {0, 1, 2, 3, CHUNK_BYTES, CHUNK_BYTES + 1, CHUNK_BYTES + 2, 100_000}) {
+            byte[] audio = new byte[length];
+            random.nextBytes(audio);
+            RecognizeRequestBody body = new RecognizeRequestBody(CONFIG, audio, length);
+
+            Buffer sink = new Buffer();
+            body.writeTo(sink);
+
+            assertEquals("length " + length, body.contentLength(), sink.size());
+        }
+    }
+
+    @Test
+    public void encodesOnlyTheGivenLengthOfAPooledArray() throws IOException {
+        byte[] pooled = new byte[CHUNK_BYTES * 2];
+        new Random(3).nextBytes(pooled);
+        int length = CHUNK_BYTES + 2;
+
+        RecognizeRequestBody body = new RecognizeRequestBody(CONFIG, pooled, length);
+        JsonObject json = JsonParser.parseString(write(body)).getAsJsonObject();
+
+        byte[] expected = new byte[length];
+        System.arraycopy(pooled, 0, expected, 0, length);
+        assertEquals(Base64.getEncoder().encodeToString(expected),
+            json.getAsJsonObject("audio").get("content").getAsString());
+        assertEquals("FLAC", json.getAsJsonObject("config").get("encoding").getAsString());
+        assertEquals(16000, json.getAsJsonObject("config").get("sampleRateHertz").getAsInt());
+        assertEquals("zh-CN", json.getAsJsonObject("config").get("languageCode").getAsString());
+    }
+
+    @Test
+    public void canBeWrittenAgainForRetries() throws IOException {
+        byte[] audio = new byte[CHUNK_BYTES * 3 + 1];
+        new Random(11).nextBytes(audio);
+        RecognizeRequestBody body = new RecognizeRequestBody(CONFIG, audio, audio.length);
+
+        assertEquals(write(body), write(body));
+    }
+
+    @Test
+    public void configWithNonAsciiLanguageCountsUtf8Bytes() throws IOException {
+        // 配置按UTF-8写出，contentLength按字节而不是字符计算
+        String config = RecognizeRequestBody.buildConfigJson("LINEAR16", 16000, "中文");
+        byte[] audio = {1, 2, 3, 4};
+        RecognizeRequestBody body = new RecognizeRequestBody(config, audio, audio.length);
+
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+
+        assertEquals(body.contentLength(), sink.size());
+        assertEquals(body.contentLength(), write(body).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static String write(RecognizeRequestBody body) throws IOException {
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+        return sink.readUtf8();
+    }
+}
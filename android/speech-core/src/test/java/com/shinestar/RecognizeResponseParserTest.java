@@ -0,0 +1,81 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * 检查响应解析：空响应、空结果、多个结果及多个候选，以及跳过未使用的字段
+ */
+public class RecognizeResponseParserTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void emptyResponseHasNoResults() throws IOException {
+        // 没有识别到语音时服务端只返回{}
+        assertNull(parse("{}"));
+        assertNull(parse("{\"totalBilledTime\":\"1s\",\"requestId\":\"123\"}"));
+    }
+
+    @Test
+    public void emptyResultsArrayYieldsEmptyList() throws IOException {
+        List<RecognizeResponseParser.Alternative> alternatives = parse("{\"results\":[]}");
+
+        assertTrue(alternatives.isEmpty());
+    }
+
+    @Test
+    public void collectsAlternativesFromEveryResultInOrder() throws IOException {
+        String response = "{"
+            + "\"results\":["
+            + "{\"alternatives\":["
+            + "{\"transcript\":\"你好\",\"confidence\":0.92,"
+            + "\"words\":[{\"startTime\":\"0s\",\"endTime\":\"0.5s\",\"word\":\"你好\",\"confidence\":0.92}]},"
+            + "{\"transcript\":\"您好\",\"confidence\":0.4}"
+            + "],\"resultEndTime\":\"1.2s\",\"languageCode\":\"cmn-hans-cn\"},"
+            + "{\"alternatives\":[{\"transcript\":\"世界\",\"confidence\":0.81}],\"channelTag\":0}"
+            + "],"
+            + "\"totalBilledTime\":\"2s\""
+            + "}";
+
+        List<RecognizeResponseParser.Alternative> alternatives = parse(response);
+
+        assertEquals(3, alternatives.size());
+        assertEquals("你好", alternatives.get(0).transcript);
+        assertEquals(0.92, alternatives.get(0).confidence, DELTA);
+        assertEquals("您好", alternatives.get(1).transcript);
+        assertEquals(0.4, alternatives.get(1).confidence, DELTA);
+        assertEquals("世界", alternatives.get(2).transcript);
+        assertEquals(0.81, alternatives.get(2).confidence, DELTA);
+    }
+
+    @Test
+    public void missingOrMistypedFieldsFallBackToDefaults() throws IOException {
+        String response = "{\"results\":["
+            + "{\"alternatives\":[{\"transcript\":\"没有置信度\"}]},"
+            + "{\"alternatives\":[{\"confidence\":0.5}]},"
+            + "{\"alternatives\":[{\"transcript\":null,\"confidence\":\"high\"}]},"
+            + "{\"resultEndTime\":\"3s\"}"
+            + "]}";
+
+        List<RecognizeResponseParser.Alternative> alternatives = parse(response);
+
+        assertEquals(3, alternatives.size());
+        assertEquals("没有置信度", alternatives.get(0).transcript);
+        assertEquals(0.0, alternatives.get(0).confidence, DELTA);
+        assertEquals("", alternatives.get(1).transcript);
+        assertEquals(0.5, alternatives.get(1).confidence, DELTA);
+        assertEquals("", alternatives.get(2).transcript);
+        assertEquals(0.0, alternatives.get(2).confidence, DELTA);
+    }
+
+    private static List<RecognizeResponseParser.Alternative> parse(String json) throws IOException {
+        return RecognizeResponseParser.parse(new StringReader(json));
+    }
+}
@@ -0,0 +1,361 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * 用MockWebServer检查重试与熔断：429/503的Retry-After、退避上限、熔断状态转换及熔断期间的快速失败
+ */
+public class ResilientHttpClientTest {
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final class RecordingListener implements ResilientHttpClient.Listener {
+        final List<Long> delays = Collections.synchronizedList(new ArrayList<>());
+        final List<CircuitBreaker.State> states = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch firstRetry = new CountDownLatch(1);
+
+        @Override
+        public void onRetry(String endpoint, int attempt, long delayMs, String reason) {
+            delays.add(delayMs);
+            firstRetry.countDown();
+        }
+
+        @Override
+        public void onCircuitStateChanged(String endpoint, CircuitBreaker.State state) {
+            states.add(state);
+        }
+    }
+
+    private MockWebServer server;
+    private OkHttpClient okHttpClient;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        okHttpClient = new OkHttpClient.Builder()
+            .readTimeout(5, TimeUnit.SECONDS)
+            .build();
+        listener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        okHttpClient.dispatcher().executorService().shutdown();
+    }
+
+    @Test
+    public void retriesTooManyRequestsHonoringRetryAfter() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 500, 2000), 5, 1000);
+
+        try (Response response = client.execute(request(), true)) {
+            assertEquals(200, response.code());
+        }
+        assertEquals(2, server.getRequestCount());
+        // 遵循服务端的Retry-After: 0，而不是按退避等待至少250ms
+        assertEquals(Arrays.asList(0L), listener.delays);
+    }
+
+    @Test
+    public void retriesUnavailableAfterRetryAfterSeconds() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 10, 2000), 5, 1000);
+
+        long start = System.nanoTime();
+        try (Response response = client.execute(request(), true)) {
+            assertEquals(200, response.code());
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(Arrays.asList(1000L), listener.delays);
+        assertTrue("waited " + elapsedMs + "ms", elapsedMs >= 1000);
+    }
+
+    @Test
+    public void backoffIsCappedAndBounded() throws IOException {
+        int maxAttempts = 6;
+        for (int i = 0; i < maxAttempts; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+        long baseMs = 10;
+        long maxMs = 40;
+        ResilientHttpClient client = newClient(new RetryPolicy(maxAttempts, baseMs, maxMs, new Random(1)), 100, 1000);
+
+        try (Response response = client.execute(request(), true)) {
+            // 重试用尽后把最后一次失败响应交给调用方
+            assertEquals(503, response.code());
+        }
+        assertEquals(maxAttempts, server.getRequestCount());
+        assertEquals(maxAttempts - 1, listener.delays.size());
+        for (int retry = 1; retry < maxAttempts; retry++) {
+            long cap = Math.min(maxMs, baseMs << (retry - 1));
+            long delay = listener.delays.get(retry - 1);
+            assertTrue("retry " + retry + " waited " + delay, delay >= cap / 2 && delay <= cap);
+        }
+        assertEquals(maxAttempts - 1, client.getRetryCount());
+    }
+
+    @Test
+    public void nonIdempotentRequestIsNotRetried() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 10, 40), 5, 1000);
+
+        try (Response response = client.execute(request(), false)) {
+            assertEquals(503, response.code());
+        }
+        assertEquals(1, server.getRequestCount());
+        assertTrue(listener.delays.isEmpty());
+    }
+
+    @Test
+    public void breakerOpensThenHalfOpensThenCloses() throws Exception {
+        long openMs = 200;
+        ResilientHttpClient client = newClient(new RetryPolicy(1, 10, 40), 2, openMs);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        executeAndClose(client);
+        executeAndClose(client);
+        assertEquals(Arrays.asList(CircuitBreaker.State.OPEN), listener.states);
+
+        expectCircuitOpen(client);
+        assertEquals(2, server.getRequestCount());
+
+        Thread.sleep(openMs + 50);
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        executeAndClose(client);
+        assertEquals(3, server.getRequestCount());
+        assertEquals(Arrays.asList(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN,
+            CircuitBreaker.State.CLOSED), listener.states);
+    }
+
+    @Test
+    public void failedProbeReopensBreaker() throws Exception {
+        long openMs = 200;
+        ResilientHttpClient client = newClient(new RetryPolicy(1, 10, 40), 1, openMs);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        executeAndClose(client);
+
+        Thread.sleep(openMs + 50);
+        server.enqueue(new MockResponse().setResponseCode(503));
+        executeAndClose(client);
+        assertEquals(Arrays.asList(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN,
+            CircuitBreaker.State.OPEN), listener.states);
+        expectCircuitOpen(client);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    /**
+     * Retry-After超过重试上限时不在线程里空等，直接按服务端给出的时长熔断，之后的请求不再发出
+     */
+    @Test
+    public void longRetryAfterShedsLoad() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "120"));
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 10, 2000), 5, 1000);
+
+        try (Response response = client.execute(request(), true)) {
+            assertEquals(503, response.code());
+        }
+        assertTrue(listener.delays.isEmpty());
+
+        for (int i = 0; i < 10; i++) {
+            ResilientHttpClient.CircuitOpenException e = expectCircuitOpen(client);
+            assertTrue(e.getRetryAfterMs() > 100_000);
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void clientErrorsDoNotTripBreaker() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            server.enqueue(new MockResponse().setResponseCode(400));
+        }
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 10, 40), 2, 1000);
+
+        for (int i = 0; i < 5; i++) {
+            try (Response response = client.execute(request(), true)) {
+                assertEquals(400, response.code());
+            }
+        }
+        assertEquals(5, server.getRequestCount());
+        assertTrue(listener.states.isEmpty());
+    }
+
+    @Test
+    public void halfOpenAdmitsSingleProbe() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 100, null);
+        assertTrue(breaker.tryAcquire(0));
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(50));
+
+        assertTrue(breaker.tryAcquire(100));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 探测请求未完成前，其余请求都被拒绝
+        assertFalse(breaker.tryAcquire(101));
+        assertFalse(breaker.tryAcquire(150));
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(151));
+        assertEquals(1, breaker.getOpenCount());
+    }
+
+    @Test
+    public void canceledProbeReleasesHalfOpenSlot() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 100, null);
+        breaker.onFailure(0);
+        assertTrue(breaker.tryAcquire(100));
+        assertFalse(breaker.tryAcquire(101));
+
+        breaker.onCanceled();
+        // 取消既不关闭也不重新打开熔断，只是允许下一个探测
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire(102));
+        assertEquals(1, breaker.getOpenCount());
+    }
+
+    @Test
+    public void canceledHalfOpenProbeAdmitsNextCall() throws Exception {
+        long openMs = 200;
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 10, 40), 1, openMs);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        executeAndClose(client, false);
+        server.takeRequest();
+
+        Thread.sleep(openMs + 50);
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        AtomicReference<IOException> probeError = new AtomicReference<>();
+        Thread probe = new Thread(() -> {
+            try {
+                executeAndClose(client, true);
+            } catch (IOException e) {
+                probeError.set(e);
+            }
+        });
+        probe.start();
+        // 等探测请求到达服务端后再取消
+        server.takeRequest(5, TimeUnit.SECONDS);
+        okHttpClient.dispatcher().cancelAll();
+        probe.join(5000);
+        assertNotNull(probeError.get());
+
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        executeAndClose(client, true);
+        assertEquals(3, server.getRequestCount());
+        // 被取消的探测不计失败也不重试
+        assertTrue(listener.delays.isEmpty());
+        assertEquals(Arrays.asList(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN,
+            CircuitBreaker.State.CLOSED), listener.states);
+    }
+
+    @Test
+    public void cancellationStopsRetriesDuringBackoff() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "1"));
+        }
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 10, 2000), 5, 1000);
+        ResilientHttpClient.Cancellation cancellation = new ResilientHttpClient.Cancellation();
+        Request request = request().newBuilder()
+            .tag(ResilientHttpClient.Cancellation.class, cancellation)
+            .build();
+
+        AtomicReference<IOException> error = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                client.execute(request, true).close();
+            } catch (IOException e) {
+                error.set(e);
+            }
+        });
+        long start = System.nanoTime();
+        caller.start();
+        // 等进入退避后再取消
+        assertTrue(listener.firstRetry.await(5, TimeUnit.SECONDS));
+        cancellation.cancel();
+        caller.join(5000);
+
+        // 不等Retry-After的1秒，也不再发出第二次请求
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertNotNull(error.get());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, client.getRetryCount());
+    }
+
+    @Test
+    public void canceledBeforeExecuteSendsNothing() {
+        ResilientHttpClient client = newClient(new RetryPolicy(3, 10, 40), 5, 1000);
+        ResilientHttpClient.Cancellation cancellation = new ResilientHttpClient.Cancellation();
+        cancellation.cancel();
+        Request request = request().newBuilder()
+            .tag(ResilientHttpClient.Cancellation.class, cancellation)
+            .build();
+
+        try {
+            client.execute(request, true).close();
+            fail("expected the call to be canceled");
+        } catch (IOException expected) {
+            // 已取消
+        }
+        assertEquals(0, server.getRequestCount());
+        assertTrue(listener.delays.isEmpty());
+    }
+
+    private ResilientHttpClient newClient(RetryPolicy policy, int failureThreshold, long openDurationMs) {
+        return new ResilientHttpClient(okHttpClient, policy, failureThreshold, openDurationMs, listener);
+    }
+
+    private Request request() {
+        return new Request.Builder()
+            .url(server.url("/v1/speech:recognize"))
+            .post(RequestBody.create("{}", JSON))
+            .build();
+    }
+
+    private void executeAndClose(ResilientHttpClient client) throws IOException {
+        executeAndClose(client, true);
+    }
+
+    private void executeAndClose(ResilientHttpClient client, boolean idempotent) throws IOException {
+        client.execute(request(), idempotent).close();
+    }
+
+    private ResilientHttpClient.CircuitOpenException expectCircuitOpen(ResilientHttpClient client) throws IOException {
+        try {
+            client.execute(request(), true).close();
+        } catch (ResilientHttpClient.CircuitOpenException e) {
+            return e;
+        }
+        fail("expected the circuit to be open");
+        return null;
+    }
+}
@@ -0,0 +1,192 @@
+package com.shinestar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 用合成的16kHz PCM（带谐波的浊音、底噪、低电平白噪声）检查VAD的起止判定、前置缓冲和拖尾
+ */
+public class VoiceActivityDetectorTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_BYTES = SAMPLE_RATE * 2 * 20 / 1000;
+    // 与VoiceActivityDetector中的参数一致，按20ms帧计
+    private static final int ONSET_FRAMES = 3;
+    private static final int HANGOVER_FRAMES = 400 / 20;
+    private static final int PRE_ROLL_FRAMES = 300 / 20;
+    // 故意不按帧对齐，覆盖跨帧拼接
+    private static final int CHUNK_BYTES = 333;
+
+    private static final class RecordingListener implements VoiceActivityDetector.Listener {
+        int starts;
+        int ends;
+        final ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        // 最近一次onSpeechEnd时已收到的字节数
+        int bytesAtEnd = -1;
+
+        @Override
+        public void onSpeechStart() {
+            starts++;
+        }
+
+        @Override
+        public void onSpeechAudio(byte[] data, int offset, int count) {
+            assertTrue("audio outside a speech segment", starts > ends);
+            audio.write(data, offset, count);
+        }
+
+        @Override
+        public void onSpeechEnd() {
+            ends++;
+            bytesAtEnd = audio.size();
+        }
+    }
+
+    private RecordingListener listener;
+    private VoiceActivityDetector vad;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        listener = new RecordingListener();
+        vad = new VoiceActivityDetector(SAMPLE_RATE, listener);
+        random = new Random(7);
+    }
+
+    @Test
+    public void silenceNeverStartsSpeech() {
+        feed(silence(3000));
+        vad.finish();
+        assertEquals(0, listener.starts);
+        assertEquals(0, listener.audio.size());
+    }
+
+    @Test
+    public void lowLevelNoiseNeverStartsSpeech() {
+        feed(noise(3000, 100));
+        vad.finish();
+        assertEquals(0, listener.starts);
+    }
+
+    @Test
+    public void shortClickIsIgnored() {
+        feed(concat(silence(1000), voiced((ONSET_FRAMES - 1) * 20), silence(1000)));
+        vad.finish();
+        assertEquals(0, listener.starts);
+    }
+
+    /**
+     * 静音-语音-静音：前置缓冲包含开始判定前的音频，结束在拖尾时长之后，输出与输入逐字节一致
+     */
+    @Test
+    public void speechSegmentIncludesPreRollAndHangover() {
+        int leadFrames = 50;
+        int speechFrames = 50;
+        byte[] input = concat(silence(leadFrames * 20), voiced(speechFrames * 20), silence(2000));
+        feed(input);
+
+        assertEquals(1, listener.starts);
+        assertEquals(1, listener.ends);
+        assertFalse(vad.isInSpeech());
+
+        // 开始判定在第ONSET_FRAMES个语音帧，前置缓冲回溯PRE_ROLL_FRAMES帧（含这几个语音帧）
+        int onsetFrame = leadFrames + ONSET_FRAMES - 1;
+        int firstFrame = onsetFrame - PRE_ROLL_FRAMES + 1;
+        int lastFrame = leadFrames + speechFrames - 1 + HANGOVER_FRAMES;
+        int expectedBytes = (lastFrame - firstFrame + 1) * FRAME_BYTES;
+        assertEquals(expectedBytes, listener.bytesAtEnd);
+        assertArrayEquals(
+            Arrays.copyOfRange(input, firstFrame * FRAME_BYTES, (lastFrame + 1) * FRAME_BYTES),
+            listener.audio.toByteArray());
+    }
+
+    @Test
+    public void pauseShorterThanHangoverKeepsOneSegment() {
+        feed(concat(silence(500), voiced(500), silence((HANGOVER_FRAMES - 5) * 20), voiced(500), silence(2000)));
+        assertEquals(1, listener.starts);
+        assertEquals(1, listener.ends);
+    }
+
+    @Test
+    public void pauseLongerThanHangoverSplitsSegments() {
+        feed(concat(silence(500), voiced(500), silence((HANGOVER_FRAMES + 10) * 20), voiced(500), silence(2000)));
+        assertEquals(2, listener.starts);
+        assertEquals(2, listener.ends);
+    }
+
+    @Test
+    public void finishDuringSpeechEndsSegment() {
+        feed(concat(silence(500), voiced(1000)));
+        // 最后半帧留在内部缓冲中，finish时一并输出
+        feed(Arrays.copyOf(voiced(20), FRAME_BYTES / 2));
+        assertTrue(vad.isInSpeech());
+        int before = listener.audio.size();
+        vad.finish();
+        assertEquals(1, listener.ends);
+        assertEquals(before + FRAME_BYTES / 2, listener.audio.size());
+        assertFalse(vad.isInSpeech());
+    }
+
+    private void feed(byte[] pcm) {
+        for (int offset = 0; offset < pcm.length; offset += CHUNK_BYTES) {
+            vad.process(pcm, offset, Math.min(CHUNK_BYTES, pcm.length - offset));
+        }
+    }
+
+    /**
+     * 基频150Hz、带若干谐波的浊音，幅度远高于底噪
+     */
+    private byte[] voiced(int durationMs) {
+        short[] samples = new short[SAMPLE_RATE * durationMs / 1000];
+        for (int i = 0; i < samples.length; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double value = 0;
+            for (int k = 1; k <= 5; k++) {
+                value += Math.sin(2 * Math.PI * 150 * k * t) / k;
+            }
+            samples[i] = clip(6000 * value + random.nextGaussian() * 40);
+        }
+        return toBytes(samples);
+    }
+
+    private byte[] silence(int durationMs) {
+        return noise(durationMs, 40);
+    }
+
+    private byte[] noise(int durationMs, double sigma) {
+        short[] samples = new short[SAMPLE_RATE * durationMs / 1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = clip(random.nextGaussian() * sigma);
+        }
+        return toBytes(samples);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static short clip(double value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+    }
+
+    private static byte[] toBytes(short[] samples) {
+        byte[] bytes = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            bytes[i * 2] = (byte) samples[i];
+            bytes[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        return bytes;
+    }
+}
@@ -67,6 +67,38 @@ class GoogleCloudSpeechToText {
     }
   }
 
+  /**
+   * 预热AudioRecord和到识别服务的连接，进入语音界面时调用，缩短开始识别的等待
+   * @returns {Promise<boolean>}
+   */
+  async prepare() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.prepare();
+      }
+      return false;
+    } catch (error) {
+      console.error('预热语音识别失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 释放预热保留的AudioRecord，离开语音界面时调用
+   * @returns {Promise<boolean>}
+   */
+  async releasePrepared() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.releasePrepared();
+      }
+      return false;
+    } catch (error) {
+      console.error('释放预热资源失败:', error);
+      return false;
+    }
+  }
+
   /**
    * 停止语音识别
    * @returns {Promise<void>}
@@ -182,6 +214,72 @@ class GoogleCloudSpeechToText {
     }
   }
 
+  /**
+   * 获取当前网络状态；网络变化时原生层会发出onNetworkChange事件，内容相同
+   * @returns {Promise<Object|null>} { connected, validated, metered, transport, downstreamKbps, upstreamKbps }
+   */
+  async getNetworkState() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.getNetworkState();
+      }
+      return null;
+    } catch (error) {
+      console.error('获取网络状态失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取HTTP请求各阶段耗时统计（DNS、建连、TLS、上传、首字节、总耗时）及连接复用情况
+   * @returns {Promise<Object|null>}
+   */
+  async getNetworkStats() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.getNetworkStats();
+      }
+      return null;
+    } catch (error) {
+      console.error('获取网络统计失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取识别指标快照：首段音频/首个中间结果/最终结果耗时、请求耗时分位数、
+   * 采集溢出次数、上传字节数及按错误码统计的错误
+   * @returns {Promise<Object|null>}
+   */
+  async getMetrics() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.getMetrics();
+      }
+      return null;
+    } catch (error) {
+      console.error('获取识别指标失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 定期把指标写入本地JSON文件，用于现场调试
+   * @param {number} intervalMs 写入间隔（毫秒），0表示停止
+   * @returns {Promise<string|null>} 文件路径
+   */
+  async setMetricsDumpInterval(intervalMs) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.setMetricsDumpInterval(intervalMs);
+      }
+      return null;
+    } catch (error) {
+      console.error('设置指标导出失败:', error);
+      return null;
+    }
+  }
+
   /**
    * 设置Google Cloud API密钥
    * @param {string} apiKey API密钥
@@ -199,6 +297,287 @@ class GoogleCloudSpeechToText {
       return false;
     }
   }
+
+  /**
+   * 配置分批上传参数。设置windowMs会关闭自适应上传（见configureAdaptiveUpload）
+   * @param {Object} options { windowMs: 识别窗口时长(1000-15000毫秒), maxInFlight: 最大并发请求数,
+   *   uploadQueueSize: 上传排队上限, rejectionPolicy: 'dropOldest' | 'reject' | 'callerRuns' }
+   * @returns {Promise<Object|null>} 生效后的配置
+   */
+  async configureBatching(options = {}) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.configureBatching(options);
+      }
+      return null;
+    } catch (error) {
+      console.error('配置分批上传失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 配置麦克风采集参数，下一次开始识别时生效，音频在原生层统一转换为16kHz单声道
+   * @param {Object} options { sampleRate: 采样率，0为设备原生采样率, channels: 1 | 2,
+   *   encoding: 'pcm16' | 'float', audioSource: 'mic' | 'voiceRecognition' | 'voiceCommunication' | 'unprocessed' }
+   * @returns {Promise<Object|null>} 生效后的采集参数，设备不支持unprocessed时audioSource为voiceRecognition
+   */
+  async configureCapture(options = {}) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.configureCapture(options);
+      }
+      return null;
+    } catch (error) {
+      console.error('配置采集参数失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 配置识别结果缓存，字节完全相同的音频片段直接返回缓存结果（onResults中fromCache为true）
+   * @param {Object} options { enabled: 是否启用, maxEntries: 内存中的条数上限,
+   *   diskEnabled: 是否启用磁盘缓存, maxDiskBytes: 磁盘缓存大小上限 }
+   * @returns {Promise<Object|null>} 生效后的配置
+   */
+  async configureResultCache(options = {}) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.configureResultCache(options);
+      }
+      return null;
+    } catch (error) {
+      console.error('配置结果缓存失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 清空识别结果缓存
+   * @returns {Promise<boolean>}
+   */
+  async clearResultCache() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.clearResultCache();
+      }
+      return false;
+    } catch (error) {
+      console.error('清空结果缓存失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 配置竞速模式：分批识别时同一份音频同时交给云端和离线引擎，每段先得出可信结果的一方胜出，
+   * onResults中的provider为胜出方（'google' 或 'offline'）。需要离线引擎和当前语言的模型
+   * @param {Object} options { enabled: 是否启用, confidenceThreshold: 可信结果的置信度下限(0-1) }
+   * @returns {Promise<Object|null>} 生效后的配置及离线引擎是否可用
+   */
+  async configureRace(options = {}) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.configureRace(options);
+      }
+      return null;
+    } catch (error) {
+      console.error('配置竞速模式失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取本机累计的竞速记录
+   * @returns {Promise<Object|null>} 各引擎的参赛、获胜次数和平均耗时，以及preferredProvider
+   */
+  async getRaceStats() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.getRaceStats();
+      }
+      return null;
+    } catch (error) {
+      console.error('获取竞速记录失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 清空竞速记录
+   * @returns {Promise<boolean>}
+   */
+  async resetRaceStats() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.resetRaceStats();
+      }
+      return false;
+    } catch (error) {
+      console.error('清空竞速记录失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 配置自动故障转移：云端不健康时在下一个段边界把会话转移到离线引擎，恢复后切回（默认开启）
+   * @param {Object} options { enabled: 是否启用 }
+   * @returns {Promise<Object|null>} 生效后的配置及离线引擎是否可用
+   */
+  async configureFailover(options = {}) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.configureFailover(options);
+      }
+      return null;
+    } catch (error) {
+      console.error('配置故障转移失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 配置自适应上传：分批识别时按实测的上传吞吐和往返耗时逐个窗口选择编码、采样率和窗口时长。
+   * 默认开启；调用setAudioEncoding或在configureBatching中设置windowMs后自动关闭，按调用方的设置上传。
+   * 关闭后再以enabled: true开启时，windowMs为窗口时长上限，setAudioEncoding设置的编码不再生效
+   * @param {Object} options { enabled: 是否启用, targetP95Ms: 端到端延迟p95目标（毫秒，默认800） }
+   * @returns {Promise<Object|null>} 生效后的配置、当前决策（encoding、sampleRate、windowMs、predictedMs、feasible）及吞吐等估计
+   */
+  async configureAdaptiveUpload(options = {}) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.configureAdaptiveUpload(options);
+      }
+      return null;
+    } catch (error) {
+      console.error('配置自适应上传失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 获取原生路由记录的各提供商健康状况
+   * @returns {Promise<Object|null>} providers（错误率、耗时分位数、评分等）、networkAvailable及preferredProvider
+   */
+  async getProviderHealth() {
+    try {
+      if (GoogleCloudSpeechModule) {
+        return await GoogleCloudSpeechModule.getProviderHealth();
+      }
+      return null;
+    } catch (error) {
+      console.error('获取提供商健康状况失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 设置识别模式
+   * @param {string} mode 'batch'：分段识别 | 'streaming'：流式识别，实时返回onPartialResults
+   * @returns {Promise<boolean>}
+   */
+  async setRecognitionMode(mode) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        await GoogleCloudSpeechModule.setRecognitionMode(mode);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置识别模式失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 设置上传音频的编码格式，同时关闭自适应上传（见configureAdaptiveUpload）。
+   * 之后在计费网络上也按指定的编码上传
+   * @param {string} encoding 'FLAC'（默认，无损压缩） | 'LINEAR16'
+   * @returns {Promise<boolean>}
+   */
+  async setAudioEncoding(encoding) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        await GoogleCloudSpeechModule.setAudioEncoding(encoding);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置音频编码失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 开启或关闭离线暂存：网络不可用时音频写入本地，恢复后按顺序补传
+   * @param {boolean} enabled 是否开启
+   * @returns {Promise<boolean>}
+   */
+  async setSpoolEnabled(enabled) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        await GoogleCloudSpeechModule.setSpoolEnabled(enabled);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置离线暂存失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 开启或关闭语音活动检测（VAD），开启后静音段不会上传
+   * @param {boolean} enabled 是否开启
+   * @returns {Promise<boolean>}
+   */
+  async setVadEnabled(enabled) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        await GoogleCloudSpeechModule.setVadEnabled(enabled);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置语音活动检测失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 设置高频事件的最大发送频率，超出部分合并为最新一条
+   * @param {Object} rates 如 { onRmsChanged: 15, onPartialResults: 10 }，0表示不合并
+   * @returns {Promise<boolean>}
+   */
+  async configureEventRates(rates) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        await GoogleCloudSpeechModule.configureEventRates(rates);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置事件频率失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 设置采集缓冲区写满时的处理策略
+   * @param {string} policy 'dropOldest' | 'block' | 'spill'
+   * @returns {Promise<boolean>}
+   */
+  async setOverflowPolicy(policy) {
+    try {
+      if (GoogleCloudSpeechModule) {
+        await GoogleCloudSpeechModule.setOverflowPolicy(policy);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置溢出策略失败:', error);
+      return false;
+    }
+  }
 }
 
 export default new GoogleCloudSpeechToText(); 
\ No newline at end of file
@@ -0,0 +1,256 @@
+import { Platform, NativeModules, NativeEventEmitter } from 'react-native';
+
+const { OfflineSpeechModule } = NativeModules;
+
+class OfflineSpeechToText {
+  constructor() {
+    this.isListening = false;
+    this.currentLanguage = 'en-US';
+    this.listeners = [];
+    // this.eventEmitter = new NativeEventEmitter(OfflineSpeechModule);
+    this.eventEmitter = null;
+  }
+
+  /**
+   * 检查离线识别是否可用（麦克风权限、识别引擎、当前语言的模型）
+   * @returns {Promise<Object>}
+   */
+  async isAvailable() {
+    if (Platform.OS !== 'android') {
+      return {
+        available: false,
+        reason: '仅支持Android平台'
+      };
+    }
+
+    try {
+      if (OfflineSpeechModule) {
+        return await OfflineSpeechModule.isAvailable();
+      }
+
+      return {
+        available: false,
+        reason: '离线识别模块未找到'
+      };
+    } catch (error) {
+      console.error('离线识别服务检查失败:', error);
+      return {
+        available: false,
+        reason: error.message
+      };
+    }
+  }
+
+  /**
+   * 开始离线语音识别，首次调用时加载模型
+   * @param {string} language 语言代码
+   * @returns {Promise<void>}
+   */
+  async startListening(language = 'en-US') {
+    if (Platform.OS !== 'android') {
+      throw new Error('离线识别仅支持Android平台');
+    }
+
+    try {
+      if (!OfflineSpeechModule) {
+        throw new Error('离线识别模块未找到');
+      }
+
+      this.currentLanguage = language;
+      this.isListening = true;
+
+      await OfflineSpeechModule.startListening(language);
+    } catch (error) {
+      this.isListening = false;
+      throw error;
+    }
+  }
+
+  /**
+   * 停止语音识别
+   * @returns {Promise<void>}
+   */
+  async stopListening() {
+    if (Platform.OS !== 'android') {
+      throw new Error('离线识别仅支持Android平台');
+    }
+
+    try {
+      if (OfflineSpeechModule) {
+        await OfflineSpeechModule.stopListening();
+      }
+
+      this.isListening = false;
+    } catch (error) {
+      throw error;
+    }
+  }
+
+  /**
+   * 设置识别语言，下次开始识别时加载对应模型
+   * @param {string} language 语言代码
+   * @returns {Promise<boolean>}
+   */
+  async setLanguage(language) {
+    try {
+      if (OfflineSpeechModule) {
+        await OfflineSpeechModule.setLanguage(language);
+        this.currentLanguage = language;
+        return true;
+      }
+
+      return false;
+    } catch (error) {
+      console.error('设置语言失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 预先加载模型（首次使用时复制打包的模型并加载），在选择离线识别时调用
+   * @param {string} language 语言代码
+   * @returns {Promise<number|null>} 模型加载耗时（毫秒）
+   */
+  async loadModel(language = this.currentLanguage) {
+    try {
+      if (OfflineSpeechModule) {
+        return await OfflineSpeechModule.loadModel(language);
+      }
+      return null;
+    } catch (error) {
+      console.error('加载离线模型失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 配置麦克风采集参数，下一次开始识别时生效，音频在原生层统一转换为16kHz单声道
+   * @param {Object} options { sampleRate: 采样率，0为设备原生采样率, channels: 1 | 2,
+   *   encoding: 'pcm16' | 'float', audioSource: 'mic' | 'voiceRecognition' | 'voiceCommunication' | 'unprocessed' }
+   * @returns {Promise<Object|null>} 生效后的采集参数，设备不支持unprocessed时audioSource为voiceRecognition
+   */
+  async configureCapture(options = {}) {
+    try {
+      if (OfflineSpeechModule) {
+        return await OfflineSpeechModule.configureCapture(options);
+      }
+      return null;
+    } catch (error) {
+      console.error('配置采集参数失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 指定Vosk模型目录，传null恢复默认路径（打包的模型，或filesDir/offline_asr/<语言>/）
+   * @param {string|null} path 模型目录路径
+   * @returns {Promise<boolean>}
+   */
+  async setModelPath(path) {
+    try {
+      if (OfflineSpeechModule) {
+        await OfflineSpeechModule.setModelPath(path);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置模型路径失败:', error);
+      return false;
+    }
+  }
+
+  /**
+   * 添加事件监听器
+   * @param {string} eventName 事件名称
+   * @param {Function} callback 回调函数
+   * @returns {Object} 监听器对象
+   */
+  addEventListener(eventName, callback) {
+    const subscription = this.eventEmitter.addListener(eventName, callback);
+    this.listeners.push(subscription);
+    return subscription;
+  }
+
+  /**
+   * 移除所有监听器
+   */
+  removeAllListeners() {
+    this.listeners.forEach(listener => listener.remove());
+    this.listeners = [];
+  }
+
+  /**
+   * 获取服务状态信息
+   * @returns {Promise<Object>}
+   */
+  async getServiceInfo() {
+    try {
+      if (OfflineSpeechModule) {
+        return await OfflineSpeechModule.getServiceInfo();
+      }
+
+      return {
+        available: false,
+        reason: '离线识别模块未找到'
+      };
+    } catch (error) {
+      return {
+        available: false,
+        reason: error.message
+      };
+    }
+  }
+
+  /**
+   * 获取识别指标快照
+   * @returns {Promise<Object|null>}
+   */
+  async getMetrics() {
+    try {
+      if (OfflineSpeechModule) {
+        return await OfflineSpeechModule.getMetrics();
+      }
+      return null;
+    } catch (error) {
+      console.error('获取识别指标失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 定期把指标写入本地JSON文件，用于现场调试
+   * @param {number} intervalMs 写入间隔（毫秒），0表示停止
+   * @returns {Promise<string|null>} 文件路径
+   */
+  async setMetricsDumpInterval(intervalMs) {
+    try {
+      if (OfflineSpeechModule) {
+        return await OfflineSpeechModule.setMetricsDumpInterval(intervalMs);
+      }
+      return null;
+    } catch (error) {
+      console.error('设置指标导出失败:', error);
+      return null;
+    }
+  }
+
+  /**
+   * 设置高频事件的最大发送频率，超出部分合并为最新一条
+   * @param {Object} rates 如 { onRmsChanged: 15, onPartialResults: 10 }，0表示不合并
+   * @returns {Promise<boolean>}
+   */
+  async configureEventRates(rates) {
+    try {
+      if (OfflineSpeechModule) {
+        await OfflineSpeechModule.configureEventRates(rates);
+        return true;
+      }
+      return false;
+    } catch (error) {
+      console.error('设置事件频率失败:', error);
+      return false;
+    }
+  }
+}
+
+export default new OfflineSpeechToText();
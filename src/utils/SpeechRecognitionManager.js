@@ -1,10 +1,11 @@
 import { Platform } from 'react-native';
 import VoiceToText from './VoiceToText';
 import GoogleCloudSpeechToText from './GoogleCloudSpeechToText';
+import OfflineSpeechToText from './OfflineSpeechToText';
 
 class SpeechRecognitionManager {
   constructor() {
-    this.currentProvider = 'local'; // 'local' 或 'google'
+    this.currentProvider = 'local'; // 'local'、'google'、'offline' 或 'race'
     this.isListening = false;
     this.currentLanguage = 'zh-CN';
     this.listeners = [];
@@ -13,16 +14,51 @@ class SpeechRecognitionManager {
 
   /**
    * 设置语音识别提供商
-   * @param {string} provider 'local' 或 'google'
+   * @param {string} provider 'local'、'google'、'offline' 或 'race'（云端与离线引擎同时识别，先得出可信结果者胜出）
    */
   setProvider(provider) {
-    if (provider === 'local' || provider === 'google') {
+    if (provider === 'local' || provider === 'google' || provider === 'offline' || provider === 'race') {
       this.currentProvider = provider;
+      if (provider === 'offline') {
+        // 在后台加载模型，不等待结果，开始识别时无需再等待
+        OfflineSpeechToText.loadModel(this.currentLanguage);
+      }
+      if (this.usesGoogleModule(provider)) {
+        // 竞速由GoogleCloudSpeechModule在原生层完成
+        GoogleCloudSpeechToText.configureRace({ enabled: provider === 'race' });
+      }
       return true;
     }
     return false;
   }
 
+  /**
+   * 是否由GoogleCloudSpeechModule执行识别（'google'及竞速模式）
+   * @param {string} provider 提供商
+   * @returns {boolean}
+   */
+  usesGoogleModule(provider = this.currentProvider) {
+    return provider === 'google' || provider === 'race';
+  }
+
+  /**
+   * 根据本机竞速记录得出的首选提供商，竞速次数不足时返回null
+   * @returns {Promise<string|null>} 'google' 或 'offline'
+   */
+  async getPreferredProvider() {
+    const stats = await GoogleCloudSpeechToText.getRaceStats();
+    return stats ? stats.preferredProvider : null;
+  }
+
+  /**
+   * 获取原生路由记录的各提供商健康状况（滚动错误率、耗时分位数、网络状态）。
+   * 分批识别中云端不健康时，原生层会自动把会话转移到离线引擎并发出onProviderSwitch事件
+   * @returns {Promise<Object|null>} providers、networkAvailable及新会话应使用的preferredProvider
+   */
+  async getProviderHealth() {
+    return await GoogleCloudSpeechToText.getProviderHealth();
+  }
+
   /**
    * 获取当前提供商
    * @returns {string} 当前提供商
@@ -98,9 +134,94 @@ class SpeechRecognitionManager {
       });
     }
 
+    // 检查离线识别
+    let offlineReady = false;
+    try {
+      const offlineAvailable = await OfflineSpeechToText.isAvailable();
+      offlineReady = offlineAvailable.available;
+      if (offlineAvailable.available) {
+        providers.push({
+          id: 'offline',
+          name: '离线语音识别',
+          description: '使用设备上的本地模型，无需网络',
+          available: true,
+          info: offlineAvailable
+        });
+      } else {
+        providers.push({
+          id: 'offline',
+          name: '离线语音识别',
+          description: '使用设备上的本地模型，无需网络',
+          available: false,
+          reason: offlineAvailable.reason
+        });
+      }
+    } catch (error) {
+      providers.push({
+        id: 'offline',
+        name: '离线语音识别',
+        description: '使用设备上的本地模型，无需网络',
+        available: false,
+        reason: error.message
+      });
+    }
+
+    // 竞速需要云端和离线识别同时可用
+    const googleReady = providers.some((provider) => provider.id === 'google' && provider.available);
+    providers.push({
+      id: 'race',
+      name: '竞速识别',
+      description: '云端与离线引擎同时识别，采用先得出的可信结果',
+      available: googleReady && offlineReady,
+      reason: googleReady && offlineReady ? undefined : '需要Google Cloud Speech和离线识别均可用'
+    });
+
+    // 附上原生路由按最近的请求结果给出的健康状况
+    const health = await this.getProviderHealth();
+    if (health) {
+      providers.forEach((provider) => {
+        provider.health = health.providers.find((entry) => entry.id === provider.id);
+      });
+    }
+
     return providers;
   }
 
+  /**
+   * 获取提供商对应的识别模块
+   * @param {string} provider 提供商
+   * @returns {Object} 识别模块
+   */
+  getProviderModule(provider = this.currentProvider) {
+    if (this.usesGoogleModule(provider)) {
+      return GoogleCloudSpeechToText;
+    }
+    if (provider === 'offline') {
+      return OfflineSpeechToText;
+    }
+    return VoiceToText;
+  }
+
+  /**
+   * 预热当前提供商（识别器、录音和网络连接，离线识别为加载模型），进入语音界面时调用
+   * @returns {Promise<boolean>}
+   */
+  async prepare() {
+    try {
+      if (this.currentProvider === 'local') {
+        return await VoiceToText.prepare();
+      } else if (this.usesGoogleModule()) {
+        return await GoogleCloudSpeechToText.prepare();
+      } else if (this.currentProvider === 'offline') {
+        return (await OfflineSpeechToText.loadModel(this.currentLanguage)) !== null;
+      }
+      return false;
+    } catch (error) {
+      console.error('预热语音识别失败:', error);
+      return false;
+    }
+  }
+
   /**
    * 开始语音识别
    * @param {string} language 语言代码
@@ -119,10 +240,15 @@ class SpeechRecognitionManager {
         await VoiceToText.setLanguage(language);
         await VoiceToText.startListening();
         this.eventEmitter = VoiceToText.eventEmitter;
-      } else if (this.currentProvider === 'google') {
+      } else if (this.usesGoogleModule()) {
         await GoogleCloudSpeechToText.setLanguage(language);
+        // 离线引擎是云端的故障转移目标，按会话语言判断它是否可用
+        await OfflineSpeechToText.setLanguage(language);
         await GoogleCloudSpeechToText.startListening(language);
         this.eventEmitter = GoogleCloudSpeechToText.eventEmitter;
+      } else if (this.currentProvider === 'offline') {
+        await OfflineSpeechToText.startListening(language);
+        this.eventEmitter = OfflineSpeechToText.eventEmitter;
       } else {
         throw new Error('未知的语音识别提供商');
       }
@@ -144,8 +270,10 @@ class SpeechRecognitionManager {
     try {
       if (this.currentProvider === 'local') {
         await VoiceToText.stopListening();
-      } else if (this.currentProvider === 'google') {
+      } else if (this.usesGoogleModule()) {
         await GoogleCloudSpeechToText.stopListening();
+      } else if (this.currentProvider === 'offline') {
+        await OfflineSpeechToText.stopListening();
       }
       
       this.isListening = false;
@@ -165,8 +293,11 @@ class SpeechRecognitionManager {
       
       if (this.currentProvider === 'local') {
         return await VoiceToText.setLanguage(language);
-      } else if (this.currentProvider === 'google') {
+      } else if (this.usesGoogleModule()) {
+        await OfflineSpeechToText.setLanguage(language);
         return await GoogleCloudSpeechToText.setLanguage(language);
+      } else if (this.currentProvider === 'offline') {
+        return await OfflineSpeechToText.setLanguage(language);
       }
       
       return false;
@@ -183,7 +314,7 @@ class SpeechRecognitionManager {
    * @returns {Object} 监听器对象
    */
   addEventListener(eventName, callback) {
-    const provider = this.currentProvider === 'local' ? VoiceToText : GoogleCloudSpeechToText;
+    const provider = this.getProviderModule();
     const subscription = provider.addEventListener(eventName, callback);
     this.listeners.push({ subscription, provider });
     return subscription;
@@ -222,8 +353,11 @@ class SpeechRecognitionManager {
   getSupportedLanguages() {
     if (this.currentProvider === 'local') {
       return ['zh-CN', 'en-US', 'ja-JP', 'ko-KR', 'fr-FR', 'de-DE', 'es-ES'];
-    } else if (this.currentProvider === 'google') {
+    } else if (this.usesGoogleModule()) {
       return GoogleCloudSpeechToText.getSupportedLanguages();
+    } else if (this.currentProvider === 'offline') {
+      // 取决于设备上已安装的模型
+      return [this.currentLanguage];
     }
     return [];
   }
@@ -236,8 +370,10 @@ class SpeechRecognitionManager {
     try {
       if (this.currentProvider === 'local') {
         return await VoiceToText.isAvailable();
-      } else if (this.currentProvider === 'google') {
+      } else if (this.usesGoogleModule()) {
         return await GoogleCloudSpeechToText.getServiceInfo();
+      } else if (this.currentProvider === 'offline') {
+        return await OfflineSpeechToText.getServiceInfo();
       }
       
       return {
@@ -20,6 +20,40 @@ class VoiceToText {
     return VoiceToTextModule.startListening();
   }
 
+  /**
+   * 预热识别器，进入语音界面时调用，缩短开始识别的等待
+   * @returns {Promise<boolean>} 预热结果
+   */
+  prepare() {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('Voice to text is only supported on Android'));
+    }
+    return VoiceToTextModule.prepare();
+  }
+
+  /**
+   * 开始连续听写：每段结束后原生层立即重启识别器，直到调用stopListening；
+   * 每段最终结果通过onTranscript事件返回 { segment, transcript }
+   * @returns {Promise<string>} 启动结果
+   */
+  startContinuousListening() {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('Voice to text is only supported on Android'));
+    }
+    return VoiceToTextModule.startContinuousListening();
+  }
+
+  /**
+   * 获取当前或最近一次连续听写的拼接结果：全文、各段文本与起止时间、重启次数和丢失时长
+   * @returns {Promise<Object|null>} 听写结果
+   */
+  getTranscript() {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('Voice to text is only supported on Android'));
+    }
+    return VoiceToTextModule.getTranscript();
+  }
+
   /**
    * 停止语音识别
    * @returns {Promise<string>} 停止结果
@@ -54,6 +88,41 @@ class VoiceToText {
     return VoiceToTextModule.setLanguage(language);
   }
 
+  /**
+   * 设置高频事件的最大发送频率，超出部分合并为最新一条
+   * @param {Object} rates 如 { onRmsChanged: 15, onPartialResults: 10 }，0表示不合并
+   * @returns {Promise<boolean>} 设置结果
+   */
+  configureEventRates(rates) {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('Voice to text is only supported on Android'));
+    }
+    return VoiceToTextModule.configureEventRates(rates);
+  }
+
+  /**
+   * 获取识别指标快照：首段音频/首个中间结果/最终结果耗时分布、错误码统计等
+   * @returns {Promise<Object>} 指标快照
+   */
+  getMetrics() {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('Voice to text is only supported on Android'));
+    }
+    return VoiceToTextModule.getMetrics();
+  }
+
+  /**
+   * 定期把指标写入本地JSON文件，用于现场调试
+   * @param {number} intervalMs 写入间隔（毫秒），0表示停止
+   * @returns {Promise<string|null>} 文件路径
+   */
+  setMetricsDumpInterval(intervalMs) {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('Voice to text is only supported on Android'));
+    }
+    return VoiceToTextModule.setMetricsDumpInterval(intervalMs);
+  }
+
   /**
    * 检查语音识别是否可用
    * @returns {Promise<Object>} 详细可用性信息
@@ -106,6 +175,7 @@ class VoiceToText {
       'onRmsChanged',
       'onResults',
       'onPartialResults',
+      'onTranscript',
       'onError',
       'onDestroy'
     ];